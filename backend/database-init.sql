@@ -25,6 +25,8 @@ USE `qn`;
 SET FOREIGN_KEY_CHECKS = 0;
 
 -- 删除所有数据（按依赖关系的逆序）
+DROP TABLE IF EXISTS `session_memories`;
+DROP TABLE IF EXISTS `session_summaries`;
 DROP TABLE IF EXISTS `convergence_status`;
 DROP TABLE IF EXISTS `world_events`;
 DROP TABLE IF EXISTS `dice_rolls`;
@@ -63,12 +65,16 @@ CREATE TABLE IF NOT EXISTS `users` (
 -- 创建刷新令牌表
 CREATE TABLE IF NOT EXISTS `refresh_tokens` (
   `id` bigint NOT NULL AUTO_INCREMENT,
-  `token` varchar(255) NOT NULL,
+  `token_hash` char(64) NOT NULL COMMENT '令牌SHA-256摘要（不保存明文令牌）',
+  `family_id` varchar(36) DEFAULT NULL COMMENT '令牌家族（同一次登录轮换出的令牌）',
+  `rotated_at` datetime(6) DEFAULT NULL COMMENT '已轮换时间，非空表示已被新令牌替换',
   `user_id` bigint NOT NULL,
   `expiry_date` datetime(6) NOT NULL,
   `created_at` datetime(6) DEFAULT CURRENT_TIMESTAMP(6),
   PRIMARY KEY (`id`),
-  UNIQUE KEY `UK_token` (`token`),
+  UNIQUE KEY `UK_refresh_tokens_token_hash` (`token_hash`),
+  KEY `IDX_refresh_tokens_expiry_date` (`expiry_date`),
+  KEY `IDX_refresh_tokens_family_id` (`family_id`),
   KEY `FK_refresh_tokens_user_id` (`user_id`),
   CONSTRAINT `FK_refresh_tokens_user_id` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -123,6 +129,7 @@ CREATE TABLE IF NOT EXISTS `chat_messages` (
   PRIMARY KEY (`id`),
   KEY `FK_chat_messages_session` (`session_id`),
   KEY `IDX_session_sequence` (`session_id`, `sequence_number`),
+  UNIQUE KEY `UK_chat_messages_session_sequence` (`session_id`, `sequence_number`),
   CONSTRAINT `FK_chat_messages_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -243,6 +250,33 @@ CREATE TABLE IF NOT EXISTS `convergence_status` (
   CONSTRAINT `FK_convergence_status_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 会话滚动摘要表（较早的对话折叠为前情提要，提示词中代替完整历史）
+CREATE TABLE IF NOT EXISTS `session_summaries` (
+  `session_id` varchar(255) NOT NULL,
+  `summary` TEXT NOT NULL COMMENT '前情提要文本',
+  `covered_through_sequence` int NOT NULL DEFAULT 0 COMMENT '已折叠进摘要的最大消息序号',
+  `covered_rounds` int NOT NULL DEFAULT 0 COMMENT '折叠时会话的总轮数',
+  `arc_name` varchar(255) DEFAULT NULL COMMENT '折叠时的情节名称',
+  `fold_count` int NOT NULL DEFAULT 0 COMMENT '累计折叠次数',
+  `updated_at` datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (`session_id`),
+  CONSTRAINT `FK_session_summaries_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- 会话记忆表（只追加写入，每种类型超过上限时清理低重要性记忆）
+CREATE TABLE IF NOT EXISTS `session_memories` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `session_id` varchar(255) NOT NULL,
+  `memory_type` varchar(50) NOT NULL COMMENT '记忆类型（CHARACTER/EVENT/RELATIONSHIP/WORLD_STATE/AI_GENERATED等）',
+  `content` TEXT NOT NULL COMMENT '记忆内容',
+  `importance` double NOT NULL COMMENT '重要性 (0-1)',
+  `created_at` datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (`id`),
+  KEY `IDX_session_memories_session_type_importance` (`session_id`, `memory_type`, `importance`),
+  KEY `IDX_session_memories_session_importance` (`session_id`, `importance`),
+  CONSTRAINT `FK_session_memories_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 
 -- ===================================================================
 -- 4. 初始化数据
@@ -303,6 +337,7 @@ ALTER TABLE `world_states` AUTO_INCREMENT = 1;
 ALTER TABLE `stability_anchors` AUTO_INCREMENT = 1;
 ALTER TABLE `world_events` AUTO_INCREMENT = 1;
 ALTER TABLE `dice_rolls` AUTO_INCREMENT = 1;
+ALTER TABLE `session_memories` AUTO_INCREMENT = 1;
 ALTER TABLE `refresh_tokens` AUTO_INCREMENT = 1;
 
 
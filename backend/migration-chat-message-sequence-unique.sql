@@ -0,0 +1,41 @@
+-- ===================================================================
+-- QN Contest - chat_messages 会话内消息序号唯一约束
+-- 说明: 新版本依赖唯一键 UK_chat_messages_session_sequence (session_id, sequence_number)
+--       检测多实例并发写入的序号冲突（ChatSessionService.saveMessageWithRetry捕获冲突后重新对齐序号并重试）。
+--       ddl-auto=validate不校验唯一键，缺少该键时应用能启动但冲突会被静默写入，因此升级已有数据库时需在启动新版本前执行本脚本。
+--       脚本可重复执行：唯一键已存在时不做任何修改。
+--
+-- 去重方式：只处理存在重复序号的会话，按 (sequence_number, id) 的原有顺序重新编号，
+--       new = sequence_number + 此前累计的重复条数（ROW_NUMBER - DENSE_RANK）。
+--       消息顺序不变、序号只增不减，前情提要的 covered_through_sequence 不会因此覆盖到未折叠的消息。
+-- 需要 MySQL 8.0+（窗口函数）。
+-- ===================================================================
+
+USE `qn`;
+
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND INDEX_NAME = 'UK_chat_messages_session_sequence');
+
+-- 1. 重复序号重新编号
+SET @dml = IF(@missing,
+  'UPDATE `chat_messages` m
+   JOIN (
+     SELECT `id`, `sequence_number` + (ROW_NUMBER() OVER w - DENSE_RANK() OVER w) AS `new_sequence`
+     FROM `chat_messages`
+     WHERE `session_id` IN (
+       SELECT `session_id` FROM (
+         SELECT `session_id` FROM `chat_messages` GROUP BY `session_id`, `sequence_number` HAVING COUNT(*) > 1
+       ) dup
+     )
+     WINDOW w AS (PARTITION BY `session_id` ORDER BY `sequence_number`, `id`)
+   ) r ON r.`id` = m.`id`
+   SET m.`sequence_number` = r.`new_sequence`
+   WHERE m.`sequence_number` <> r.`new_sequence`',
+  'DO 0');
+PREPARE stmt FROM @dml; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- 2. 唯一键
+SET @ddl = IF(@missing,
+  'ALTER TABLE `chat_messages` ADD UNIQUE KEY `UK_chat_messages_session_sequence` (`session_id`, `sequence_number`)',
+  'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
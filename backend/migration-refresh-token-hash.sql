@@ -0,0 +1,51 @@
+-- ===================================================================
+-- QN Contest - refresh_tokens 明文令牌迁移为SHA-256摘要
+-- 说明: 旧表结构在token列保存明文refresh token，新版本只保存token_hash（SHA2(token, 256)）。
+--       升级已有数据库时，在启动新版本应用之前执行本脚本；已登录用户的令牌换算为摘要后继续有效。
+--       脚本可重复执行：已迁移的库上各步骤均不做任何修改。
+--       未迁移的库上启动新版本时，RefreshTokenMaintenance会检测到明文token列并拒绝启动。
+-- ===================================================================
+
+USE `qn`;
+
+-- 1. 补齐新列（应用以ddl-auto=update启动过时可能已由Hibernate添加）
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.COLUMNS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'token_hash');
+SET @ddl = IF(@missing, 'ALTER TABLE `refresh_tokens` ADD COLUMN `token_hash` char(64) NULL COMMENT ''令牌SHA-256摘要（不保存明文令牌）'' AFTER `id`', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.COLUMNS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'family_id');
+SET @ddl = IF(@missing, 'ALTER TABLE `refresh_tokens` ADD COLUMN `family_id` varchar(36) DEFAULT NULL COMMENT ''令牌家族（同一次登录轮换出的令牌）'' AFTER `token_hash`', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.COLUMNS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'rotated_at');
+SET @ddl = IF(@missing, 'ALTER TABLE `refresh_tokens` ADD COLUMN `rotated_at` datetime(6) DEFAULT NULL COMMENT ''已轮换时间，非空表示已被新令牌替换'' AFTER `family_id`', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- 2. 明文令牌换算为摘要后删除明文列
+SET @legacy = (SELECT COUNT(*) > 0 FROM information_schema.COLUMNS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'token');
+SET @ddl = IF(@legacy, 'UPDATE `refresh_tokens` SET `token_hash` = SHA2(`token`, 256)', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+SET @ddl = IF(@legacy, 'ALTER TABLE `refresh_tokens` DROP COLUMN `token`', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+ALTER TABLE `refresh_tokens` MODIFY COLUMN `token_hash` char(64) NOT NULL COMMENT '令牌SHA-256摘要（不保存明文令牌）';
+
+-- 3. 索引（与database-init.sql保持一致）
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'token_hash' AND NON_UNIQUE = 0);
+SET @ddl = IF(@missing, 'CREATE UNIQUE INDEX `UK_refresh_tokens_token_hash` ON `refresh_tokens` (`token_hash`)', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND INDEX_NAME = 'IDX_refresh_tokens_expiry_date');
+SET @ddl = IF(@missing, 'CREATE INDEX `IDX_refresh_tokens_expiry_date` ON `refresh_tokens` (`expiry_date`)', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @missing = (SELECT COUNT(*) = 0 FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens' AND INDEX_NAME = 'IDX_refresh_tokens_family_id');
+SET @ddl = IF(@missing, 'CREATE INDEX `IDX_refresh_tokens_family_id` ON `refresh_tokens` (`family_id`)', 'DO 0');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,24 @@
+-- ===================================================================
+-- QN Contest - 新增会话记忆表 session_memories
+-- 说明: 会话记忆从 chat_sessions.world_state 中的JSON迁移到独立的只追加表。
+--       升级已有数据库时，在启动新版本应用之前执行本脚本（生产环境ddl-auto=validate，缺表时拒绝启动）；
+--       不需要执行database-init.sql（该脚本会清空全部数据）。
+--       脚本可重复执行：表已存在时不做任何修改。
+--       已有会话的旧记忆保留在world_state中，新版本首次读取该会话的记忆时自动导入本表
+--       （RoleplayMemoryService.importLegacyMemories）。
+-- ===================================================================
+
+USE `qn`;
+
+CREATE TABLE IF NOT EXISTS `session_memories` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `session_id` varchar(255) NOT NULL,
+  `memory_type` varchar(50) NOT NULL COMMENT '记忆类型（CHARACTER/EVENT/RELATIONSHIP/WORLD_STATE/AI_GENERATED等）',
+  `content` TEXT NOT NULL COMMENT '记忆内容',
+  `importance` double NOT NULL COMMENT '重要性 (0-1)',
+  `created_at` datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (`id`),
+  KEY `IDX_session_memories_session_type_importance` (`session_id`, `memory_type`, `importance`),
+  KEY `IDX_session_memories_session_importance` (`session_id`, `importance`),
+  CONSTRAINT `FK_session_memories_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
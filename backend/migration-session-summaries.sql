@@ -0,0 +1,21 @@
+-- ===================================================================
+-- QN Contest - 新增前情提要表 session_summaries
+-- 说明: 较早的对话在后台折叠为前情提要（SessionSummaryService），每个会话一行。
+--       升级已有数据库时，在启动新版本应用之前执行本脚本（生产环境ddl-auto=validate，缺表时拒绝启动）；
+--       不需要执行database-init.sql（该脚本会清空全部数据）。
+--       脚本可重复执行：表已存在时不做任何修改。已有会话在下一次达到折叠条件时生成前情提要。
+-- ===================================================================
+
+USE `qn`;
+
+CREATE TABLE IF NOT EXISTS `session_summaries` (
+  `session_id` varchar(255) NOT NULL,
+  `summary` TEXT NOT NULL COMMENT '前情提要文本',
+  `covered_through_sequence` int NOT NULL DEFAULT 0 COMMENT '已折叠进摘要的最大消息序号',
+  `covered_rounds` int NOT NULL DEFAULT 0 COMMENT '折叠时会话的总轮数',
+  `arc_name` varchar(255) DEFAULT NULL COMMENT '折叠时的情节名称',
+  `fold_count` int NOT NULL DEFAULT 0 COMMENT '累计折叠次数',
+  `updated_at` datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (`session_id`),
+  CONSTRAINT `FK_session_summaries_session` FOREIGN KEY (`session_id`) REFERENCES `chat_sessions` (`session_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -32,7 +32,7 @@ public class AiConfig {
         private double temperature = 0.7;
         
         /**
-         * 流式响应的块大小
+         * 流式响应的块大小（SSE合并发送的字节阈值）
          */
         private int streamChunkSize = 50;
         
@@ -0,0 +1,106 @@
+package com.qncontest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 世界事件日志写入相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(EventJournalConfig.EventJournalProperties.class)
+public class EventJournalConfig {
+
+    /**
+     * 持久化模式：调用线程内同步写入
+     */
+    public static final String DURABILITY_SYNC = "sync";
+
+    /**
+     * 持久化模式：先进入会话缓冲区，由后台线程按组提交
+     */
+    public static final String DURABILITY_GROUP = "group";
+
+    @ConfigurationProperties(prefix = "ai.event-journal")
+    public static class EventJournalProperties {
+
+        /**
+         * 持久化模式：sync 或 group
+         */
+        private String durability = DURABILITY_GROUP;
+
+        /**
+         * 组提交间隔（毫秒），group模式下事件最多延迟这么久写入数据库
+         */
+        private long groupCommitMs = 20;
+
+        /**
+         * 每个会话缓冲区可容纳的事件数（向上取整为2的幂）
+         */
+        private int ringCapacity = 256;
+
+        /**
+         * 单次批量插入的最大事件数
+         */
+        private int maxBatchSize = 500;
+
+        /**
+         * 缓冲区满时调用线程等待空位的最长时间（毫秒），超时后在调用线程同步写入
+         */
+        private long offerTimeoutMs = 200;
+
+        /**
+         * 读取事件前等待该会话缓冲事件落库的最长时间（毫秒）
+         */
+        private long flushAwaitMs = 1000;
+
+        // Getters and Setters
+        public String getDurability() {
+            return durability;
+        }
+
+        public void setDurability(String durability) {
+            this.durability = durability;
+        }
+
+        public long getGroupCommitMs() {
+            return groupCommitMs;
+        }
+
+        public void setGroupCommitMs(long groupCommitMs) {
+            this.groupCommitMs = groupCommitMs;
+        }
+
+        public int getRingCapacity() {
+            return ringCapacity;
+        }
+
+        public void setRingCapacity(int ringCapacity) {
+            this.ringCapacity = ringCapacity;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getOfferTimeoutMs() {
+            return offerTimeoutMs;
+        }
+
+        public void setOfferTimeoutMs(long offerTimeoutMs) {
+            this.offerTimeoutMs = offerTimeoutMs;
+        }
+
+        public long getFlushAwaitMs() {
+            return flushAwaitMs;
+        }
+
+        public void setFlushAwaitMs(long flushAwaitMs) {
+            this.flushAwaitMs = flushAwaitMs;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.qncontest.config;
+
+import com.qncontest.service.memory.HashingEmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 角色扮演记忆检索相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(MemoryConfig.MemoryProperties.class)
+public class MemoryConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryConfig.class);
+
+    /**
+     * 检索方式：关键词倒排索引（BM25）
+     */
+    public static final String RETRIEVAL_KEYWORD = "keyword";
+
+    /**
+     * 检索方式：向量语义检索
+     */
+    public static final String RETRIEVAL_SEMANTIC = "semantic";
+
+    /**
+     * 记忆向量模型，默认使用本地哈希向量（离线、确定性）
+     */
+    @Bean(name = "memoryEmbeddingModel")
+    public HashingEmbeddingModel memoryEmbeddingModel(MemoryProperties memoryProperties) {
+        logger.info("初始化记忆向量模型: hashing, dimension={}", memoryProperties.getEmbeddingDimension());
+        return new HashingEmbeddingModel(memoryProperties.getEmbeddingDimension());
+    }
+
+    @ConfigurationProperties(prefix = "ai.memory")
+    public static class MemoryProperties {
+
+        /**
+         * 记忆检索方式：keyword 或 semantic
+         */
+        private String retrieval = RETRIEVAL_KEYWORD;
+
+        /**
+         * 记忆向量维度
+         */
+        private int embeddingDimension = 256;
+
+        /**
+         * 单个会话的记忆数量达到该值后使用IVF近似检索，低于该值时精确暴力检索
+         */
+        private int ivfThreshold = 4096;
+
+        /**
+         * IVF检索时探查的聚类数量（越大召回越高、延迟越高）
+         */
+        private int ivfProbes = 16;
+
+        /**
+         * 最多缓存的会话向量索引数量
+         */
+        private int maxCachedSessions = 500;
+
+        // Getters and Setters
+        public String getRetrieval() {
+            return retrieval;
+        }
+
+        public void setRetrieval(String retrieval) {
+            this.retrieval = retrieval;
+        }
+
+        public int getEmbeddingDimension() {
+            return embeddingDimension;
+        }
+
+        public void setEmbeddingDimension(int embeddingDimension) {
+            this.embeddingDimension = embeddingDimension;
+        }
+
+        public int getIvfThreshold() {
+            return ivfThreshold;
+        }
+
+        public void setIvfThreshold(int ivfThreshold) {
+            this.ivfThreshold = ivfThreshold;
+        }
+
+        public int getIvfProbes() {
+            return ivfProbes;
+        }
+
+        public void setIvfProbes(int ivfProbes) {
+            this.ivfProbes = ivfProbes;
+        }
+
+        public int getMaxCachedSessions() {
+            return maxCachedSessions;
+        }
+
+        public void setMaxCachedSessions(int maxCachedSessions) {
+            this.maxCachedSessions = maxCachedSessions;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.qncontest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 角色扮演提示词相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(PromptConfig.PromptProperties.class)
+public class PromptConfig {
+
+    /**
+     * 布局：按原有顺序拼接
+     */
+    public static final String LAYOUT_LEGACY = "legacy";
+
+    /**
+     * 布局：不随轮次变化的内容在前、每轮变化的内容在后
+     */
+    public static final String LAYOUT_CACHE_STABLE = "cache-stable";
+
+    @ConfigurationProperties(prefix = "ai.prompt")
+    public static class PromptProperties {
+
+        /**
+         * 系统提示词布局：legacy 或 cache-stable
+         * cache-stable 下模板、规则、DM准则、评估说明等逐字节稳定的内容放在最前面，
+         * 状态、轮次、历史、事件、记忆和本轮玩家行为放在最后，使大模型服务端的前缀缓存能够命中
+         */
+        private String layout = LAYOUT_CACHE_STABLE;
+
+        /**
+         * 发送给大模型的上下文（系统提示词+对话历史+本轮消息）的token预算（本地估算值）
+         * 必需段落总是保留，其余按 对话历史 > 记忆 > 事件历史 的优先级在预算内填充
+         */
+        private int contextTokenBudget = 6000;
+
+        /**
+         * 保持原文不折叠的最近历史消息条数（不含本轮消息）
+         * 未启用摘要时即最多携带的条数；启用摘要时尚未折叠的较早消息也会携带，由token预算裁剪
+         */
+        private int maxHistoryMessages = 10;
+
+        /**
+         * 是否启用会话滚动摘要（较早的对话在后台折叠为前情提要）
+         */
+        private boolean summaryEnabled = true;
+
+        /**
+         * 距上次折叠每累计多少轮触发一次折叠（情节切换时也会触发）
+         */
+        private int summaryEveryRounds = 10;
+
+        /**
+         * 前情提要的最大字数
+         */
+        private int summaryMaxChars = 800;
+
+        // Getters and Setters
+        public String getLayout() {
+            return layout;
+        }
+
+        public void setLayout(String layout) {
+            this.layout = layout;
+        }
+
+        public int getContextTokenBudget() {
+            return contextTokenBudget;
+        }
+
+        public void setContextTokenBudget(int contextTokenBudget) {
+            this.contextTokenBudget = contextTokenBudget;
+        }
+
+        public int getMaxHistoryMessages() {
+            return maxHistoryMessages;
+        }
+
+        public void setMaxHistoryMessages(int maxHistoryMessages) {
+            this.maxHistoryMessages = maxHistoryMessages;
+        }
+
+        public boolean isSummaryEnabled() {
+            return summaryEnabled;
+        }
+
+        public void setSummaryEnabled(boolean summaryEnabled) {
+            this.summaryEnabled = summaryEnabled;
+        }
+
+        public int getSummaryEveryRounds() {
+            return summaryEveryRounds;
+        }
+
+        public void setSummaryEveryRounds(int summaryEveryRounds) {
+            this.summaryEveryRounds = summaryEveryRounds;
+        }
+
+        public int getSummaryMaxChars() {
+            return summaryMaxChars;
+        }
+
+        public void setSummaryMaxChars(int summaryMaxChars) {
+            this.summaryMaxChars = summaryMaxChars;
+        }
+
+        public boolean isCacheStableLayout() {
+            return LAYOUT_CACHE_STABLE.equalsIgnoreCase(layout);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.qncontest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 刷新令牌维护（过期令牌清理）相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(RefreshTokenConfig.RefreshTokenMaintenanceProperties.class)
+public class RefreshTokenConfig {
+
+    @ConfigurationProperties(prefix = "jwt.refresh-token-maintenance")
+    public static class RefreshTokenMaintenanceProperties {
+
+        /**
+         * 是否启用后台清理过期令牌
+         */
+        private boolean purgeEnabled = true;
+
+        /**
+         * 启动后首次清理的延迟（秒）
+         */
+        private long purgeInitialDelaySeconds = 60;
+
+        /**
+         * 两次清理之间的间隔（秒）
+         */
+        private long purgeIntervalSeconds = 600;
+
+        /**
+         * 每批删除的行数，每批在独立的短事务中提交，避免长时间锁表
+         */
+        private int purgeBatchSize = 1000;
+
+        /**
+         * 两批删除之间的停顿（毫秒），给在线请求让出数据库资源
+         */
+        private long purgeBatchPauseMs = 50;
+
+        /**
+         * 单次清理最多执行的批次数，剩余的留给下一次清理
+         */
+        private int purgeMaxBatchesPerRun = 1000;
+
+        // Getters and Setters
+        public boolean isPurgeEnabled() {
+            return purgeEnabled;
+        }
+
+        public void setPurgeEnabled(boolean purgeEnabled) {
+            this.purgeEnabled = purgeEnabled;
+        }
+
+        public long getPurgeInitialDelaySeconds() {
+            return purgeInitialDelaySeconds;
+        }
+
+        public void setPurgeInitialDelaySeconds(long purgeInitialDelaySeconds) {
+            this.purgeInitialDelaySeconds = purgeInitialDelaySeconds;
+        }
+
+        public long getPurgeIntervalSeconds() {
+            return purgeIntervalSeconds;
+        }
+
+        public void setPurgeIntervalSeconds(long purgeIntervalSeconds) {
+            this.purgeIntervalSeconds = purgeIntervalSeconds;
+        }
+
+        public int getPurgeBatchSize() {
+            return purgeBatchSize;
+        }
+
+        public void setPurgeBatchSize(int purgeBatchSize) {
+            this.purgeBatchSize = purgeBatchSize;
+        }
+
+        public long getPurgeBatchPauseMs() {
+            return purgeBatchPauseMs;
+        }
+
+        public void setPurgeBatchPauseMs(long purgeBatchPauseMs) {
+            this.purgeBatchPauseMs = purgeBatchPauseMs;
+        }
+
+        public int getPurgeMaxBatchesPerRun() {
+            return purgeMaxBatchesPerRun;
+        }
+
+        public void setPurgeMaxBatchesPerRun(int purgeMaxBatchesPerRun) {
+            this.purgeMaxBatchesPerRun = purgeMaxBatchesPerRun;
+        }
+    }
+}
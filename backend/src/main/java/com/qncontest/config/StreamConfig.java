@@ -0,0 +1,122 @@
+package com.qncontest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式响应相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(StreamConfig.StreamProperties.class)
+public class StreamConfig {
+
+    @ConfigurationProperties(prefix = "ai.stream")
+    public static class StreamProperties {
+
+        /**
+         * 流式执行器模式：platform（平台线程池）或 virtual（虚拟线程，运行时不支持时回退到平台线程池）
+         */
+        private String executorMode = "virtual";
+
+        /**
+         * 同时运行的最大流数量（平台线程模式下即线程池大小）
+         */
+        private int maxConcurrentStreams = 256;
+
+        /**
+         * 等待执行的流的最大排队数量，超过后拒绝新请求
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 是否启用token合并（关闭时每个token单独发送一个SSE事件）
+         */
+        private boolean coalesceEnabled = true;
+
+        /**
+         * token合并的最大等待时间（毫秒），字节阈值使用 ai.chat.stream-chunk-size
+         */
+        private long coalesceMaxDelayMs = 30;
+
+        /**
+         * 流式完成后处理管道的工作通道数（同一会话固定落在同一通道）
+         */
+        private int postCompletionWorkers = 4;
+
+        /**
+         * 完成后处理管道的总队列容量，队列满时在回调线程同步执行
+         */
+        private int postCompletionQueueCapacity = 512;
+
+        /**
+         * 新一轮对话开始前等待上一轮完成处理的最长时间（毫秒）
+         */
+        private long postCompletionAwaitMs = 15000;
+
+        // Getters and Setters
+        public String getExecutorMode() {
+            return executorMode;
+        }
+
+        public void setExecutorMode(String executorMode) {
+            this.executorMode = executorMode;
+        }
+
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public boolean isCoalesceEnabled() {
+            return coalesceEnabled;
+        }
+
+        public void setCoalesceEnabled(boolean coalesceEnabled) {
+            this.coalesceEnabled = coalesceEnabled;
+        }
+
+        public long getCoalesceMaxDelayMs() {
+            return coalesceMaxDelayMs;
+        }
+
+        public void setCoalesceMaxDelayMs(long coalesceMaxDelayMs) {
+            this.coalesceMaxDelayMs = coalesceMaxDelayMs;
+        }
+
+        public int getPostCompletionWorkers() {
+            return postCompletionWorkers;
+        }
+
+        public void setPostCompletionWorkers(int postCompletionWorkers) {
+            this.postCompletionWorkers = postCompletionWorkers;
+        }
+
+        public int getPostCompletionQueueCapacity() {
+            return postCompletionQueueCapacity;
+        }
+
+        public void setPostCompletionQueueCapacity(int postCompletionQueueCapacity) {
+            this.postCompletionQueueCapacity = postCompletionQueueCapacity;
+        }
+
+        public long getPostCompletionAwaitMs() {
+            return postCompletionAwaitMs;
+        }
+
+        public void setPostCompletionAwaitMs(long postCompletionAwaitMs) {
+            this.postCompletionAwaitMs = postCompletionAwaitMs;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.qncontest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 语音识别与音频接收相关配置
+ */
+@Configuration
+@EnableConfigurationProperties(VoiceConfig.VoiceProperties.class)
+public class VoiceConfig {
+
+    @ConfigurationProperties(prefix = "ai.voice")
+    public static class VoiceProperties {
+
+        /**
+         * 使用的语音识别实现名称（SpeechRecognizer.name()）
+         */
+        private String recognizer = "mock";
+
+        /**
+         * 单个音频文件的最大字节数
+         */
+        private long maxFileSizeBytes = 10L * 1024 * 1024;
+
+        /**
+         * 超过该大小的音频改为写入临时文件并内存映射，不占用直接内存缓冲池
+         */
+        private long mmapThresholdBytes = 2L * 1024 * 1024;
+
+        /**
+         * 直接内存缓冲块大小（字节）
+         */
+        private int bufferChunkBytes = 64 * 1024;
+
+        /**
+         * 直接内存缓冲块的最大数量（缓冲池总容量 = 块大小 × 块数量），耗尽时回退到内存映射临时文件
+         */
+        private int maxPooledBuffers = 256;
+
+        /**
+         * 同时执行识别的线程数
+         */
+        private int recognizerThreads = 4;
+
+        /**
+         * 等待识别的最大排队数量
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * 识别通道已满时等待空位的最长时间（毫秒），超时后拒绝请求
+         */
+        private long admissionTimeoutMs = 2000;
+
+        /**
+         * 单次识别的最长时间（毫秒）
+         */
+        private long recognitionTimeoutMs = 30000;
+
+        /**
+         * 同时进行的流式语音识别数量上限
+         */
+        private int maxConcurrentStreams = 64;
+
+        /**
+         * 单帧音频的最大字节数
+         */
+        private int maxFrameBytes = 256 * 1024;
+
+        /**
+         * 流式语音SSE连接超时时间（毫秒），包含识别结束后自动开始的角色扮演回合
+         */
+        private long streamTimeoutMs = 300000;
+
+        // Getters and Setters
+        public String getRecognizer() {
+            return recognizer;
+        }
+
+        public void setRecognizer(String recognizer) {
+            this.recognizer = recognizer;
+        }
+
+        public long getMaxFileSizeBytes() {
+            return maxFileSizeBytes;
+        }
+
+        public void setMaxFileSizeBytes(long maxFileSizeBytes) {
+            this.maxFileSizeBytes = maxFileSizeBytes;
+        }
+
+        public long getMmapThresholdBytes() {
+            return mmapThresholdBytes;
+        }
+
+        public void setMmapThresholdBytes(long mmapThresholdBytes) {
+            this.mmapThresholdBytes = mmapThresholdBytes;
+        }
+
+        public int getBufferChunkBytes() {
+            return bufferChunkBytes;
+        }
+
+        public void setBufferChunkBytes(int bufferChunkBytes) {
+            this.bufferChunkBytes = bufferChunkBytes;
+        }
+
+        public int getMaxPooledBuffers() {
+            return maxPooledBuffers;
+        }
+
+        public void setMaxPooledBuffers(int maxPooledBuffers) {
+            this.maxPooledBuffers = maxPooledBuffers;
+        }
+
+        public int getRecognizerThreads() {
+            return recognizerThreads;
+        }
+
+        public void setRecognizerThreads(int recognizerThreads) {
+            this.recognizerThreads = recognizerThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getAdmissionTimeoutMs() {
+            return admissionTimeoutMs;
+        }
+
+        public void setAdmissionTimeoutMs(long admissionTimeoutMs) {
+            this.admissionTimeoutMs = admissionTimeoutMs;
+        }
+
+        public long getRecognitionTimeoutMs() {
+            return recognitionTimeoutMs;
+        }
+
+        public void setRecognitionTimeoutMs(long recognitionTimeoutMs) {
+            this.recognitionTimeoutMs = recognitionTimeoutMs;
+        }
+
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+        }
+
+        public int getMaxFrameBytes() {
+            return maxFrameBytes;
+        }
+
+        public void setMaxFrameBytes(int maxFrameBytes) {
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        public long getStreamTimeoutMs() {
+            return streamTimeoutMs;
+        }
+
+        public void setStreamTimeoutMs(long streamTimeoutMs) {
+            this.streamTimeoutMs = streamTimeoutMs;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.qncontest.controller;
+
+import com.qncontest.dto.ChatResponse;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 管理端运行时统计控制器 - 汇总各组件通过 StatsProviderInterface 暴露的统计信息
+ */
+@RestController
+@RequestMapping("/admin")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminStatsController {
+    
+    @Autowired
+    private List<StatsProviderInterface> statsProviders;
+    
+    /**
+     * 获取全部运行时统计（流式执行器、token合并、完成处理管道、提示词、记忆、认证缓存、语音等）
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ChatResponse> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (StatsProviderInterface provider : statsProviders) {
+            stats.put(provider.getStatsName(), provider.getStats());
+        }
+        return ResponseEntity.ok(ChatResponse.success("获取运行时统计成功", stats));
+    }
+    
+    /**
+     * 获取单个组件的运行时统计
+     */
+    @GetMapping("/stats/{name}")
+    public ResponseEntity<ChatResponse> getStats(@PathVariable String name) {
+        for (StatsProviderInterface provider : statsProviders) {
+            if (provider.getStatsName().equals(name)) {
+                return ResponseEntity.ok(ChatResponse.success("获取运行时统计成功", provider.getStats()));
+            }
+        }
+        return ResponseEntity.status(404)
+            .body(ChatResponse.error("统计项不存在"));
+    }
+}
@@ -21,6 +21,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -97,6 +98,17 @@ public class RoleplayController {
         }
     }
     
+    /**
+     * 使世界模板缓存失效（直接修改数据库中的模板后调用，不传worldId时清空全部）
+     * 缓存统计通过 /admin/stats/worldTemplates 查看
+     */
+    @PostMapping("/worlds/cache/invalidate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ChatResponse> invalidateWorldTemplateCache(@RequestParam(required = false) String worldId) {
+        worldTemplateService.invalidateTemplateCache(worldId);
+        return ResponseEntity.ok(ChatResponse.success("世界模板缓存已失效", worldTemplateService.getTemplateCacheStats()));
+    }
+    
     /**
      * 创建新的角色扮演会话
      */
@@ -117,6 +117,10 @@ public class StreamChatController {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication != null && authentication.isAuthenticated()) {
+                // 认证过滤器已将用户实体放入安全上下文，无需再查询数据库
+                if (authentication.getPrincipal() instanceof User user) {
+                    return user;
+                }
                 String username = authentication.getName();
                 return userDetailsService.findUserByUsername(username);
             }
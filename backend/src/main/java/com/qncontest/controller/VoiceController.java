@@ -5,21 +5,27 @@ import com.qncontest.entity.User;
 import com.qncontest.service.BackendVoiceProcessor;
 import com.qncontest.service.UserDetailsServiceImpl;
 import com.qncontest.service.VoiceInstructionParser;
+import com.qncontest.service.voice.VoiceStreamService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotBlank;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * 语音处理控制器
- * 处理音频文件上传和语音识别
+ * 处理音频文件上传和语音识别，以及逐帧上传、SSE推送中间结果的流式语音识别
  */
 @RestController
 @RequestMapping("/voice")
@@ -37,6 +43,9 @@ public class VoiceController {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
     
+    @Autowired
+    private VoiceStreamService voiceStreamService;
+    
     /**
      * 上传音频文件并进行语音识别
      */
@@ -71,6 +80,10 @@ public class VoiceController {
             
             return ResponseEntity.ok(ChatResponse.success("语音识别成功", recognizedText));
             
+        } catch (RejectedExecutionException e) {
+            logger.warn("语音识别繁忙，拒绝请求: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ChatResponse.error("语音识别繁忙，请稍后重试"));
         } catch (Exception e) {
             logger.error("语音识别失败", e);
             return ResponseEntity.status(500)
@@ -78,6 +91,90 @@ public class VoiceController {
         }
     }
     
+    /**
+     * 打开流式语音识别（SSE）
+     * 事件依次为：voice_started（携带streamId）、若干voice_partial（中间结果及已稳定部分的解析结果）、voice_final；
+     * autoStart=true且提供sessionId时，voice_final之后在同一连接上继续推送本轮角色扮演的响应。
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter openVoiceStream(
+            @RequestParam(value = "format", defaultValue = ".webm") String format,
+            @RequestParam(value = "language", defaultValue = "zh-CN") String language,
+            @RequestParam(value = "worldType", required = false) String worldType,
+            @RequestParam(value = "sessionId", required = false) String sessionId,
+            @RequestParam(value = "autoStart", defaultValue = "false") boolean autoStart,
+            HttpServletResponse response) {
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "用户未认证");
+        }
+        try {
+            response.setHeader("Cache-Control", "no-cache");
+            response.setHeader("X-Accel-Buffering", "no");
+            return voiceStreamService.open(currentUser, format, language, worldType, sessionId, autoStart);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+    
+    /**
+     * 上传一帧音频（请求体为原始音频字节）
+     */
+    @PostMapping(value = "/stream/{streamId}/frames", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ChatResponse> appendVoiceFrame(@PathVariable String streamId, @RequestBody byte[] frame) {
+        return handleStreamCall(() -> ChatResponse.success("音频帧已接收",
+            voiceStreamService.appendFrame(getCurrentUser(), streamId, frame)));
+    }
+    
+    /**
+     * 结束音频上传，最终结果通过SSE推送
+     */
+    @PostMapping("/stream/{streamId}/finish")
+    public ResponseEntity<ChatResponse> finishVoiceStream(@PathVariable String streamId) {
+        return handleStreamCall(() -> ChatResponse.success("语音识别完成",
+            voiceStreamService.finish(getCurrentUser(), streamId)));
+    }
+    
+    /**
+     * 取消流式语音识别
+     */
+    @DeleteMapping("/stream/{streamId}")
+    public ResponseEntity<ChatResponse> cancelVoiceStream(@PathVariable String streamId) {
+        return handleStreamCall(() -> {
+            voiceStreamService.cancel(getCurrentUser(), streamId);
+            return ChatResponse.success("语音流已取消");
+        });
+    }
+    
+    private ResponseEntity<ChatResponse> handleStreamCall(StreamCall call) {
+        if (getCurrentUser() == null) {
+            return ResponseEntity.status(401)
+                .body(ChatResponse.error("用户未认证"));
+        }
+        try {
+            return ResponseEntity.ok(call.execute());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404)
+                .body(ChatResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest()
+                .body(ChatResponse.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("语音识别繁忙，拒绝请求: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ChatResponse.error("语音识别繁忙，请稍后重试"));
+        } catch (Exception e) {
+            logger.error("流式语音识别失败", e);
+            return ResponseEntity.status(500)
+                .body(ChatResponse.error("语音识别失败: " + e.getMessage()));
+        }
+    }
+    
+    @FunctionalInterface
+    private interface StreamCall {
+        ChatResponse execute() throws Exception;
+    }
+    
     /**
      * 获取当前用户
      */
@@ -88,6 +185,10 @@ public class VoiceController {
                 return null;
             }
             
+            // 认证过滤器已将用户实体放入安全上下文，无需再查询数据库
+            if (authentication.getPrincipal() instanceof User user) {
+                return user;
+            }
             String username = authentication.getName();
             return userDetailsService.findUserByUsername(username);
         } catch (Exception e) {
@@ -0,0 +1,256 @@
+package com.qncontest.dto;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 评估JSON（§…§之间的内容）的类型化模型
+ * 由Jackson直接绑定（宽松类型转换见AssessmentExtractor），游戏逻辑处理器直接读取字段，
+ * 不再对Map<String,Object>反复取值、强转和解析数字。
+ * 字段均可能为null，表示大模型未输出该项或输出格式无法识别。
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AssessmentResult(
+        Double ruleCompliance,
+        Double contextConsistency,
+        Double convergenceProgress,
+        Double overallScore,
+        String strategy,
+        String assessmentNotes,
+        List<String> suggestedActions,
+        List<String> convergenceHints,
+        List<DiceCheck> diceRolls,
+        List<LearningChallenge> learningChallenges,
+        List<StateUpdate> stateUpdates,
+        List<MemoryUpdate> memoryUpdates,
+        QuestUpdates questUpdates,
+        Map<String, Object> worldStateUpdates,
+        ArcUpdates arcUpdates,
+        ConvergenceUpdates convergenceStatusUpdates) {
+
+    /**
+     * 骰子检定
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record DiceCheck(
+            Integer diceType,
+            Integer modifier,
+            String context,
+            Integer result,
+            Boolean isSuccessful,
+            Integer difficultyClass,
+            String reason,
+            Integer numDice) {
+    }
+
+    /**
+     * 学习挑战
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record LearningChallenge(
+            String type,
+            String difficulty,
+            String question,
+            String answer,
+            Boolean isCorrect) {
+    }
+
+    /**
+     * 状态更新
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record StateUpdate(
+            String type,
+            String value) {
+    }
+
+    /**
+     * 记忆更新
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record MemoryUpdate(
+            String type,
+            String content,
+            Double importance) {
+    }
+
+    /**
+     * 任务更新（新建、完成、进度、过期）
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record QuestUpdates(
+            List<Quest> created,
+            List<Quest> completed,
+            List<Quest> progress,
+            List<Quest> expired) {
+
+        /**
+         * 本次更新涉及的任务总数
+         */
+        public int totalUpdates() {
+            return sizeOf(created) + sizeOf(completed) + sizeOf(progress) + sizeOf(expired);
+        }
+
+        private static int sizeOf(List<?> list) {
+            return list != null ? list.size() : 0;
+        }
+    }
+
+    /**
+     * 情节更新
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ArcUpdates(
+            String currentArcName,
+            Integer currentArcStartRound,
+            Integer totalRounds) {
+    }
+
+    /**
+     * 收敛状态更新
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ConvergenceUpdates(
+            Double progress,
+            Double progressIncrement,
+            String nearestScenarioId,
+            String nearestScenarioTitle,
+            Double distanceToNearest,
+            Map<String, Double> scenarioProgress,
+            List<String> activeHints) {
+    }
+
+    /**
+     * 任务
+     * 任务会原样保存到会话的活跃/完成任务列表中，未建模的字段（如进度描述、状态）保留在extra中并随序列化输出。
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Quest {
+
+        private String questId;
+        private String title;
+        private String description;
+        private QuestRewards rewards;
+        private final Map<String, Object> extra = new LinkedHashMap<>();
+
+        public String getQuestId() {
+            return questId;
+        }
+
+        public void setQuestId(String questId) {
+            this.questId = questId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public QuestRewards getRewards() {
+            return rewards;
+        }
+
+        public void setRewards(QuestRewards rewards) {
+            this.rewards = rewards;
+        }
+
+        @JsonAnyGetter
+        public Map<String, Object> getExtra() {
+            return extra;
+        }
+
+        @JsonAnySetter
+        public void setExtra(String name, Object value) {
+            extra.put(name, value);
+        }
+    }
+
+    /**
+     * 任务奖励，未建模的奖励字段同样保留
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class QuestRewards {
+
+        private Integer exp;
+        private Integer gold;
+        private List<String> items;
+        private Map<String, Integer> stats;
+        private List<String> abilities;
+        private final Map<String, Object> extra = new LinkedHashMap<>();
+
+        public Integer getExp() {
+            return exp;
+        }
+
+        public void setExp(Integer exp) {
+            this.exp = exp;
+        }
+
+        public Integer getGold() {
+            return gold;
+        }
+
+        public void setGold(Integer gold) {
+            this.gold = gold;
+        }
+
+        public List<String> getItems() {
+            return items;
+        }
+
+        public void setItems(List<String> items) {
+            this.items = items;
+        }
+
+        public Map<String, Integer> getStats() {
+            return stats;
+        }
+
+        public void setStats(Map<String, Integer> stats) {
+            this.stats = stats;
+        }
+
+        public List<String> getAbilities() {
+            return abilities;
+        }
+
+        public void setAbilities(List<String> abilities) {
+            this.abilities = abilities;
+        }
+
+        @JsonAnyGetter
+        public Map<String, Object> getExtra() {
+            return extra;
+        }
+
+        @JsonAnySetter
+        public void setExtra(String name, Object value) {
+            extra.put(name, value);
+        }
+    }
+}
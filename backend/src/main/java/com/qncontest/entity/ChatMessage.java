@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages",
+       uniqueConstraints = @UniqueConstraint(name = "UK_chat_messages_session_sequence",
+                                             columnNames = {"session_id", "sequence_number"}))
 public class ChatMessage {
     
     @Id
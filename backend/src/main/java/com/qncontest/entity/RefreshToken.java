@@ -3,17 +3,37 @@ package com.qncontest.entity;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * 刷新令牌
+ * 数据库只保存令牌的SHA-256摘要（定长64位十六进制），原始令牌仅在签发时返回给客户端。
+ * 同一次登录派生出的令牌属于同一家族（familyId），每次刷新都会轮换出新令牌并标记旧令牌已轮换。
+ */
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "IDX_refresh_tokens_expiry_date", columnList = "expiry_date"),
+    @Index(name = "IDX_refresh_tokens_family_id", columnList = "family_id")
+})
 public class RefreshToken {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(nullable = false, unique = true)
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+    
+    /**
+     * 原始令牌，仅在签发时存在，不持久化
+     */
+    @Transient
     private String token;
     
+    @Column(name = "family_id", length = 36)
+    private String familyId;
+    
+    @Column(name = "rotated_at")
+    private LocalDateTime rotatedAt;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -32,8 +52,10 @@ public class RefreshToken {
     // Constructors
     public RefreshToken() {}
     
-    public RefreshToken(String token, User user, LocalDateTime expiryDate) {
+    public RefreshToken(String token, String tokenHash, String familyId, User user, LocalDateTime expiryDate) {
         this.token = token;
+        this.tokenHash = tokenHash;
+        this.familyId = familyId;
         this.user = user;
         this.expiryDate = expiryDate;
     }
@@ -55,6 +77,30 @@ public class RefreshToken {
         this.token = token;
     }
     
+    public String getTokenHash() {
+        return tokenHash;
+    }
+    
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+    
+    public String getFamilyId() {
+        return familyId;
+    }
+    
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+    
+    public LocalDateTime getRotatedAt() {
+        return rotatedAt;
+    }
+    
+    public void setRotatedAt(LocalDateTime rotatedAt) {
+        this.rotatedAt = rotatedAt;
+    }
+    
     public User getUser() {
         return user;
     }
@@ -82,4 +128,8 @@ public class RefreshToken {
     public boolean isExpired() {
         return LocalDateTime.now().isAfter(expiryDate);
     }
+    
+    public boolean isRotated() {
+        return rotatedAt != null;
+    }
 }
@@ -0,0 +1,96 @@
+package com.qncontest.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 会话记忆实体 - 角色扮演过程中沉淀的重要记忆，只追加写入，按类型清理低重要性记忆
+ */
+@Entity
+@Table(name = "session_memories", indexes = {
+    @Index(name = "IDX_session_memories_session_type_importance", columnList = "session_id, memory_type, importance"),
+    @Index(name = "IDX_session_memories_session_importance", columnList = "session_id, importance")
+})
+public class SessionMemory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "memory_type", nullable = false, length = 50)
+    private String memoryType;                 // CHARACTER, EVENT, RELATIONSHIP, WORLD_STATE, AI_GENERATED...
+
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "importance", nullable = false)
+    private Double importance;                 // 0.0 - 1.0
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // 构造函数
+    public SessionMemory() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public SessionMemory(String sessionId, String memoryType, String content, double importance) {
+        this();
+        this.sessionId = sessionId;
+        this.memoryType = memoryType;
+        this.content = content;
+        this.importance = importance;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getMemoryType() {
+        return memoryType;
+    }
+
+    public void setMemoryType(String memoryType) {
+        this.memoryType = memoryType;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Double getImportance() {
+        return importance;
+    }
+
+    public void setImportance(Double importance) {
+        this.importance = importance;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
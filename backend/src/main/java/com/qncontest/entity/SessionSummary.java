@@ -0,0 +1,105 @@
+package com.qncontest.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 会话滚动摘要实体 - 较早的对话被逐步折叠为一段前情提要，提示词中用它代替完整历史
+ */
+@Entity
+@Table(name = "session_summaries")
+public class SessionSummary {
+
+    @Id
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "summary", nullable = false, columnDefinition = "TEXT")
+    private String summary;                    // 前情提要文本
+
+    @Column(name = "covered_through_sequence", nullable = false)
+    private Integer coveredThroughSequence;    // 已折叠进摘要的最大消息序号
+
+    @Column(name = "covered_rounds", nullable = false)
+    private Integer coveredRounds;             // 折叠时会话的总轮数
+
+    @Column(name = "arc_name")
+    private String arcName;                    // 折叠时的情节名称
+
+    @Column(name = "fold_count", nullable = false)
+    private Integer foldCount;                 // 累计折叠次数
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // 构造函数
+    public SessionSummary() {
+        this.summary = "";
+        this.coveredThroughSequence = 0;
+        this.coveredRounds = 0;
+        this.foldCount = 0;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public SessionSummary(String sessionId) {
+        this();
+        this.sessionId = sessionId;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public Integer getCoveredThroughSequence() {
+        return coveredThroughSequence;
+    }
+
+    public void setCoveredThroughSequence(Integer coveredThroughSequence) {
+        this.coveredThroughSequence = coveredThroughSequence;
+    }
+
+    public Integer getCoveredRounds() {
+        return coveredRounds;
+    }
+
+    public void setCoveredRounds(Integer coveredRounds) {
+        this.coveredRounds = coveredRounds;
+    }
+
+    public String getArcName() {
+        return arcName;
+    }
+
+    public void setArcName(String arcName) {
+        this.arcName = arcName;
+    }
+
+    public Integer getFoldCount() {
+        return foldCount;
+    }
+
+    public void setFoldCount(Integer foldCount) {
+        this.foldCount = foldCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
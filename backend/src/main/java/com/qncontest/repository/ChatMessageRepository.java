@@ -2,6 +2,7 @@ package com.qncontest.repository;
 
 import com.qncontest.entity.ChatMessage;
 import com.qncontest.entity.ChatSession;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,12 +18,34 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
      */
     List<ChatMessage> findByChatSessionOrderBySequenceNumberAsc(ChatSession chatSession);
     
+    /**
+     * 按序号倒序获取会话最近的消息（走IDX_session_sequence索引，由Pageable限制条数，不读取整段历史）
+     */
+    @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession.sessionId = :sessionId ORDER BY cm.sequenceNumber DESC")
+    List<ChatMessage> findLatestBySessionId(@Param("sessionId") String sessionId, Pageable pageable);
+    
+    /**
+     * 按序号顺序获取会话中序号位于(afterSequence, throughSequence]区间的消息（用于折叠滚动摘要）
+     */
+    @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession.sessionId = :sessionId " +
+           "AND cm.sequenceNumber > :afterSequence AND cm.sequenceNumber <= :throughSequence ORDER BY cm.sequenceNumber ASC")
+    List<ChatMessage> findRangeBySessionId(@Param("sessionId") String sessionId,
+                                           @Param("afterSequence") int afterSequence,
+                                           @Param("throughSequence") int throughSequence,
+                                           Pageable pageable);
+    
     /**
      * 获取会话中的最大序号
      */
     @Query("SELECT COALESCE(MAX(cm.sequenceNumber), 0) FROM ChatMessage cm WHERE cm.chatSession = :chatSession")
     Integer findMaxSequenceNumberBySession(@Param("chatSession") ChatSession chatSession);
     
+    /**
+     * 根据会话ID获取会话中的最大序号
+     */
+    @Query("SELECT COALESCE(MAX(cm.sequenceNumber), 0) FROM ChatMessage cm WHERE cm.chatSession.sessionId = :sessionId")
+    Integer findMaxSequenceNumberBySessionId(@Param("sessionId") String sessionId);
+    
     /**
      * 根据会话删除所有消息
      */
@@ -41,11 +41,17 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, String
     List<ChatSession> findByUserWithMessages(@Param("user") User user);
     
     /**
-     * 根据会话ID查找会话，并预加载消息
+     * 根据会话ID查找会话，并预加载消息（会加载整段对话，只在确实需要消息集合时使用）
      */
     @Query("SELECT cs FROM ChatSession cs LEFT JOIN FETCH cs.messages WHERE cs.sessionId = :sessionId")
     Optional<ChatSession> findBySessionIdWithMessages(@Param("sessionId") String sessionId);
 
+    /**
+     * 只查询会话总轮数
+     */
+    @Query("SELECT cs.totalRounds FROM ChatSession cs WHERE cs.sessionId = :sessionId")
+    Optional<Integer> findTotalRoundsBySessionId(@Param("sessionId") String sessionId);
+
     /**
      * 判断主键是否存在（用于避免PK冲突时的重试生成）
      */
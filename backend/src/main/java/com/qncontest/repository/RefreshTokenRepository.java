@@ -2,6 +2,7 @@ package com.qncontest.repository;
 
 import com.qncontest.entity.RefreshToken;
 import com.qncontest.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,12 +10,14 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
     
-    Optional<RefreshToken> findByToken(String token);
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
     
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user")
@@ -25,6 +28,27 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     void deleteExpiredTokens(@Param("now") LocalDateTime now);
     
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.token = :token")
-    void deleteByToken(@Param("token") String token);
+    @Query("DELETE FROM RefreshToken rt WHERE rt.tokenHash = :tokenHash")
+    void deleteByTokenHash(@Param("tokenHash") String tokenHash);
+    
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") String familyId);
+    
+    /**
+     * 标记令牌已轮换（仅当尚未轮换时生效），返回受影响行数，并发刷新时只有一个请求能成功
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.rotatedAt = :now WHERE rt.id = :id AND rt.rotatedAt IS NULL")
+    int markRotated(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /**
+     * 按主键顺序取一批已过期令牌的ID，供分批清理使用
+     */
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.expiryDate < :now ORDER BY rt.id ASC")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
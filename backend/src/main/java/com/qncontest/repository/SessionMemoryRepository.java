@@ -0,0 +1,52 @@
+package com.qncontest.repository;
+
+import com.qncontest.entity.SessionMemory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SessionMemoryRepository extends JpaRepository<SessionMemory, Long> {
+
+    /**
+     * 会话的全部记忆，按写入顺序（用于构建检索索引）
+     */
+    List<SessionMemory> findBySessionIdOrderByIdAsc(String sessionId);
+
+    /**
+     * 会话中某类型重要性最高的记忆（同等重要性时较早的优先，与清理规则一致）
+     */
+    @Query("SELECT m FROM SessionMemory m WHERE m.sessionId = :sessionId AND m.memoryType = :memoryType ORDER BY m.importance DESC, m.id ASC")
+    List<SessionMemory> findTopBySessionIdAndMemoryType(@Param("sessionId") String sessionId,
+                                                        @Param("memoryType") String memoryType, Pageable pageable);
+
+    /**
+     * 某类型应保留的记忆ID（排序与findTopBySessionIdAndMemoryType一致）
+     */
+    @Query("SELECT m.id FROM SessionMemory m WHERE m.sessionId = :sessionId AND m.memoryType = :memoryType ORDER BY m.importance DESC, m.id ASC")
+    List<Long> findTopIdsBySessionIdAndMemoryType(@Param("sessionId") String sessionId,
+                                                  @Param("memoryType") String memoryType, Pageable pageable);
+
+    @Query("SELECT DISTINCT m.memoryType FROM SessionMemory m WHERE m.sessionId = :sessionId")
+    List<String> findMemoryTypesBySessionId(@Param("sessionId") String sessionId);
+
+    long countBySessionId(String sessionId);
+
+    long countBySessionIdAndMemoryType(String sessionId, String memoryType);
+
+    /**
+     * 删除某类型中除保留ID以外的记忆
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SessionMemory m WHERE m.sessionId = :sessionId AND m.memoryType = :memoryType AND m.id NOT IN :keepIds")
+    int deleteBySessionIdAndMemoryTypeExcept(@Param("sessionId") String sessionId, @Param("memoryType") String memoryType,
+                                             @Param("keepIds") Collection<Long> keepIds);
+}
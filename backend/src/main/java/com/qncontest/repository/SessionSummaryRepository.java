@@ -0,0 +1,9 @@
+package com.qncontest.repository;
+
+import com.qncontest.entity.SessionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SessionSummaryRepository extends JpaRepository<SessionSummary, String> {
+}
@@ -15,7 +15,7 @@ import java.util.Optional;
  * 世界事件数据访问层
  */
 @Repository
-public interface WorldEventRepository extends JpaRepository<WorldEvent, Long> {
+public interface WorldEventRepository extends JpaRepository<WorldEvent, Long>, WorldEventRepositoryCustom {
     
     /**
      * 获取指定会话的所有事件（按序号排序）
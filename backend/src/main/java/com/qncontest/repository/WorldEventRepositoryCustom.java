@@ -0,0 +1,17 @@
+package com.qncontest.repository;
+
+import com.qncontest.entity.WorldEvent;
+
+import java.util.List;
+
+/**
+ * 世界事件批量写入
+ */
+public interface WorldEventRepositoryCustom {
+
+    /**
+     * 使用JDBC批量插入事件（事件主键为自增列，Hibernate无法对其批量插入）
+     * @return 插入的事件数量
+     */
+    int batchInsert(List<WorldEvent> events);
+}
@@ -0,0 +1,56 @@
+package com.qncontest.repository;
+
+import com.qncontest.entity.WorldEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 世界事件批量写入实现
+ * 与JPA共享当前事务的连接；配合连接参数rewriteBatchedStatements，一批事件只需一次往返。
+ */
+public class WorldEventRepositoryImpl implements WorldEventRepositoryCustom {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO `world_events` (`session_id`, `event_type`, `event_data`, `sequence`, `checksum`, `timestamp`, " +
+        "`total_rounds`, `current_arc_start_round`, `current_arc_name`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsert(List<WorldEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, BATCH_SIZE, (ps, event) -> {
+            LocalDateTime timestamp = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+            ps.setString(1, event.getSessionId());
+            ps.setString(2, event.getEventType().name());
+            ps.setString(3, event.getEventData());
+            ps.setInt(4, event.getSequence());
+            ps.setString(5, event.getChecksum());
+            ps.setTimestamp(6, Timestamp.valueOf(timestamp));
+            setNullableInt(ps, 7, event.getTotalRounds());
+            setNullableInt(ps, 8, event.getCurrentArcStartRound());
+            ps.setString(9, event.getCurrentArcName());
+        });
+        return events.size();
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
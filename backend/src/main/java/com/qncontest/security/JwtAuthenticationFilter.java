@@ -1,6 +1,8 @@
 package com.qncontest.security;
 
+import com.qncontest.entity.User;
 import com.qncontest.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,7 +12,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -18,6 +19,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.core.annotation.Order;
 
 import java.io.IOException;
+import java.util.Date;
 
 @Component
 @Order(2) // 设置过滤器顺序
@@ -36,19 +38,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                   FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateToken(jwt)) {
-                String username = jwtUtils.extractUsername(jwt);
-                String tokenType = jwtUtils.getTokenType(jwt);
+            // 签名只校验一次，用户名、类型和签发时间都从同一份声明中读取
+            Claims claims = jwt != null ? jwtUtils.parseClaims(jwt) : null;
+            
+            // 只处理access token，忽略refresh token
+            if (claims != null && "access".equals(claims.get("type", String.class))) {
+                Date issuedAt = claims.getIssuedAt();
+                User user = userDetailsService.loadUserForToken(claims.getSubject(),
+                    issuedAt != null ? issuedAt.getTime() : 0L);
+                // 主体为用户实体，控制器可直接从安全上下文取得当前用户
+                UsernamePasswordAuthenticationToken authentication = 
+                    new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 
-                // 只处理access token，忽略refresh token
-                if ("access".equals(tokenType)) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e.getMessage());
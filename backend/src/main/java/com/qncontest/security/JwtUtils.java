@@ -1,5 +1,6 @@
 package com.qncontest.security;
 
+import com.qncontest.service.interfaces.StatsProviderInterface;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -8,17 +9,38 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+/**
+ * JWT工具类
+ * 签名密钥和解析器（不可变、线程安全）在启动时只构建一次；已验签的令牌按SHA-256摘要缓存其声明，
+ * 缓存条目在令牌过期时失效，同一令牌的重复请求不再做HMAC验签和JSON解析。
+ */
 @Component
-public class JwtUtils {
+public class JwtUtils implements StatsProviderInterface {
     
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
     
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
     @Value("${jwt.secret}")
     private String secret;
     
@@ -28,8 +50,24 @@ public class JwtUtils {
     @Value("${jwt.refresh-token-expiration}")
     private Long refreshTokenExpiration;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.verified-cache-max-size:10000}")
+    private int verifiedCacheMaxSize;
+    
+    private SecretKey signingKey;
+    
+    private JwtParser parser;
+    
+    private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
     
     public String extractUsername(String token) {
@@ -45,12 +83,46 @@ public class JwtUtils {
         return claimsResolver.apply(claims);
     }
     
+    /**
+     * 解析并校验令牌：命中已验签缓存且未过期时直接返回缓存的声明（Claims不可变，可安全共享）
+     */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT token is empty");
+        }
+        String key = hash(token);
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAt > System.currentTimeMillis()) {
+                cacheHits.incrementAndGet();
+                return cached.claims;
+            }
+            verifiedTokens.remove(key, cached);
+        }
+        cacheMisses.incrementAndGet();
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            cacheVerified(key, new VerifiedToken(claims, expiration.getTime()));
+        }
+        return claims;
+    }
+    
+    private void cacheVerified(String key, VerifiedToken verified) {
+        if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+            long now = System.currentTimeMillis();
+            verifiedTokens.values().removeIf(entry -> entry.expiresAt <= now);
+            if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+                verifiedTokens.clear();
+                logger.debug("已验签令牌缓存已满，整体清空: maxSize={}", verifiedCacheMaxSize);
+            }
+        }
+        verifiedTokens.put(key, verified);
+    }
+    
+    private static String hash(String token) {
+        byte[] digest = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
     }
     
     private Boolean isTokenExpired(String token) {
@@ -75,7 +147,7 @@ public class JwtUtils {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
@@ -91,10 +163,7 @@ public class JwtUtils {
     
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token);
+            extractAllClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             logger.error("JWT token validation failed: {}", e.getMessage());
@@ -102,6 +171,18 @@ public class JwtUtils {
         }
     }
     
+    /**
+     * 校验签名并解析全部声明（每个请求只需调用一次），令牌无效或已过期时返回null
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.error("JWT token validation failed: {}", e.getMessage());
+            return null;
+        }
+    }
+    
     public String getTokenType(String token) {
         try {
             Claims claims = extractAllClaims(token);
@@ -119,4 +200,35 @@ public class JwtUtils {
     public Long getRefreshTokenExpiration() {
         return refreshTokenExpiration;
     }
+    
+    @Override
+    public String getStatsName() {
+        return "verifiedTokens";
+    }
+
+    /**
+     * 获取已验签令牌缓存统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = cacheHits.get();
+        long total = hitCount + cacheMisses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", verifiedTokens.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", cacheMisses.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+    
+    private static final class VerifiedToken {
+        
+        private final Claims claims;
+        private final long expiresAt;
+        
+        private VerifiedToken(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
@@ -1,12 +1,22 @@
 package com.qncontest.service;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.fasterxml.jackson.databind.deser.ValueInstantiator;
+import com.qncontest.dto.AssessmentResult;
 import com.qncontest.service.interfaces.AssessmentExtractorInterface;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.Map;
 
 @Service
@@ -18,8 +28,28 @@ public class AssessmentExtractor implements AssessmentExtractorInterface {
     private static final int MAX_ASSESSMENT_SIZE = 10000; // 评估JSON最大长度
     private final ObjectMapper objectMapper;
 
+    /**
+     * 评估结果的宽松绑定读取器：允许注释、单值当作数组、空串视为null，
+     * 无法转换的值置为null而不是让整个评估解析失败
+     */
+    private final ObjectReader assessmentReader;
+
     public AssessmentExtractor(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
+        this.assessmentReader = objectMapper.readerFor(AssessmentResult.class)
+            .with(JsonParser.Feature.ALLOW_COMMENTS)
+            .with(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY,
+                  DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT,
+                  DeserializationFeature.ACCEPT_FLOAT_AS_INT)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .withHandler(new LenientCoercionHandler());
+    }
+
+    /**
+     * 为一个流创建增量评估提取器，由流式处理器逐token喂入
+     */
+    public StreamingAssessmentExtractor newStreamingExtractor() {
+        return new StreamingAssessmentExtractor(objectMapper.getFactory(), this, MAX_ASSESSMENT_SIZE);
     }
 
     /**
@@ -28,52 +58,11 @@ public class AssessmentExtractor implements AssessmentExtractorInterface {
      * @return 提取的评估结果，如果没有找到则返回null
      */
     public Map<String, Object> extractAssessmentEntity(String fullContent) {
-        logger.info("🔍 开始提取评估JSON: 内容长度={}", fullContent != null ? fullContent.length() : 0);
-        
-        if (fullContent == null || fullContent.isEmpty()) {
-            logger.warn("⚠️ 输入内容为空，无法提取评估");
+        String assessmentContent = extractAssessmentContent(fullContent);
+        if (assessmentContent == null) {
             return null;
         }
-
         try {
-            // 查找评估开始标记
-            int startIndex = fullContent.indexOf(ASSESSMENT_START_MARKER);
-            if (startIndex == -1) {
-                logger.info("ℹ️ 未找到评估开始标记 §，跳过评估提取");
-                return null;
-            }
-            logger.info("✅ 找到评估开始标记: 位置={}", startIndex);
-
-            // 查找评估结束标记（从开始标记后开始查找）
-            int endIndex = fullContent.indexOf(ASSESSMENT_END_MARKER, startIndex + 1);
-            if (endIndex == -1) {
-                logger.warn("⚠️ 找到评估开始标记但未找到结束标记");
-                return null;
-            }
-            logger.info("✅ 找到评估结束标记: 位置={}", endIndex);
-
-            // 提取评估内容
-            String assessmentContent = fullContent.substring(
-                startIndex + ASSESSMENT_START_MARKER.length(), 
-                endIndex
-            ).trim();
-
-            logger.info("📄 提取到评估内容: 长度={}", assessmentContent.length());
-            logger.info("📄 评估内容预览: {}", 
-                       assessmentContent.length() > 200 ? 
-                       assessmentContent.substring(0, 200) + "..." : 
-                       assessmentContent);
-
-            if (assessmentContent.isEmpty()) {
-                logger.warn("⚠️ 评估内容为空");
-                return null;
-            }
-
-            if (assessmentContent.length() > MAX_ASSESSMENT_SIZE) {
-                logger.warn("⚠️ 评估内容过大，长度: {} (最大允许: {})", assessmentContent.length(), MAX_ASSESSMENT_SIZE);
-                return null;
-            }
-
             // 解析评估JSON
             Map<String, Object> result = parseAssessmentJson(assessmentContent);
             if (result != null) {
@@ -90,6 +79,89 @@ public class AssessmentExtractor implements AssessmentExtractorInterface {
         }
     }
 
+    /**
+     * 从完整内容中提取类型化的评估结果
+     * @param fullContent 完整的AI响应内容
+     * @return 提取的评估结果，如果没有找到或无法解析则返回null
+     */
+    public AssessmentResult extractAssessmentResult(String fullContent) {
+        String assessmentContent = extractAssessmentContent(fullContent);
+        if (assessmentContent == null) {
+            return null;
+        }
+        String cleanedJson = cleanJsonContent(assessmentContent);
+        try {
+            AssessmentResult result = assessmentReader.readValue(cleanedJson);
+            logger.info("✅ 评估JSON提取成功: strategy={}, score={}", result.strategy(), result.overallScore());
+            logAssessmentFields(result);
+            return result;
+        } catch (IOException e) {
+            logger.error("❌ 解析评估JSON失败: {}", assessmentContent, e);
+            return null;
+        }
+    }
+
+    /**
+     * 从解析器读取并绑定评估结果（供增量提取器使用）
+     */
+    AssessmentResult readAssessment(JsonParser parser) throws IOException {
+        AssessmentResult result = assessmentReader.readValue(parser);
+        logAssessmentFields(result);
+        return result;
+    }
+
+    /**
+     * 提取§标记之间的评估原文
+     * @return 评估原文，未找到、为空或过大时返回null
+     */
+    private String extractAssessmentContent(String fullContent) {
+        logger.info("🔍 开始提取评估JSON: 内容长度={}", fullContent != null ? fullContent.length() : 0);
+        
+        if (fullContent == null || fullContent.isEmpty()) {
+            logger.warn("⚠️ 输入内容为空，无法提取评估");
+            return null;
+        }
+
+        // 查找评估开始标记
+        int startIndex = fullContent.indexOf(ASSESSMENT_START_MARKER);
+        if (startIndex == -1) {
+            logger.info("ℹ️ 未找到评估开始标记 §，跳过评估提取");
+            return null;
+        }
+        logger.info("✅ 找到评估开始标记: 位置={}", startIndex);
+
+        // 查找评估结束标记（从开始标记后开始查找）
+        int endIndex = fullContent.indexOf(ASSESSMENT_END_MARKER, startIndex + 1);
+        if (endIndex == -1) {
+            logger.warn("⚠️ 找到评估开始标记但未找到结束标记");
+            return null;
+        }
+        logger.info("✅ 找到评估结束标记: 位置={}", endIndex);
+
+        // 提取评估内容
+        String assessmentContent = fullContent.substring(
+            startIndex + ASSESSMENT_START_MARKER.length(), 
+            endIndex
+        ).trim();
+
+        logger.info("📄 提取到评估内容: 长度={}", assessmentContent.length());
+        logger.info("📄 评估内容预览: {}", 
+                   assessmentContent.length() > 200 ? 
+                   assessmentContent.substring(0, 200) + "..." : 
+                   assessmentContent);
+
+        if (assessmentContent.isEmpty()) {
+            logger.warn("⚠️ 评估内容为空");
+            return null;
+        }
+
+        if (assessmentContent.length() > MAX_ASSESSMENT_SIZE) {
+            logger.warn("⚠️ 评估内容过大，长度: {} (最大允许: {})", assessmentContent.length(), MAX_ASSESSMENT_SIZE);
+            return null;
+        }
+        return assessmentContent;
+    }
+
     /**
      * 解析评估JSON内容
      */
@@ -139,6 +211,18 @@ public class AssessmentExtractor implements AssessmentExtractorInterface {
         logger.info("  - convergenceStatusUpdates: {}", assessment.get("convergenceStatusUpdates") != null ? "有数据" : "无数据");
     }
 
+    private void logAssessmentFields(AssessmentResult assessment) {
+        logger.info("📊 评估字段解析情况:");
+        logger.info("  - diceRolls: {}", assessment.diceRolls() != null ? "有数据" : "无数据");
+        logger.info("  - learningChallenges: {}", assessment.learningChallenges() != null ? "有数据" : "无数据");
+        logger.info("  - stateUpdates: {}", assessment.stateUpdates() != null ? "有数据" : "无数据");
+        logger.info("  - memoryUpdates: {}", assessment.memoryUpdates() != null ? "有数据" : "无数据");
+        logger.info("  - questUpdates: {}", assessment.questUpdates() != null ? "有数据" : "无数据");
+        logger.info("  - worldStateUpdates: {}", assessment.worldStateUpdates() != null ? "有数据" : "无数据");
+        logger.info("  - arcUpdates: {}", assessment.arcUpdates() != null ? "有数据" : "无数据");
+        logger.info("  - convergenceStatusUpdates: {}", assessment.convergenceStatusUpdates() != null ? "有数据" : "无数据");
+    }
+
     /**
      * 清理JSON内容，移除可能的注释和多余字符
      */
@@ -283,4 +367,45 @@ public class AssessmentExtractor implements AssessmentExtractorInterface {
         
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * 宽松类型转换：大模型输出的字段类型不稳定（数字写成"十"、对象写在字符串字段上等），
+     * 无法转换的字段置为null并跳过，字符串字段遇到对象/数组时保留其JSON文本
+     */
+    private static class LenientCoercionHandler extends DeserializationProblemHandler {
+
+        @Override
+        public Object handleWeirdStringValue(DeserializationContext ctxt, Class<?> targetType,
+                                             String valueToConvert, String failureMsg) {
+            logger.debug("评估字段类型转换失败，置为null: targetType={}, value={}", targetType.getSimpleName(), valueToConvert);
+            return null;
+        }
+
+        @Override
+        public Object handleWeirdNumberValue(DeserializationContext ctxt, Class<?> targetType,
+                                             Number valueToConvert, String failureMsg) {
+            logger.debug("评估字段数值转换失败，置为null: targetType={}, value={}", targetType.getSimpleName(), valueToConvert);
+            return null;
+        }
+
+        @Override
+        public Object handleUnexpectedToken(DeserializationContext ctxt, JavaType targetType, JsonToken t,
+                                            JsonParser p, String failureMsg) throws IOException {
+            if (targetType.hasRawClass(String.class) && (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY)) {
+                return ctxt.readTree(p).toString();
+            }
+            logger.debug("评估字段结构不匹配，跳过: targetType={}, token={}", targetType, t);
+            p.skipChildren();
+            return null;
+        }
+
+        @Override
+        public Object handleMissingInstantiator(DeserializationContext ctxt, Class<?> instClass,
+                                                ValueInstantiator valueInsts, JsonParser p,
+                                                String msg) throws IOException {
+            logger.debug("评估字段无法构造，跳过: type={}, token={}", instClass.getSimpleName(), p.currentToken());
+            p.skipChildren();
+            return null;
+        }
+    }
+}
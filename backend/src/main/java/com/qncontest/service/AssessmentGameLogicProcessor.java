@@ -1,11 +1,14 @@
 package com.qncontest.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.qncontest.dto.AssessmentResult;
 import com.qncontest.entity.ChatSession;
 import com.qncontest.entity.DiceRoll;
 import com.qncontest.entity.WorldEvent;
 import com.qncontest.repository.DiceRollRepository;
-import com.qncontest.repository.WorldEventRepository;
 import com.qncontest.service.interfaces.WorldStateManagerInterface;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,7 +16,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.DigestUtils;
 
 import java.util.*;
 
@@ -34,10 +36,10 @@ public class AssessmentGameLogicProcessor {
     private DiceRollRepository diceRollRepository;
     
     @Autowired
-    private WorldEventRepository worldEventRepository;
+    private ChatSessionService chatSessionService;
     
     @Autowired
-    private ChatSessionService chatSessionService;
+    private WorldEventJournal worldEventJournal;
     
     @Autowired
     private ConvergenceStatusService convergenceStatusService;
@@ -54,7 +56,7 @@ public class AssessmentGameLogicProcessor {
             logger.info("🧹 开始清理会话重复物品: sessionId={}", sessionId);
             
             // 获取当前会话
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
+            ChatSession session = chatSessionService.getSessionById(sessionId);
             if (session == null) {
                 logger.warn("⚠️ 未找到会话，跳过重复物品清理: sessionId={}", sessionId);
                 return;
@@ -129,84 +131,95 @@ public class AssessmentGameLogicProcessor {
      * 处理评估JSON中的游戏逻辑
      */
     @Transactional
-    public void processAssessmentGameLogic(String sessionId, Map<String, Object> assessment) {
+    public void processAssessmentGameLogic(String sessionId, AssessmentResult assessment) {
         try {
             logger.info("=== 开始处理评估JSON中的游戏逻辑 ===");
             logger.info("会话ID: {}", sessionId);
-            logger.info("评估策略: {}", assessment.get("strategy"));
-            logger.info("综合评分: {}", assessment.get("overallScore"));
+            logger.info("评估策略: {}", assessment.strategy());
+            logger.info("综合评分: {}", assessment.overallScore());
+            
+            // 会话只加载一次
+            ChatSession session = chatSessionService.getSessionById(sessionId);
+            if (session == null) {
+                logger.warn("⚠️ 未找到会话，跳过评估游戏逻辑处理: sessionId={}", sessionId);
+                return;
+            }
+            AssessmentUnitOfWork uow = new AssessmentUnitOfWork(session);
             
             // 统计需要处理的字段
             int fieldCount = 0;
             StringBuilder fieldSummary = new StringBuilder();
             
             // 处理骰子检定
-            if (assessment.get("diceRolls") != null) {
+            if (assessment.diceRolls() != null) {
                 fieldCount++;
                 fieldSummary.append("diceRolls ");
                 logger.info("📊 检测到骰子检定数据，开始处理...");
-                processDiceRolls(sessionId, assessment.get("diceRolls"));
+                processDiceRolls(uow, assessment.diceRolls());
             }
             
             // 处理学习挑战
-            if (assessment.get("learningChallenges") != null) {
+            if (assessment.learningChallenges() != null) {
                 fieldCount++;
                 fieldSummary.append("learningChallenges ");
                 logger.info("🎓 检测到学习挑战数据，开始处理...");
-                processLearningChallenges(sessionId, assessment.get("learningChallenges"));
+                processLearningChallenges(uow, assessment.learningChallenges());
             }
             
             // 处理状态更新
-            if (assessment.get("stateUpdates") != null) {
+            if (assessment.stateUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("stateUpdates ");
                 logger.info("📝 检测到状态更新数据，开始处理...");
-                processStateUpdates(sessionId, assessment.get("stateUpdates"));
+                processStateUpdates(uow, assessment.stateUpdates());
             }
             
             // 处理记忆更新
-            if (assessment.get("memoryUpdates") != null) {
+            if (assessment.memoryUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("memoryUpdates ");
                 logger.info("🧠 检测到记忆更新数据，开始处理...");
-                processMemoryUpdates(sessionId, assessment.get("memoryUpdates"));
+                processMemoryUpdates(uow, assessment.memoryUpdates());
             }
             
             // 处理任务更新（优先处理，因为可能包含奖励）
-            if (assessment.get("questUpdates") != null) {
+            if (assessment.questUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("questUpdates ");
                 logger.info("🎯 检测到任务更新数据，开始处理...");
-                processQuestUpdates(sessionId, assessment.get("questUpdates"));
+                processQuestUpdates(uow, assessment.questUpdates());
             }
             
             // 处理世界状态更新
-            if (assessment.get("worldStateUpdates") != null) {
+            if (assessment.worldStateUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("worldStateUpdates ");
                 logger.info("🌍 检测到世界状态更新数据，开始处理...");
-                processWorldStateUpdates(sessionId, assessment.get("worldStateUpdates"));
+                processWorldStateUpdates(uow, assessment.worldStateUpdates());
             }
             
             
             // 处理情节更新
-            if (assessment.get("arcUpdates") != null) {
+            if (assessment.arcUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("arcUpdates ");
                 logger.info("📖 检测到情节更新数据，开始处理...");
-                processArcUpdates(sessionId, assessment.get("arcUpdates"));
+                processArcUpdates(uow, assessment.arcUpdates());
             }
             
             // 处理收敛状态更新
-            if (assessment.get("convergenceStatusUpdates") != null) {
+            if (assessment.convergenceStatusUpdates() != null) {
                 fieldCount++;
                 fieldSummary.append("convergenceStatusUpdates ");
                 logger.info("🎯 检测到收敛状态更新数据，开始处理...");
-                processConvergenceStatusUpdates(sessionId, assessment.get("convergenceStatusUpdates"));
+                processConvergenceStatusUpdates(uow, assessment.convergenceStatusUpdates());
             }
             
             // 更新ChatSession的评估相关字段
-            updateChatSessionAssessment(sessionId, assessment);
+            updateChatSessionAssessment(uow, assessment);
+            
+            // 一次性写入会话修改、骰子记录与事件
+            commitUnitOfWork(uow);
             
             logger.info("=== 评估JSON游戏逻辑处理完成 ===");
             logger.info("会话ID: {}", sessionId);
@@ -223,29 +236,25 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理骰子检定
      */
-    @SuppressWarnings("unchecked")
-    private void processDiceRolls(String sessionId, Object diceRollsData) {
+    private void processDiceRolls(AssessmentUnitOfWork uow, List<AssessmentResult.DiceCheck> diceRolls) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🎲 开始处理骰子检定数据: sessionId={}", sessionId);
-            List<Map<String, Object>> diceRolls = (List<Map<String, Object>>) diceRollsData;
             logger.info("骰子检定数量: {}", diceRolls.size());
             
             int savedCount = 0;
             for (int i = 0; i < diceRolls.size(); i++) {
-                Map<String, Object> diceRollData = diceRolls.get(i);
+                AssessmentResult.DiceCheck diceRollData = diceRolls.get(i);
+                if (diceRollData == null) {
+                    continue;
+                }
                 logger.info("处理第{}个骰子检定: {}", i + 1, diceRollData);
                 
-                Integer diceType = getIntegerValue(diceRollData, "diceType");
-                Integer modifier = getIntegerValue(diceRollData, "modifier");
-                String context = getStringValue(diceRollData, "context");
-                Integer result = getIntegerValue(diceRollData, "result");
-                Boolean isSuccessful = getBooleanValue(diceRollData, "isSuccessful");
-                Integer difficultyClass = getIntegerValue(diceRollData, "difficultyClass");
-                String reason = getStringValue(diceRollData, "reason");
-                Integer numDice = getIntegerValue(diceRollData, "numDice");
-                
-                logger.info("解析结果 - diceType: {}, modifier: {}, context: {}, result: {}, isSuccessful: {}", 
-                           diceType, modifier, context, result, isSuccessful);
+                Integer diceType = diceRollData.diceType();
+                Integer modifier = diceRollData.modifier();
+                String context = diceRollData.context();
+                Integer result = diceRollData.result();
+                Boolean isSuccessful = diceRollData.isSuccessful();
                 
                 if (diceType != null && result != null) {
                     try {
@@ -257,21 +266,21 @@ public class AssessmentGameLogicProcessor {
                         diceRoll.setContext(context != null ? context : "未知检定");
                         diceRoll.setResult(result);
                         diceRoll.setIsSuccessful(isSuccessful != null ? isSuccessful : false);
-                        diceRoll.setDifficultyClass(difficultyClass);
-                        diceRoll.setReason(reason != null ? reason : context);
-                        diceRoll.setNumDice(numDice != null ? numDice : 1);
+                        diceRoll.setDifficultyClass(diceRollData.difficultyClass());
+                        diceRoll.setReason(diceRollData.reason() != null ? diceRollData.reason() : context);
+                        diceRoll.setNumDice(diceRollData.numDice() != null ? diceRollData.numDice() : 1);
                         
                         // 计算最终结果（骰子结果 + 修正值）
                         Integer finalModifier = modifier != null ? modifier : 0;
                         diceRoll.setFinalResult(result + finalModifier);
                         
-                        DiceRoll savedDiceRoll = diceRollRepository.save(diceRoll);
+                        uow.addDiceRoll(diceRoll);
                         savedCount++;
                         
-                        logger.info("✅ 骰子检定记录已保存到数据库: ID={}, sessionId={}, diceType={}, result={}, isSuccessful={}", 
-                                   savedDiceRoll.getId(), sessionId, diceType, result, isSuccessful);
+                        logger.info("✅ 骰子检定记录已加入待写入列表: sessionId={}, diceType={}, result={}, isSuccessful={}", 
+                                   sessionId, diceType, result, isSuccessful);
                     } catch (Exception e) {
-                        logger.error("❌ 保存骰子检定记录失败: sessionId={}, diceType={}, result={}", 
+                        logger.error("❌ 创建骰子检定记录失败: sessionId={}, diceType={}, result={}", 
                                    sessionId, diceType, result, e);
                     }
                 } else {
@@ -279,7 +288,7 @@ public class AssessmentGameLogicProcessor {
                 }
             }
             
-            logger.info("🎲 骰子检定处理完成: sessionId={}, 总数={}, 保存成功={}", sessionId, diceRolls.size(), savedCount);
+            logger.info("🎲 骰子检定处理完成: sessionId={}, 总数={}, 有效={}", sessionId, diceRolls.size(), savedCount);
         } catch (Exception e) {
             logger.error("❌ 处理骰子检定失败: sessionId={}", sessionId, e);
         }
@@ -288,41 +297,27 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理学习挑战
      */
-    @SuppressWarnings("unchecked")
-    private void processLearningChallenges(String sessionId, Object challengesData) {
+    private void processLearningChallenges(AssessmentUnitOfWork uow, List<AssessmentResult.LearningChallenge> challenges) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🎓 开始处理学习挑战数据: sessionId={}", sessionId);
-            List<Map<String, Object>> challenges = (List<Map<String, Object>>) challengesData;
             logger.info("学习挑战数量: {}", challenges.size());
             
             int processedCount = 0;
             for (int i = 0; i < challenges.size(); i++) {
-                Map<String, Object> challengeData = challenges.get(i);
-                logger.info("处理第{}个学习挑战: {}", i + 1, challengeData);
-                
-                String type = getStringValue(challengeData, "type");
-                String difficulty = getStringValue(challengeData, "difficulty");
-                String question = getStringValue(challengeData, "question");
-                String answer = getStringValue(challengeData, "answer");
-                Boolean isCorrect = getBooleanValue(challengeData, "isCorrect");
-                
-                logger.info("解析结果 - type: {}, difficulty: {}, question: {}, answer: {}, isCorrect: {}", 
-                           type, difficulty, question, answer, isCorrect);
+                AssessmentResult.LearningChallenge challenge = challenges.get(i);
+                if (challenge == null) {
+                    continue;
+                }
+                logger.info("处理第{}个学习挑战: {}", i + 1, challenge);
                 
                 // 记录学习挑战事件
-                Map<String, Object> eventData = new HashMap<>();
-                eventData.put("type", type);
-                eventData.put("difficulty", difficulty);
-                eventData.put("question", question);
-                eventData.put("answer", answer);
-                eventData.put("isCorrect", isCorrect);
-                
-                recordEvent(sessionId, WorldEvent.EventType.SYSTEM_EVENT, 
-                           "学习挑战", eventData);
+                recordEvent(uow, WorldEvent.EventType.SYSTEM_EVENT, 
+                           "学习挑战", challenge);
                 processedCount++;
                 
                 logger.info("✅ 学习挑战事件已记录: sessionId={}, type={}, difficulty={}, isCorrect={}", 
-                           sessionId, type, difficulty, isCorrect);
+                           sessionId, challenge.type(), challenge.difficulty(), challenge.isCorrect());
             }
             
             logger.info("🎓 学习挑战处理完成: sessionId={}, 总数={}, 处理成功={}", sessionId, challenges.size(), processedCount);
@@ -334,46 +329,39 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理状态更新
      */
-    @SuppressWarnings("unchecked")
-    private void processStateUpdates(String sessionId, Object stateUpdatesData) {
+    private void processStateUpdates(AssessmentUnitOfWork uow, List<AssessmentResult.StateUpdate> stateUpdates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("📝 开始处理状态更新数据: sessionId={}", sessionId);
-            List<Map<String, Object>> stateUpdates = (List<Map<String, Object>>) stateUpdatesData;
             logger.info("状态更新数量: {}", stateUpdates.size());
             
             int processedCount = 0;
             for (int i = 0; i < stateUpdates.size(); i++) {
-                Map<String, Object> stateUpdate = stateUpdates.get(i);
+                AssessmentResult.StateUpdate stateUpdate = stateUpdates.get(i);
+                if (stateUpdate == null) {
+                    continue;
+                }
                 logger.info("处理第{}个状态更新: {}", i + 1, stateUpdate);
                 
-                String type = getStringValue(stateUpdate, "type");
-                String value = getStringValue(stateUpdate, "value");
-                
-                logger.info("解析结果 - type: {}, value: {}", type, value);
+                String type = stateUpdate.type();
+                String value = stateUpdate.value();
                 
                 if (type != null && value != null) {
                     // 创建JSON格式的世界状态更新
-                    Map<String, Object> stateUpdateMap = new HashMap<>();
-                    stateUpdateMap.put(type.toLowerCase(), value);
-                    
                     String stateUpdateJson;
                     try {
-                        stateUpdateJson = objectMapper.writeValueAsString(stateUpdateMap);
+                        stateUpdateJson = objectMapper.writeValueAsString(Map.of(type.toLowerCase(), value));
                         logger.info("准备更新世界状态: {}", stateUpdateJson);
                     } catch (Exception e) {
                         logger.error("创建状态更新JSON失败: type={}, value={}", type, value, e);
                         continue;
                     }
                     
-                    worldStateManager.updateWorldState(sessionId, stateUpdateJson, null);
+                    applyWorldStateUpdate(uow, stateUpdateJson, null);
                     
                     // 记录状态更新事件
-                    Map<String, Object> eventData = new HashMap<>();
-                    eventData.put("type", type);
-                    eventData.put("value", value);
-                    
-                    recordEvent(sessionId, WorldEvent.EventType.STATE_CHANGE, 
-                               "状态更新", eventData);
+                    recordEvent(uow, WorldEvent.EventType.STATE_CHANGE, 
+                               "状态更新", stateUpdate);
                     processedCount++;
                     
                     logger.info("✅ 状态更新已完成: sessionId={}, type={}, value={}", 
@@ -392,33 +380,28 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理记忆更新
      */
-    @SuppressWarnings("unchecked")
-    private void processMemoryUpdates(String sessionId, Object memoryUpdatesData) {
+    private void processMemoryUpdates(AssessmentUnitOfWork uow, List<AssessmentResult.MemoryUpdate> memoryUpdates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🧠 开始处理记忆更新数据: sessionId={}", sessionId);
-            List<Map<String, Object>> memoryUpdates = (List<Map<String, Object>>) memoryUpdatesData;
             logger.info("记忆更新数量: {}", memoryUpdates.size());
             
             int processedCount = 0;
             for (int i = 0; i < memoryUpdates.size(); i++) {
-                Map<String, Object> memoryUpdate = memoryUpdates.get(i);
+                AssessmentResult.MemoryUpdate memoryUpdate = memoryUpdates.get(i);
+                if (memoryUpdate == null) {
+                    continue;
+                }
                 logger.info("处理第{}个记忆更新: {}", i + 1, memoryUpdate);
                 
-                String type = getStringValue(memoryUpdate, "type");
-                String content = getStringValue(memoryUpdate, "content");
-                Double importance = getDoubleValue(memoryUpdate, "importance");
-                
-                logger.info("解析结果 - type: {}, content: {}, importance: {}", type, content, importance);
+                String type = memoryUpdate.type();
+                String content = memoryUpdate.content();
+                Double importance = memoryUpdate.importance();
                 
                 if (type != null && content != null && importance != null && importance > 0.6) {
                     // 记录记忆事件
-                    Map<String, Object> eventData = new HashMap<>();
-                    eventData.put("type", type);
-                    eventData.put("content", content);
-                    eventData.put("importance", importance);
-                    
-                    recordEvent(sessionId, WorldEvent.EventType.MEMORY_UPDATE, 
-                               "记忆更新", eventData);
+                    recordEvent(uow, WorldEvent.EventType.MEMORY_UPDATE, 
+                               "记忆更新", memoryUpdate);
                     processedCount++;
                     
                     logger.info("✅ 记忆更新事件已记录: sessionId={}, type={}, content={}, importance={}", 
@@ -438,44 +421,24 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理任务更新
      */
-    @SuppressWarnings("unchecked")
-    private void processQuestUpdates(String sessionId, Object questUpdatesData) {
+    private void processQuestUpdates(AssessmentUnitOfWork uow, AssessmentResult.QuestUpdates questUpdates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🎯 开始处理任务更新数据: sessionId={}", sessionId);
-            Map<String, Object> questUpdates = (Map<String, Object>) questUpdatesData;
-            logger.info("任务更新数据: {}", questUpdates);
-            
-            // 统计各种任务更新
-            int totalUpdates = 0;
-            if (questUpdates.containsKey("created")) {
-                List<?> created = (List<?>) questUpdates.get("created");
-                logger.info("新创建任务数量: {}", created.size());
-                totalUpdates += created.size();
-            }
-            if (questUpdates.containsKey("completed")) {
-                List<?> completed = (List<?>) questUpdates.get("completed");
-                logger.info("完成任务数量: {}", completed.size());
-                totalUpdates += completed.size();
-                
-                // 处理任务奖励
-                processQuestRewards(sessionId, completed);
-            }
-            if (questUpdates.containsKey("progress")) {
-                List<?> progress = (List<?>) questUpdates.get("progress");
-                logger.info("进度更新任务数量: {}", progress.size());
-                totalUpdates += progress.size();
-            }
-            if (questUpdates.containsKey("expired")) {
-                List<?> expired = (List<?>) questUpdates.get("expired");
-                logger.info("过期任务数量: {}", expired.size());
-                totalUpdates += expired.size();
+            logger.info("任务更新数据: created={}, completed={}, progress={}, expired={}",
+                       sizeOf(questUpdates.created()), sizeOf(questUpdates.completed()),
+                       sizeOf(questUpdates.progress()), sizeOf(questUpdates.expired()));
+            
+            // 处理任务奖励
+            if (questUpdates.completed() != null) {
+                processQuestRewards(uow, questUpdates.completed());
             }
             
             // 记录任务更新事件
-            recordEvent(sessionId, WorldEvent.EventType.SYSTEM_EVENT, 
+            recordEvent(uow, WorldEvent.EventType.SYSTEM_EVENT, 
                        "任务更新", questUpdates);
             
-            logger.info("✅ 任务更新事件已记录: sessionId={}, 总更新数={}", sessionId, totalUpdates);
+            logger.info("✅ 任务更新事件已记录: sessionId={}, 总更新数={}", sessionId, questUpdates.totalUpdates());
             logger.info("🎯 任务更新处理完成: sessionId={}", sessionId);
             
         } catch (Exception e) {
@@ -487,18 +450,13 @@ public class AssessmentGameLogicProcessor {
      * 处理任务奖励
      */
     @SuppressWarnings("unchecked")
-    private void processQuestRewards(String sessionId, List<?> completedQuests) {
+    private void processQuestRewards(AssessmentUnitOfWork uow, List<AssessmentResult.Quest> completedQuests) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🎁 开始处理任务奖励: sessionId={}, 完成任务数={}", sessionId, completedQuests.size());
             
-            // 获取当前角色状态
-            logger.info("🔍 查询会话状态进行任务奖励处理: sessionId={}", sessionId);
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
-            if (session == null) {
-                logger.warn("⚠️ 未找到会话，跳过任务奖励处理: sessionId={}", sessionId);
-                return;
-            }
-            
+            // 获取当前角色状态（工作单元中的会话已包含本次评估之前步骤的修改）
+            ChatSession session = uow.getSession();
             String currentSkillsState = session.getSkillsState();
             logger.info("📊 任务奖励处理前技能状态长度: {}", currentSkillsState != null ? currentSkillsState.length() : 0);
             Map<String, Object> skillsState = new HashMap<>();
@@ -525,44 +483,43 @@ public class AssessmentGameLogicProcessor {
             skillsState.putIfAbsent("魔力值", "50/50");
             
             // 处理每个完成任务的奖励
-            for (Object questObj : completedQuests) {
-                if (questObj instanceof Map) {
-                    Map<String, Object> quest = (Map<String, Object>) questObj;
-                    String questId = getStringValue(quest, "questId");
-                    Object rewardsObj = quest.get("rewards");
+            for (AssessmentResult.Quest quest : completedQuests) {
+                if (quest != null) {
+                    String questId = quest.getQuestId();
+                    AssessmentResult.QuestRewards rewards = quest.getRewards();
                     
-                    if (rewardsObj instanceof Map) {
-                        Map<String, Object> rewards = (Map<String, Object>) rewardsObj;
-                        logger.info("处理任务奖励: questId={}, rewards={}", questId, rewards);
+                    if (rewards != null) {
+                        logger.info("处理任务奖励: questId={}, exp={}, gold={}, items={}, stats={}, abilities={}",
+                                   questId, rewards.getExp(), rewards.getGold(), rewards.getItems(),
+                                   rewards.getStats(), rewards.getAbilities());
                         
                         // 处理经验值奖励
-                        Object expReward = rewards.get("exp");
-                        if (expReward instanceof Number) {
+                        Integer expReward = rewards.getExp();
+                        if (expReward != null) {
                             int currentExp = (Integer) skillsState.get("experience");
-                            int expGain = ((Number) expReward).intValue();
+                            int expGain = expReward;
                             int newExp = currentExp + expGain;
                             skillsState.put("experience", newExp);
                             logger.info("经验值奖励: +{} ({} -> {})", expGain, currentExp, newExp);
                             
                             // 检查升级
-                            checkAndProcessLevelUp(sessionId, skillsState);
+                            checkAndProcessLevelUp(uow, skillsState);
                         }
                         
                         // 处理金币奖励
-                        Object goldReward = rewards.get("gold");
-                        if (goldReward instanceof Number) {
+                        Integer goldReward = rewards.getGold();
+                        if (goldReward != null) {
                             int currentGold = (Integer) skillsState.get("gold");
-                            int goldGain = ((Number) goldReward).intValue();
+                            int goldGain = goldReward;
                             int newGold = currentGold + goldGain;
                             skillsState.put("gold", newGold);
                             logger.info("金币奖励: +{} ({} -> {})", goldGain, currentGold, newGold);
                         }
                         
                         // 处理物品奖励
-                        Object itemsReward = rewards.get("items");
-                        if (itemsReward instanceof List) {
+                        List<String> newItems = rewards.getItems();
+                        if (newItems != null) {
                             List<String> currentInventory = (List<String>) skillsState.get("inventory");
-                            List<String> newItems = (List<String>) itemsReward;
                             
                             logger.info("处理物品奖励 - 当前物品: {}, 新物品: {}", currentInventory, newItems);
                             
@@ -624,22 +581,20 @@ public class AssessmentGameLogicProcessor {
                         }
                         
                         // 处理属性奖励
-                        Object statsReward = rewards.get("stats");
-                        if (statsReward instanceof Map) {
+                        Map<String, Integer> statGains = rewards.getStats();
+                        if (statGains != null) {
                             Map<String, Object> currentAttributes = (Map<String, Object>) skillsState.get("attributes");
                             if (currentAttributes == null) {
                                 currentAttributes = new HashMap<>();
                                 skillsState.put("attributes", currentAttributes);
                             }
                             
-                            Map<String, Object> statGains = (Map<String, Object>) statsReward;
-                            
-                            for (Map.Entry<String, Object> entry : statGains.entrySet()) {
+                            for (Map.Entry<String, Integer> entry : statGains.entrySet()) {
                                 String statName = entry.getKey();
-                                Object statValue = entry.getValue();
-                                if (statValue instanceof Number) {
+                                Integer statValue = entry.getValue();
+                                if (statValue != null) {
                                     int currentStat = (Integer) currentAttributes.getOrDefault(statName, 0);
-                                    int statGain = ((Number) statValue).intValue();
+                                    int statGain = statValue;
                                     int newStat = currentStat + statGain;
                                     currentAttributes.put(statName, newStat);
                                     logger.info("属性奖励: {} +{} ({} -> {})", statName, statGain, currentStat, newStat);
@@ -648,10 +603,9 @@ public class AssessmentGameLogicProcessor {
                         }
                         
                         // 处理技能奖励
-                        Object abilitiesReward = rewards.get("abilities");
-                        if (abilitiesReward instanceof List) {
+                        List<String> newAbilities = rewards.getAbilities();
+                        if (newAbilities != null) {
                             List<String> currentAbilities = (List<String>) skillsState.get("abilities");
-                            List<String> newAbilities = (List<String>) abilitiesReward;
                             currentAbilities.addAll(newAbilities);
                             skillsState.put("abilities", currentAbilities);
                             logger.info("技能奖励: +{}", newAbilities);
@@ -670,8 +624,7 @@ public class AssessmentGameLogicProcessor {
                 skillsState.get("inventory") != null ? ((List<?>) skillsState.get("inventory")).size() : 0,
                 skillsState.get("attributes"));
             
-            logger.info("💾 调用worldStateManager更新任务奖励后的技能状态: sessionId={}", sessionId);
-            worldStateManager.updateWorldState(sessionId, null, updatedSkillsStateJson);
+            applyWorldStateUpdate(uow, null, updatedSkillsStateJson);
             
             logger.info("✅ 任务奖励处理完成: sessionId={}", sessionId);
             
@@ -684,7 +637,8 @@ public class AssessmentGameLogicProcessor {
      * 检查并处理升级（支持多次升级）
      */
     @SuppressWarnings("unchecked")
-    private void checkAndProcessLevelUp(String sessionId, Map<String, Object> skillsState) {
+    private void checkAndProcessLevelUp(AssessmentUnitOfWork uow, Map<String, Object> skillsState) {
+        String sessionId = uow.getSessionId();
         try {
             int currentLevel = (Integer) skillsState.get("level");
             int currentExp = (Integer) skillsState.get("experience");
@@ -748,7 +702,7 @@ public class AssessmentGameLogicProcessor {
                 logger.info("属性提升: {}", attributes);
                 
                 // 记录升级事件
-                recordEvent(sessionId, WorldEvent.EventType.CHARACTER_UPDATE, 
+                recordEvent(uow, WorldEvent.EventType.CHARACTER_UPDATE, 
                            "角色升级", Map.of(
                                "oldLevel", currentLevel,
                                "newLevel", newLevel,
@@ -769,11 +723,10 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理世界状态更新
      */
-    @SuppressWarnings("unchecked")
-    private void processWorldStateUpdates(String sessionId, Object worldStateUpdatesData) {
+    private void processWorldStateUpdates(AssessmentUnitOfWork uow, Map<String, Object> worldStateUpdates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🌍 开始处理世界状态更新数据: sessionId={}", sessionId);
-            Map<String, Object> worldStateUpdates = (Map<String, Object>) worldStateUpdatesData;
             logger.info("世界状态更新数据: {}", worldStateUpdates);
             
             // 统计更新字段
@@ -787,8 +740,7 @@ public class AssessmentGameLogicProcessor {
             if (worldStateUpdates.containsKey("environment")) {
                 logger.info("环境更新: {}", worldStateUpdates.get("environment"));
             }
-            if (worldStateUpdates.containsKey("npcs")) {
-                List<?> npcs = (List<?>) worldStateUpdates.get("npcs");
+            if (worldStateUpdates.get("npcs") instanceof List<?> npcs) {
                 logger.info("NPC更新数量: {}", npcs.size());
             }
             
@@ -796,7 +748,7 @@ public class AssessmentGameLogicProcessor {
             String worldStateJson = objectMapper.writeValueAsString(worldStateUpdates);
             logger.info("准备更新世界状态JSON: {}", worldStateJson);
             
-            worldStateManager.updateWorldState(sessionId, worldStateJson, null);
+            applyWorldStateUpdate(uow, worldStateJson, null);
             
             logger.info("✅ 世界状态更新完成: sessionId={}, 字段数={}", sessionId, fieldCount);
             logger.info("🌍 世界状态更新处理完成: sessionId={}", sessionId);
@@ -811,27 +763,20 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理情节更新
      */
-    @SuppressWarnings("unchecked")
-    private void processArcUpdates(String sessionId, Object arcUpdatesData) {
+    private void processArcUpdates(AssessmentUnitOfWork uow, AssessmentResult.ArcUpdates arcUpdates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("📖 开始处理情节更新数据: sessionId={}", sessionId);
-            Map<String, Object> arcUpdates = (Map<String, Object>) arcUpdatesData;
             logger.info("情节更新数据: {}", arcUpdates);
             
-            // 获取当前会话
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
-            if (session == null) {
-                logger.warn("⚠️ 未找到会话，跳过情节更新: sessionId={}", sessionId);
-                return;
-            }
-            
+            ChatSession session = uow.getSession();
             logger.info("当前会话情节信息 - 名称: {}, 起始轮数: {}, 总轮数: {}", 
                        session.getCurrentArcName(), session.getCurrentArcStartRound(), session.getTotalRounds());
             
             boolean sessionUpdated = false;
             
             // 处理情节名称更新
-            String newArcName = getStringValue(arcUpdates, "currentArcName");
+            String newArcName = arcUpdates.currentArcName();
             if (newArcName != null && !newArcName.isEmpty() && !newArcName.equals(session.getCurrentArcName())) {
                 logger.info("检测到情节名称变化: {} -> {}", session.getCurrentArcName(), newArcName);
                 session.setCurrentArcName(newArcName);
@@ -840,7 +785,7 @@ public class AssessmentGameLogicProcessor {
             }
             
             // 处理情节起始轮数更新
-            Integer newArcStartRound = getIntegerValue(arcUpdates, "currentArcStartRound");
+            Integer newArcStartRound = arcUpdates.currentArcStartRound();
             if (newArcStartRound != null && !newArcStartRound.equals(session.getCurrentArcStartRound())) {
                 // 验证情节起始轮数的合理性
                 if (newArcStartRound > 0 && newArcStartRound <= session.getTotalRounds()) {
@@ -855,7 +800,7 @@ public class AssessmentGameLogicProcessor {
             }
             
             // 处理总轮数更新
-            Integer newTotalRounds = getIntegerValue(arcUpdates, "totalRounds");
+            Integer newTotalRounds = arcUpdates.totalRounds();
             if (newTotalRounds != null && !newTotalRounds.equals(session.getTotalRounds())) {
                 logger.info("检测到总轮数变化: {} -> {}", session.getTotalRounds(), newTotalRounds);
                 session.setTotalRounds(newTotalRounds);
@@ -863,16 +808,16 @@ public class AssessmentGameLogicProcessor {
                 logger.info("✅ 更新总轮数: sessionId={}, newTotalRounds={}", sessionId, newTotalRounds);
             }
             
-            // 保存会话更新
+            // 会话修改随工作单元一起保存
             if (sessionUpdated) {
-                ChatSession savedSession = chatSessionService.saveSession(session);
-                logger.info("✅ 情节更新已保存到数据库: sessionId={}, 版本={}", sessionId, savedSession.getVersion());
+                uow.markSessionDirty();
+                logger.info("✅ 情节更新已应用: sessionId={}, 版本={}", sessionId, session.getVersion());
             } else {
                 logger.info("ℹ️ 情节信息无变化，跳过更新: sessionId={}", sessionId);
             }
             
             // 记录情节更新事件
-            recordEvent(sessionId, WorldEvent.EventType.SYSTEM_EVENT, 
+            recordEvent(uow, WorldEvent.EventType.SYSTEM_EVENT, 
                        "情节更新", arcUpdates);
             
             logger.info("📖 情节更新处理完成: sessionId={}, 是否有更新={}", sessionId, sessionUpdated);
@@ -885,70 +830,17 @@ public class AssessmentGameLogicProcessor {
     /**
      * 处理收敛状态更新
      */
-    @SuppressWarnings("unchecked")
-    private void processConvergenceStatusUpdates(String sessionId, Object convergenceStatusUpdatesData) {
+    private void processConvergenceStatusUpdates(AssessmentUnitOfWork uow, AssessmentResult.ConvergenceUpdates updates) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("🎯 开始处理收敛状态更新数据: sessionId={}", sessionId);
-            Map<String, Object> updates = (Map<String, Object>) convergenceStatusUpdatesData;
             logger.info("收敛状态更新数据: {}", updates);
             
-            int updateCount = 0;
-            
-            // 处理进度更新
-            Double progress = getDoubleValue(updates, "progress");
-            if (progress != null) {
-                logger.info("检测到收敛进度更新: {}", progress);
-                convergenceStatusService.updateProgress(sessionId, progress);
-                updateCount++;
-                logger.info("✅ 更新收敛进度: sessionId={}, progress={}", sessionId, progress);
-            }
-            
-            // 处理进度增量
-            Double progressIncrement = getDoubleValue(updates, "progressIncrement");
-            if (progressIncrement != null) {
-                logger.info("检测到收敛进度增量: {}", progressIncrement);
-                convergenceStatusService.addProgress(sessionId, progressIncrement);
-                updateCount++;
-                logger.info("✅ 增加收敛进度: sessionId={}, increment={}", sessionId, progressIncrement);
-            }
-            
-            // 处理最近场景更新
-            String nearestScenarioId = getStringValue(updates, "nearestScenarioId");
-            String nearestScenarioTitle = getStringValue(updates, "nearestScenarioTitle");
-            Double distanceToNearest = getDoubleValue(updates, "distanceToNearest");
-            
-            if (nearestScenarioId != null && nearestScenarioTitle != null && distanceToNearest != null) {
-                logger.info("检测到最近场景更新: ID={}, 标题={}, 距离={}", nearestScenarioId, nearestScenarioTitle, distanceToNearest);
-                convergenceStatusService.updateNearestScenario(sessionId, nearestScenarioId, nearestScenarioTitle, distanceToNearest);
-                updateCount++;
-                logger.info("✅ 更新最近场景: sessionId={}, scenarioId={}, title={}", 
-                           sessionId, nearestScenarioId, nearestScenarioTitle);
-            }
-            
-            // 处理场景进度更新
-            Object scenarioProgressData = updates.get("scenarioProgress");
-            if (scenarioProgressData instanceof Map) {
-                Map<String, Double> scenarioProgress = (Map<String, Double>) scenarioProgressData;
-                logger.info("检测到场景进度更新: 场景数量={}", scenarioProgress.size());
-                logger.info("场景进度详情: {}", scenarioProgress);
-                convergenceStatusService.updateScenarioProgress(sessionId, scenarioProgress);
-                updateCount++;
-                logger.info("✅ 更新场景进度: sessionId={}, scenarioCount={}", sessionId, scenarioProgress.size());
-            }
-            
-            // 处理活跃提示更新
-            Object activeHintsData = updates.get("activeHints");
-            if (activeHintsData instanceof List) {
-                List<String> activeHints = (List<String>) activeHintsData;
-                logger.info("检测到活跃提示更新: 提示数量={}", activeHints.size());
-                logger.info("活跃提示详情: {}", activeHints);
-                convergenceStatusService.updateActiveHints(sessionId, activeHints);
-                updateCount++;
-                logger.info("✅ 更新活跃提示: sessionId={}, hintsCount={}", sessionId, activeHints.size());
-            }
+            // 进度、最近场景、场景进度和活跃提示一次加载、一次保存
+            int updateCount = convergenceStatusService.applyUpdates(sessionId, updates);
             
             // 记录收敛状态更新事件
-            recordEvent(sessionId, WorldEvent.EventType.SYSTEM_EVENT, 
+            recordEvent(uow, WorldEvent.EventType.SYSTEM_EVENT, 
                        "收敛状态更新", updates);
             
             logger.info("🎯 收敛状态更新处理完成: sessionId={}, 更新操作数={}", sessionId, updateCount);
@@ -959,48 +851,52 @@ public class AssessmentGameLogicProcessor {
     }
     
     /**
-     * 记录事件
+     * 在工作单元的会话上应用世界/技能状态更新，并记录状态变更事件
      */
-    private void recordEvent(String sessionId, WorldEvent.EventType eventType, String description, Map<String, Object> eventData) {
+    private void applyWorldStateUpdate(AssessmentUnitOfWork uow, String newWorldState, String skillsState) {
+        String stateChangeEventData = worldStateManager.applyWorldStateUpdate(uow.getSession(), newWorldState, skillsState);
+        if (stateChangeEventData != null) {
+            uow.markSessionDirty();
+            uow.addEvent(WorldEvent.EventType.STATE_CHANGE, stateChangeEventData);
+        }
+    }
+    
+    /**
+     * 记录事件（加入工作单元，提交时批量写入）
+     */
+    private void recordEvent(AssessmentUnitOfWork uow, WorldEvent.EventType eventType, String description, Object eventData) {
         try {
-            logger.info("📝 开始记录事件: sessionId={}, eventType={}, description={}", sessionId, eventType, description);
-            
-            WorldEvent event = new WorldEvent();
-            event.setSessionId(sessionId);
-            event.setEventType(eventType);
             String eventDataJson = objectMapper.writeValueAsString(eventData);
-            event.setEventData(eventDataJson);
-            event.setSequence(getNextEventSequence(sessionId));
-            
-            // 设置校验和
-            event.setChecksum(DigestUtils.md5DigestAsHex(eventDataJson.getBytes()));
-            
-            logger.info("事件数据JSON: {}", event.getEventData());
-            
-            // 设置当前会话的轮次和情节信息
-            try {
-                ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
-                if (session != null) {
-                    event.setTotalRounds(session.getTotalRounds());
-                    event.setCurrentArcStartRound(session.getCurrentArcStartRound());
-                    event.setCurrentArcName(session.getCurrentArcName());
-                    
-                    logger.info("设置事件轮次信息 - 总轮数: {}, 情节起始轮数: {}, 情节名称: {}", 
-                               session.getTotalRounds(), session.getCurrentArcStartRound(), session.getCurrentArcName());
-                } else {
-                    logger.warn("⚠️ 未找到会话，跳过轮次信息设置: sessionId={}", sessionId);
-                }
-            } catch (Exception e) {
-                logger.warn("⚠️ 获取会话信息失败，继续记录事件但不设置轮次信息: sessionId={}, error={}", sessionId, e.getMessage());
-            }
-            
-            WorldEvent savedEvent = worldEventRepository.save(event);
-            logger.info("✅ 事件已保存到数据库: eventId={}, sessionId={}, eventType={}, sequence={}", 
-                       savedEvent.getId(), sessionId, eventType, savedEvent.getSequence());
-            
+            uow.addEvent(eventType, eventDataJson);
+            logger.info("📝 记录事件: sessionId={}, eventType={}, description={}", 
+                       uow.getSessionId(), eventType, description);
+            logger.debug("事件数据JSON: {}", eventDataJson);
         } catch (Exception e) {
-            logger.error("❌ 记录事件失败: sessionId={}, eventType={}, description={}", sessionId, eventType, description, e);
+            logger.error("❌ 记录事件失败: sessionId={}, eventType={}, description={}", uow.getSessionId(), eventType, description, e);
+        }
+    }
+    
+    /**
+     * 提交工作单元：保存会话一次，骰子记录与事件批量写入
+     */
+    private void commitUnitOfWork(AssessmentUnitOfWork uow) {
+        String sessionId = uow.getSessionId();
+        if (uow.isSessionDirty()) {
+            chatSessionService.saveSession(uow.getSession());
         }
+        
+        List<DiceRoll> diceRolls = uow.getPendingDiceRolls();
+        if (!diceRolls.isEmpty()) {
+            diceRollRepository.saveAll(diceRolls);
+        }
+        
+        List<WorldEvent> events = uow.getPendingEvents();
+        // 事件交给世界事件日志写入器：本方法在processAssessmentGameLogic的事务中执行，事件在事务提交后才分配序号并写入，
+        // 事务回滚时一并丢弃；按暂存顺序分配连续序号，与其他会话的事件一起组提交
+        worldEventJournal.appendAll(sessionId, events);
+        
+        logger.info("💾 评估工作单元已提交: sessionId={}, 会话已修改={}, 骰子记录={}, 事件={}", 
+                   sessionId, uow.isSessionDirty(), diceRolls.size(), events.size());
     }
     
     // ==================== 辅助方法 ====================
@@ -1060,135 +956,67 @@ public class AssessmentGameLogicProcessor {
         return result;
     }
     
-    private Integer getIntegerValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        Integer result = null;
-        
-        if (value instanceof Integer) {
-            result = (Integer) value;
-        } else if (value instanceof Number) {
-            result = ((Number) value).intValue();
-        } else if (value instanceof String) {
-            try {
-                result = Integer.parseInt((String) value);
-            } catch (NumberFormatException e) {
-                logger.warn("⚠️ 字符串转整数失败: key={}, value={}, error={}", key, value, e.getMessage());
-                result = null;
-            }
-        }
-        
-        logger.debug("解析整数值: key={}, value={}, result={}", key, value, result);
-        return result;
-    }
-    
-    private Boolean getBooleanValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        Boolean result = null;
-        
-        if (value instanceof Boolean) {
-            result = (Boolean) value;
-        } else if (value instanceof String) {
-            result = Boolean.parseBoolean((String) value);
-        }
-        
-        logger.debug("解析布尔值: key={}, value={}, result={}", key, value, result);
-        return result;
-    }
-    
-    private Double getDoubleValue(Map<String, Object> map, String key) {
-        Object value = map.get(key);
-        Double result = null;
-        
-        if (value instanceof Double) {
-            result = (Double) value;
-        } else if (value instanceof Number) {
-            result = ((Number) value).doubleValue();
-        } else if (value instanceof String) {
-            try {
-                result = Double.parseDouble((String) value);
-            } catch (NumberFormatException e) {
-                logger.warn("⚠️ 字符串转浮点数失败: key={}, value={}, error={}", key, value, e.getMessage());
-                result = null;
-            }
-        }
-        
-        logger.debug("解析浮点数值: key={}, value={}, result={}", key, value, result);
-        return result;
-    }
-    
-    /**
-     * 获取下一个事件序号
-     */
-    private int getNextEventSequence(String sessionId) {
-        return worldEventRepository.findMaxSequenceBySessionId(sessionId).orElse(0) + 1;
-    }
-    
     /**
      * 更新ChatSession的评估相关字段
      */
-    private void updateChatSessionAssessment(String sessionId, Map<String, Object> assessment) {
+    private void updateChatSessionAssessment(AssessmentUnitOfWork uow, AssessmentResult assessment) {
+        String sessionId = uow.getSessionId();
         try {
             logger.info("📊 开始更新ChatSession评估字段: sessionId={}", sessionId);
             
-            // 获取当前会话
-            ChatSession session = chatSessionService.getSessionById(sessionId);
-            if (session == null) {
-                logger.warn("⚠️ 未找到会话: sessionId={}", sessionId);
-                return;
-            }
-            
+            ChatSession session = uow.getSession();
             boolean sessionUpdated = false;
             
             // 1. 更新收敛进度
-            Object convergenceProgressObj = assessment.get("convergenceProgress");
-            if (convergenceProgressObj != null) {
-                try {
-                    Double convergenceProgress = Double.parseDouble(convergenceProgressObj.toString());
-                    if (session.getConvergenceProgress() == null || 
-                        !session.getConvergenceProgress().equals(convergenceProgress)) {
-                        session.setConvergenceProgress(convergenceProgress);
-                        sessionUpdated = true;
-                        logger.info("✅ 更新收敛进度: {} -> {}", session.getConvergenceProgress(), convergenceProgress);
-                    }
-                } catch (NumberFormatException e) {
-                    logger.warn("⚠️ 收敛进度格式无效: {}", convergenceProgressObj);
+            Double convergenceProgress = assessment.convergenceProgress();
+            if (convergenceProgress != null) {
+                if (session.getConvergenceProgress() == null || 
+                    !session.getConvergenceProgress().equals(convergenceProgress)) {
+                    logger.info("✅ 更新收敛进度: {} -> {}", session.getConvergenceProgress(), convergenceProgress);
+                    session.setConvergenceProgress(convergenceProgress);
+                    sessionUpdated = true;
                 }
             }
             
             // 2. 更新任务相关字段
-            updateQuestFields(session, assessment);
+            if (assessment.questUpdates() != null) {
+                updateQuestFields(session, assessment.questUpdates());
+            }
             
             // 3. 角色属性字段已通过skillsState管理，无需单独更新
             
             // 4. 更新世界状态字段
-            updateWorldStateFields(session, assessment);
+            if (assessment.worldStateUpdates() != null) {
+                updateWorldStateFields(session, assessment.worldStateUpdates());
+            }
             
-            // 5. 更新评估历史记录
+            // 5. 更新评估历史记录（评估对象直接转为树节点追加，无需序列化后再解析）
             try {
-                String assessmentJson = objectMapper.writeValueAsString(assessment);
                 String currentHistory = session.getAssessmentHistory();
                 
-                // 构建新的评估历史记录
-                List<Map<String, Object>> historyList = new ArrayList<>();
+                ArrayNode historyList = null;
                 if (currentHistory != null && !currentHistory.isEmpty()) {
                     try {
-                        @SuppressWarnings("unchecked")
-                        List<Map<String, Object>> existingHistory = objectMapper.readValue(currentHistory, List.class);
-                        historyList.addAll(existingHistory);
+                        JsonNode existingHistory = objectMapper.readTree(currentHistory);
+                        if (existingHistory instanceof ArrayNode) {
+                            historyList = (ArrayNode) existingHistory;
+                        }
                     } catch (Exception e) {
                         logger.warn("⚠️ 解析现有评估历史失败，将重新创建: {}", e.getMessage());
                     }
                 }
+                if (historyList == null) {
+                    historyList = objectMapper.createArrayNode();
+                }
                 
                 // 添加新的评估记录
-                @SuppressWarnings("unchecked")
-                Map<String, Object> newAssessment = objectMapper.readValue(assessmentJson, Map.class);
+                ObjectNode newAssessment = objectMapper.valueToTree(assessment);
                 newAssessment.put("timestamp", System.currentTimeMillis());
                 historyList.add(newAssessment);
                 
                 // 限制历史记录数量（保留最近50条）
-                if (historyList.size() > 50) {
-                    historyList = historyList.subList(historyList.size() - 50, historyList.size());
+                while (historyList.size() > 50) {
+                    historyList.remove(0);
                 }
                 
                 String newHistoryJson = objectMapper.writeValueAsString(historyList);
@@ -1206,11 +1034,11 @@ public class AssessmentGameLogicProcessor {
             sessionUpdated = true;
             logger.info("✅ 更新最后评估ID: {}", lastAssessmentId);
             
-            // 保存会话更新
+            // 会话修改随工作单元一起保存
             if (sessionUpdated) {
-                ChatSession savedSession = chatSessionService.saveSession(session);
-                logger.info("✅ ChatSession评估字段已保存: sessionId={}, version={}", 
-                           sessionId, savedSession.getVersion());
+                uow.markSessionDirty();
+                logger.info("✅ ChatSession评估字段已更新: sessionId={}, version={}", 
+                           sessionId, session.getVersion());
             } else {
                 logger.info("ℹ️ 评估字段无变化，跳过更新: sessionId={}", sessionId);
             }
@@ -1223,151 +1051,77 @@ public class AssessmentGameLogicProcessor {
     /**
      * 更新任务相关字段
      */
-    @SuppressWarnings("unchecked")
-    private void updateQuestFields(ChatSession session, Map<String, Object> assessment) {
+    private void updateQuestFields(ChatSession session, AssessmentResult.QuestUpdates questUpdates) {
         try {
-            Object questUpdatesObj = assessment.get("questUpdates");
-            if (questUpdatesObj == null) {
-                return;
-            }
-            
-            Map<String, Object> questUpdates = (Map<String, Object>) questUpdatesObj;
             boolean questFieldsUpdated = false;
             
-            // 获取现有活跃任务列表
-            String currentActiveQuests = session.getActiveQuests();
-            Map<String, Object> existingActiveQuestsMap = new HashMap<>();
-            
-            if (currentActiveQuests != null && !currentActiveQuests.isEmpty()) {
-                try {
-                    List<Object> existingList = objectMapper.readValue(currentActiveQuests, List.class);
-                    // 转换为Map，以questId为key，便于去重和更新
-                    for (Object quest : existingList) {
-                        if (quest instanceof Map) {
-                            String questId = getStringValue((Map<String, Object>) quest, "questId");
-                            if (questId != null) {
-                                existingActiveQuestsMap.put(questId, quest);
-                            }
-                        }
-                    }
-                    logger.info("📋 现有活跃任务数量: {}", existingActiveQuestsMap.size());
-                } catch (Exception e) {
-                    logger.warn("⚠️ 解析现有活跃任务失败: {}", e.getMessage());
-                }
-            }
+            // 获取现有活跃任务列表，以questId为key，便于去重和更新
+            Map<String, Object> existingActiveQuestsMap = readQuestsById(session.getActiveQuests(), "活跃");
             
             // 处理新创建的任务
-            if (questUpdates.containsKey("created")) {
-                List<?> created = (List<?>) questUpdates.get("created");
-                logger.info("📝 处理新创建任务: {}", created.size());
-                
-                for (Object quest : created) {
-                    if (quest instanceof Map) {
-                        String questId = getStringValue((Map<String, Object>) quest, "questId");
-                        if (questId != null) {
-                            existingActiveQuestsMap.put(questId, quest);
-                            logger.info("➕ 添加新任务: questId={}", questId);
-                        }
+            if (questUpdates.created() != null) {
+                logger.info("📝 处理新创建任务: {}", questUpdates.created().size());
+                for (AssessmentResult.Quest quest : questUpdates.created()) {
+                    if (quest != null && quest.getQuestId() != null) {
+                        existingActiveQuestsMap.put(quest.getQuestId(), quest);
+                        logger.info("➕ 添加新任务: questId={}", quest.getQuestId());
                     }
                 }
             }
             
-            // 处理进度更新的任务
-            if (questUpdates.containsKey("progress")) {
-                List<?> progress = (List<?>) questUpdates.get("progress");
-                logger.info("📈 处理进度更新任务: {}", progress.size());
-                
-                for (Object quest : progress) {
-                    if (quest instanceof Map) {
-                        String questId = getStringValue((Map<String, Object>) quest, "questId");
-                        if (questId != null) {
-                            // 如果任务已存在，更新进度；如果不存在，添加新任务
-                            existingActiveQuestsMap.put(questId, quest);
-                            logger.info("🔄 更新任务进度: questId={}", questId);
-                        }
+            // 处理进度更新的任务：如果任务已存在，更新进度；如果不存在，添加新任务
+            if (questUpdates.progress() != null) {
+                logger.info("📈 处理进度更新任务: {}", questUpdates.progress().size());
+                for (AssessmentResult.Quest quest : questUpdates.progress()) {
+                    if (quest != null && quest.getQuestId() != null) {
+                        existingActiveQuestsMap.put(quest.getQuestId(), quest);
+                        logger.info("🔄 更新任务进度: questId={}", quest.getQuestId());
                     }
                 }
             }
-                
-                // 移除已完成的任务
-                if (questUpdates.containsKey("completed")) {
-                    List<?> completed = (List<?>) questUpdates.get("completed");
-                logger.info("✅ 处理已完成任务: {}", completed.size());
-                    
-                    for (Object completedQuest : completed) {
-                        if (completedQuest instanceof Map) {
-                            String completedQuestId = getStringValue((Map<String, Object>) completedQuest, "questId");
-                        if (completedQuestId != null && existingActiveQuestsMap.containsKey(completedQuestId)) {
-                            existingActiveQuestsMap.remove(completedQuestId);
-                            logger.info("🗑️ 移除已完成任务: questId={}", completedQuestId);
-                        }
+            
+            // 移除已完成的任务
+            if (questUpdates.completed() != null) {
+                logger.info("✅ 处理已完成任务: {}", questUpdates.completed().size());
+                for (AssessmentResult.Quest quest : questUpdates.completed()) {
+                    if (quest != null && quest.getQuestId() != null
+                            && existingActiveQuestsMap.remove(quest.getQuestId()) != null) {
+                        logger.info("🗑️ 移除已完成任务: questId={}", quest.getQuestId());
                     }
                 }
             }
             
             // 移除过期的任务
-            if (questUpdates.containsKey("expired")) {
-                List<?> expired = (List<?>) questUpdates.get("expired");
-                logger.info("⏰ 处理过期任务: {}", expired.size());
-                
-                for (Object expiredQuest : expired) {
-                    if (expiredQuest instanceof Map) {
-                        String expiredQuestId = getStringValue((Map<String, Object>) expiredQuest, "questId");
-                        if (expiredQuestId != null && existingActiveQuestsMap.containsKey(expiredQuestId)) {
-                            existingActiveQuestsMap.remove(expiredQuestId);
-                            logger.info("🗑️ 移除过期任务: questId={}", expiredQuestId);
-                        }
+            if (questUpdates.expired() != null) {
+                logger.info("⏰ 处理过期任务: {}", questUpdates.expired().size());
+                for (AssessmentResult.Quest quest : questUpdates.expired()) {
+                    if (quest != null && quest.getQuestId() != null
+                            && existingActiveQuestsMap.remove(quest.getQuestId()) != null) {
+                        logger.info("🗑️ 移除过期任务: questId={}", quest.getQuestId());
                     }
                 }
             }
             
             // 更新活跃任务字段
-            if (!existingActiveQuestsMap.isEmpty() || questUpdates.containsKey("completed") || questUpdates.containsKey("expired")) {
+            if (!existingActiveQuestsMap.isEmpty() || questUpdates.completed() != null || questUpdates.expired() != null) {
                 List<Object> finalActiveQuests = new ArrayList<>(existingActiveQuestsMap.values());
-                String newActiveQuestsJson = objectMapper.writeValueAsString(finalActiveQuests);
-                session.setActiveQuests(newActiveQuestsJson);
+                session.setActiveQuests(objectMapper.writeValueAsString(finalActiveQuests));
                 questFieldsUpdated = true;
                 logger.info("✅ 更新活跃任务列表: 总数={}", finalActiveQuests.size());
             }
             
-            // 更新已完成任务列表
-            if (questUpdates.containsKey("completed")) {
-                List<?> completed = (List<?>) questUpdates.get("completed");
-                String currentCompletedQuests = session.getCompletedQuests();
-                Map<String, Object> existingCompletedQuestsMap = new HashMap<>();
-                
-                if (currentCompletedQuests != null && !currentCompletedQuests.isEmpty()) {
-                    try {
-                        List<Object> existingList = objectMapper.readValue(currentCompletedQuests, List.class);
-                        // 转换为Map，以questId为key，便于去重
-                        for (Object quest : existingList) {
-                            if (quest instanceof Map) {
-                                String questId = getStringValue((Map<String, Object>) quest, "questId");
-                                if (questId != null) {
-                                    existingCompletedQuestsMap.put(questId, quest);
-                                }
-                            }
-                        }
-                        logger.info("📋 现有完成任务数量: {}", existingCompletedQuestsMap.size());
-                    } catch (Exception e) {
-                        logger.warn("⚠️ 解析现有完成任务失败: {}", e.getMessage());
-                    }
-                }
-                
-                // 添加新完成的任务（去重）
-                for (Object quest : completed) {
-                    if (quest instanceof Map) {
-                        String questId = getStringValue((Map<String, Object>) quest, "questId");
-                        if (questId != null) {
-                            existingCompletedQuestsMap.put(questId, quest);
-                            logger.info("✅ 添加完成任务: questId={}", questId);
-                        }
+            // 更新已完成任务列表（去重）
+            if (questUpdates.completed() != null) {
+                Map<String, Object> existingCompletedQuestsMap = readQuestsById(session.getCompletedQuests(), "完成");
+                for (AssessmentResult.Quest quest : questUpdates.completed()) {
+                    if (quest != null && quest.getQuestId() != null) {
+                        existingCompletedQuestsMap.put(quest.getQuestId(), quest);
+                        logger.info("✅ 添加完成任务: questId={}", quest.getQuestId());
                     }
                 }
                 
                 List<Object> finalCompletedQuests = new ArrayList<>(existingCompletedQuestsMap.values());
-                String newCompletedQuestsJson = objectMapper.writeValueAsString(finalCompletedQuests);
-                session.setCompletedQuests(newCompletedQuestsJson);
+                session.setCompletedQuests(objectMapper.writeValueAsString(finalCompletedQuests));
                 questFieldsUpdated = true;
                 logger.info("✅ 更新完成任务列表: 总数={}", finalCompletedQuests.size());
             }
@@ -1381,20 +1135,39 @@ public class AssessmentGameLogicProcessor {
         }
     }
     
+    /**
+     * 解析会话中已保存的任务列表，按questId建立有序索引
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readQuestsById(String questsJson, String label) {
+        Map<String, Object> questsById = new LinkedHashMap<>();
+        if (questsJson == null || questsJson.isEmpty()) {
+            return questsById;
+        }
+        try {
+            List<Object> existingList = objectMapper.readValue(questsJson, List.class);
+            for (Object quest : existingList) {
+                if (quest instanceof Map) {
+                    String questId = getStringValue((Map<String, Object>) quest, "questId");
+                    if (questId != null) {
+                        questsById.put(questId, quest);
+                    }
+                }
+            }
+            logger.info("📋 现有{}任务数量: {}", label, questsById.size());
+        } catch (Exception e) {
+            logger.warn("⚠️ 解析现有{}任务失败: {}", label, e.getMessage());
+        }
+        return questsById;
+    }
+    
     
     /**
      * 更新世界状态字段
      */
     @SuppressWarnings("unchecked")
-    private void updateWorldStateFields(ChatSession session, Map<String, Object> assessment) {
+    private void updateWorldStateFields(ChatSession session, Map<String, Object> worldStateUpdates) {
         try {
-            Object worldStateUpdatesObj = assessment.get("worldStateUpdates");
-            if (worldStateUpdatesObj == null) {
-                return;
-            }
-            
-            Map<String, Object> worldStateUpdates = (Map<String, Object>) worldStateUpdatesObj;
-            
             // 获取当前世界状态
             String currentWorldState = session.getWorldState();
             Map<String, Object> worldState = new HashMap<>();
@@ -1418,4 +1191,8 @@ public class AssessmentGameLogicProcessor {
             logger.error("❌ 更新世界状态字段失败: sessionId={}", session.getSessionId(), e);
         }
     }
+    
+    private static int sizeOf(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
 }
@@ -0,0 +1,79 @@
+package com.qncontest.service;
+
+import com.qncontest.entity.ChatSession;
+import com.qncontest.entity.DiceRoll;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单次评估处理的工作单元（每次评估一个实例，非线程安全）
+ * 会话只加载一次，所有修改都作用在内存中的会话上；事件与骰子记录先暂存，
+ * 处理结束后由AssessmentGameLogicProcessor一次性提交（事件交给WorldEventJournal分配连续序号并组提交）。
+ */
+public class AssessmentUnitOfWork {
+
+    private final ChatSession session;
+    private final List<WorldEvent> pendingEvents = new ArrayList<>();
+    private final List<DiceRoll> pendingDiceRolls = new ArrayList<>();
+
+    private boolean sessionDirty = false;
+
+    AssessmentUnitOfWork(ChatSession session) {
+        this.session = session;
+    }
+
+    public ChatSession getSession() {
+        return session;
+    }
+
+    public String getSessionId() {
+        return session.getSessionId();
+    }
+
+    /**
+     * 标记会话已修改，提交时保存
+     */
+    public void markSessionDirty() {
+        sessionDirty = true;
+    }
+
+    public boolean isSessionDirty() {
+        return sessionDirty;
+    }
+
+    /**
+     * 暂存骰子检定记录
+     */
+    public void addDiceRoll(DiceRoll diceRoll) {
+        pendingDiceRolls.add(diceRoll);
+    }
+
+    /**
+     * 暂存事件：以当前（内存中的）会话轮次和情节信息作为快照，序号在提交时分配
+     */
+    public WorldEvent addEvent(WorldEvent.EventType eventType, String eventDataJson) {
+        WorldEvent event = new WorldEvent();
+        event.setSessionId(session.getSessionId());
+        event.setEventType(eventType);
+        event.setEventData(eventDataJson);
+        event.setChecksum(DigestUtils.md5DigestAsHex(eventDataJson.getBytes(StandardCharsets.UTF_8)));
+        event.setTotalRounds(session.getTotalRounds());
+        event.setCurrentArcStartRound(session.getCurrentArcStartRound());
+        event.setCurrentArcName(session.getCurrentArcName());
+        pendingEvents.add(event);
+        return event;
+    }
+
+    public List<WorldEvent> getPendingEvents() {
+        return Collections.unmodifiableList(pendingEvents);
+    }
+
+    public List<DiceRoll> getPendingDiceRolls() {
+        return Collections.unmodifiableList(pendingDiceRolls);
+    }
+}
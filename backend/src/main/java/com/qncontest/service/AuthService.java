@@ -38,6 +38,9 @@ public class AuthService {
     @Autowired
     private AdminConfig adminConfig;
     
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+    
     public AuthResponse login(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
@@ -120,6 +123,17 @@ public class AuthService {
         
         refreshToken = refreshTokenService.verifyExpiration(refreshToken);
         
+        // 已轮换的令牌再次出现，说明令牌可能已泄露：作废整个令牌家族
+        if (refreshToken.isRotated()) {
+            refreshTokenService.revokeFamily(refreshToken);
+            userDetailsService.evictUser(refreshToken.getUser().getUsername());
+            throw new RuntimeException("Refresh token已失效，请重新登录");
+        }
+        
+        // 每次刷新都轮换refresh token，旧令牌随即失效
+        refreshToken = refreshTokenService.rotate(refreshToken)
+                .orElseThrow(() -> new RuntimeException("Refresh token已被使用，请重新登录"));
+        
         User user = refreshToken.getUser();
         String newAccessToken = jwtUtils.generateAccessToken(user);
         
@@ -139,6 +153,9 @@ public class AuthService {
     }
     
     public void logout(String refreshToken) {
+        // 登出时同时清除该用户的认证缓存，后续请求重新从数据库加载用户
+        refreshTokenService.findByToken(refreshToken)
+            .ifPresent(token -> userDetailsService.evictUser(token.getUser().getUsername()));
         refreshTokenService.deleteByToken(refreshToken);
     }
 }
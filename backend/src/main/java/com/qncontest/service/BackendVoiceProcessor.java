@@ -1,22 +1,23 @@
 package com.qncontest.service;
 
+import com.qncontest.config.VoiceConfig;
+import com.qncontest.service.voice.AudioIngestionPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 后端语音处理服务
  * 负责处理音频文件并转换为文本
  * 
- * 注意：这是一个示例实现，实际使用时需要集成真正的语音识别服务
- * 如：Google Cloud Speech-to-Text, Azure Speech Services, 百度语音识别等
+ * 识别由可插拔的SpeechRecognizer实现完成（默认为模拟实现MockSpeechRecognizer），
+ * 接入真实服务（如：Google Cloud Speech-to-Text, Azure Speech Services, 百度语音识别等）时新增实现并修改 ai.voice.recognizer
  */
 @Service
 public class BackendVoiceProcessor {
@@ -26,12 +27,20 @@ public class BackendVoiceProcessor {
     // 支持的音频格式
     private static final String[] SUPPORTED_FORMATS = {".wav", ".mp3", ".m4a", ".webm", ".ogg"};
     
+    @Autowired
+    private AudioIngestionPipeline audioIngestionPipeline;
+    
+    @Autowired
+    private VoiceConfig.VoiceProperties voiceProperties;
+    
     /**
      * 处理音频文件并转换为文本
+     * 音频直接从上传流读入内存缓冲后交给识别管线，大文件才转存为内存映射的临时文件（见AudioIngestionPipeline）
      * 
      * @param audioFile 音频文件
      * @param language 语言代码 (如: "zh-CN", "en-US")
      * @return 识别出的文本
+     * @throws RejectedExecutionException 识别通道已满
      */
     public String processAudioToText(MultipartFile audioFile, String language) {
         if (audioFile == null || audioFile.isEmpty()) {
@@ -45,59 +54,25 @@ public class BackendVoiceProcessor {
         }
         
         try {
-            // 保存临时文件
-            Path tempFile = saveTemporaryFile(audioFile);
+            String recognizedText = audioIngestionPipeline.recognize(audioFile, getFileExtension(fileName).toLowerCase(), language);
             
-            try {
-                // 调用语音识别服务
-                String recognizedText = performSpeechRecognition(tempFile, language);
-                
-                logger.info("语音识别完成: 文件={}, 语言={}, 结果='{}'", 
-                           fileName, language, recognizedText);
-                
-                return recognizedText;
-                
-            } finally {
-                // 清理临时文件
-                Files.deleteIfExists(tempFile);
-            }
+            logger.info("语音识别完成: 文件={}, 语言={}, 结果='{}'", 
+                       fileName, language, recognizedText);
+            
+            return recognizedText;
             
         } catch (IOException e) {
             logger.error("处理音频文件失败: {}", fileName, e);
             throw new RuntimeException("处理音频文件失败", e);
+        } catch (TimeoutException e) {
+            logger.error("语音识别超时: {}", fileName);
+            throw new RuntimeException("语音识别超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("语音识别被中断", e);
         }
     }
     
-    /**
-     * 执行语音识别
-     * 这里是示例实现，实际需要调用真正的语音识别API
-     */
-    private String performSpeechRecognition(Path audioFile, String language) {
-        // TODO: 集成真正的语音识别服务
-        // 例如：
-        // 1. Google Cloud Speech-to-Text
-        // 2. Azure Speech Services  
-        // 3. 百度语音识别
-        // 4. 阿里云语音识别
-        
-        logger.info("模拟语音识别: 文件={}, 语言={}", audioFile, language);
-        
-        // 模拟识别结果（实际使用时删除这部分）
-        return "这是模拟的语音识别结果，请集成真正的语音识别服务";
-    }
-    
-    /**
-     * 保存临时文件
-     */
-    private Path saveTemporaryFile(MultipartFile audioFile) throws IOException {
-        String fileName = UUID.randomUUID().toString() + getFileExtension(audioFile.getOriginalFilename());
-        Path tempFile = Files.createTempFile("voice_", fileName);
-        
-        Files.copy(audioFile.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-        
-        return tempFile;
-    }
-    
     /**
      * 检查文件格式是否支持
      */
@@ -131,8 +106,8 @@ public class BackendVoiceProcessor {
             return false;
         }
         
-        // 检查文件大小（限制为10MB）
-        if (audioFile.getSize() > 10 * 1024 * 1024) {
+        // 检查文件大小（默认限制为10MB）
+        if (audioFile.getSize() > voiceProperties.getMaxFileSizeBytes()) {
             return false;
         }
         
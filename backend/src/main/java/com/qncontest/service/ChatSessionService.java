@@ -7,12 +7,20 @@ import com.qncontest.repository.ChatMessageRepository;
 import com.qncontest.repository.ChatSessionRepository;
 import com.qncontest.dto.ChatResponse;
 import com.qncontest.service.interfaces.ChatSessionManagerInterface;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -28,6 +36,19 @@ public class ChatSessionService implements ChatSessionManagerInterface {
     @Autowired
     private ChatMessageRepository chatMessageRepository;
     
+    @Autowired
+    private SessionSequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
     /**
      * 获取用户的所有聊天会话
      */
@@ -158,8 +179,8 @@ public class ChatSessionService implements ChatSessionManagerInterface {
     
     /**
      * 保存用户消息
+     * 会话轮数更新与消息写入在同一事务中提交；序号冲突时整体回滚、重新对齐序号后重试一次
      */
-    @Transactional
     public ChatMessage saveUserMessage(ChatSession session, String content) {
         // 每次用户请求视为一轮，对应会话总轮数+1
         Integer currentRounds = session.getTotalRounds() == null ? 0 : session.getTotalRounds();
@@ -176,20 +197,42 @@ public class ChatSessionService implements ChatSessionManagerInterface {
             session.setCurrentArcName("初始情节");
         }
         
-        chatSessionRepository.save(session);
-        Integer nextSequenceNumber = getNextSequenceNumber(session);
-        ChatMessage userMessage = new ChatMessage(session, ChatMessage.MessageRole.USER, content, nextSequenceNumber);
-        return chatMessageRepository.save(userMessage);
+        return saveMessageWithRetry(session, ChatMessage.MessageRole.USER, content, true);
     }
     
     /**
-     * 保存AI消息
+     * 保存AI消息（序号冲突时重新对齐序号后重试一次）
      */
-    @Transactional
     public ChatMessage saveAiMessage(ChatSession session, String content) {
-        Integer nextSequenceNumber = getNextSequenceNumber(session);
-        ChatMessage aiMessage = new ChatMessage(session, ChatMessage.MessageRole.ASSISTANT, content, nextSequenceNumber);
-        return chatMessageRepository.save(aiMessage);
+        return saveMessageWithRetry(session, ChatMessage.MessageRole.ASSISTANT, content, false);
+    }
+    
+    /**
+     * 在事务中分配序号并写入消息
+     * 序号由内存分配器分配，其他实例写入或计数器过期都可能与 (session_id, sequence_number) 唯一键冲突；
+     * 冲突时按数据库当前最大序号重新对齐，再用新序号重试一次。已处于外层事务中时冲突会使外层事务回滚，不在其中重试。
+     */
+    private ChatMessage saveMessageWithRetry(ChatSession session, ChatMessage.MessageRole role,
+                                             String content, boolean saveSession) {
+        try {
+            return transactionTemplate.execute(status -> insertMessage(session, role, content, saveSession));
+        } catch (DataIntegrityViolationException e) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw e;
+            }
+            logger.warn("消息序号冲突，重新分配后重试: sessionId={}, error={}", session.getSessionId(), e.getMessage());
+            sequenceAllocator.reseedMessages(session.getSessionId());
+            return transactionTemplate.execute(status -> insertMessage(session, role, content, saveSession));
+        }
+    }
+    
+    private ChatMessage insertMessage(ChatSession session, ChatMessage.MessageRole role,
+                                      String content, boolean saveSession) {
+        if (saveSession) {
+            chatSessionRepository.save(session);
+        }
+        ChatMessage message = new ChatMessage(session, role, content, getNextSequenceNumber(session));
+        return chatMessageRepository.saveAndFlush(message);
     }
     
     /**
@@ -205,6 +248,7 @@ public class ChatSessionService implements ChatSessionManagerInterface {
     
     /**
      * 获取会话及其消息（避免懒加载异常）
+     * 会预加载全部消息，状态读写请使用getSessionById
      */
     @Transactional(readOnly = true)
     public ChatSession getSessionWithMessages(String sessionId) {
@@ -212,11 +256,19 @@ public class ChatSessionService implements ChatSessionManagerInterface {
     }
     
     /**
-     * 根据会话ID获取会话
+     * 根据会话ID获取会话（只加载会话本身的状态字段，不加载消息；事务内重复获取命中一级缓存）
      */
     @Transactional(readOnly = true)
     public ChatSession getSessionById(String sessionId) {
-        return chatSessionRepository.findBySessionIdWithMessages(sessionId).orElse(null);
+        return chatSessionRepository.findById(sessionId).orElse(null);
+    }
+    
+    /**
+     * 获取会话总轮数（只查询单列）
+     */
+    @Transactional(readOnly = true)
+    public Integer getTotalRounds(String sessionId) {
+        return chatSessionRepository.findTotalRoundsBySessionId(sessionId).orElse(null);
     }
     
     /**
@@ -247,6 +299,7 @@ public class ChatSessionService implements ChatSessionManagerInterface {
         
         // 删除会话
         chatSessionRepository.delete(session);
+        sequenceAllocator.forget(sessionId);
         
         logger.info("Deleted chat session {} for user {}", sessionId, user.getUsername());
         return true;
@@ -257,22 +310,29 @@ public class ChatSessionService implements ChatSessionManagerInterface {
      */
     @Transactional(readOnly = true)
     public List<ChatMessage> getSessionHistory(ChatSession session, int maxMessages) {
-        List<ChatMessage> allMessages = chatMessageRepository.findByChatSessionOrderBySequenceNumberAsc(session);
-        
-        // 如果消息数量超过限制，只取最近的消息
-        if (allMessages.size() > maxMessages) {
-            return allMessages.subList(allMessages.size() - maxMessages, allMessages.size());
+        return getRecentMessages(session.getSessionId(), maxMessages);
+    }
+    
+    /**
+     * 获取会话最近的N条消息，按序号升序返回
+     * 只查询末尾的N条（倒序+LIMIT后再反转），耗时与会话总消息数无关
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getRecentMessages(String sessionId, int maxMessages) {
+        if (sessionId == null || maxMessages <= 0) {
+            return List.of();
         }
-        
-        return allMessages;
+        List<ChatMessage> latest = new ArrayList<>(
+            chatMessageRepository.findLatestBySessionId(sessionId, PageRequest.of(0, maxMessages)));
+        Collections.reverse(latest);
+        return latest;
     }
     
     /**
-     * 获取下一个序列号
+     * 获取下一个序列号（由内存分配器分配，不再每次查询最大序号）
      */
     private Integer getNextSequenceNumber(ChatSession session) {
-        Integer maxSequenceNumber = chatMessageRepository.findMaxSequenceNumberBySession(session);
-        return maxSequenceNumber + 1;
+        return sequenceAllocator.nextMessageSequence(session.getSessionId());
     }
     
     /**
@@ -1,6 +1,7 @@
 package com.qncontest.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qncontest.dto.AssessmentResult;
 import com.qncontest.entity.ConvergenceStatus;
 import com.qncontest.repository.ConvergenceStatusRepository;
 import org.slf4j.Logger;
@@ -137,6 +138,53 @@ public class ConvergenceStatusService {
         }
     }
     
+    /**
+     * 一次性应用评估中的收敛状态更新（只加载和保存一次）
+     * @return 实际应用的更新项数量
+     */
+    @Transactional
+    public int applyUpdates(String sessionId, AssessmentResult.ConvergenceUpdates updates) {
+        int updateCount = 0;
+        try {
+            ConvergenceStatus status = getOrCreateConvergenceStatus(sessionId);
+            
+            if (updates.progress() != null) {
+                status.updateProgress(updates.progress());
+                updateCount++;
+            }
+            if (updates.progressIncrement() != null) {
+                status.addProgress(updates.progressIncrement());
+                updateCount++;
+            }
+            if (updates.nearestScenarioId() != null && updates.nearestScenarioTitle() != null
+                    && updates.distanceToNearest() != null) {
+                status.setNearestScenarioId(updates.nearestScenarioId());
+                status.setNearestScenarioTitle(updates.nearestScenarioTitle());
+                status.setDistanceToNearest(updates.distanceToNearest());
+                updateCount++;
+            }
+            if (updates.scenarioProgress() != null) {
+                status.setScenarioProgress(objectMapper.writeValueAsString(updates.scenarioProgress()));
+                updateCount++;
+            }
+            if (updates.activeHints() != null) {
+                status.setActiveHints(objectMapper.writeValueAsString(updates.activeHints()));
+                updateCount++;
+            }
+            
+            if (updateCount > 0) {
+                status.setLastUpdated(java.time.LocalDateTime.now());
+                convergenceStatusRepository.save(status);
+            }
+            
+            logger.info("应用收敛状态更新: sessionId={}, updateCount={}, progress={}", 
+                       sessionId, updateCount, status.getProgress());
+        } catch (Exception e) {
+            logger.error("应用收敛状态更新失败: sessionId={}", sessionId, e);
+        }
+        return updateCount;
+    }
+    
     /**
      * 获取收敛状态
      */
@@ -0,0 +1,208 @@
+package com.qncontest.service;
+
+import com.qncontest.config.RefreshTokenConfig;
+import com.qncontest.repository.RefreshTokenRepository;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 刷新令牌维护
+ * 后台定时分批清理过期的refresh token：每批先按主键取一批过期ID再按ID删除，每批一个短事务，批间停顿，
+ * 避免一次大范围DELETE长时间持有锁。启动时检查表结构，旧表仍保存明文token列时拒绝启动（迁移见migration-refresh-token-hash.sql）。
+ */
+@Component
+public class RefreshTokenMaintenance implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenMaintenance.class);
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RefreshTokenConfig.RefreshTokenMaintenanceProperties properties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ScheduledExecutorService purgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "refresh-token-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalPurged = new AtomicLong();
+    private final AtomicLong totalPurgeMillis = new AtomicLong();
+    /**
+     * 表行数估计值，-1表示未知
+     */
+    private volatile long tableSize = -1;
+    private volatile long lastPurged = 0;
+    private volatile long lastBatches = 0;
+    private volatile long lastDurationMs = 0;
+    private volatile LocalDateTime lastRunAt;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        checkLegacyTokenColumn();
+        if (properties.isPurgeEnabled()) {
+            purgeTimer.scheduleWithFixedDelay(this::purgeExpiredTokens,
+                properties.getPurgeInitialDelaySeconds(), Math.max(1, properties.getPurgeIntervalSeconds()), TimeUnit.SECONDS);
+        }
+        logger.info("刷新令牌维护已启动: purgeEnabled={}, intervalSeconds={}, batchSize={}",
+            properties.isPurgeEnabled(), properties.getPurgeIntervalSeconds(), properties.getPurgeBatchSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeTimer.shutdownNow();
+    }
+
+    /**
+     * 分批清理过期令牌，返回本次删除的行数（已有清理在执行时直接返回0）
+     */
+    public long purgeExpiredTokens() {
+        if (!purging.compareAndSet(false, true)) {
+            return 0;
+        }
+        long started = System.currentTimeMillis();
+        long purged = 0;
+        int batches = 0;
+        try {
+            int batchSize = Math.max(1, properties.getPurgeBatchSize());
+            int maxBatches = Math.max(1, properties.getPurgeMaxBatchesPerRun());
+            // 以开始时间为界，清理过程中新过期的令牌留给下一次
+            LocalDateTime cutoff = LocalDateTime.now();
+            while (batches < maxBatches) {
+                Integer deleted = transactionTemplate.execute(status -> {
+                    List<Long> ids = refreshTokenRepository.findExpiredIds(cutoff, PageRequest.of(0, batchSize));
+                    return ids.isEmpty() ? 0 : refreshTokenRepository.deleteByIdIn(ids);
+                });
+                int count = deleted != null ? deleted : 0;
+                if (count == 0) {
+                    break;
+                }
+                purged += count;
+                batches++;
+                if (count < batchSize) {
+                    break;
+                }
+                if (properties.getPurgeBatchPauseMs() > 0) {
+                    Thread.sleep(properties.getPurgeBatchPauseMs());
+                }
+            }
+            tableSize = estimateTableSize(purged);
+            runs.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            logger.error("清理过期refresh token失败: 已删除={}, error={}", purged, e.getMessage(), e);
+        } finally {
+            long elapsed = System.currentTimeMillis() - started;
+            totalPurged.addAndGet(purged);
+            totalPurgeMillis.addAndGet(elapsed);
+            lastPurged = purged;
+            lastBatches = batches;
+            lastDurationMs = elapsed;
+            lastRunAt = LocalDateTime.now();
+            purging.set(false);
+        }
+        if (purged > 0) {
+            logger.info("清理过期refresh token: 删除={}, 批次={}, 耗时={}ms, 剩余约={}", purged, batches, lastDurationMs, tableSize);
+        }
+        return purged;
+    }
+
+    @Override
+    public String getStatsName() {
+        return "refreshTokens";
+    }
+
+    /**
+     * 获取维护统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long purgeMillis = totalPurgeMillis.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("estimatedTableSize", tableSize);
+        stats.put("runs", runs.get());
+        stats.put("failures", failures.get());
+        stats.put("totalPurged", totalPurged.get());
+        stats.put("purgedPerSecond", purgeMillis > 0 ? totalPurged.get() * 1000.0 / purgeMillis : 0.0);
+        stats.put("lastPurged", lastPurged);
+        stats.put("lastBatches", lastBatches);
+        stats.put("lastDurationMs", lastDurationMs);
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("batchSize", properties.getPurgeBatchSize());
+        return stats;
+    }
+
+    /**
+     * 估计清理后的表行数：读取information_schema.TABLES中InnoDB维护的TABLE_ROWS估计值，不做COUNT(*)全表扫描；
+     * 无法查询时（非MySQL数据库）在上次估计值上减去本次删除数，从未取得估计值时保持未知（-1）
+     */
+    private long estimateTableSize(long purged) {
+        try {
+            Long rows = jdbcTemplate.queryForObject(
+                "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() "
+                    + "AND TABLE_NAME = 'refresh_tokens'", Long.class);
+            if (rows != null) {
+                return rows;
+            }
+        } catch (Exception e) {
+            logger.debug("读取refresh_tokens行数估计值失败: {}", e.getMessage());
+        }
+        long previous = tableSize;
+        return previous >= 0 ? Math.max(0, previous - purged) : -1;
+    }
+
+    /**
+     * 旧表结构保存明文token列时拒绝启动：新版本只按token_hash查找，未迁移的库上所有refresh token都会失效，
+     * 需先执行migration-refresh-token-hash.sql。非MySQL数据库（无法查询information_schema）时跳过检查。
+     */
+    private void checkLegacyTokenColumn() {
+        Integer legacy;
+        try {
+            legacy = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() "
+                    + "AND TABLE_NAME = 'refresh_tokens' AND COLUMN_NAME = 'token'", Integer.class);
+        } catch (Exception e) {
+            logger.debug("跳过refresh_tokens表结构检查: {}", e.getMessage());
+            return;
+        }
+        if (legacy != null && legacy > 0) {
+            throw new IllegalStateException(
+                "refresh_tokens表仍保存明文token列，请先执行migration-refresh-token-hash.sql迁移为摘要存储后再启动");
+        }
+    }
+}
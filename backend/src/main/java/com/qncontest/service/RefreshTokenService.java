@@ -3,47 +3,84 @@ package com.qncontest.service;
 import com.qncontest.entity.RefreshToken;
 import com.qncontest.entity.User;
 import com.qncontest.repository.RefreshTokenRepository;
-import com.qncontest.security.JwtUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * 刷新令牌服务
+ * 令牌以SHA-256摘要存储和查找；刷新时轮换令牌，已轮换的令牌再次出现视为泄露，整个令牌家族作废。
+ */
 @Service
 public class RefreshTokenService {
     
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    
     @Value("${jwt.refresh-token-expiration}")
     private Long refreshTokenExpiration;
     
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
     
-    @Autowired
-    private JwtUtils jwtUtils;
-    
     public Optional<RefreshToken> findByToken(String token) {
-        return refreshTokenRepository.findByToken(token);
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        return refreshTokenRepository.findByTokenHash(hashToken(token));
     }
     
+    @Transactional
     public RefreshToken createRefreshToken(User user) {
         // 删除用户现有的refresh token
         refreshTokenRepository.deleteByUser(user);
         
-        // 创建新的refresh token
-        String token = UUID.randomUUID().toString();
+        // 创建新的refresh token（新的令牌家族）
         LocalDateTime expiryDate = LocalDateTime.now().plusSeconds(refreshTokenExpiration / 1000);
-        
-        RefreshToken refreshToken = new RefreshToken(token, user, expiryDate);
-        return refreshTokenRepository.save(refreshToken);
+        return issue(user, UUID.randomUUID().toString(), expiryDate);
+    }
+    
+    /**
+     * 轮换令牌：标记当前令牌已轮换，并在同一家族中签发新令牌（沿用原过期时间）。
+     * 当前令牌已被其他请求轮换时返回empty
+     */
+    @Transactional
+    public Optional<RefreshToken> rotate(RefreshToken current) {
+        if (refreshTokenRepository.markRotated(current.getId(), LocalDateTime.now()) == 0) {
+            return Optional.empty();
+        }
+        String familyId = current.getFamilyId() != null ? current.getFamilyId() : UUID.randomUUID().toString();
+        return Optional.of(issue(current.getUser(), familyId, current.getExpiryDate()));
+    }
+    
+    /**
+     * 作废令牌所在的整个家族（在独立事务中提交，不受调用方回滚影响）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void revokeFamily(RefreshToken token) {
+        if (token.getFamilyId() == null) {
+            refreshTokenRepository.deleteByTokenHash(token.getTokenHash());
+            return;
+        }
+        int revoked = refreshTokenRepository.deleteByFamilyId(token.getFamilyId());
+        logger.warn("检测到已轮换的refresh token被重复使用，作废令牌家族: familyId={}, 作废数量={}",
+            token.getFamilyId(), revoked);
     }
     
     public RefreshToken verifyExpiration(RefreshToken token) {
         if (token.isExpired()) {
-            refreshTokenRepository.deleteByToken(token.getToken());
+            refreshTokenRepository.deleteByTokenHash(token.getTokenHash());
             throw new RuntimeException("Refresh token已过期，请重新登录");
         }
         return token;
@@ -56,11 +93,32 @@ public class RefreshTokenService {
     
     @Transactional
     public void deleteByToken(String token) {
-        refreshTokenRepository.deleteByToken(token);
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        refreshTokenRepository.deleteByTokenHash(hashToken(token));
     }
     
     @Transactional
     public void deleteExpiredTokens() {
         refreshTokenRepository.deleteExpiredTokens(LocalDateTime.now());
     }
+    
+    /**
+     * 计算令牌的SHA-256摘要（64位小写十六进制，与MySQL SHA2(token, 256)一致）
+     */
+    public static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private RefreshToken issue(User user, String familyId, LocalDateTime expiryDate) {
+        String token = UUID.randomUUID().toString();
+        RefreshToken refreshToken = new RefreshToken(token, hashToken(token), familyId, user, expiryDate);
+        return refreshTokenRepository.save(refreshToken);
+    }
 }
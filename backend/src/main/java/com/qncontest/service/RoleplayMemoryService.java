@@ -2,27 +2,36 @@ package com.qncontest.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qncontest.config.MemoryConfig;
 import com.qncontest.entity.ChatSession;
 import com.qncontest.entity.ChatMessage;
+import com.qncontest.entity.SessionMemory;
 import com.qncontest.entity.WorldEvent;
 import com.qncontest.repository.ChatSessionRepository;
 import com.qncontest.repository.ChatMessageRepository;
+import com.qncontest.repository.SessionMemoryRepository;
 import com.qncontest.repository.WorldEventRepository;
 import com.qncontest.service.interfaces.MemoryManagerInterface;
+import com.qncontest.service.memory.MemoryIndexCache;
+import com.qncontest.service.memory.SemanticMemoryStore;
+import com.qncontest.service.memory.SessionMemoryIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 角色扮演记忆管理服务
  * 负责智能管理角色记忆、世界状态和重要事件
- * 基于现有的ChatSession、WorldEvent、WorldState表结构
+ * 基于现有的ChatSession、WorldEvent、WorldState表结构，记忆本身保存在独立的session_memories表中（只追加写入）
  */
 @Service
 public class RoleplayMemoryService implements MemoryManagerInterface {
@@ -44,6 +53,21 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
 
     @Autowired
     private WorldEventRepository worldEventRepository;
+
+    @Autowired
+    private SessionMemoryRepository sessionMemoryRepository;
+
+    @Autowired
+    private WorldEventJournal worldEventJournal;
+
+    @Autowired
+    private MemoryIndexCache memoryIndexCache;
+
+    @Autowired
+    private SemanticMemoryStore semanticMemoryStore;
+
+    @Autowired
+    private MemoryConfig.MemoryProperties memoryProperties;
     
     /**
      * 角色记忆结构
@@ -137,7 +161,6 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
             memoryEvent.setSessionId(sessionId);
             memoryEvent.setEventType(WorldEvent.EventType.SYSTEM_EVENT);
             memoryEvent.setEventData(objectMapper.writeValueAsString(eventData));
-            memoryEvent.setSequence(getNextEventSequence(sessionId));
             memoryEvent.setChecksum(generateChecksum(eventData));
             // 记录当前会话情节快照
             chatSessionRepository.findById(sessionId).ifPresent(cs -> {
@@ -146,33 +169,22 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
                 memoryEvent.setCurrentArcName(cs.getCurrentArcName());
             });
 
-            worldEventRepository.save(memoryEvent);
-
-            // 2. 更新ChatSession中的记忆数据
-            Optional<ChatSession> sessionOpt = chatSessionRepository.findById(sessionId);
-            if (sessionOpt.isPresent()) {
-                ChatSession session = sessionOpt.get();
-
-                // 获取现有的记忆数据
-                Map<String, Object> memories = parseMemoriesFromSession(session);
-                memories.computeIfAbsent(type, k -> new ArrayList<Map<String, Object>>());
-
-                // 添加新记忆
-                Map<String, Object> newMemory = new HashMap<>();
-                newMemory.put("content", content);
-                newMemory.put("importance", importance);
-                newMemory.put("timestamp", LocalDateTime.now());
+            saveWorldEvent(memoryEvent);
 
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> memoryList = (List<Map<String, Object>>) memories.get(type);
-                memoryList.add(newMemory);
-
-                // 清理低重要性记忆
-                cleanupMemories(memories, type);
+            // 2. 追加写入记忆表（不再读写ChatSession.worldState），超过数量上限时在数据库中清理低重要性记忆
+            SessionMemory saved = sessionMemoryRepository.save(new SessionMemory(sessionId, type, content, importance));
+            long typeCount = cleanupMemories(sessionId, type);
 
-                // 保存更新后的记忆数据
-                session.setWorldState(objectMapper.writeValueAsString(memories));
-                chatSessionRepository.save(session);
+            if (typeCount == 1 && sessionMemoryRepository.countBySessionId(sessionId) == 1
+                    && importLegacyMemories(sessionId) > 0) {
+                // 会话第一次写入记忆时迁移旧数据，索引需要按迁移后的数据重建
+                memoryIndexCache.invalidate(sessionId);
+                semanticMemoryStore.invalidate(sessionId);
+            } else {
+                // 增量更新记忆索引（清理规则与索引一致）
+                MemoryEntry entry = toMemoryEntry(saved);
+                memoryIndexCache.add(sessionId, entry);
+                semanticMemoryStore.add(sessionId, entry);
             }
 
             logger.info("记忆存储成功: sessionId={}, type={}, content={}", sessionId, type, content);
@@ -183,60 +195,86 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
     
     /**
      * 检索相关记忆
+     * 默认使用会话记忆倒排索引（中文二字组分词、BM25结合重要性与新近程度排序）；
+     * ai.memory.retrieval=semantic时使用向量索引（余弦相似度结合重要性与新近程度排序）。索引首次使用时从会话记忆数据构建
      */
     public List<MemoryEntry> retrieveRelevantMemories(String sessionId, String query, int maxResults) {
         try {
-            // 从ChatSession中获取记忆数据
-            Optional<ChatSession> sessionOpt = chatSessionRepository.findById(sessionId);
-            if (!sessionOpt.isPresent()) {
-                return new ArrayList<>();
-            }
-
-            ChatSession session = sessionOpt.get();
-            Map<String, Object> memories = parseMemoriesFromSession(session);
-
-            // 合并所有类型的记忆，兼容多种数据结构
-            List<Object> allMemories = new ArrayList<>();
-            for (Object memoryValue : memories.values()) {
-                if (memoryValue instanceof List) {
-                    List<?> list = (List<?>) memoryValue;
-                    allMemories.addAll(list);
-                } else if (memoryValue instanceof Map) {
-                    allMemories.add(memoryValue);
-                } else if (memoryValue != null) {
-                    // 兜底：字符串或其它类型
-                    allMemories.add(memoryValue);
-                }
+            if (MemoryConfig.RETRIEVAL_SEMANTIC.equalsIgnoreCase(memoryProperties.getRetrieval())) {
+                return semanticMemoryStore.search(sessionId, query, maxResults, () -> loadAllMemories(sessionId));
             }
-
-            if (allMemories.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            // 简单的关键词匹配（后续可以用向量相似度）
-            return allMemories.stream()
-                    .filter(memoryObj -> {
-                        String contentStr;
-                        if (memoryObj instanceof Map) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> mapObj = (Map<String, Object>) memoryObj;
-                            Object content = mapObj.get("content");
-                            contentStr = content == null ? "" : content.toString();
-                        } else {
-                            contentStr = memoryObj.toString();
-                        }
-                        return isRelevant(contentStr, query);
-                    })
-                    .map(this::convertToMemoryEntryFromAny)
-                    .sorted((a, b) -> Double.compare(b.getImportance(), a.getImportance()))
-                    .limit(maxResults)
-                    .collect(Collectors.toList());
-
+            return memoryIndexCache.search(sessionId, query, maxResults, () -> loadAllMemories(sessionId));
         } catch (Exception e) {
             logger.error("检索记忆失败: sessionId={}", sessionId, e);
             return new ArrayList<>();
         }
     }
+
+    /**
+     * 读取会话的全部记忆（用于构建索引），记忆表中没有数据时先迁移worldState中的旧记忆
+     */
+    private List<MemoryEntry> loadAllMemories(String sessionId) {
+        List<SessionMemory> rows = sessionMemoryRepository.findBySessionIdOrderByIdAsc(sessionId);
+        if (rows.isEmpty() && importLegacyMemories(sessionId) > 0) {
+            rows = sessionMemoryRepository.findBySessionIdOrderByIdAsc(sessionId);
+        }
+        List<MemoryEntry> entries = new ArrayList<>(rows.size());
+        for (SessionMemory row : rows) {
+            entries.add(toMemoryEntry(row));
+        }
+        return entries;
+    }
+
+    /**
+     * 迁移旧版本保存在ChatSession.worldState中的记忆（按类型分组、条目含content的列表）
+     * 只读取worldState，不修改它（该列归世界状态所有）
+     * @return 迁移的记忆数量
+     */
+    private int importLegacyMemories(String sessionId) {
+        Optional<ChatSession> sessionOpt = chatSessionRepository.findById(sessionId);
+        if (!sessionOpt.isPresent()) {
+            return 0;
+        }
+        List<SessionMemory> legacy = new ArrayList<>();
+        Map<String, Object> memories = parseMemoriesFromSession(sessionOpt.get());
+        for (Map.Entry<String, Object> group : memories.entrySet()) {
+            if (!(group.getValue() instanceof List)) {
+                continue;
+            }
+            for (Object item : (List<?>) group.getValue()) {
+                if (!(item instanceof Map) || !((Map<?, ?>) item).containsKey("content")) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                MemoryEntry entry = convertToMemoryEntry((Map<String, Object>) item);
+                if (entry.getContent().isEmpty()) {
+                    continue;
+                }
+                // 旧数据按类型分组保存，条目本身不含type
+                String type = ((Map<?, ?>) item).containsKey("type") ? entry.getType() : group.getKey();
+                SessionMemory memory = new SessionMemory(sessionId, type, entry.getContent(), entry.getImportance());
+                // created_at与新写入的记忆一样保存服务器本地时间，读取时按ZoneId.systemDefault()换算（见toMemoryEntry）
+                memory.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getTimestamp()), ZoneId.systemDefault()));
+                legacy.add(memory);
+            }
+        }
+        if (legacy.isEmpty()) {
+            return 0;
+        }
+        legacy.sort(Comparator.comparing(SessionMemory::getCreatedAt));
+        sessionMemoryRepository.saveAll(legacy);
+        for (String type : legacy.stream().map(SessionMemory::getMemoryType).collect(Collectors.toSet())) {
+            cleanupMemories(sessionId, type);
+        }
+        logger.info("已迁移worldState中的旧记忆: sessionId={}, 数量={}", sessionId, legacy.size());
+        return legacy.size();
+    }
+
+    private MemoryEntry toMemoryEntry(SessionMemory memory) {
+        MemoryEntry entry = new MemoryEntry(memory.getContent(), memory.getMemoryType(), memory.getImportance());
+        entry.setTimestamp(memory.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        return entry;
+    }
     
     /**
      * 评估记忆重要性
@@ -490,19 +528,14 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
      */
     private String buildRecentMessagesContext(String sessionId, String currentMessage) {
         try {
-            // 获取最近的消息历史（最多5条）
-            List<ChatMessage> recentMessages = chatMessageRepository.findByChatSessionOrderBySequenceNumberAsc(
-                chatSessionRepository.findById(sessionId).orElse(null)
-            );
+            // 获取最近的消息历史（最多5条，只查询末尾5条）
+            List<ChatMessage> lastMessages = new ArrayList<>(
+                chatMessageRepository.findLatestBySessionId(sessionId, PageRequest.of(0, 5)));
             
-            if (recentMessages == null || recentMessages.isEmpty()) {
+            if (lastMessages.isEmpty()) {
                 return "";
             }
-            
-            // 取最近的几条消息
-            List<ChatMessage> lastMessages = recentMessages.stream()
-                .skip(Math.max(0, recentMessages.size() - 5))
-                .collect(Collectors.toList());
+            Collections.reverse(lastMessages);
             
             StringBuilder context = new StringBuilder();
             
@@ -532,6 +565,7 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
     private String buildImportantEventsContext(String sessionId, String currentMessage) {
         try {
             // 获取最近的重要事件（包含多种事件类型，最多10条）
+            worldEventJournal.awaitFlushed(sessionId);
             List<WorldEvent> recentEvents = worldEventRepository.findBySessionIdOrderByTimestampDesc(sessionId);
             
             if (recentEvents == null || recentEvents.isEmpty()) {
@@ -680,11 +714,10 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
     }
 
     /**
-     * 获取下一个事件序列号
+     * 交给世界事件日志写入器（分配序号，组提交写入）
      */
-    private Integer getNextEventSequence(String sessionId) {
-        Optional<WorldEvent> lastEvent = worldEventRepository.findTopBySessionIdOrderBySequenceDesc(sessionId);
-        return lastEvent.map(event -> event.getSequence() + 1).orElse(1);
+    private void saveWorldEvent(WorldEvent event) {
+        worldEventJournal.append(event);
     }
 
     /**
@@ -728,11 +761,11 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
             try {
                 Object timestamp = memoryMap.get("timestamp");
                 if (timestamp instanceof String) {
-                    // 尝试作为字符串解析
-                    entry.setTimestamp(LocalDateTime.parse((String) timestamp).toEpochSecond(java.time.ZoneOffset.UTC) * 1000);
+                    // 尝试作为字符串解析（旧数据保存的是服务器本地时间）
+                    entry.setTimestamp(LocalDateTime.parse((String) timestamp).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
                 } else if (timestamp instanceof LocalDateTime) {
                     // 直接作为 LocalDateTime 转换
-                    entry.setTimestamp(((LocalDateTime) timestamp).toEpochSecond(java.time.ZoneOffset.UTC) * 1000);
+                    entry.setTimestamp(((LocalDateTime) timestamp).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
                 } else if (timestamp instanceof Long) {
                     // 作为毫秒时间戳
                     entry.setTimestamp((Long) timestamp);
@@ -754,47 +787,19 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
     }
 
     /**
-     * 将任意对象转换为MemoryEntry，兼容字符串/Map等
-     */
-    @SuppressWarnings("unchecked")
-    private MemoryEntry convertToMemoryEntryFromAny(Object obj) {
-        if (obj instanceof Map) {
-            return convertToMemoryEntry((Map<String, Object>) obj);
-        }
-        // 兜底字符串
-        String content = obj == null ? "" : obj.toString();
-        MemoryEntry entry = new MemoryEntry(content, "TEXT", 0.5);
-        entry.setTimestamp(System.currentTimeMillis());
-        return entry;
-    }
-
-    /**
-     * 清理低重要性记忆
+     * 清理低重要性记忆：某类型数量超过上限时，在数据库中只保留重要性最高的若干条
+     * @return 清理后该类型的记忆数量
      */
-    private void cleanupMemories(Map<String, Object> memories, String type) {
-        if (!memories.containsKey(type)) {
-            return;
-        }
-
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> memoryList = (List<Map<String, Object>>) memories.get(type);
-        if (memoryList == null || memoryList.size() <= 20) { // 降低清理阈值
-            return;
+    private long cleanupMemories(String sessionId, String type) {
+        long count = sessionMemoryRepository.countBySessionIdAndMemoryType(sessionId, type);
+        if (count <= SessionMemoryIndex.TYPE_CLEANUP_THRESHOLD) {
+            return count;
         }
-
-        // 按重要性排序，保留最重要的记忆
-        memoryList.sort((a, b) -> Double.compare(
-            ((Number) b.getOrDefault("importance", 0.5)).doubleValue(),
-            ((Number) a.getOrDefault("importance", 0.5)).doubleValue()
-        ));
-
-        // 只保留前15个最重要的记忆
-        if (memoryList.size() > 15) {
-            memoryList = memoryList.subList(0, 15);
-            memories.put(type, memoryList);
-        }
-
-        logger.debug("清理记忆完成: type={}, 保留数量={}", type, memoryList.size());
+        List<Long> keepIds = sessionMemoryRepository.findTopIdsBySessionIdAndMemoryType(
+            sessionId, type, PageRequest.of(0, SessionMemoryIndex.TYPE_RETAIN_COUNT));
+        int deleted = sessionMemoryRepository.deleteBySessionIdAndMemoryTypeExcept(sessionId, type, keepIds);
+        logger.debug("清理记忆完成: sessionId={}, type={}, 删除数量={}, 保留数量={}", sessionId, type, deleted, keepIds.size());
+        return keepIds.size();
     }
     
     /**
@@ -802,44 +807,20 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
      */
     public String getMemorySummary(String sessionId) {
         try {
-            Optional<ChatSession> sessionOpt = chatSessionRepository.findById(sessionId);
-            if (!sessionOpt.isPresent()) {
-                return "暂无重要记忆";
+            List<String> types = sessionMemoryRepository.findMemoryTypesBySessionId(sessionId);
+            if (types.isEmpty() && importLegacyMemories(sessionId) > 0) {
+                types = sessionMemoryRepository.findMemoryTypesBySessionId(sessionId);
             }
-
-            ChatSession session = sessionOpt.get();
-            Map<String, Object> memories = parseMemoriesFromSession(session);
-
-            if (memories.isEmpty()) {
+            if (types.isEmpty()) {
                 return "暂无重要记忆";
             }
 
-            // 按类型分组
-            Map<String, List<Map<String, Object>>> groupedMemories = new HashMap<>();
-            for (String type : memories.keySet()) {
-                Object memoryList = memories.get(type);
-                if (memoryList instanceof List) {
-                    @SuppressWarnings("unchecked")
-                    List<Map<String, Object>> typedMemoryList = (List<Map<String, Object>>) memoryList;
-                    groupedMemories.put(type, typedMemoryList);
-                }
-            }
-
+            // 按类型分组，每种类型取重要性最高的3条
             StringBuilder summary = new StringBuilder();
-
-            for (Map.Entry<String, List<Map<String, Object>>> group : groupedMemories.entrySet()) {
-                summary.append("### ").append(group.getKey()).append("\n");
-
-                List<Map<String, Object>> sortedMemories = group.getValue().stream()
-                        .sorted((a, b) -> Double.compare(
-                            ((Number) b.getOrDefault("importance", 0.5)).doubleValue(),
-                            ((Number) a.getOrDefault("importance", 0.5)).doubleValue()
-                        ))
-                        .limit(3)
-                        .collect(Collectors.toList());
-
-                for (Map<String, Object> memory : sortedMemories) {
-                    summary.append("- ").append(memory.get("content")).append("\n");
+            for (String type : types) {
+                summary.append("### ").append(type).append("\n");
+                for (SessionMemory memory : sessionMemoryRepository.findTopBySessionIdAndMemoryType(sessionId, type, PageRequest.of(0, 3))) {
+                    summary.append("- ").append(memory.getContent()).append("\n");
                 }
                 summary.append("\n");
             }
@@ -851,32 +832,6 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
         }
     }
     
-    /**
-     * 简单的相关性判断
-     */
-    private boolean isRelevant(String content, String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return true;
-        }
-
-        if (content == null || content.trim().isEmpty()) {
-            return false;
-        }
-
-        String lowerContent = content.toLowerCase();
-        String lowerQuery = query.toLowerCase();
-
-        // 简单的关键词匹配
-        String[] queryWords = lowerQuery.split("\\s+");
-        for (String word : queryWords) {
-            if (word.length() > 2 && lowerContent.contains(word)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     /**
      * 更新角色关系（使用WorldEvent记录）
      */
@@ -896,7 +851,6 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
             relationshipEvent.setSessionId(sessionId);
             relationshipEvent.setEventType(WorldEvent.EventType.CHARACTER_UPDATE);
             relationshipEvent.setEventData(objectMapper.writeValueAsString(eventData));
-            relationshipEvent.setSequence(getNextEventSequence(sessionId));
             relationshipEvent.setChecksum(generateChecksum(eventData));
             chatSessionRepository.findById(sessionId).ifPresent(cs -> {
                 relationshipEvent.setTotalRounds(cs.getTotalRounds());
@@ -904,7 +858,7 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
                 relationshipEvent.setCurrentArcName(cs.getCurrentArcName());
             });
 
-            worldEventRepository.save(relationshipEvent);
+            saveWorldEvent(relationshipEvent);
         } catch (Exception e) {
             logger.error("记录角色关系事件失败: sessionId={}", sessionId, e);
         }
@@ -929,7 +883,6 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
             stateEvent.setSessionId(sessionId);
             stateEvent.setEventType(WorldEvent.EventType.STATE_CHANGE);
             stateEvent.setEventData(objectMapper.writeValueAsString(eventData));
-            stateEvent.setSequence(getNextEventSequence(sessionId));
             stateEvent.setChecksum(generateChecksum(eventData));
             chatSessionRepository.findById(sessionId).ifPresent(cs -> {
                 stateEvent.setTotalRounds(cs.getTotalRounds());
@@ -937,7 +890,7 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
                 stateEvent.setCurrentArcName(cs.getCurrentArcName());
             });
 
-            worldEventRepository.save(stateEvent);
+            saveWorldEvent(stateEvent);
         } catch (Exception e) {
             logger.error("记录世界状态事件失败: sessionId={}", sessionId, e);
         }
@@ -947,6 +900,7 @@ public class RoleplayMemoryService implements MemoryManagerInterface {
      * 获取会话的所有记忆事件
      */
     public List<WorldEvent> getMemoryEvents(String sessionId) {
+        worldEventJournal.awaitFlushed(sessionId);
         return worldEventRepository.findBySessionIdAndEventTypeOrderByTimestampDesc(sessionId, WorldEvent.EventType.SYSTEM_EVENT);
     }
 
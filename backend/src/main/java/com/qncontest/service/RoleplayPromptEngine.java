@@ -2,9 +2,12 @@ package com.qncontest.service;
 
 import com.qncontest.service.interfaces.PromptBuilderInterface;
 import com.qncontest.service.prompt.PromptBuilder;
+import com.qncontest.service.prompt.PromptSection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * 角色扮演智能提示引擎 - 基于接口的重构版本
  * 作为提示词构建的统一入口，通过接口委托给具体的服务实现
@@ -40,5 +43,12 @@ public class RoleplayPromptEngine {
         return promptBuilder.buildDMAwarePrompt(context);
     }
     
+    /**
+     * 按段落构建DM智能评估提示词
+     */
+    public List<PromptSection> buildDMAwarePromptSections(RoleplayContext context) {
+        return promptBuilder.buildDMAwarePromptSections(context);
+    }
+    
     
 }
@@ -8,7 +8,6 @@ import com.qncontest.entity.User;
 import com.qncontest.entity.WorldEvent;
 import com.qncontest.entity.WorldState;
 import com.qncontest.repository.DiceRollRepository;
-import com.qncontest.repository.WorldEventRepository;
 import com.qncontest.repository.WorldStateRepository;
 import com.qncontest.service.interfaces.WorldStateManagerInterface;
 import org.slf4j.Logger;
@@ -17,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,9 +36,6 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
     @Autowired
     private WorldStateRepository worldStateRepository;
     
-    @Autowired
-    private WorldEventRepository worldEventRepository;
-    
     @Autowired
     private DiceRollRepository diceRollRepository;
 
@@ -47,6 +44,9 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
     
     @Autowired
     private ChatSessionService chatSessionService;
+    
+    @Autowired
+    private WorldEventJournal worldEventJournal;
 
     private final Random random = new Random();
     
@@ -151,39 +151,19 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
         
         try {
             // 获取当前会话
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
+            ChatSession session = chatSessionService.getSessionById(sessionId);
             if (session == null) {
                 logger.warn("会话 {} 不存在，无法更新世界状态", sessionId);
                 return;
             }
             
-            boolean hasUpdates = false;
-            
-            // 更新世界状态
-            if (newWorldState != null && !newWorldState.trim().isEmpty()) {
-                logger.info("更新会话世界状态: sessionId={}", sessionId);
-                session.setWorldState(newWorldState);
-                hasUpdates = true;
-            }
-            
-            // 更新技能状态
-            if (skillsState != null && !skillsState.trim().isEmpty()) {
-                logger.info("更新会话技能状态: sessionId={}", sessionId);
-                session.setSkillsState(skillsState);
-                hasUpdates = true;
-            }
-            
-            if (hasUpdates) {
-                // 更新版本号和校验和
-                session.setVersion(session.getVersion() + 1);
-                session.setChecksum(calculateSessionChecksum(session));
-                
+            String stateChangeEventData = applyWorldStateUpdate(session, newWorldState, skillsState);
+            if (stateChangeEventData != null) {
                 // 保存会话
                 chatSessionService.saveSession(session);
                 
                 // 记录状态变更事件
-                recordWorldEvent(sessionId, WorldEvent.EventType.STATE_CHANGE, 
-                               createStateChangeEventData(session.getVersion() - 1, session.getVersion(), newWorldState, skillsState));
+                recordWorldEvent(sessionId, WorldEvent.EventType.STATE_CHANGE, stateChangeEventData);
                 
                 logger.info("世界状态更新完成: sessionId={}, version={}", sessionId, session.getVersion());
             } else {
@@ -196,6 +176,41 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
         }
     }
     
+    /**
+     * 在已加载的会话上应用世界状态更新（只修改内存中的会话，不保存也不记录事件）
+     * @param session 会话
+     * @param newWorldState 新的世界状态
+     * @param skillsState 技能状态
+     * @return 状态变更事件数据，无更新时返回null
+     */
+    @Override
+    public String applyWorldStateUpdate(ChatSession session, String newWorldState, String skillsState) {
+        boolean hasUpdates = false;
+        
+        // 更新世界状态
+        if (newWorldState != null && !newWorldState.trim().isEmpty()) {
+            logger.info("更新会话世界状态: sessionId={}", session.getSessionId());
+            session.setWorldState(newWorldState);
+            hasUpdates = true;
+        }
+        
+        // 更新技能状态
+        if (skillsState != null && !skillsState.trim().isEmpty()) {
+            logger.info("更新会话技能状态: sessionId={}", session.getSessionId());
+            session.setSkillsState(skillsState);
+            hasUpdates = true;
+        }
+        
+        if (!hasUpdates) {
+            return null;
+        }
+        
+        // 更新版本号和校验和
+        session.setVersion(session.getVersion() + 1);
+        session.setChecksum(calculateSessionChecksum(session));
+        return createStateChangeEventData(session.getVersion() - 1, session.getVersion(), newWorldState, skillsState);
+    }
+    
     /**
      * 初始化角色数据
      * @param sessionId 会话ID
@@ -211,7 +226,7 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
         
         try {
             // 获取当前会话
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
+            ChatSession session = chatSessionService.getSessionById(sessionId);
             if (session == null) {
                 logger.warn("会话 {} 不存在，无法初始化角色", sessionId);
                 throw new RuntimeException("会话不存在");
@@ -295,7 +310,7 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
         
         try {
             // 获取当前会话
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
+            ChatSession session = chatSessionService.getSessionById(sessionId);
             if (session == null) {
                 logger.warn("会话 {} 不存在，无法修复角色属性", sessionId);
                 throw new RuntimeException("会话不存在");
@@ -474,7 +489,7 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
         logger.debug("获取世界状态摘要: sessionId={}", sessionId);
         
         try {
-            ChatSession session = chatSessionService.getSessionWithMessages(sessionId);
+            ChatSession session = chatSessionService.getSessionById(sessionId);
             if (session == null) {
                 return "{}";
             }
@@ -576,29 +591,17 @@ public class RoleplayWorldService implements WorldStateManagerInterface {
     }
     
     /**
-     * 记录世界事件
+     * 记录世界事件（交给世界事件日志写入器分配序号并组提交写入）
      */
     private void recordWorldEvent(String sessionId, WorldEvent.EventType eventType, String eventData) {
         try {
-            // 获取下一个事件序号
-            Optional<Integer> maxSequence = worldEventRepository.findMaxSequenceBySessionId(sessionId);
-            int nextSequence = maxSequence.orElse(0) + 1;
-            
-            // 创建事件记录
             WorldEvent event = new WorldEvent();
             event.setSessionId(sessionId);
             event.setEventType(eventType);
             event.setEventData(eventData);
-            event.setSequence(nextSequence);
+            event.setChecksum(DigestUtils.md5DigestAsHex(eventData.getBytes(StandardCharsets.UTF_8)));
             event.setTimestamp(LocalDateTime.now());
-            
-            // 计算事件校验和
-            String checksum = DigestUtils.md5DigestAsHex((sessionId + nextSequence + eventData).getBytes());
-            event.setChecksum(checksum);
-            
-            // 保存事件
-            worldEventRepository.save(event);
-            
+            worldEventJournal.append(event);
         } catch (Exception e) {
             logger.error("记录世界事件失败: sessionId={}, eventType={}", sessionId, eventType, e);
         }
@@ -0,0 +1,217 @@
+package com.qncontest.service;
+
+import com.qncontest.repository.ChatMessageRepository;
+import com.qncontest.repository.WorldEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 会话级序号分配器（聊天消息序号、世界事件序号）
+ * 每个会话的当前最大序号只在首次使用时从数据库读取一次，之后在内存中用原子计数器分配，
+ * 写入前不再执行MAX(sequence)查询，同一进程内的并发写入也不会分配到相同的序号。
+ * 首次加载按会话ID分段加锁，分配本身无锁；写入遇到唯一键冲突（如其他实例写入）时调用reseed重新对齐，序号只增不减。
+ * 长时间未使用的会话会在分配过程中被顺带清理。
+ */
+@Component
+public class SessionSequenceAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionSequenceAllocator.class);
+
+    /**
+     * 会话计数器空闲多久后可被清理
+     */
+    private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    /**
+     * 每分配多少次检查一次空闲会话
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private static final int SEED_LOCK_STRIPES = 64;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private WorldEventRepository worldEventRepository;
+
+    private final SequenceSpace messageSequences = new SequenceSpace("chat_messages",
+        sessionId -> chatMessageRepository.findMaxSequenceNumberBySessionId(sessionId));
+
+    private final SequenceSpace eventSequences = new SequenceSpace("world_events",
+        sessionId -> worldEventRepository.findMaxSequenceBySessionId(sessionId).orElse(0));
+
+    /**
+     * 分配下一个聊天消息序号
+     */
+    public int nextMessageSequence(String sessionId) {
+        return messageSequences.reserve(sessionId, 1);
+    }
+
+    /**
+     * 分配下一个世界事件序号
+     */
+    public int nextEventSequence(String sessionId) {
+        return eventSequences.reserve(sessionId, 1);
+    }
+
+    /**
+     * 一次分配连续的多个世界事件序号
+     * @return 第一个序号，其余依次加1
+     */
+    public int reserveEventSequences(String sessionId, int count) {
+        return eventSequences.reserve(sessionId, count);
+    }
+
+    /**
+     * 世界事件序号冲突后，按数据库当前最大值重新对齐
+     */
+    public void reseedEvents(String sessionId) {
+        eventSequences.reseed(sessionId);
+    }
+
+    /**
+     * 聊天消息序号与数据库不一致时重新对齐
+     */
+    public void reseedMessages(String sessionId) {
+        messageSequences.reseed(sessionId);
+    }
+
+    /**
+     * 会话删除后丢弃其计数器
+     */
+    public void forget(String sessionId) {
+        messageSequences.forget(sessionId);
+        eventSequences.forget(sessionId);
+    }
+
+    /**
+     * 获取分配器统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("messages", messageSequences.getStats());
+        stats.put("events", eventSequences.getStats());
+        return stats;
+    }
+
+    /**
+     * 一类序号的全部会话计数器
+     */
+    private static class SequenceSpace {
+
+        private final String name;
+        private final Function<String, Integer> maxLoader;
+        private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+        private final Object[] seedLocks = new Object[SEED_LOCK_STRIPES];
+
+        private final AtomicInteger allocationsSinceSweep = new AtomicInteger();
+        private final AtomicLong seeds = new AtomicLong();
+        private final AtomicLong reseeds = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private SequenceSpace(String name, Function<String, Integer> maxLoader) {
+            this.name = name;
+            this.maxLoader = maxLoader;
+            for (int i = 0; i < seedLocks.length; i++) {
+                seedLocks[i] = new Object();
+            }
+        }
+
+        int reserve(String sessionId, int count) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("count必须大于0: " + count);
+            }
+            Counter counter = counters.get(sessionId);
+            if (counter == null) {
+                counter = seed(sessionId);
+            }
+            counter.lastUsed = System.nanoTime();
+            int first = counter.value.getAndAdd(count) + 1;
+            if (allocationsSinceSweep.incrementAndGet() >= SWEEP_INTERVAL) {
+                allocationsSinceSweep.set(0);
+                evictIdle();
+            }
+            return first;
+        }
+
+        void reseed(String sessionId) {
+            synchronized (lockFor(sessionId)) {
+                int dbMax = loadMax(sessionId);
+                Counter counter = counters.computeIfAbsent(sessionId, id -> new Counter(dbMax));
+                int current = counter.value.accumulateAndGet(dbMax, Math::max);
+                counter.lastUsed = System.nanoTime();
+                reseeds.incrementAndGet();
+                logger.warn("序号已重新对齐: type={}, sessionId={}, dbMax={}, current={}", name, sessionId, dbMax, current);
+            }
+        }
+
+        void forget(String sessionId) {
+            counters.remove(sessionId);
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("trackedSessions", counters.size());
+            stats.put("seeds", seeds.get());
+            stats.put("reseeds", reseeds.get());
+            stats.put("evictions", evictions.get());
+            return stats;
+        }
+
+        private Counter seed(String sessionId) {
+            synchronized (lockFor(sessionId)) {
+                Counter counter = counters.get(sessionId);
+                if (counter == null) {
+                    counter = new Counter(loadMax(sessionId));
+                    counters.put(sessionId, counter);
+                    seeds.incrementAndGet();
+                }
+                return counter;
+            }
+        }
+
+        private int loadMax(String sessionId) {
+            Integer max = maxLoader.apply(sessionId);
+            return max != null ? max : 0;
+        }
+
+        private void evictIdle() {
+            long threshold = System.nanoTime() - IDLE_EVICT_NANOS;
+            counters.entrySet().removeIf(entry -> {
+                if (entry.getValue().lastUsed - threshold < 0) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        private Object lockFor(String sessionId) {
+            return seedLocks[Math.floorMod(sessionId.hashCode(), seedLocks.length)];
+        }
+    }
+
+    /**
+     * 单个会话的计数器，value为已分配的最大序号
+     */
+    private static class Counter {
+
+        private final AtomicInteger value;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Counter(int initial) {
+            this.value = new AtomicInteger(initial);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.qncontest.service;
+
+import com.qncontest.config.PromptConfig;
+import com.qncontest.entity.ChatMessage;
+import com.qncontest.entity.ChatSession;
+import com.qncontest.entity.SessionSummary;
+import com.qncontest.repository.ChatMessageRepository;
+import com.qncontest.repository.SessionSummaryRepository;
+import com.qncontest.service.interfaces.ChatSessionManagerInterface;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话滚动摘要服务
+ * 长篇冒险中较早的对话在后台逐步折叠为一段长度有上限的“前情提要”，提示词中用它代替完整历史，
+ * 使提示词大小不随总轮数增长。每轮结束后只做一次入队（同一会话合并），判断与折叠都在独立的单线程执行器中进行，
+ * 不占用流式响应线程和完成处理管道，下一轮对话也不需要等待。
+ * 触发条件：距上次折叠累计达到summaryEveryRounds轮，或情节名称发生变化。最近maxHistoryMessages条消息保持原文不折叠。
+ * 摘要由大模型在上一版摘要的基础上增量生成；生成失败时保留原摘要，下次触发时重试。
+ */
+@Service
+public class SessionSummaryService implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionSummaryService.class);
+
+    /**
+     * 单次折叠最多读取的消息数，超出部分在同一任务的下一次折叠中处理
+     */
+    private static final int MAX_FOLD_MESSAGES = 40;
+
+    /**
+     * 单个任务最多连续折叠的次数（首次为很长的历史建立摘要时）
+     */
+    private static final int MAX_FOLD_PASSES = 5;
+
+    /**
+     * 折叠时每条消息最多保留的字数
+     */
+    private static final int MAX_MESSAGE_CHARS = 300;
+
+    private static final long SUMMARIZE_TIMEOUT_SECONDS = 90;
+
+    private static final int QUEUE_CAPACITY = 256;
+
+    /**
+     * 最多缓存的会话摘要数量，超过后淘汰最久未使用的会话
+     */
+    private static final int MAX_CACHED_SESSIONS = 10000;
+
+    private static final String SUMMARY_INSTRUCTIONS = """
+        你是跑团记录员，负责维护一份不断更新的“前情提要”。
+        根据【已有前情提要】和【新增对话】输出更新后的完整前情提要：
+        - 保留关键剧情进展、重要人物及关系、已获得的物品和能力、未完成的任务与悬念
+        - 省略寒暄、重复描述和评估/数值细节，按时间顺序叙述
+        - 使用第三人称，只输出前情提要正文，不超过%d字
+        """;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private SessionSummaryRepository sessionSummaryRepository;
+
+    @Autowired
+    private ChatSessionManagerInterface chatSessionService;
+
+    @Autowired
+    private StreamingChatLanguageModel streamingChatLanguageModel;
+
+    @Autowired
+    private PromptConfig.PromptProperties promptProperties;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 已入队但尚未开始处理的会话，用于合并同一会话的多次触发
+     */
+    private final Set<String> pendingSessions = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Optional<Snapshot>> summaryCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<Snapshot>> eldest) {
+                return size() > MAX_CACHED_SESSIONS;
+            }
+        });
+
+    private final AtomicLong triggers = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong folds = new AtomicLong();
+    private final AtomicLong foldedMessages = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalFoldMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread thread = new Thread(r, "session-summary");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一轮对话处理完成后调用：在后台检查是否需要折叠（同一会话未处理的触发会合并）
+     */
+    public void onRoundCompleted(String sessionId) {
+        if (!promptProperties.isSummaryEnabled() || sessionId == null || !pendingSessions.add(sessionId)) {
+            return;
+        }
+        triggers.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                pendingSessions.remove(sessionId);
+                try {
+                    checkAndFold(sessionId);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    logger.warn("会话摘要折叠失败: sessionId={}, error={}", sessionId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满时放弃本次检查，下一轮结束时会再次触发
+            pendingSessions.remove(sessionId);
+            rejected.incrementAndGet();
+            logger.debug("会话摘要队列已满，跳过本次检查: sessionId={}", sessionId);
+        }
+    }
+
+    /**
+     * 获取会话当前的前情提要（无摘要时返回null）
+     */
+    public Snapshot getSummary(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        Optional<Snapshot> cached = summaryCache.get(sessionId);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        try {
+            Optional<Snapshot> loaded = sessionSummaryRepository.findById(sessionId).map(Snapshot::of);
+            summaryCache.put(sessionId, loaded);
+            return loaded.orElse(null);
+        } catch (Exception e) {
+            logger.debug("读取会话摘要失败: sessionId={}, error={}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "sessionSummary";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long foldCount = folds.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", promptProperties.isSummaryEnabled());
+        stats.put("triggers", triggers.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("rejected", rejected.get());
+        stats.put("folds", foldCount);
+        stats.put("foldedMessages", foldedMessages.get());
+        stats.put("failures", failures.get());
+        stats.put("avgFoldMs", foldCount > 0 ? (double) totalFoldMs.get() / foldCount : 0.0);
+        stats.put("cachedSessions", summaryCache.size());
+        return stats;
+    }
+
+    private void checkAndFold(String sessionId) {
+        ChatSession session = chatSessionService.getSessionById(sessionId);
+        if (session == null) {
+            return;
+        }
+        Snapshot current = getSummary(sessionId);
+        int totalRounds = session.getTotalRounds() != null ? session.getTotalRounds() : 0;
+        int coveredRounds = current != null ? current.coveredRounds() : 0;
+        String arcName = session.getCurrentArcName();
+        boolean arcChanged = arcName != null && !arcName.isEmpty()
+            && !Objects.equals(arcName, current != null ? current.arcName() : null);
+        if (!arcChanged && totalRounds - coveredRounds < Math.max(1, promptProperties.getSummaryEveryRounds())) {
+            return;
+        }
+
+        // 最近的若干条消息仍以原文发送，不折叠
+        Integer maxSequence = chatMessageRepository.findMaxSequenceNumberBySessionId(sessionId);
+        int foldThrough = (maxSequence != null ? maxSequence : 0) - Math.max(0, promptProperties.getMaxHistoryMessages());
+        int coveredThrough = current != null ? current.coveredThroughSequence() : 0;
+        String summary = current != null ? current.summary() : "";
+
+        int foldedPasses = 0;
+        for (int pass = 0; pass < MAX_FOLD_PASSES && coveredThrough < foldThrough; pass++) {
+            List<ChatMessage> batch = chatMessageRepository.findRangeBySessionId(
+                sessionId, coveredThrough, foldThrough, PageRequest.of(0, MAX_FOLD_MESSAGES));
+            if (batch.isEmpty()) {
+                break;
+            }
+            long start = System.currentTimeMillis();
+            String folded = summarize(summary, batch);
+            if (folded == null) {
+                failures.incrementAndGet();
+                logger.warn("会话摘要生成失败，保留原摘要: sessionId={}, 待折叠消息={}", sessionId, batch.size());
+                return;
+            }
+            summary = folded;
+            coveredThrough = batch.get(batch.size() - 1).getSequenceNumber();
+            saveSummary(sessionId, summary, coveredThrough, totalRounds, arcName, true);
+            foldedPasses++;
+
+            long elapsed = System.currentTimeMillis() - start;
+            folds.incrementAndGet();
+            foldedMessages.addAndGet(batch.size());
+            totalFoldMs.addAndGet(elapsed);
+            logger.info("📚 会话摘要已折叠: sessionId={}, 折叠消息={}, 覆盖至序号={}, 摘要长度={}, 耗时={}ms, 情节切换={}",
+                sessionId, batch.size(), coveredThrough, summary.length(), elapsed, arcChanged);
+        }
+        if (foldedPasses == 0) {
+            // 暂无可折叠的消息（都在保留原文的最近消息内）：仍记下本次检查时的轮数和情节，避免之后每轮重复触发检查
+            saveSummary(sessionId, summary, coveredThrough, totalRounds, arcName, false);
+            logger.debug("会话暂无可折叠的消息，已记录检查位置: sessionId={}, 轮数={}, 情节={}", sessionId, totalRounds, arcName);
+        }
+    }
+
+    /**
+     * 保存摘要及本次检查时的轮数和情节；folded为false时只更新检查位置，不计入折叠次数
+     */
+    private void saveSummary(String sessionId, String summary, int coveredThrough, int totalRounds, String arcName,
+                             boolean folded) {
+        SessionSummary entity = sessionSummaryRepository.findById(sessionId).orElseGet(() -> new SessionSummary(sessionId));
+        entity.setSummary(summary);
+        entity.setCoveredThroughSequence(coveredThrough);
+        entity.setCoveredRounds(totalRounds);
+        entity.setArcName(arcName);
+        if (folded) {
+            entity.setFoldCount(entity.getFoldCount() + 1);
+        }
+        entity.setUpdatedAt(LocalDateTime.now());
+        sessionSummaryRepository.save(entity);
+        summaryCache.put(sessionId, Optional.of(Snapshot.of(entity)));
+    }
+
+    /**
+     * 调用大模型在已有摘要的基础上折叠新增对话
+     * @return 新摘要，失败时返回null
+     */
+    private String summarize(String previousSummary, List<ChatMessage> batch) {
+        int maxChars = Math.max(100, promptProperties.getSummaryMaxChars());
+        StringBuilder input = new StringBuilder();
+        input.append("【已有前情提要】\n").append(previousSummary.isEmpty() ? "（无）" : previousSummary).append("\n\n");
+        input.append("【新增对话】\n");
+        for (ChatMessage message : batch) {
+            input.append(message.getRole() == ChatMessage.MessageRole.USER ? "玩家: " : "DM: ");
+            String content = stripAssessment(message.getContent());
+            if (content.length() > MAX_MESSAGE_CHARS) {
+                input.append(content, 0, MAX_MESSAGE_CHARS).append('…');
+            } else {
+                input.append(content);
+            }
+            input.append('\n');
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        StringBuilder output = new StringBuilder();
+        try {
+            streamingChatLanguageModel.generate(
+                List.of(new SystemMessage(String.format(SUMMARY_INSTRUCTIONS, maxChars)), new UserMessage(input.toString())),
+                new StreamingResponseHandler<AiMessage>() {
+                    @Override
+                    public void onNext(String token) {
+                        output.append(token);
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                        future.complete(output.toString());
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        future.completeExceptionally(error);
+                    }
+                });
+            String result = future.get(SUMMARIZE_TIMEOUT_SECONDS, TimeUnit.SECONDS).trim();
+            if (result.isEmpty()) {
+                return null;
+            }
+            return result.length() > maxChars ? result.substring(0, maxChars) : result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.warn("调用大模型生成会话摘要失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 去掉AI回复中§…§之间的评估JSON，只保留叙事部分
+     */
+    private String stripAssessment(String content) {
+        if (content == null) {
+            return "";
+        }
+        int start = content.indexOf('§');
+        if (start < 0) {
+            return content.trim();
+        }
+        int end = content.indexOf('§', start + 1);
+        String narrative = end < 0 ? content.substring(0, start) : content.substring(0, start) + content.substring(end + 1);
+        return narrative.trim();
+    }
+
+    /**
+     * 会话摘要快照（不可变，供提示词构建读取）
+     */
+    public record Snapshot(String summary, int coveredThroughSequence, int coveredRounds, String arcName) {
+
+        static Snapshot of(SessionSummary entity) {
+            return new Snapshot(entity.getSummary(), entity.getCoveredThroughSequence(),
+                entity.getCoveredRounds(), entity.getArcName());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.qncontest.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.qncontest.dto.AssessmentResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 增量式评估提取器（每个流一个实例，非线程安全）
+ * 由流式处理器逐token喂入：§标记之外的文本原样返回给调用方转发给客户端，
+ * §…§之间的评估内容不再转发，而是实时送入Jackson非阻塞解析器，解析出的token暂存在TokenBuffer中，
+ * 结束标记出现后直接绑定为AssessmentResult，不经过中间的Map结构。
+ * 增量解析失败（如模型输出了非标准JSON）时，结束后回退到AssessmentExtractor的整段清理解析。
+ */
+public class StreamingAssessmentExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingAssessmentExtractor.class);
+
+    private static final char MARKER = '§';
+
+    private enum State { BEFORE, INSIDE, AFTER }
+
+    private final AssessmentExtractor fallbackExtractor;
+    private final int maxAssessmentSize;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    /**
+     * 评估原文（不含标记），用于增量解析失败时回退
+     */
+    private final StringBuilder rawAssessment = new StringBuilder();
+    private final StringBuilder visible = new StringBuilder();
+
+    private final TokenBuffer tokens;
+    private int depth = 0;
+    private boolean rootComplete = false;
+
+    private State state = State.BEFORE;
+    private char pendingHighSurrogate = 0;
+    private boolean parseFailed = false;
+    private boolean oversized = false;
+    private AssessmentResult result;
+    private boolean resolved = false;
+
+    StreamingAssessmentExtractor(JsonFactory jsonFactory, AssessmentExtractor fallbackExtractor, int maxAssessmentSize) {
+        this.fallbackExtractor = fallbackExtractor;
+        this.maxAssessmentSize = maxAssessmentSize;
+        JsonParser asyncParser = null;
+        try {
+            asyncParser = jsonFactory.createNonBlockingByteArrayParser();
+            asyncParser.enable(JsonParser.Feature.ALLOW_COMMENTS);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("无法创建非阻塞JSON解析器，评估将在流结束后整体解析: {}", e.getMessage());
+            parseFailed = true;
+        }
+        this.parser = asyncParser;
+        this.feeder = asyncParser != null ? (ByteArrayFeeder) asyncParser.getNonBlockingInputFeeder() : null;
+        this.tokens = new TokenBuffer(null, false);
+    }
+
+    /**
+     * 喂入一个token
+     * @return 应转发给客户端的文本（已去除评估部分），可能为空字符串
+     */
+    public String feed(String token) {
+        if (token == null || token.isEmpty()) {
+            return "";
+        }
+        if (state == State.AFTER) {
+            return token;
+        }
+
+        visible.setLength(0);
+        int segmentStart = 0;
+        int length = token.length();
+        for (int i = 0; i < length; i++) {
+            if (token.charAt(i) != MARKER) {
+                continue;
+            }
+            if (state == State.BEFORE) {
+                visible.append(token, segmentStart, i);
+                state = State.INSIDE;
+            } else {
+                appendAssessment(token, segmentStart, i);
+                endOfAssessment();
+                state = State.AFTER;
+                visible.append(token, i + 1, length);
+                return visible.toString();
+            }
+            segmentStart = i + 1;
+        }
+
+        if (state == State.BEFORE) {
+            return token;
+        }
+        appendAssessment(token, segmentStart, length);
+        return visible.toString();
+    }
+
+    /**
+     * 是否已经完整接收到评估（结束标记已出现）
+     */
+    public boolean isAssessmentComplete() {
+        return state == State.AFTER;
+    }
+
+    /**
+     * 是否正处于评估块内部
+     */
+    public boolean isInsideAssessment() {
+        return state == State.INSIDE;
+    }
+
+    /**
+     * 获取评估结果；结束标记出现后即可调用，增量解析失败时回退为整段解析，结果会被缓存
+     * @return 评估结果，未包含完整评估或解析失败时返回null
+     */
+    public AssessmentResult getAssessment() {
+        if (resolved) {
+            return result;
+        }
+        if (state != State.AFTER) {
+            if (state == State.INSIDE) {
+                logger.warn("⚠️ 找到评估开始标记但未找到结束标记");
+            }
+            return null;
+        }
+        resolved = true;
+        if (oversized) {
+            logger.warn("⚠️ 评估内容过大，长度超过 {}", maxAssessmentSize);
+            return null;
+        }
+        if (!parseFailed && rootComplete) {
+            result = bindTokens();
+        }
+        if (result == null) {
+            logger.info("ℹ️ 增量解析评估JSON未成功，回退为整段解析: 长度={}", rawAssessment.length());
+            result = fallbackExtractor.extractAssessmentResult(MARKER + rawAssessment.toString() + MARKER);
+        }
+        return result;
+    }
+
+    private void appendAssessment(String token, int start, int end) {
+        if (start >= end || oversized) {
+            return;
+        }
+        if (rawAssessment.length() + (end - start) > maxAssessmentSize) {
+            oversized = true;
+            return;
+        }
+        rawAssessment.append(token, start, end);
+        if (!parseFailed) {
+            feedParser(token, start, end);
+        }
+    }
+
+    private void feedParser(String token, int start, int end) {
+        if (rootComplete) {
+            // 根对象已解析完成，其后的内容无需再解析
+            return;
+        }
+        // 保证代理对不被拆开编码
+        StringBuilder chunk = new StringBuilder(end - start + 1);
+        if (pendingHighSurrogate != 0) {
+            chunk.append(pendingHighSurrogate);
+            pendingHighSurrogate = 0;
+        }
+        chunk.append(token, start, end);
+        if (chunk.length() > 0 && Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))) {
+            pendingHighSurrogate = chunk.charAt(chunk.length() - 1);
+            chunk.setLength(chunk.length() - 1);
+        }
+        if (chunk.length() == 0) {
+            return;
+        }
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drainTokens();
+        } catch (IOException | RuntimeException e) {
+            if (!rootComplete) {
+                parseFailed = true;
+                logger.debug("增量解析评估JSON失败，将在结束后回退: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void endOfAssessment() {
+        if (parseFailed || feeder == null || rootComplete) {
+            return;
+        }
+        try {
+            feeder.endOfInput();
+            drainTokens();
+            if (!rootComplete) {
+                parseFailed = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            parseFailed = true;
+        }
+    }
+
+    /**
+     * 读取当前可用的全部JSON token并暂存到TokenBuffer
+     */
+    private void drainTokens() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (rootComplete) {
+                // 根对象已结束，忽略其后的多余内容
+                continue;
+            }
+            if (depth == 0 && token != JsonToken.START_OBJECT) {
+                // 根节点不是对象，交给回退解析处理
+                parseFailed = true;
+                return;
+            }
+            tokens.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd() && --depth == 0) {
+                rootComplete = true;
+            }
+        }
+    }
+
+    /**
+     * 将暂存的token绑定为评估结果
+     */
+    private AssessmentResult bindTokens() {
+        try (JsonParser buffered = tokens.asParser()) {
+            AssessmentResult bound = fallbackExtractor.readAssessment(buffered);
+            logger.info("✅ 增量解析评估JSON成功: strategy={}, score={}", bound.strategy(), bound.overallScore());
+            return bound;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("绑定增量解析的评估JSON失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
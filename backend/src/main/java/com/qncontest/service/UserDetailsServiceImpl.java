@@ -15,6 +15,9 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+    
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -24,6 +27,26 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         return user;
     }
     
+    /**
+     * 按访问令牌加载用户：同一令牌（用户名+签发时间）在缓存有效期内只查询一次数据库
+     */
+    public User loadUserForToken(String username, long issuedAt) throws UsernameNotFoundException {
+        User cached = userPrincipalCache.get(username, issuedAt);
+        if (cached != null) {
+            return cached;
+        }
+        User user = (User) loadUserByUsername(username);
+        userPrincipalCache.put(username, issuedAt, user);
+        return user;
+    }
+    
+    /**
+     * 使用户的认证缓存失效（登出、角色或账号状态变化后调用）
+     */
+    public void evictUser(String username) {
+        userPrincipalCache.invalidate(username);
+    }
+    
     /**
      * 根据用户名查找用户实体
      */
@@ -0,0 +1,125 @@
+package com.qncontest.service;
+
+import com.qncontest.entity.User;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已认证用户缓存
+ * 以“用户名 + 令牌签发时间(iat)”为键缓存解析出的用户，同一个访问令牌在TTL内的后续请求不再查询users表；
+ * 条目数量有上限，超过时先清理过期条目，仍然超出则整体清空。
+ * 用户登出、角色或状态变化后需调用invalidate，使该用户所有令牌的缓存失效。
+ */
+@Component
+public class UserPrincipalCache implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+    private static final char KEY_SEPARATOR = '|';
+
+    @Value("${jwt.principal-cache-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${jwt.principal-cache-max-size:10000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 获取缓存的用户，不存在或已过期时返回null
+     */
+    public User get(String username, long issuedAt) {
+        String key = key(username, issuedAt);
+        CachedPrincipal cached = principals.get(key);
+        if (cached == null || cached.expiresAt - System.nanoTime() < 0) {
+            if (cached != null) {
+                principals.remove(key, cached);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.user;
+    }
+
+    public void put(String username, long issuedAt, User user) {
+        if (principals.size() >= maxSize) {
+            evictExpired();
+            if (principals.size() >= maxSize) {
+                principals.clear();
+                logger.debug("已认证用户缓存已满，整体清空: maxSize={}", maxSize);
+            }
+        }
+        principals.put(key(username, issuedAt), new CachedPrincipal(user,
+            System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+    }
+
+    /**
+     * 使该用户所有令牌对应的缓存失效
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        String prefix = username + KEY_SEPARATOR;
+        if (principals.keySet().removeIf(key -> key.startsWith(prefix))) {
+            invalidations.incrementAndGet();
+            logger.info("已认证用户缓存已失效: username={}", username);
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "principalCache";
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", principals.size());
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        principals.values().removeIf(cached -> cached.expiresAt - now < 0);
+    }
+
+    private static String key(String username, long issuedAt) {
+        return username + KEY_SEPARATOR + issuedAt;
+    }
+
+    private static final class CachedPrincipal {
+
+        private final User user;
+        private final long expiresAt;
+
+        private CachedPrincipal(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
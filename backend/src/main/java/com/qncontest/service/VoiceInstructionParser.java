@@ -39,6 +39,86 @@ public class VoiceInstructionParser {
         return processedText;
     }
     
+    /**
+     * 开始对流式识别结果做增量解析
+     */
+    public IncrementalInstruction startIncremental(String worldType, String sessionId) {
+        return new IncrementalInstruction(worldType, sessionId);
+    }
+    
+    /**
+     * 流式识别结果的增量解析（非线程安全）
+     * 只解析已稳定前缀中新增的部分并追加到已解析结果，切分点总落在非空白、非标点字符之后，
+     * 保证标点和空白的合并不会跨越切分点，结果与对整段文本调用parseVoiceInstruction一致。
+     */
+    public class IncrementalInstruction {
+        
+        private final String worldType;
+        private final String sessionId;
+        private final StringBuilder parsed = new StringBuilder();
+        private String consumed = "";
+        
+        private IncrementalInstruction(String worldType, String sessionId) {
+            this.worldType = worldType;
+            this.sessionId = sessionId;
+        }
+        
+        /**
+         * 送入最新的已稳定前缀，返回目前为止的解析结果
+         */
+        public String update(String stablePrefix) {
+            if (stablePrefix == null) {
+                return parsed.toString();
+            }
+            if (!stablePrefix.startsWith(consumed)) {
+                // 识别实现修正了已稳定的文本，从头重新解析
+                parsed.setLength(0);
+                consumed = "";
+            }
+            int boundary = safeBoundary(stablePrefix);
+            if (boundary > consumed.length()) {
+                appendSegment(stablePrefix.substring(consumed.length(), boundary));
+                consumed = stablePrefix.substring(0, boundary);
+            }
+            return parsed.toString();
+        }
+        
+        /**
+         * 送入最终识别结果，只解析尚未解析的剩余部分
+         */
+        public String complete(String finalText) {
+            if (finalText == null || finalText.trim().isEmpty() || !finalText.startsWith(consumed)) {
+                return parseVoiceInstruction(finalText, worldType, sessionId);
+            }
+            appendSegment(finalText.substring(consumed.length()));
+            consumed = finalText;
+            String result = adjustForWorldType(parsed.toString().trim(), worldType);
+            logger.info("语音指令增量解析完成: 原始='{}', 处理后='{}'", finalText, result);
+            return result;
+        }
+        
+        private void appendSegment(String segment) {
+            String cleaned = segment.replaceAll("[。，！？；：]{2,}", "。").replaceAll("\\s+", " ");
+            if (parsed.length() == 0) {
+                cleaned = cleaned.stripLeading();
+            }
+            parsed.append(cleaned);
+        }
+        
+        /**
+         * 最后一个非空白、非合并标点字符之后的位置
+         */
+        private int safeBoundary(String text) {
+            for (int i = text.length(); i > 0; i--) {
+                char c = text.charAt(i - 1);
+                if (!Character.isWhitespace(c) && "。，！？；：".indexOf(c) < 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+    
     /**
      * 清理语音识别文本
      */
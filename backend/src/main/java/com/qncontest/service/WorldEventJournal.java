@@ -0,0 +1,479 @@
+package com.qncontest.service;
+
+import com.qncontest.config.EventJournalConfig;
+import com.qncontest.entity.WorldEvent;
+import com.qncontest.repository.WorldEventRepository;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 世界事件日志写入器（write-behind）
+ * 事件在调用线程中分配会话内序号后放入该会话的无锁环形缓冲区（多生产者、单消费者），
+ * 后台刷写线程每隔groupCommitMs把所有会话的缓冲事件合并为一批，在一个事务中批量插入（组提交）。
+ * 缓冲区满时调用线程等待空位（背压），超时后在调用线程同步写入；durability=sync时始终同步写入。
+ * 读取事件的一方可调用awaitFlushed等待该会话已提交的事件落库；应用关闭时写完全部缓冲事件。
+ * 在事务中追加的事件推迟到该事务提交后才分配序号并入队，事务回滚时随之丢弃，不会出现业务数据回滚而事件已落库的情况；
+ * 代价是事件与业务数据不在同一事务中：事务提交后、事件落库前进程崩溃时，这部分事件会丢失（与组提交模式的缓冲窗口相同）。
+ */
+@Component
+public class WorldEventJournal implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorldEventJournal.class);
+
+    /**
+     * 会话缓冲区空闲多久后回收
+     */
+    private static final long IDLE_RING_EVICT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /**
+     * 背压等待时每次停顿的时长
+     */
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Autowired
+    private WorldEventRepository worldEventRepository;
+
+    @Autowired
+    private SessionSequenceAllocator sequenceAllocator;
+
+    @Autowired
+    private EventJournalConfig.EventJournalProperties properties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ConcurrentHashMap<String, EventRing> rings = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private Thread flusher;
+    private volatile boolean running = false;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong syncFallbacks = new AtomicLong();
+    private final AtomicLong sequenceRetries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deferredAppends = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // 同步写入可能发生在调用方事务的afterCommit回调中，此时原事务资源仍绑定在线程上，必须开启新事务
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (isGroupCommit()) {
+            running = true;
+            flusher = new Thread(this::flushLoop, "world-event-journal");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        logger.info("世界事件日志写入器已启动: durability={}, groupCommitMs={}, ringCapacity={}, maxBatchSize={}",
+            properties.getDurability(), properties.getGroupCommitMs(), properties.getRingCapacity(), properties.getMaxBatchSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!flusher.isAlive()) {
+            // 刷写线程已退出，由当前线程写完剩余事件（仍保持单消费者）
+            flushAll();
+        } else {
+            logger.warn("世界事件刷写线程未能按时退出，剩余缓冲事件可能丢失: pending={}", pending());
+        }
+        logger.info("世界事件日志写入器已关闭: 累计写入={}, 失败={}", persisted.get(), failed.get());
+    }
+
+    /**
+     * 记录一个事件（序号由日志写入器分配）
+     */
+    public void append(WorldEvent event) {
+        appendAll(event.getSessionId(), List.of(event));
+    }
+
+    /**
+     * 记录同一会话的一组事件，按列表顺序分配连续序号
+     * 当前线程处于事务中时推迟到事务提交后写入，事务回滚则丢弃
+     */
+    public void appendAll(String sessionId, List<WorldEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<WorldEvent> deferred = new ArrayList<>(events);
+            deferredAppends.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doAppend(sessionId, deferred);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        discarded.addAndGet(deferred.size());
+                        logger.info("事务未提交，丢弃暂存的世界事件: sessionId={}, 事件数={}", sessionId, deferred.size());
+                    }
+                }
+            });
+            return;
+        }
+        doAppend(sessionId, events);
+    }
+
+    private void doAppend(String sessionId, List<WorldEvent> events) {
+        assignSequences(events, sequenceAllocator.reserveEventSequences(sessionId, events.size()));
+        for (WorldEvent event : events) {
+            if (event.getTimestamp() == null) {
+                event.setTimestamp(LocalDateTime.now());
+            }
+        }
+        appended.addAndGet(events.size());
+        if (!running) {
+            writeSession(sessionId, events);
+            return;
+        }
+        for (WorldEvent event : events) {
+            enqueue(sessionId, event);
+        }
+    }
+
+    /**
+     * 等待该会话此前提交的事件全部落库（最多flushAwaitMs），用于读取事件前保证读到自己的写入
+     */
+    public void awaitFlushed(String sessionId) {
+        EventRing ring = sessionId != null ? rings.get(sessionId) : null;
+        if (ring == null) {
+            return;
+        }
+        long target = ring.tail.get();
+        if (ring.persisted.get() >= target) {
+            return;
+        }
+        Thread current = flusher;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushAwaitMs());
+        while (ring.persisted.get() < target) {
+            if (System.nanoTime() - deadline > 0) {
+                logger.warn("等待世界事件落库超时: sessionId={}, pending={}", sessionId, target - ring.persisted.get());
+                return;
+            }
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "eventJournal";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("durability", properties.getDurability());
+        stats.put("running", running);
+        stats.put("sessions", rings.size());
+        stats.put("pending", pending());
+        stats.put("appended", appended.get());
+        stats.put("persisted", persisted.get());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount > 0 ? (double) persisted.get() / batchCount : 0.0);
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("backpressureWaits", backpressureWaits.get());
+        stats.put("syncFallbacks", syncFallbacks.get());
+        stats.put("sequenceRetries", sequenceRetries.get());
+        stats.put("deferredAppends", deferredAppends.get());
+        stats.put("discarded", discarded.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private boolean isGroupCommit() {
+        return EventJournalConfig.DURABILITY_GROUP.equalsIgnoreCase(properties.getDurability());
+    }
+
+    private void enqueue(String sessionId, WorldEvent event) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getOfferTimeoutMs());
+        boolean waited = false;
+        while (true) {
+            EventRing ring = rings.computeIfAbsent(sessionId, id -> new EventRing(properties.getRingCapacity()));
+            if (!ring.enter()) {
+                // 缓冲区刚被回收，重新获取
+                continue;
+            }
+            try {
+                if (ring.offer(event)) {
+                    if (ring.size() >= ring.capacity() / 2) {
+                        LockSupport.unpark(flusher);
+                    }
+                    return;
+                }
+            } finally {
+                ring.exit();
+            }
+            // 缓冲区已满：唤醒刷写线程并等待空位
+            if (!waited) {
+                waited = true;
+                backpressureWaits.incrementAndGet();
+            }
+            LockSupport.unpark(flusher);
+            if (!running || System.nanoTime() - deadline > 0) {
+                syncFallbacks.incrementAndGet();
+                writeSession(sessionId, List.of(event));
+                return;
+            }
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+        }
+    }
+
+    private void flushLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getGroupCommitMs()));
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flushAll();
+            } catch (Exception e) {
+                logger.error("世界事件组提交失败", e);
+            }
+        }
+    }
+
+    /**
+     * 取出所有会话的缓冲事件并按批写入（只能由刷写线程调用，关闭时由关闭线程调用）
+     */
+    private void flushAll() {
+        int maxBatch = Math.max(1, properties.getMaxBatchSize());
+        List<WorldEvent> batch = new ArrayList<>();
+        List<EventRing> owners = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, EventRing> entry : rings.entrySet()) {
+            EventRing ring = entry.getValue();
+            while (ring.drain(batch, owners, maxBatch - batch.size()) > 0) {
+                if (batch.size() >= maxBatch) {
+                    writeBatch(batch, owners);
+                }
+            }
+            if (ring.isIdle(now) && ring.close()) {
+                rings.remove(entry.getKey(), ring);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, owners);
+        }
+    }
+
+    /**
+     * 在一个事务中批量插入一批（可能跨会话的）事件；失败时整批回滚，再按会话分别重试
+     */
+    private void writeBatch(List<WorldEvent> batch, List<EventRing> owners) {
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            logger.warn("世界事件批量写入失败，按会话分别重试: 事件数={}, error={}", batch.size(), e.getMessage());
+            Map<String, List<WorldEvent>> bySession = new LinkedHashMap<>();
+            for (WorldEvent event : batch) {
+                bySession.computeIfAbsent(event.getSessionId(), id -> new ArrayList<>()).add(event);
+            }
+            bySession.forEach(this::writeSession);
+        } finally {
+            for (EventRing owner : owners) {
+                owner.persisted.incrementAndGet();
+            }
+            batch.clear();
+            owners.clear();
+        }
+    }
+
+    /**
+     * 写入同一会话的事件；序号冲突（如其他实例写入了同一会话）时重新对齐并重新分配序号后重试一次
+     */
+    private void writeSession(String sessionId, List<WorldEvent> events) {
+        try {
+            insert(events);
+        } catch (DuplicateKeyException e) {
+            sequenceRetries.incrementAndGet();
+            logger.warn("世界事件序号冲突，重新分配后重试: sessionId={}", sessionId);
+            sequenceAllocator.reseedEvents(sessionId);
+            assignSequences(events, sequenceAllocator.reserveEventSequences(sessionId, events.size()));
+            try {
+                insert(events);
+            } catch (Exception retryError) {
+                failed.addAndGet(events.size());
+                logger.error("世界事件写入失败: sessionId={}, 事件数={}", sessionId, events.size(), retryError);
+            }
+        } catch (Exception e) {
+            failed.addAndGet(events.size());
+            logger.error("世界事件写入失败: sessionId={}, 事件数={}", sessionId, events.size(), e);
+        }
+    }
+
+    private void insert(List<WorldEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> worldEventRepository.batchInsert(events));
+        persisted.addAndGet(events.size());
+        batches.incrementAndGet();
+        maxBatchSize.accumulateAndGet(events.size(), Math::max);
+    }
+
+    private static void assignSequences(List<WorldEvent> events, int firstSequence) {
+        int sequence = firstSequence;
+        for (WorldEvent event : events) {
+            event.setSequence(sequence++);
+        }
+    }
+
+    private long pending() {
+        long total = 0;
+        for (EventRing ring : rings.values()) {
+            total += ring.tail.get() - ring.persisted.get();
+        }
+        return total;
+    }
+
+    /**
+     * 单个会话的有界环形缓冲区：多个生产者CAS认领槽位后发布事件，刷写线程按顺序取出
+     * 槽位被认领但尚未发布时取出会在该处停止，下次刷写时继续
+     */
+    private static final class EventRing {
+
+        private final AtomicReferenceArray<WorldEvent> slots;
+        private final int mask;
+        /**
+         * 已认领的槽位总数（生产者推进）
+         */
+        private final AtomicLong tail = new AtomicLong();
+        /**
+         * 已处理（写入成功或确认失败）的事件总数
+         */
+        private final AtomicLong persisted = new AtomicLong();
+        /**
+         * 正在写入的生产者数量，-1表示缓冲区已回收
+         */
+        private final AtomicInteger producers = new AtomicInteger();
+        /**
+         * 已取出的事件总数（仅刷写线程推进）
+         */
+        private volatile long head = 0;
+        private volatile long lastActive = System.nanoTime();
+
+        private EventRing(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        long size() {
+            return tail.get() - head;
+        }
+
+        boolean enter() {
+            while (true) {
+                int current = producers.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (producers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void exit() {
+            producers.decrementAndGet();
+        }
+
+        boolean offer(WorldEvent event) {
+            while (true) {
+                long claimed = tail.get();
+                if (claimed - head >= capacity()) {
+                    return false;
+                }
+                if (tail.compareAndSet(claimed, claimed + 1)) {
+                    slots.set((int) (claimed & mask), event);
+                    lastActive = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+
+        int drain(List<WorldEvent> batch, List<EventRing> owners, int max) {
+            long position = head;
+            int drained = 0;
+            while (drained < max) {
+                int index = (int) (position & mask);
+                WorldEvent event = slots.get(index);
+                if (event == null) {
+                    break;
+                }
+                slots.set(index, null);
+                batch.add(event);
+                owners.add(this);
+                position++;
+                drained++;
+            }
+            head = position;
+            return drained;
+        }
+
+        boolean isIdle(long now) {
+            return persisted.get() == tail.get() && now - lastActive > IDLE_RING_EVICT_NANOS;
+        }
+
+        /**
+         * 没有生产者且已全部落库时标记为已回收
+         */
+        boolean close() {
+            if (!producers.compareAndSet(0, -1)) {
+                return false;
+            }
+            if (persisted.get() != tail.get()) {
+                producers.set(0);
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.List;
 
 /**
  * 世界事件服务
+ * 事件由WorldEventJournal组提交写入，读取前先等待该会话已提交的事件落库
  */
 @Service
 public class WorldEventService {
@@ -21,6 +22,9 @@ public class WorldEventService {
     
     @Autowired
     private WorldEventRepository worldEventRepository;
+
+    @Autowired
+    private WorldEventJournal worldEventJournal;
     
     /**
      * 获取指定会话的最新N条事件
@@ -28,6 +32,7 @@ public class WorldEventService {
     public List<WorldEvent> getLatestEvents(String sessionId, int limit) {
         try {
             Pageable pageable = PageRequest.of(0, limit);
+            worldEventJournal.awaitFlushed(sessionId);
             return worldEventRepository.findBySessionIdOrderBySequenceDesc(sessionId, pageable).getContent();
         } catch (Exception e) {
             logger.error("获取最新事件失败: sessionId={}, limit={}", sessionId, limit, e);
@@ -40,6 +45,7 @@ public class WorldEventService {
      */
     public List<WorldEvent> getAllEvents(String sessionId) {
         try {
+            worldEventJournal.awaitFlushed(sessionId);
             return worldEventRepository.findBySessionIdOrderBySequenceAsc(sessionId);
         } catch (Exception e) {
             logger.error("获取所有事件失败: sessionId={}", sessionId, e);
@@ -52,6 +58,7 @@ public class WorldEventService {
      */
     public List<WorldEvent> getEventsByType(String sessionId, WorldEvent.EventType eventType) {
         try {
+            worldEventJournal.awaitFlushed(sessionId);
             return worldEventRepository.findBySessionIdAndEventTypeOrderBySequenceAsc(sessionId, eventType);
         } catch (Exception e) {
             logger.error("获取指定类型事件失败: sessionId={}, eventType={}", sessionId, eventType, e);
@@ -64,6 +71,7 @@ public class WorldEventService {
      */
     public long getEventCount(String sessionId) {
         try {
+            worldEventJournal.awaitFlushed(sessionId);
             return worldEventRepository.countBySessionId(sessionId);
         } catch (Exception e) {
             logger.error("获取事件数量失败: sessionId={}", sessionId, e);
@@ -76,6 +84,7 @@ public class WorldEventService {
      */
     public Integer getMaxSequence(String sessionId) {
         try {
+            worldEventJournal.awaitFlushed(sessionId);
             return worldEventRepository.findMaxSequenceBySessionId(sessionId).orElse(0);
         } catch (Exception e) {
             logger.error("获取最新事件序号失败: sessionId={}", sessionId, e);
@@ -0,0 +1,171 @@
+package com.qncontest.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qncontest.entity.WorldTemplate;
+import com.qncontest.repository.WorldTemplateRepository;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 世界模板读穿缓存
+ * 模板几乎不会变化，首次读取后缓存实体以及预先解析好的JSON段（默认规则、地点模板、收敛场景、收敛规则），
+ * 构建提示词时不再反复查询world_templates和解析大JSON列。
+ * 只缓存数据库中存在的模板，条目数以模板表大小为上限；不存在的世界ID不缓存（世界ID来自用户请求，
+ * 负缓存会随任意ID无限增长，且之后新增的模板在失效前会一直被判定为无效）。
+ * 模板被修改后需调用invalidate/invalidateAll使缓存失效。
+ */
+@Component
+public class WorldTemplateCache implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorldTemplateCache.class);
+
+    @Autowired
+    private WorldTemplateRepository worldTemplateRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, CachedWorldTemplate> templates = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 获取世界模板（未缓存时从数据库加载）
+     */
+    public Optional<CachedWorldTemplate> get(String worldId) {
+        if (worldId == null) {
+            return Optional.empty();
+        }
+        CachedWorldTemplate cached = templates.get(worldId);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return Optional.of(cached);
+        }
+        // computeIfAbsent保证同一模板只加载一次，且加载过程中的失效操作会等待加载完成后再移除；
+        // 模板不存在时load返回null，不写入缓存
+        return Optional.ofNullable(templates.computeIfAbsent(worldId, this::load));
+    }
+
+    /**
+     * 使单个模板的缓存失效
+     */
+    public void invalidate(String worldId) {
+        if (worldId != null && templates.remove(worldId) != null) {
+            invalidations.incrementAndGet();
+            logger.info("世界模板缓存已失效: worldId={}", worldId);
+        }
+    }
+
+    /**
+     * 清空全部模板缓存
+     */
+    public void invalidateAll() {
+        int size = templates.size();
+        templates.clear();
+        invalidations.addAndGet(size);
+        logger.info("世界模板缓存已全部清空: 清除条目={}", size);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "worldTemplates";
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", templates.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private CachedWorldTemplate load(String worldId) {
+        misses.incrementAndGet();
+        CachedWorldTemplate loaded = worldTemplateRepository.findByWorldId(worldId)
+            .map(template -> new CachedWorldTemplate(template,
+                parseSection(worldId, "defaultRules", template.getDefaultRules()),
+                parseSection(worldId, "locationTemplates", template.getLocationTemplates()),
+                parseSection(worldId, "convergenceScenarios", template.getConvergenceScenarios()),
+                parseSection(worldId, "convergenceRules", template.getConvergenceRules())))
+            .orElse(null);
+        logger.debug("加载世界模板到缓存: worldId={}, 存在={}", worldId, loaded != null);
+        return loaded;
+    }
+
+    /**
+     * 预解析JSON段，空值、"{}"或无法解析时返回null
+     */
+    private JsonNode parseSection(String worldId, String section, String json) {
+        if (json == null || json.trim().isEmpty() || json.equals("{}")) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            logger.warn("解析世界模板JSON失败: worldId={}, section={}, error={}", worldId, section, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 缓存的世界模板：实体及预解析的JSON段（只读，不要修改其中的JsonNode）
+     */
+    public static class CachedWorldTemplate {
+
+        private final WorldTemplate template;
+        private final JsonNode defaultRules;
+        private final JsonNode locationTemplates;
+        private final JsonNode convergenceScenarios;
+        private final JsonNode convergenceRules;
+
+        private CachedWorldTemplate(WorldTemplate template, JsonNode defaultRules, JsonNode locationTemplates,
+                                    JsonNode convergenceScenarios, JsonNode convergenceRules) {
+            this.template = template;
+            this.defaultRules = defaultRules;
+            this.locationTemplates = locationTemplates;
+            this.convergenceScenarios = convergenceScenarios;
+            this.convergenceRules = convergenceRules;
+        }
+
+        public WorldTemplate getTemplate() {
+            return template;
+        }
+
+        public JsonNode getDefaultRules() {
+            return defaultRules;
+        }
+
+        public JsonNode getLocationTemplates() {
+            return locationTemplates;
+        }
+
+        public JsonNode getConvergenceScenarios() {
+            return convergenceScenarios;
+        }
+
+        public JsonNode getConvergenceRules() {
+            return convergenceRules;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -23,6 +24,9 @@ public class WorldTemplateService {
     @Autowired
     private WorldTemplateRepository worldTemplateRepository;
     
+    @Autowired
+    private WorldTemplateCache templateCache;
+    
     /**
      * 获取所有可用的世界模板
      */
@@ -47,12 +51,12 @@ public class WorldTemplateService {
     }
     
     /**
-     * 根据世界ID获取世界模板详情
+     * 根据世界ID获取世界模板详情（读缓存）
      */
     public Optional<WorldTemplateResponse> getWorldTemplate(String worldId) {
         logger.debug("获取世界模板详情: {}", worldId);
-        return worldTemplateRepository.findByWorldId(worldId)
-                .map(WorldTemplateResponse::new);
+        return templateCache.get(worldId)
+                .map(cached -> new WorldTemplateResponse(cached.getTemplate()));
     }
     
     /**
@@ -65,7 +69,7 @@ public class WorldTemplateService {
         if ("general".equals(worldType)) {
             return true; // 通用聊天模式
         }
-        return worldTemplateRepository.existsByWorldId(worldType);
+        return templateCache.get(worldType).isPresent();
     }
     
     /**
@@ -76,8 +80,8 @@ public class WorldTemplateService {
             return "{}"; // 通用模式无特殊规则
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getDefaultRules)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getDefaultRules())
                 .orElse("{}");
     }
     
@@ -89,8 +93,8 @@ public class WorldTemplateService {
             return "你是一个智能助手，可以帮助用户解答各种问题。请用友好、专业的语气回答。";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getSystemPromptTemplate)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getSystemPromptTemplate())
                 .orElse("你是一个智能助手，可以帮助用户解答各种问题。请用友好、专业的语气回答。");
     }
     
@@ -102,8 +106,8 @@ public class WorldTemplateService {
             return "{}";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getStabilityAnchors)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getStabilityAnchors())
                 .orElse("{}");
     }
     
@@ -115,8 +119,8 @@ public class WorldTemplateService {
             return "{}";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getQuestTemplates)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getQuestTemplates())
                 .orElse("{}");
     }
     
@@ -128,8 +132,8 @@ public class WorldTemplateService {
             return "{}";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getConvergenceScenarios)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getConvergenceScenarios())
                 .orElse("{}");
     }
     
@@ -141,8 +145,8 @@ public class WorldTemplateService {
             return "你是一个智能助手，可以帮助用户解答各种问题。请用友好、专业的语气回答。";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getDmInstructions)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getDmInstructions())
                 .orElse("你是一个智能助手，可以帮助用户解答各种问题。请用友好、专业的语气回答。");
     }
     
@@ -154,11 +158,36 @@ public class WorldTemplateService {
             return "{}";
         }
         
-        return worldTemplateRepository.findByWorldId(worldType)
-                .map(WorldTemplate::getConvergenceRules)
+        return templateCache.get(worldType)
+                .map(cached -> cached.getTemplate().getConvergenceRules())
                 .orElse("{}");
     }
+    
+    /**
+     * 获取缓存的世界模板（含预解析的JSON段），供提示词构建使用
+     */
+    public Optional<WorldTemplateCache.CachedWorldTemplate> getCachedTemplate(String worldType) {
+        if ("general".equals(worldType)) {
+            return Optional.empty();
+        }
+        return templateCache.get(worldType);
+    }
+    
+    /**
+     * 使世界模板缓存失效（worldId为空时清空全部），直接修改数据库中的模板后调用
+     */
+    public void invalidateTemplateCache(String worldId) {
+        if (worldId == null || worldId.trim().isEmpty()) {
+            templateCache.invalidateAll();
+        } else {
+            templateCache.invalidate(worldId);
+        }
+    }
+    
+    /**
+     * 获取世界模板缓存统计信息
+     */
+    public Map<String, Object> getTemplateCacheStats() {
+        return templateCache.getStats();
+    }
 }
-
-
-
@@ -0,0 +1,35 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * 角色更新事件摘要：升级、角色初始化、关系变化
+ */
+@Component
+public class CharacterUpdateEventSummarizer implements EventSummarizer {
+
+    @Override
+    public WorldEvent.EventType getEventType() {
+        return WorldEvent.EventType.CHARACTER_UPDATE;
+    }
+
+    @Override
+    public String summarize(WorldEvent event, JsonNode data) {
+        if (data.has("newLevel")) {
+            return "升级 Lv" + data.path("oldLevel").asInt() + "→Lv" + data.path("newLevel").asInt();
+        }
+        String characterName = EventSummarizer.text(data, "characterName");
+        if (characterName != null) {
+            String profession = EventSummarizer.text(data, "profession");
+            return "角色创建 " + characterName + (profession != null ? "（" + profession + "）" : "");
+        }
+        String character = EventSummarizer.text(data, "character");
+        String relationship = EventSummarizer.text(data, "relationship");
+        if (character != null && relationship != null) {
+            return "关系 " + character + ": " + relationship;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * 骰子检定事件摘要，例如：骰子 开锁: d20+2=15 vs DC12 成功
+ */
+@Component
+public class DiceRollEventSummarizer implements EventSummarizer {
+
+    @Override
+    public WorldEvent.EventType getEventType() {
+        return WorldEvent.EventType.DICE_ROLL;
+    }
+
+    @Override
+    public String summarize(WorldEvent event, JsonNode data) {
+        StringBuilder summary = new StringBuilder("骰子");
+        String context = EventSummarizer.text(data, "context");
+        if (context != null) {
+            summary.append(' ').append(context);
+        }
+        summary.append(": d").append(data.path("diceType").asInt(20));
+        int modifier = data.path("modifier").asInt(0);
+        if (modifier > 0) {
+            summary.append('+').append(modifier);
+        } else if (modifier < 0) {
+            summary.append(modifier);
+        }
+        JsonNode result = data.has("finalResult") ? data.get("finalResult") : data.get("result");
+        if (result != null && result.isNumber()) {
+            summary.append('=').append(result.asInt());
+        }
+        if (data.path("difficultyClass").isNumber()) {
+            summary.append(" vs DC").append(data.get("difficultyClass").asInt());
+        }
+        JsonNode successful = data.get("isSuccessful");
+        if (successful != null && successful.isBoolean()) {
+            summary.append(successful.asBoolean() ? " 成功" : " 失败");
+        }
+        return summary.toString();
+    }
+}
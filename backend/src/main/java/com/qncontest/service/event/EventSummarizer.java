@@ -0,0 +1,53 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+
+/**
+ * 世界事件摘要器
+ * 每种事件类型一个实现（Spring组件），把事件数据渲染为一行简短的中文描述，供提示词中的事件历史使用。
+ * 新增事件类型时只需新增一个实现，EventSummaryRenderer会自动按类型分派；未注册的类型使用通用摘要。
+ */
+public interface EventSummarizer {
+
+    /**
+     * 单个字段值在摘要中的最大长度
+     */
+    int MAX_VALUE_LENGTH = 40;
+
+    /**
+     * 处理的事件类型
+     */
+    WorldEvent.EventType getEventType();
+
+    /**
+     * 渲染摘要
+     * @param event 事件
+     * @param data 已解析的事件数据（非null）
+     * @return 一行摘要（不含序号和轮次前缀）；返回null或空字符串时使用通用摘要
+     */
+    String summarize(WorldEvent event, JsonNode data);
+
+    /**
+     * 读取文本字段并截断，字段不存在或为空时返回null
+     */
+    static String text(JsonNode data, String field) {
+        JsonNode node = data.get(field);
+        if (node == null || node.isNull() || node.isContainerNode()) {
+            return null;
+        }
+        String value = node.asText().trim();
+        return value.isEmpty() ? null : truncate(value, MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * 截断过长的文本，换行替换为空格，保证摘要只占一行
+     */
+    static String truncate(String value, int maxLength) {
+        String singleLine = value.replace('\n', ' ').replace('\r', ' ');
+        if (singleLine.length() <= maxLength) {
+            return singleLine;
+        }
+        return singleLine.substring(0, maxLength) + "…";
+    }
+}
@@ -0,0 +1,179 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qncontest.entity.WorldEvent;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 世界事件摘要渲染
+ * 按事件类型分派给对应的EventSummarizer，渲染结果形如“#12 R5 骰子 开锁: d20+2=15 vs DC12 成功”。
+ * 事件写入后不再修改，渲染结果按事件ID缓存，同一事件在后续每轮提示词中只解析、渲染一次。
+ */
+@Component
+public class EventSummaryRenderer implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSummaryRenderer.class);
+
+    /**
+     * 最多缓存的事件摘要数量，超过后淘汰最久未使用的条目
+     */
+    private static final int MAX_CACHED_SUMMARIES = 20000;
+
+    /**
+     * 通用摘要最多展示的字段数
+     */
+    private static final int GENERIC_MAX_FIELDS = 3;
+
+    /**
+     * 通用摘要中忽略的字段（对剧情没有意义）
+     */
+    private static final Set<String> GENERIC_IGNORED_FIELDS = Set.of("timestamp", "rollId", "userId", "username", "checksum");
+
+    private final Map<WorldEvent.EventType, EventSummarizer> summarizers = new EnumMap<>(WorldEvent.EventType.class);
+
+    private final Map<Long, String> summaryCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > MAX_CACHED_SUMMARIES;
+            }
+        });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private final ObjectMapper objectMapper;
+
+    public EventSummaryRenderer(ObjectMapper objectMapper, List<EventSummarizer> summarizerList) {
+        this.objectMapper = objectMapper;
+        for (EventSummarizer summarizer : summarizerList) {
+            EventSummarizer previous = summarizers.put(summarizer.getEventType(), summarizer);
+            if (previous != null) {
+                logger.warn("事件类型{}注册了多个摘要器，使用{}", summarizer.getEventType(), summarizer.getClass().getSimpleName());
+            }
+        }
+        logger.info("事件摘要器已注册: {}", summarizers.keySet());
+    }
+
+    /**
+     * 渲染单个事件的一行摘要（含序号和轮次前缀）
+     */
+    public String render(WorldEvent event) {
+        Long eventId = event.getId();
+        if (eventId != null) {
+            String cached = summaryCache.get(eventId);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        String line = renderLine(event);
+        if (eventId != null) {
+            summaryCache.put(eventId, line);
+        }
+        return line;
+    }
+
+    @Override
+    public String getStatsName() {
+        return "eventSummaries";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedSummaries", summaryCache.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("genericFallbacks", fallbacks.get());
+        return stats;
+    }
+
+    private String renderLine(WorldEvent event) {
+        StringBuilder line = new StringBuilder(64);
+        line.append('#').append(event.getSequence());
+        if (event.getTotalRounds() != null) {
+            line.append(" R").append(event.getTotalRounds());
+        }
+        line.append(' ');
+
+        JsonNode data = parse(event);
+        String summary = null;
+        EventSummarizer summarizer = summarizers.get(event.getEventType());
+        if (summarizer != null && data != null) {
+            try {
+                summary = summarizer.summarize(event, data);
+            } catch (Exception e) {
+                logger.debug("事件摘要失败，使用通用摘要: eventId={}, error={}", event.getId(), e.getMessage());
+            }
+        }
+        if (summary == null || summary.isEmpty()) {
+            fallbacks.incrementAndGet();
+            summary = genericSummary(event, data);
+        }
+        return line.append(summary).toString();
+    }
+
+    private JsonNode parse(WorldEvent event) {
+        String eventData = event.getEventData();
+        if (eventData == null || eventData.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode data = objectMapper.readTree(eventData);
+            return data != null && data.isObject() ? data : null;
+        } catch (Exception e) {
+            logger.debug("事件数据不是有效的JSON对象: eventId={}", event.getId());
+            return null;
+        }
+    }
+
+    /**
+     * 通用摘要：事件类型加前几个简单字段
+     */
+    private String genericSummary(WorldEvent event, JsonNode data) {
+        StringBuilder summary = new StringBuilder(event.getEventType() != null ? event.getEventType().name() : "EVENT");
+        if (data == null) {
+            String raw = event.getEventData();
+            if (raw != null && !raw.isBlank()) {
+                summary.append(' ').append(EventSummarizer.truncate(raw.trim(), EventSummarizer.MAX_VALUE_LENGTH));
+            }
+            return summary.toString();
+        }
+        int shown = 0;
+        Iterator<Map.Entry<String, JsonNode>> fields = data.fields();
+        while (fields.hasNext() && shown < GENERIC_MAX_FIELDS) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (GENERIC_IGNORED_FIELDS.contains(field.getKey()) || value.isNull() || value.isContainerNode()) {
+                continue;
+            }
+            summary.append(' ').append(field.getKey()).append('=')
+                .append(EventSummarizer.truncate(value.asText(), EventSummarizer.MAX_VALUE_LENGTH));
+            shown++;
+        }
+        return summary.toString();
+    }
+}
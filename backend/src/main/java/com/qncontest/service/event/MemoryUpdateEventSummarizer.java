@@ -0,0 +1,27 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * 记忆更新事件摘要，例如：记忆[EVENT] 在酒馆遇到了神秘商人
+ */
+@Component
+public class MemoryUpdateEventSummarizer implements EventSummarizer {
+
+    @Override
+    public WorldEvent.EventType getEventType() {
+        return WorldEvent.EventType.MEMORY_UPDATE;
+    }
+
+    @Override
+    public String summarize(WorldEvent event, JsonNode data) {
+        String content = EventSummarizer.text(data, "content");
+        if (content == null) {
+            return null;
+        }
+        String type = EventSummarizer.text(data, "type");
+        return "记忆" + (type != null ? "[" + type + "] " : " ") + content;
+    }
+}
@@ -0,0 +1,44 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * 状态变更事件摘要
+ * 兼容三种数据：评估中的状态更新（type/value）、世界状态变化（change/reason）、会话版本变更（oldVersion/newVersion）
+ */
+@Component
+public class StateChangeEventSummarizer implements EventSummarizer {
+
+    @Override
+    public WorldEvent.EventType getEventType() {
+        return WorldEvent.EventType.STATE_CHANGE;
+    }
+
+    @Override
+    public String summarize(WorldEvent event, JsonNode data) {
+        String type = EventSummarizer.text(data, "type");
+        String value = EventSummarizer.text(data, "value");
+        if (type != null && value != null) {
+            return "状态 " + type + "=" + value;
+        }
+        String change = EventSummarizer.text(data, "change");
+        if (change != null) {
+            String reason = EventSummarizer.text(data, "reason");
+            return "状态变化 " + change + (reason != null ? "（" + reason + "）" : "");
+        }
+        if (data.has("newVersion")) {
+            StringBuilder summary = new StringBuilder("状态版本 v")
+                .append(data.path("oldVersion").asInt()).append("→v").append(data.path("newVersion").asInt());
+            if (data.path("hasWorldState").asBoolean(false)) {
+                summary.append(" 世界");
+            }
+            if (data.path("hasSkillsState").asBoolean(false)) {
+                summary.append(" 技能");
+            }
+            return summary.toString();
+        }
+        return null;
+    }
+}
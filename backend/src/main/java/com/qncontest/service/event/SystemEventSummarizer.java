@@ -0,0 +1,92 @@
+package com.qncontest.service.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.qncontest.entity.WorldEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * 系统事件摘要
+ * 系统事件承载多种数据（会话初始化、记忆、学习挑战、任务更新、情节更新、收敛状态更新），按字段特征区分
+ */
+@Component
+public class SystemEventSummarizer implements EventSummarizer {
+
+    @Override
+    public WorldEvent.EventType getEventType() {
+        return WorldEvent.EventType.SYSTEM_EVENT;
+    }
+
+    @Override
+    public String summarize(WorldEvent event, JsonNode data) {
+        String worldType = EventSummarizer.text(data, "worldType");
+        if (worldType != null) {
+            return "会话开始 世界=" + worldType;
+        }
+        String question = EventSummarizer.text(data, "question");
+        if (question != null) {
+            JsonNode correct = data.get("isCorrect");
+            String outcome = correct != null && correct.isBoolean() ? (correct.asBoolean() ? " 答对" : " 答错") : "";
+            return "学习挑战 " + question + outcome;
+        }
+        if (data.has("created") || data.has("completed") || data.has("progress") && data.get("progress").isArray()
+                || data.has("expired")) {
+            return summarizeQuests(data);
+        }
+        String arcName = EventSummarizer.text(data, "currentArcName");
+        if (arcName != null || data.has("currentArcStartRound")) {
+            StringBuilder summary = new StringBuilder("情节");
+            if (arcName != null) {
+                summary.append(' ').append(arcName);
+            }
+            if (data.path("currentArcStartRound").isNumber()) {
+                summary.append(" 自第").append(data.get("currentArcStartRound").asInt()).append("轮");
+            }
+            return summary.toString();
+        }
+        if (data.has("nearestScenarioId") || data.has("progressIncrement") || data.has("scenarioProgress")) {
+            StringBuilder summary = new StringBuilder("收敛");
+            if (data.path("progress").isNumber()) {
+                summary.append(" 进度").append(Math.round(data.get("progress").asDouble() * 100)).append('%');
+            }
+            String scenario = EventSummarizer.text(data, "nearestScenarioTitle");
+            if (scenario != null) {
+                summary.append(" 最近结局=").append(scenario);
+            }
+            return summary.toString();
+        }
+        String content = EventSummarizer.text(data, "content");
+        if (content != null) {
+            String type = EventSummarizer.text(data, "type");
+            return "记忆" + (type != null ? "[" + type + "] " : " ") + content;
+        }
+        return null;
+    }
+
+    private String summarizeQuests(JsonNode data) {
+        StringBuilder summary = new StringBuilder("任务");
+        appendQuestTitles(summary, data.get("created"), "新");
+        appendQuestTitles(summary, data.get("completed"), "完成");
+        appendQuestTitles(summary, data.get("progress"), "进展");
+        appendQuestTitles(summary, data.get("expired"), "过期");
+        return summary.toString();
+    }
+
+    private void appendQuestTitles(StringBuilder summary, JsonNode quests, String label) {
+        if (quests == null || !quests.isArray() || quests.isEmpty()) {
+            return;
+        }
+        summary.append(' ').append(label).append(':');
+        boolean first = true;
+        for (JsonNode quest : quests) {
+            String title = EventSummarizer.text(quest, "title");
+            if (title == null) {
+                title = EventSummarizer.text(quest, "questId");
+            }
+            if (title == null) {
+                continue;
+            }
+            summary.append(first ? "" : "、").append(title);
+            first = false;
+        }
+    }
+}
@@ -83,7 +83,15 @@ public interface ChatSessionManagerInterface {
     List<ChatMessage> getSessionHistory(ChatSession session, int maxMessages);
     
     /**
-     * 根据会话ID获取会话
+     * 获取会话最近的N条消息（只查询末尾N条）
+     * @param sessionId 会话ID
+     * @param maxMessages 最大消息数量
+     * @return 按序号升序排列的消息列表
+     */
+    List<ChatMessage> getRecentMessages(String sessionId, int maxMessages);
+    
+    /**
+     * 根据会话ID获取会话（不加载消息）
      * @param sessionId 会话ID
      * @return 聊天会话，如果不存在则返回null
      */
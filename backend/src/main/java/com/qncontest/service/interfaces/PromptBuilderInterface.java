@@ -1,6 +1,9 @@
 package com.qncontest.service.interfaces;
 
 import com.qncontest.service.prompt.PromptBuilder;
+import com.qncontest.service.prompt.PromptSection;
+
+import java.util.List;
 
 /**
  * 提示词构建器接口
@@ -22,4 +25,11 @@ public interface PromptBuilderInterface {
      */
     String buildDMAwarePrompt(PromptBuilder.RoleplayContext context);
     
+    /**
+     * 按段落构建DM智能评估提示词（用于按token预算取舍）
+     * @param context 角色扮演上下文
+     * @return 按布局顺序排列的提示词段落
+     */
+    List<PromptSection> buildDMAwarePromptSections(PromptBuilder.RoleplayContext context);
+    
 }
@@ -0,0 +1,22 @@
+package com.qncontest.service.interfaces;
+
+import java.util.Map;
+
+/**
+ * 运行时统计提供者接口
+ * 由管理端统计接口统一收集，新增组件只需实现本接口即可出现在统计结果中
+ */
+public interface StatsProviderInterface {
+    
+    /**
+     * 获取统计分组名称
+     * @return 统计结果中的键名
+     */
+    String getStatsName();
+    
+    /**
+     * 获取统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
@@ -1,5 +1,6 @@
 package com.qncontest.service.interfaces;
 
+import com.qncontest.entity.ChatSession;
 import com.qncontest.entity.DiceRoll;
 import com.qncontest.entity.User;
 
@@ -37,6 +38,15 @@ public interface WorldStateManagerInterface {
      */
     void updateWorldState(String sessionId, String newWorldState, String skillsState);
     
+    /**
+     * 在已加载的会话上应用世界状态更新，只修改内存中的会话，由调用方负责保存和记录事件
+     * @param session 会话
+     * @param newWorldState 新的世界状态
+     * @param skillsState 技能状态
+     * @return 状态变更事件数据，无更新时返回null
+     */
+    String applyWorldStateUpdate(ChatSession session, String newWorldState, String skillsState);
+    
     /**
      * 获取世界状态摘要
      * @param sessionId 会话ID
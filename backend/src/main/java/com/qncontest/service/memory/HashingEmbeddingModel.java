@@ -0,0 +1,87 @@
+package com.qncontest.service.memory;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地哈希向量模型（离线可用，结果确定）
+ * 使用与关键词索引相同的分词（中文二字组、英文单词），额外加入单字特征，
+ * 通过带符号的特征哈希映射到固定维度并做L2归一化，余弦相似度即点积。
+ * 作为语义记忆的默认向量模型；配置了本地小模型的EmbeddingModel时可替换。
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    /**
+     * 单字特征的权重（低于二字组，用于匹配同义改写中共享的单字）
+     */
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+
+    private final int dimension;
+
+    public HashingEmbeddingModel(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension必须大于0: " + dimension);
+        }
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            embeddings.add(Embedding.from(embed(segment.text(), new float[dimension])));
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 把文本向量写入target（长度须等于dimension）并返回
+     */
+    public float[] embed(String text, float[] target) {
+        for (String token : MemoryTokenizer.tokenize(text)) {
+            addFeature(target, token, 1.0f);
+            if (token.length() == 2 && Character.isIdeographic(token.charAt(0))) {
+                addFeature(target, token.substring(0, 1), UNIGRAM_WEIGHT);
+            }
+        }
+        double norm = 0;
+        for (float value : target) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < target.length; i++) {
+                target[i] *= scale;
+            }
+        }
+        return target;
+    }
+
+    private void addFeature(float[] target, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        int index = Math.floorMod(hash, dimension);
+        target[index] += (hash & 0x40000000) == 0 ? weight : -weight;
+    }
+
+    /**
+     * murmur3的finalizer，打散String.hashCode的低位
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
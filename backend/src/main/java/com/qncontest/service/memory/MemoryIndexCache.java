@@ -0,0 +1,118 @@
+package com.qncontest.service.memory;
+
+import com.qncontest.service.RoleplayMemoryService.MemoryEntry;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 会话记忆索引缓存
+ * 每个会话的记忆索引在首次检索时从持久化的记忆数据构建一次，之后由storeMemory增量更新；
+ * 超过容量时淘汰最久未使用的会话，被淘汰的会话下次检索时重新构建。
+ */
+@Component
+public class MemoryIndexCache implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryIndexCache.class);
+
+    /**
+     * 最多缓存的会话索引数量
+     */
+    private static final int MAX_CACHED_SESSIONS = 2000;
+
+    private final Map<String, SessionMemoryIndex> indexes = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionMemoryIndex> eldest) {
+                if (size() > MAX_CACHED_SESSIONS) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong totalSearchNanos = new AtomicLong();
+    private final AtomicLong maxSearchNanos = new AtomicLong();
+
+    /**
+     * 检索会话记忆，索引未加载时通过loader读取全部记忆并构建
+     */
+    public List<MemoryEntry> search(String sessionId, String query, int maxResults, Supplier<Collection<MemoryEntry>> loader) {
+        SessionMemoryIndex index = indexes.get(sessionId);
+        if (index == null) {
+            index = build(sessionId, loader);
+        }
+        long start = System.nanoTime();
+        List<MemoryEntry> results = index.search(query, maxResults);
+        long elapsed = System.nanoTime() - start;
+        searches.incrementAndGet();
+        totalSearchNanos.addAndGet(elapsed);
+        maxSearchNanos.accumulateAndGet(elapsed, Math::max);
+        return results;
+    }
+
+    /**
+     * 新记忆写入后增量更新索引（索引尚未加载时无需处理，下次检索会从持久化数据构建）
+     */
+    public void add(String sessionId, MemoryEntry entry) {
+        SessionMemoryIndex index = indexes.get(sessionId);
+        if (index != null) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * 丢弃会话索引（记忆数据被整体替换或会话删除时调用）
+     */
+    public void invalidate(String sessionId) {
+        indexes.remove(sessionId);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "memoryIndex";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long searchCount = searches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedSessions", indexes.size());
+        stats.put("builds", builds.get());
+        stats.put("evictions", evictions.get());
+        stats.put("searches", searchCount);
+        stats.put("avgSearchMicros", searchCount > 0 ? totalSearchNanos.get() / 1000.0 / searchCount : 0.0);
+        stats.put("maxSearchMicros", maxSearchNanos.get() / 1000.0);
+        return stats;
+    }
+
+    private SessionMemoryIndex build(String sessionId, Supplier<Collection<MemoryEntry>> loader) {
+        Collection<MemoryEntry> entries = loader.get();
+        SessionMemoryIndex index = new SessionMemoryIndex();
+        // 按时间顺序写入，保证新近度与写入顺序一致
+        entries.stream()
+            .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
+            .forEach(index::add);
+        // 并发构建时以先放入的为准，避免覆盖已增量更新过的索引
+        SessionMemoryIndex existing = indexes.putIfAbsent(sessionId, index);
+        builds.incrementAndGet();
+        logger.debug("会话记忆索引已构建: sessionId={}, 记忆数={}", sessionId, index.size());
+        return existing != null ? existing : index;
+    }
+}
@@ -0,0 +1,75 @@
+package com.qncontest.service.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 记忆检索分词
+ * 中文（及日文、韩文）没有空格分隔，连续的CJK字符切分为相邻二字组（单字时保留单字）；
+ * 英文和数字按连续字母数字切词并转小写，忽略单个字符；标点与空白作为分隔符。
+ */
+public final class MemoryTokenizer {
+
+    private MemoryTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        int cjkPrevious = -1;
+        int cjkRunLength = 0;
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                flushWord(word, tokens);
+                if (cjkPrevious >= 0) {
+                    tokens.add(new StringBuilder(4).appendCodePoint(cjkPrevious).appendCodePoint(codePoint).toString());
+                }
+                cjkPrevious = codePoint;
+                cjkRunLength++;
+            } else {
+                flushCjk(cjkPrevious, cjkRunLength, tokens);
+                cjkPrevious = -1;
+                cjkRunLength = 0;
+                if (Character.isLetterOrDigit(codePoint)) {
+                    word.appendCodePoint(Character.toLowerCase(codePoint));
+                } else {
+                    flushWord(word, tokens);
+                }
+            }
+        }
+        flushCjk(cjkPrevious, cjkRunLength, tokens);
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 只有一个字的CJK片段没有二字组，保留单字
+     */
+    private static void flushCjk(int previous, int runLength, List<String> tokens) {
+        if (runLength == 1) {
+            tokens.add(new String(Character.toChars(previous)));
+        }
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 1) {
+            tokens.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+        word.setLength(0);
+    }
+}
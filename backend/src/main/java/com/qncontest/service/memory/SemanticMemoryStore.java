@@ -0,0 +1,136 @@
+package com.qncontest.service.memory;
+
+import com.qncontest.config.MemoryConfig;
+import com.qncontest.service.RoleplayMemoryService.MemoryEntry;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 会话语义记忆存储
+ * 与MemoryIndexCache相同的生命周期：每个会话的向量索引在首次检索时从持久化的记忆数据构建，
+ * 之后由storeMemory增量写入；超过容量时淘汰最久未使用的会话（堆外向量段随索引一起被回收）。
+ */
+@Component
+public class SemanticMemoryStore implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticMemoryStore.class);
+
+    @Autowired
+    @Qualifier("memoryEmbeddingModel")
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private MemoryConfig.MemoryProperties memoryProperties;
+
+    private final Map<String, SessionVectorIndex> indexes = Collections.synchronizedMap(
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionVectorIndex> eldest) {
+                if (size() > memoryProperties.getMaxCachedSessions()) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong totalSearchNanos = new AtomicLong();
+    private final AtomicLong maxSearchNanos = new AtomicLong();
+
+    /**
+     * 检索会话记忆，索引未加载时通过loader读取全部记忆并构建
+     */
+    public List<MemoryEntry> search(String sessionId, String query, int maxResults, Supplier<Collection<MemoryEntry>> loader) {
+        SessionVectorIndex index = indexes.get(sessionId);
+        if (index == null) {
+            index = build(sessionId, loader);
+        }
+        long start = System.nanoTime();
+        List<MemoryEntry> results = index.search(query, maxResults);
+        long elapsed = System.nanoTime() - start;
+        searches.incrementAndGet();
+        totalSearchNanos.addAndGet(elapsed);
+        maxSearchNanos.accumulateAndGet(elapsed, Math::max);
+        return results;
+    }
+
+    /**
+     * 新记忆写入后增量更新索引（索引尚未加载时无需处理）
+     */
+    public void add(String sessionId, MemoryEntry entry) {
+        SessionVectorIndex index = indexes.get(sessionId);
+        if (index != null) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * 丢弃会话索引
+     */
+    public void invalidate(String sessionId) {
+        indexes.remove(sessionId);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "semanticMemory";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long searchCount = searches.get();
+        long offHeapBytes = 0;
+        long compactions = 0;
+        synchronized (indexes) {
+            for (SessionVectorIndex index : new ArrayList<>(indexes.values())) {
+                offHeapBytes += index.offHeapBytes();
+                compactions += index.compactions();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retrieval", memoryProperties.getRetrieval());
+        stats.put("dimension", embeddingModel.dimension());
+        stats.put("cachedSessions", indexes.size());
+        stats.put("offHeapBytes", offHeapBytes);
+        stats.put("compactions", compactions);
+        stats.put("builds", builds.get());
+        stats.put("evictions", evictions.get());
+        stats.put("searches", searchCount);
+        stats.put("avgSearchMicros", searchCount > 0 ? totalSearchNanos.get() / 1000.0 / searchCount : 0.0);
+        stats.put("maxSearchMicros", maxSearchNanos.get() / 1000.0);
+        return stats;
+    }
+
+    private SessionVectorIndex build(String sessionId, Supplier<Collection<MemoryEntry>> loader) {
+        Collection<MemoryEntry> entries = loader.get();
+        SessionVectorIndex index = new SessionVectorIndex(embeddingModel, memoryProperties.getIvfThreshold(),
+            memoryProperties.getIvfProbes(), true);
+        entries.stream()
+            .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
+            .forEach(index::add);
+        SessionVectorIndex existing = indexes.putIfAbsent(sessionId, index);
+        builds.incrementAndGet();
+        logger.debug("会话记忆向量索引已构建: sessionId={}, 记忆数={}", sessionId, index.size());
+        return existing != null ? existing : index;
+    }
+}
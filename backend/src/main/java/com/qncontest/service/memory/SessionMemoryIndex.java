@@ -0,0 +1,194 @@
+package com.qncontest.service.memory;
+
+import com.qncontest.service.RoleplayMemoryService.MemoryEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单个会话的记忆倒排索引（线程安全）
+ * 词项 -> (记忆ID -> 词频) 的倒排表随记忆写入增量维护，检索时只访问查询词命中的记忆，
+ * 按BM25相关度（归一化）、记忆重要性和新近程度加权排序。
+ * 每种类型的记忆数量超过上限时与RoleplayMemoryService的清理规则一致：只保留重要性最高的若干条。
+ */
+public class SessionMemoryIndex {
+
+    /**
+     * 单一类型记忆数量超过该值时触发清理
+     */
+    public static final int TYPE_CLEANUP_THRESHOLD = 20;
+
+    /**
+     * 清理后每种类型保留的记忆数量
+     */
+    public static final int TYPE_RETAIN_COUNT = 15;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private static final double WEIGHT_RELEVANCE = 0.6;
+    private static final double WEIGHT_IMPORTANCE = 0.25;
+    private static final double WEIGHT_RECENCY = 0.15;
+
+    /**
+     * 新近度半衰期（按写入顺序计，每新增这么多条记忆权重减半）
+     */
+    private static final double RECENCY_HALF_LIFE = 20.0;
+
+    private final Map<Integer, IndexedMemory> documents = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private final Map<String, Integer> countByType = new HashMap<>();
+    private final boolean retainPerType;
+    private long totalTerms = 0;
+    private int nextDocId = 0;
+
+    public SessionMemoryIndex() {
+        this(true);
+    }
+
+    /**
+     * @param retainPerType 是否按类型清理低重要性记忆（基准测试等离线场景可关闭）
+     */
+    public SessionMemoryIndex(boolean retainPerType) {
+        this.retainPerType = retainPerType;
+    }
+
+    /**
+     * 写入一条记忆
+     */
+    public synchronized void add(MemoryEntry entry) {
+        int docId = nextDocId++;
+        List<String> terms = MemoryTokenizer.tokenize(entry.getContent());
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        IndexedMemory memory = new IndexedMemory(docId, entry, termFrequencies, terms.size());
+        documents.put(docId, memory);
+        for (Map.Entry<String, Integer> term : termFrequencies.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(docId, term.getValue());
+        }
+        totalTerms += terms.size();
+        String type = typeOf(entry);
+        if (countByType.merge(type, 1, Integer::sum) > TYPE_CLEANUP_THRESHOLD && retainPerType) {
+            trimType(type);
+        }
+    }
+
+    /**
+     * 检索最相关的记忆；查询为空时按重要性和新近程度返回
+     */
+    public synchronized List<MemoryEntry> search(String query, int maxResults) {
+        if (documents.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        Set<String> queryTerms = new LinkedHashSet<>(MemoryTokenizer.tokenize(query));
+        Map<Integer, Double> relevance = new HashMap<>();
+        if (!queryTerms.isEmpty()) {
+            double averageLength = (double) totalTerms / documents.size();
+            int documentCount = documents.size();
+            for (String term : queryTerms) {
+                Map<Integer, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Integer, Integer> hit : posting.entrySet()) {
+                    IndexedMemory memory = documents.get(hit.getKey());
+                    double tf = hit.getValue();
+                    double norm = BM25_K1 * (1 - BM25_B + BM25_B * memory.length / Math.max(1.0, averageLength));
+                    relevance.merge(hit.getKey(), idf * tf * (BM25_K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+            if (relevance.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        double maxRelevance = 0;
+        for (double score : relevance.values()) {
+            maxRelevance = Math.max(maxRelevance, score);
+        }
+        Iterable<Integer> candidates = queryTerms.isEmpty() ? documents.keySet() : relevance.keySet();
+        List<ScoredMemory> scored = new ArrayList<>();
+        int newestDocId = nextDocId - 1;
+        for (int docId : candidates) {
+            IndexedMemory memory = documents.get(docId);
+            double normalizedRelevance = maxRelevance > 0 ? relevance.getOrDefault(docId, 0.0) / maxRelevance : 0;
+            double importance = Math.max(0, Math.min(1, memory.entry.getImportance()));
+            double recency = Math.pow(0.5, (newestDocId - docId) / RECENCY_HALF_LIFE);
+            double score = WEIGHT_RELEVANCE * normalizedRelevance + WEIGHT_IMPORTANCE * importance + WEIGHT_RECENCY * recency;
+            scored.add(new ScoredMemory(memory.entry, score));
+        }
+        scored.sort(Comparator.comparingDouble(ScoredMemory::score).reversed());
+
+        List<MemoryEntry> results = new ArrayList<>(Math.min(maxResults, scored.size()));
+        for (int i = 0; i < scored.size() && i < maxResults; i++) {
+            results.add(scored.get(i).entry());
+        }
+        return results;
+    }
+
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * 与RoleplayMemoryService.cleanupMemories一致：只保留该类型中重要性最高的记忆
+     */
+    private void trimType(String type) {
+        List<IndexedMemory> ofType = new ArrayList<>();
+        for (IndexedMemory memory : documents.values()) {
+            if (typeOf(memory.entry).equals(type)) {
+                ofType.add(memory);
+            }
+        }
+        ofType.sort(Comparator.comparingDouble((IndexedMemory memory) -> memory.entry.getImportance()).reversed()
+            .thenComparingInt(memory -> memory.docId));
+        for (int i = TYPE_RETAIN_COUNT; i < ofType.size(); i++) {
+            remove(ofType.get(i));
+        }
+        countByType.put(type, Math.min(ofType.size(), TYPE_RETAIN_COUNT));
+    }
+
+    private void remove(IndexedMemory memory) {
+        documents.remove(memory.docId);
+        for (String term : memory.termFrequencies.keySet()) {
+            Map<Integer, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(memory.docId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalTerms -= memory.length;
+    }
+
+    private static String typeOf(MemoryEntry entry) {
+        return entry.getType() != null ? entry.getType() : "";
+    }
+
+    private static class IndexedMemory {
+
+        private final int docId;
+        private final MemoryEntry entry;
+        private final Map<String, Integer> termFrequencies;
+        private final int length;
+
+        private IndexedMemory(int docId, MemoryEntry entry, Map<String, Integer> termFrequencies, int length) {
+            this.docId = docId;
+            this.entry = entry;
+            this.termFrequencies = termFrequencies;
+            this.length = length;
+        }
+    }
+
+    private record ScoredMemory(MemoryEntry entry, double score) {
+    }
+}
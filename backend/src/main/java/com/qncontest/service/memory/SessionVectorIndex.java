@@ -0,0 +1,513 @@
+package com.qncontest.service.memory;
+
+import com.qncontest.service.RoleplayMemoryService.MemoryEntry;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个会话的记忆向量索引（线程安全）
+ * 记忆向量存放在堆外连续段（VectorSegment）中，记忆数量较少时精确暴力检索；
+ * 达到ivfThreshold后用球面k-means训练IVF倒排聚类，检索时只扫描与查询最接近的若干个聚类，
+ * 记忆数量翻倍后在下次检索时重新训练。候选按余弦相似度选出后，与关键词索引一致地结合重要性和新近程度重排。
+ * 每种类型的记忆数量超过上限时按与SessionMemoryIndex相同的规则只保留重要性最高的若干条，被清理的行先做删除标记，
+ * 已删除行数超过有效行数时压缩向量段（只复制有效行，重映射行号，IVF聚类在下次检索时按需重新训练），
+ * 使堆外内存和暴力扫描的行数与有效记忆数同阶，而不是随写入过的记忆总数增长。
+ * 按类型保留时每个会话的有效记忆通常只有每类十余条，远低于默认的ivfThreshold，线上只会走精确暴力检索；
+ * IVF仅在关闭按类型保留（离线评估）或调低ivfThreshold时生效。
+ */
+public class SessionVectorIndex {
+
+    /**
+     * 低于该余弦相似度的记忆视为不相关
+     */
+    private static final float MIN_SIMILARITY = 0.05f;
+
+    private static final double WEIGHT_RELEVANCE = 0.6;
+    private static final double WEIGHT_IMPORTANCE = 0.25;
+    private static final double WEIGHT_RECENCY = 0.15;
+
+    /**
+     * 新近度半衰期（按写入顺序计）
+     */
+    private static final double RECENCY_HALF_LIFE = 20.0;
+
+    /**
+     * 重排前按相似度选出的候选数量为maxResults的倍数（不少于MIN_CANDIDATES）
+     */
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final int MIN_CANDIDATES = 32;
+
+    /**
+     * 暴力扫描时每次从堆外段批量复制的行数
+     */
+    private static final int SCAN_BLOCK_ROWS = 256;
+
+    private static final int MIN_CLUSTERS = 16;
+    private static final int MAX_CLUSTERS = 1024;
+    private static final int KMEANS_ITERATIONS = 6;
+    private static final int KMEANS_SAMPLES_PER_CLUSTER = 16;
+
+    /**
+     * 每行分配到的聚类数量
+     */
+    private static final int ASSIGNMENTS_PER_ROW = 2;
+
+    private final EmbeddingModel embeddingModel;
+    private final int ivfThreshold;
+    private final int ivfProbes;
+    private final boolean retainPerType;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private VectorSegment segment;
+    private final List<MemoryEntry> entries = new ArrayList<>();
+    private final BitSet removed = new BitSet();
+    private final Map<String, List<Integer>> rowsByType = new HashMap<>();
+    private int live = 0;
+
+    /**
+     * 每行的写入序号（压缩后行号不再等于写入顺序，新近度按写入序号计算）
+     */
+    private int[] ordinals = new int[64];
+    private int nextOrdinal = 0;
+    private int compactions = 0;
+
+    private float[][] centroids;
+    private int[][] clusterRows;
+    private int[] clusterSizes;
+    private int trainedRows = 0;
+
+    public SessionVectorIndex(EmbeddingModel embeddingModel, int ivfThreshold, int ivfProbes, boolean retainPerType) {
+        this.embeddingModel = embeddingModel;
+        this.ivfThreshold = ivfThreshold;
+        this.ivfProbes = Math.max(1, ivfProbes);
+        this.retainPerType = retainPerType;
+        this.segment = new VectorSegment(embeddingModel.dimension());
+    }
+
+    /**
+     * 写入一条记忆（向量在锁外计算）
+     */
+    public void add(MemoryEntry entry) {
+        float[] vector = embed(entry.getContent());
+        lock.writeLock().lock();
+        try {
+            int row = segment.append(vector);
+            entries.add(entry);
+            if (row == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, ordinals.length * 2);
+            }
+            ordinals[row] = nextOrdinal++;
+            live++;
+            if (centroids != null) {
+                assign(row, vector);
+            }
+            String type = typeOf(entry);
+            List<Integer> typeRows = rowsByType.computeIfAbsent(type, key -> new ArrayList<>());
+            typeRows.add(row);
+            if (typeRows.size() > SessionMemoryIndex.TYPE_CLEANUP_THRESHOLD && retainPerType) {
+                trimType(typeRows);
+                if (segment.rows() - live > live) {
+                    compact();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索最相关的记忆；查询为空（或不含可用词项）时按重要性和新近程度返回
+     */
+    public List<MemoryEntry> search(String query, int maxResults) {
+        if (maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        float[] queryVector = query == null || query.isBlank() ? null : embed(query);
+        if (queryVector != null && isZero(queryVector)) {
+            queryVector = null;
+        }
+        if (queryVector != null) {
+            trainIfNeeded();
+        }
+        lock.readLock().lock();
+        try {
+            if (live == 0) {
+                return new ArrayList<>();
+            }
+            int rows = segment.rows();
+            int newestOrdinal = nextOrdinal - 1;
+            List<ScoredRow> scored = new ArrayList<>();
+            if (queryVector == null) {
+                for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+                    scored.add(new ScoredRow(row, rerank(row, 0, newestOrdinal)));
+                }
+            } else {
+                int candidates = Math.max(maxResults * CANDIDATE_FACTOR, MIN_CANDIDATES);
+                for (ScoredRow hit : nearestRows(queryVector, candidates, false)) {
+                    scored.add(new ScoredRow(hit.row, rerank(hit.row, hit.score, newestOrdinal)));
+                }
+            }
+            scored.sort(Comparator.comparingDouble((ScoredRow hit) -> hit.score).reversed());
+            List<MemoryEntry> results = new ArrayList<>(Math.min(maxResults, scored.size()));
+            for (int i = 0; i < scored.size() && i < maxResults; i++) {
+                results.add(entries.get(scored.get(i).row));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 只按余弦相似度返回最接近的k条记忆（不重排），exact为true时忽略IVF做全量扫描；用于评估近似检索的召回率
+     */
+    public List<MemoryEntry> nearest(String query, int k, boolean exact) {
+        float[] queryVector = embed(query);
+        if (!exact) {
+            trainIfNeeded();
+        }
+        lock.readLock().lock();
+        try {
+            List<MemoryEntry> results = new ArrayList<>();
+            for (ScoredRow hit : nearestRows(queryVector, k, exact)) {
+                results.add(entries.get(hit.row));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效（未被清理的）记忆数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前IVF聚类数量，未启用IVF时为0
+     */
+    public int clusters() {
+        lock.readLock().lock();
+        try {
+            return centroids != null ? centroids.length : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 向量段已压缩的次数
+     */
+    public int compactions() {
+        lock.readLock().lock();
+        try {
+            return compactions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 向量段占用的堆外内存字节数
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return segment.capacityBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private float[] embed(String text) {
+        return embeddingModel.embed(text == null ? "" : text).content().vector();
+    }
+
+    /**
+     * 按余弦相似度选出前k行（调用方持有读锁）
+     */
+    private List<ScoredRow> nearestRows(float[] queryVector, int k, boolean exact) {
+        PriorityQueue<ScoredRow> top = new PriorityQueue<>(k + 1, Comparator.comparingDouble((ScoredRow hit) -> hit.score));
+        int dimension = segment.dimension();
+        if (exact || centroids == null) {
+            float[] scratch = new float[SCAN_BLOCK_ROWS * dimension];
+            float[] similarities = new float[SCAN_BLOCK_ROWS];
+            int rows = segment.rows();
+            for (int first = 0; first < rows; first += SCAN_BLOCK_ROWS) {
+                int count = Math.min(SCAN_BLOCK_ROWS, rows - first);
+                segment.dots(first, count, queryVector, scratch, similarities);
+                for (int r = 0; r < count; r++) {
+                    if (!removed.get(first + r)) {
+                        offer(top, k, first + r, similarities[r]);
+                    }
+                }
+            }
+        } else {
+            float[] scratch = new float[dimension];
+            BitSet visited = new BitSet(segment.rows());
+            for (int cluster : topClusters(queryVector, ivfProbes)) {
+                int[] members = clusterRows[cluster];
+                for (int i = 0; i < clusterSizes[cluster]; i++) {
+                    int row = members[i];
+                    if (!removed.get(row) && !visited.get(row)) {
+                        visited.set(row);
+                        offer(top, k, row, segment.dot(row, queryVector, scratch));
+                    }
+                }
+            }
+        }
+        List<ScoredRow> results = new ArrayList<>(top);
+        results.sort(Comparator.comparingDouble((ScoredRow hit) -> hit.score).reversed());
+        return results;
+    }
+
+    private static void offer(PriorityQueue<ScoredRow> top, int k, int row, float similarity) {
+        if (similarity < MIN_SIMILARITY) {
+            return;
+        }
+        if (top.size() < k) {
+            top.add(new ScoredRow(row, similarity));
+        } else if (similarity > top.peek().score) {
+            top.poll();
+            top.add(new ScoredRow(row, similarity));
+        }
+    }
+
+    /**
+     * 与向量最接近的count个聚类，按相似度从高到低
+     */
+    private int[] topClusters(float[] vector, int count) {
+        int probes = Math.min(count, centroids.length);
+        int[] best = new int[probes];
+        float[] bestScores = new float[probes];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+        for (int c = 0; c < centroids.length; c++) {
+            float score = dot(centroids[c], vector);
+            if (score <= bestScores[probes - 1]) {
+                continue;
+            }
+            int i = probes - 1;
+            while (i > 0 && bestScores[i - 1] < score) {
+                bestScores[i] = bestScores[i - 1];
+                best[i] = best[i - 1];
+                i--;
+            }
+            bestScores[i] = score;
+            best[i] = c;
+        }
+        return best;
+    }
+
+    private double rerank(int row, double similarity, int newestOrdinal) {
+        MemoryEntry entry = entries.get(row);
+        double recency = Math.pow(0.5, (newestOrdinal - ordinals[row]) / RECENCY_HALF_LIFE);
+        return WEIGHT_RELEVANCE * similarity + WEIGHT_IMPORTANCE * entry.getImportance() + WEIGHT_RECENCY * recency;
+    }
+
+    private void trainIfNeeded() {
+        lock.readLock().lock();
+        try {
+            if (!needsTraining()) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (needsTraining()) {
+                train();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean needsTraining() {
+        return live >= ivfThreshold && (centroids == null || live >= trainedRows * 2);
+    }
+
+    /**
+     * 球面k-means：在采样行上迭代训练聚类中心，再把全部有效行分配到最近的聚类（调用方持有写锁）
+     */
+    private void train() {
+        int[] liveRows = new int[live];
+        int count = 0;
+        for (int row = removed.nextClearBit(0); row < segment.rows(); row = removed.nextClearBit(row + 1)) {
+            liveRows[count++] = row;
+        }
+        int clusterCount = Math.max(MIN_CLUSTERS, Math.min(MAX_CLUSTERS, (int) Math.sqrt(count)));
+        int dimension = segment.dimension();
+        Random random = new Random(count);
+
+        int sampleCount = Math.min(count, clusterCount * KMEANS_SAMPLES_PER_CLUSTER);
+        float[][] samples = new float[sampleCount][];
+        for (int i = 0; i < sampleCount; i++) {
+            samples[i] = segment.read(liveRows[(int) ((long) i * count / sampleCount)], new float[dimension]);
+        }
+        float[][] trained = new float[clusterCount][];
+        for (int c = 0; c < clusterCount; c++) {
+            trained[c] = samples[random.nextInt(sampleCount)].clone();
+        }
+        int[] assignment = new int[sampleCount];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            for (int i = 0; i < sampleCount; i++) {
+                assignment[i] = closest(trained, samples[i]);
+            }
+            float[][] sums = new float[clusterCount][dimension];
+            int[] sizes = new int[clusterCount];
+            for (int i = 0; i < sampleCount; i++) {
+                float[] sum = sums[assignment[i]];
+                float[] sample = samples[i];
+                for (int d = 0; d < dimension; d++) {
+                    sum[d] += sample[d];
+                }
+                sizes[assignment[i]]++;
+            }
+            for (int c = 0; c < clusterCount; c++) {
+                // 空聚类用随机样本重新初始化
+                trained[c] = sizes[c] > 0 ? normalize(sums[c]) : samples[random.nextInt(sampleCount)].clone();
+            }
+        }
+
+        centroids = trained;
+        clusterRows = new int[clusterCount][];
+        clusterSizes = new int[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            clusterRows[c] = new int[Math.max(4, count * ASSIGNMENTS_PER_ROW / clusterCount)];
+        }
+        float[] vector = new float[dimension];
+        for (int i = 0; i < count; i++) {
+            assign(liveRows[i], segment.read(liveRows[i], vector));
+        }
+        trainedRows = count;
+    }
+
+    /**
+     * 把行分配到最接近的ASSIGNMENTS_PER_ROW个聚类（冗余分配，提高边界附近向量的召回）
+     */
+    private void assign(int row, float[] vector) {
+        for (int cluster : topClusters(vector, ASSIGNMENTS_PER_ROW)) {
+            if (clusterSizes[cluster] == clusterRows[cluster].length) {
+                clusterRows[cluster] = Arrays.copyOf(clusterRows[cluster], clusterRows[cluster].length * 2);
+            }
+            clusterRows[cluster][clusterSizes[cluster]++] = row;
+        }
+    }
+
+    private static int closest(float[][] candidates, float[] vector) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < candidates.length; c++) {
+            float score = dot(candidates[c], vector);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        return VectorSegment.dot(a, 0, b, a.length);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static boolean isZero(float[] vector) {
+        for (float value : vector) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按重要性保留该类型的前TYPE_RETAIN_COUNT条，其余标记删除（调用方持有写锁）
+     */
+    private void trimType(List<Integer> typeRows) {
+        typeRows.sort(Comparator.comparingDouble((Integer row) -> entries.get(row).getImportance()).reversed()
+            .thenComparingInt(row -> row));
+        List<Integer> dropped = typeRows.subList(SessionMemoryIndex.TYPE_RETAIN_COUNT, typeRows.size());
+        for (int row : dropped) {
+            removed.set(row);
+            live--;
+        }
+        dropped.clear();
+    }
+
+    /**
+     * 压缩向量段：只保留有效行并按原顺序重新编号，同步重映射记忆、写入序号和按类型的行号（调用方持有写锁）
+     * 压缩后IVF聚类中的行号失效，清空聚类，下次检索时若仍达到ivfThreshold再重新训练
+     */
+    private void compact() {
+        int rows = segment.rows();
+        int[] newRowOf = new int[rows];
+        List<MemoryEntry> keptEntries = new ArrayList<>(live);
+        int[] keptOrdinals = new int[Math.max(64, live * 2)];
+        int next = 0;
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            newRowOf[row] = next;
+            keptEntries.add(entries.get(row));
+            keptOrdinals[next] = ordinals[row];
+            next++;
+        }
+        segment = segment.compact(removed);
+        entries.clear();
+        entries.addAll(keptEntries);
+        ordinals = keptOrdinals;
+        removed.clear();
+        for (List<Integer> typeRows : rowsByType.values()) {
+            typeRows.replaceAll(row -> newRowOf[row]);
+        }
+        centroids = null;
+        clusterRows = null;
+        clusterSizes = null;
+        trainedRows = 0;
+        compactions++;
+    }
+
+    private static String typeOf(MemoryEntry entry) {
+        return entry.getType() != null ? entry.getType() : "";
+    }
+
+    private static final class ScoredRow {
+        private final int row;
+        private final double score;
+
+        private ScoredRow(int row, double score) {
+            this.row = row;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.qncontest.service.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.BitSet;
+
+/**
+ * 定长浮点向量的堆外连续存储（非线程安全，由SessionVectorIndex加锁访问）
+ * 所有向量按行紧凑排列在一块直接内存中，不产生每条记忆一个float[]的对象开销和GC压力；
+ * 容量不足时按倍数扩容并整体复制；被删除的行通过compact复制到新的紧凑段后释放。
+ */
+class VectorSegment {
+
+    private static final int INITIAL_ROWS = 64;
+
+    private final int dimension;
+    private ByteBuffer buffer;
+    private FloatBuffer floats;
+    private int rows = 0;
+
+    VectorSegment(int dimension) {
+        this(dimension, INITIAL_ROWS);
+    }
+
+    private VectorSegment(int dimension, int capacityRows) {
+        this.dimension = dimension;
+        allocate(Math.max(INITIAL_ROWS, capacityRows));
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * 已占用的堆外内存字节数
+     */
+    long capacityBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 追加一行向量，返回行号
+     */
+    int append(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: expected=" + dimension + ", actual=" + vector.length);
+        }
+        if ((rows + 1) * dimension > floats.capacity()) {
+            grow();
+        }
+        floats.put(rows * dimension, vector);
+        return rows++;
+    }
+
+    /**
+     * 按原顺序只复制未被删除的行，生成新的紧凑段（原段随后由GC回收其堆外内存）
+     */
+    VectorSegment compact(BitSet removed) {
+        VectorSegment compacted = new VectorSegment(dimension, rows - removed.cardinality());
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            compacted.floats.put(compacted.rows * dimension, floats, row * dimension, dimension);
+            compacted.rows++;
+        }
+        return compacted;
+    }
+
+    /**
+     * 把指定行复制到target
+     */
+    float[] read(int row, float[] target) {
+        floats.get(row * dimension, target);
+        return target;
+    }
+
+    /**
+     * 计算从firstRow开始连续count行与查询向量的点积（向量已归一化时即余弦相似度），写入out[0..count)
+     * 整块批量复制到堆上的scratch（长度不少于count*dimension）后再计算，避免逐元素读取堆外内存的边界检查开销
+     */
+    void dots(int firstRow, int count, float[] query, float[] scratch, float[] out) {
+        floats.get(firstRow * dimension, scratch, 0, count * dimension);
+        for (int r = 0; r < count; r++) {
+            out[r] = dot(scratch, r * dimension, query, dimension);
+        }
+    }
+
+    /**
+     * 单行与查询向量的点积，scratch长度不少于dimension
+     */
+    float dot(int row, float[] query, float[] scratch) {
+        floats.get(row * dimension, scratch, 0, dimension);
+        return dot(scratch, 0, query, dimension);
+    }
+
+    /**
+     * 四路展开的点积，减少循环携带依赖
+     */
+    static float dot(float[] a, int offset, float[] b, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[offset + i] * b[i];
+            s1 += a[offset + i + 1] * b[i + 1];
+            s2 += a[offset + i + 2] * b[i + 2];
+            s3 += a[offset + i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[offset + i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private void grow() {
+        FloatBuffer old = floats;
+        allocate(Math.max(INITIAL_ROWS, rows * 2));
+        floats.put(0, old, 0, rows * dimension);
+    }
+
+    private void allocate(int capacityRows) {
+        buffer = ByteBuffer.allocateDirect(capacityRows * dimension * Float.BYTES).order(ByteOrder.nativeOrder());
+        floats = buffer.asFloatBuffer();
+    }
+}
@@ -1,9 +1,14 @@
 package com.qncontest.service.prompt;
 
+import com.qncontest.config.PromptConfig;
 import com.qncontest.entity.ChatSession;
 import com.qncontest.service.interfaces.PromptBuilderInterface;
 import com.qncontest.service.interfaces.WorldTemplateProcessorInterface;
 import com.qncontest.dto.WorldTemplateResponse;
+import com.qncontest.entity.WorldTemplate;
+import com.qncontest.service.SessionSummaryService;
+import com.qncontest.service.WorldTemplateCache;
+import com.qncontest.service.event.EventSummaryRenderer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -11,8 +16,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 提示词构建器 - 实现PromptBuilderInterface接口
@@ -45,6 +53,56 @@ public class PromptBuilder implements PromptBuilderInterface {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private PromptConfig.PromptProperties promptProperties;
+    
+    @Autowired
+    private EventSummaryRenderer eventSummaryRenderer;
+    
+    @Autowired
+    private SessionSummaryService sessionSummaryService;
+    
+    /**
+     * 按世界类型缓存的静态提示词层
+     */
+    private final Map<String, StaticPromptLayers> staticLayersByWorld = new ConcurrentHashMap<>();
+    
+    /**
+     * 预渲染的静态提示词层（不可变），template为渲染时使用的缓存模板，用于判断模板是否已更新
+     */
+    private static final class StaticPromptLayers {
+        private final WorldTemplateCache.CachedWorldTemplate template;
+        private final String head;
+        private final String beforeUserAction;
+        private final String afterUserAction;
+        
+        /**
+         * cache-stable布局使用的稳定前缀
+         */
+        private final String stablePrefix;
+        
+        /**
+         * 各静态段的预估token数，渲染时计算一次
+         */
+        private final int headTokens;
+        private final int beforeUserActionTokens;
+        private final int afterUserActionTokens;
+        private final int stablePrefixTokens;
+        
+        private StaticPromptLayers(WorldTemplateCache.CachedWorldTemplate template, String head,
+                                   String beforeUserAction, String afterUserAction, String stablePrefix) {
+            this.template = template;
+            this.head = head;
+            this.beforeUserAction = beforeUserAction;
+            this.afterUserAction = afterUserAction;
+            this.stablePrefix = stablePrefix;
+            this.headTokens = TokenEstimator.estimate(head);
+            this.beforeUserActionTokens = TokenEstimator.estimate(beforeUserAction);
+            this.afterUserActionTokens = TokenEstimator.estimate(afterUserAction);
+            this.stablePrefixTokens = TokenEstimator.estimate(stablePrefix);
+        }
+    }
+    
     /**
      * 角色扮演上下文
      */
@@ -102,38 +160,7 @@ public class PromptBuilder implements PromptBuilderInterface {
         StringBuilder prompt = new StringBuilder();
         
         // 第0层：从数据库获取世界模板信息
-        try {
-            Optional<WorldTemplateResponse> templateOpt = worldTemplateService.getWorldTemplate(context.getWorldType());
-            if (templateOpt.isPresent()) {
-                WorldTemplateResponse template = templateOpt.get();
-                
-                // 添加世界描述
-                if (template.getDescription() != null && !template.getDescription().trim().isEmpty()) {
-                    prompt.append("🌍 世界描述\n");
-                    prompt.append(template.getDescription()).append("\n\n");
-                }
-                
-                // 添加系统提示词模板
-                if (template.getSystemPromptTemplate() != null && !template.getSystemPromptTemplate().trim().isEmpty()) {
-                    prompt.append("📋 系统提示词模板\n");
-                    prompt.append(template.getSystemPromptTemplate()).append("\n\n");
-                }
-                
-                // 添加默认规则
-                if (template.getDefaultRules() != null && !template.getDefaultRules().trim().isEmpty() && !template.getDefaultRules().equals("{}")) {
-                    prompt.append("⚖️ 默认世界规则\n");
-                    prompt.append(parseDefaultRules(template.getDefaultRules())).append("\n\n");
-                }
-                
-                // 添加地点模板
-                if (template.getLocationTemplates() != null && !template.getLocationTemplates().trim().isEmpty() && !template.getLocationTemplates().equals("{}")) {
-                    prompt.append("📍 地点模板\n");
-                    prompt.append(parseLocationTemplates(template.getLocationTemplates())).append("\n\n");
-                }
-            }
-        } catch (Exception e) {
-            logger.warn("获取世界模板信息失败: {}", e.getMessage());
-        }
+        appendWorldTemplateLayer(prompt, context.getWorldType());
         
         // 第1层：世界观基础（保留原有逻辑作为备选）
         prompt.append("🌍 世界观设定\n");
@@ -255,158 +282,250 @@ public class PromptBuilder implements PromptBuilderInterface {
      * 构建DM智能评估提示词
      */
     public String buildDMAwarePrompt(RoleplayContext context) {
-        StringBuilder prompt = new StringBuilder();
+        List<PromptSection> sections = buildDMAwarePromptSections(context);
+        int length = 0;
+        for (PromptSection section : sections) {
+            length += section.text().length();
+        }
+        StringBuilder prompt = new StringBuilder(length);
+        for (PromptSection section : sections) {
+            prompt.append(section.text());
+        }
+        return prompt.toString();
+    }
+    
+    /**
+     * 按布局顺序构建DM提示词的各个段落（不做token预算裁剪，裁剪由RoleplayContextAssembler完成）
+     * 对话历史不再放入系统提示词，而是作为独立的对话消息发送
+     */
+    public List<PromptSection> buildDMAwarePromptSections(RoleplayContext context) {
+        StaticPromptLayers layers = getStaticLayers(context.getWorldType());
+        List<PromptSection> sections = new ArrayList<>(8);
 
-        // 第0层：从数据库获取世界模板信息
-        try {
-            Optional<WorldTemplateResponse> templateOpt = worldTemplateService.getWorldTemplate(context.getWorldType());
-            if (templateOpt.isPresent()) {
-                WorldTemplateResponse template = templateOpt.get();
-                
-                // 添加世界描述
-                if (template.getDescription() != null && !template.getDescription().trim().isEmpty()) {
-                    prompt.append("🌍 世界描述\n");
-                    prompt.append(template.getDescription()).append("\n\n");
-                }
-                
-                // 添加系统提示词模板
-                if (template.getSystemPromptTemplate() != null && !template.getSystemPromptTemplate().trim().isEmpty()) {
-                    prompt.append("📋 系统提示词模板\n");
-                    prompt.append(template.getSystemPromptTemplate()).append("\n\n");
-                }
-                
-                // 添加默认规则
-                if (template.getDefaultRules() != null && !template.getDefaultRules().trim().isEmpty() && !template.getDefaultRules().equals("{}")) {
-                    prompt.append("⚖️ 默认世界规则\n");
-                    prompt.append(parseDefaultRules(template.getDefaultRules())).append("\n\n");
-                }
-                
-                // 添加地点模板
-                if (template.getLocationTemplates() != null && !template.getLocationTemplates().trim().isEmpty() && !template.getLocationTemplates().equals("{}")) {
-                    prompt.append("📍 地点模板\n");
-                    prompt.append(parseLocationTemplates(template.getLocationTemplates())).append("\n\n");
-                }
-            }
-        } catch (Exception e) {
-            logger.warn("获取世界模板信息失败: {}", e.getMessage());
+        if (promptProperties.isCacheStableLayout()) {
+            // 稳定前缀：第0-2层与第6-8层（评估说明中不含本轮玩家行为），逐字节不随轮次变化
+            sections.add(PromptSection.required("stablePrefix", layers.stablePrefix, layers.stablePrefixTokens));
+            
+            // 第3-5层及本轮玩家行为：每轮变化的内容全部放在最后
+            addDynamicSections(sections, context);
+            sections.add(PromptSection.required("playerAction", "🎯 本轮玩家行为\n" + context.getCurrentMessage() + "\n"));
+            
+            return sections;
         }
 
-        // 第1层：世界观基础（保留原有逻辑作为备选）
-        prompt.append("🌍 世界观设定\n");
-        prompt.append(worldTemplateProcessor.getWorldFoundation(context.getWorldType()));
-        prompt.append("\n\n");
+        // 第0-2层：世界模板、世界观基础、DM角色定义（预渲染）
+        sections.add(PromptSection.required("head", layers.head, layers.headTokens));
 
-        // 第2层：角色定义（扩展为DM角色）
-        prompt.append("🎭 你的角色：地下城主（DM）\n");
-        prompt.append(worldTemplateProcessor.getDMCharacterDefinition(context.getWorldType()));
-        prompt.append("\n\n");
+        // 第3-5层：当前状态、轮次、事件历史、记忆
+        addDynamicSections(sections, context);
 
+        // 第6-8层：DM行为准则、评估指令、收敛目标（预渲染，只拼入本轮玩家行为）
+        String userAction = context.getCurrentMessage();
+        sections.add(PromptSection.required("tail",
+            layers.beforeUserAction + userAction + layers.afterUserAction,
+            layers.beforeUserActionTokens + TokenEstimator.estimate(userAction) + layers.afterUserActionTokens));
+
+        return sections;
+    }
+    
+    /**
+     * 添加每轮变化的段落：前情提要、当前状态、轮次与情节（必需），事件历史与记忆（可按预算丢弃）
+     */
+    private void addDynamicSections(List<PromptSection> sections, RoleplayContext context) {
+        // 前情提要：较早对话折叠后的摘要，长度有上限；每隔若干轮才变化一次，放在动态部分最前面
+        SessionSummaryService.Snapshot storySummary = sessionSummaryService.getSummary(context.getSessionId());
+        if (storySummary != null && !storySummary.summary().isEmpty()) {
+            sections.add(PromptSection.required("storySummary",
+                "📚 前情提要（截至第" + storySummary.coveredRounds() + "轮）\n" + storySummary.summary() + "\n\n"));
+        }
+        
         // 第3层：当前状态
-        prompt.append("📍 当前状态\n");
-        prompt.append(buildCurrentState(context));
-        prompt.append("\n\n");
+        StringBuilder state = new StringBuilder();
+        state.append("📍 当前状态\n");
+        state.append(buildCurrentState(context));
+        state.append("\n\n");
         
         // 重要提醒：不需要返回STATUS块
         if (context.getSkillsState() != null && !context.getSkillsState().isEmpty()) {
-            prompt.append("⚠️ 重要提醒：不需要在回复中返回STATUS块，角色状态由系统自动管理！\n\n");
+            state.append("⚠️ 重要提醒：不需要在回复中返回STATUS块，角色状态由系统自动管理！\n\n");
         }
+        sections.add(PromptSection.required("state", state.toString()));
 
         // 轮次与情节信息
+        String rounds = buildRoundsInfo(context);
+        if (!rounds.isEmpty()) {
+            sections.add(PromptSection.required("rounds", rounds));
+        }
+
+        // 第4层：最新事件历史
+        try {
+            String eventHistory = buildEventHistory(context.getSessionId());
+            if (!eventHistory.isEmpty()) {
+                sections.add(PromptSection.optional("events",
+                    "📜 最新事件历史\n" + eventHistory + "\n\n", PromptSection.PRIORITY_EVENTS));
+            }
+        } catch (Exception e) {
+            logger.debug("获取事件历史失败: {}", e.getMessage());
+        }
+
+        // 第5层：记忆上下文（使用简化的记忆上下文构建方法）
+        try {
+            String memoryContext = memoryService.buildMemoryContext(context.getSessionId(), context.getCurrentMessage());
+            if (!memoryContext.isEmpty()) {
+                sections.add(PromptSection.optional("memory",
+                    "🧠 相关记忆\n" + memoryContext + "\n\n", PromptSection.PRIORITY_MEMORY));
+            }
+        } catch (Exception e) {
+            logger.debug("获取记忆上下文失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 构建轮次与情节信息
+     */
+    private String buildRoundsInfo(RoleplayContext context) {
+        StringBuilder rounds = new StringBuilder();
         try {
             // 获取实际的对话轮数（基于用户消息数量）
             int actualRounds = getActualConversationRounds(context.getSessionId());
             
-            prompt.append("⏱️ 轮次与情节\n");
-            prompt.append("当前总轮数: ").append(actualRounds).append(" (基于实际对话轮数)\n");
+            rounds.append("⏱️ 轮次与情节\n");
+            rounds.append("当前总轮数: ").append(actualRounds).append(" (基于实际对话轮数)\n");
             
             if (context.getCurrentArcStartRound() != null) {
-                prompt.append("当前情节起始轮数: ").append(context.getCurrentArcStartRound()).append("\n");
+                rounds.append("当前情节起始轮数: ").append(context.getCurrentArcStartRound()).append("\n");
             }
             if (context.getCurrentArcName() != null && !context.getCurrentArcName().isEmpty()) {
-                prompt.append("当前情节名称: ").append(context.getCurrentArcName()).append("\n");
+                rounds.append("当前情节名称: ").append(context.getCurrentArcName()).append("\n");
             }
             if (context.getCurrentArcStartRound() != null) {
                 int arcRounds = Math.max(1, actualRounds - context.getCurrentArcStartRound() + 1);
-                prompt.append("当前情节已进行轮数: ").append(arcRounds).append("\n");
+                rounds.append("当前情节已进行轮数: ").append(arcRounds).append("\n");
                 
                 // 如果情节已进行超过5轮，提醒需要切换
                 if (arcRounds >= 5) {
-                    prompt.append("⚠️ 情节切换提醒：当前情节已进行").append(arcRounds).append("轮，建议在arcUpdates中更新情节名称和起始轮数\n");
+                    rounds.append("⚠️ 情节切换提醒：当前情节已进行").append(arcRounds).append("轮，建议在arcUpdates中更新情节名称和起始轮数\n");
                 }
             }
-            prompt.append("\n");
+            rounds.append("\n");
         } catch (Exception e) {
             logger.debug("获取实际对话轮数失败: {}", e.getMessage());
             // 降级处理：使用原有的totalRounds
             if (context.getTotalRounds() != null) {
-                prompt.append("⏱️ 轮次与情节\n");
-                prompt.append("当前总轮数: ").append(context.getTotalRounds()).append(" (降级显示)\n");
+                rounds.append("⏱️ 轮次与情节\n");
+                rounds.append("当前总轮数: ").append(context.getTotalRounds()).append(" (降级显示)\n");
                 if (context.getCurrentArcStartRound() != null) {
-                    prompt.append("当前情节起始轮数: ").append(context.getCurrentArcStartRound()).append("\n");
+                    rounds.append("当前情节起始轮数: ").append(context.getCurrentArcStartRound()).append("\n");
                 }
                 if (context.getCurrentArcName() != null && !context.getCurrentArcName().isEmpty()) {
-                    prompt.append("当前情节名称: ").append(context.getCurrentArcName()).append("\n");
+                    rounds.append("当前情节名称: ").append(context.getCurrentArcName()).append("\n");
                 }
                 if (context.getCurrentArcStartRound() != null) {
                     int arcRounds = Math.max(1, context.getTotalRounds() - context.getCurrentArcStartRound() + 1);
-                    prompt.append("当前情节已进行轮数: ").append(arcRounds).append("\n");
+                    rounds.append("当前情节已进行轮数: ").append(arcRounds).append("\n");
                 }
-                prompt.append("\n");
+                rounds.append("\n");
             }
         }
-
-        // 第4层：最新对话历史
+        return rounds.toString();
+    }
+    
+    /**
+     * 获取世界类型对应的静态提示词层；世界模板缓存失效重新加载后（模板对象变化）自动重新渲染
+     * 只缓存有世界模板的类型（数量受模板表限制），请求中任意传入的未知世界类型每次直接渲染，不占用缓存；
+     * 读取模板失败时沿用该类型上次渲染的结果
+     */
+    private StaticPromptLayers getStaticLayers(String worldType) {
+        StaticPromptLayers layers = worldType != null ? staticLayersByWorld.get(worldType) : null;
+        WorldTemplateCache.CachedWorldTemplate cached;
         try {
-            String conversationHistory = buildConversationHistory(context.getSessionId());
-            if (!conversationHistory.isEmpty()) {
-                prompt.append("💬 最新对话历史\n");
-                prompt.append(conversationHistory);
-                prompt.append("\n\n");
-            }
+            cached = worldTemplateService.getCachedTemplate(worldType).orElse(null);
         } catch (Exception e) {
-            logger.debug("获取对话历史失败: {}", e.getMessage());
+            logger.warn("获取世界模板信息失败: {}", e.getMessage());
+            return layers != null ? layers : compileStaticLayers(worldType, null);
         }
-
-        // 第5层：最新事件历史
-        try {
-            String eventHistory = buildEventHistory(context.getSessionId());
-            if (!eventHistory.isEmpty()) {
-                prompt.append("📜 最新事件历史\n");
-                prompt.append(eventHistory);
-                prompt.append("\n\n");
+        
+        if (cached == null) {
+            if (layers != null) {
+                staticLayersByWorld.remove(worldType, layers);
             }
-        } catch (Exception e) {
-            logger.debug("获取事件历史失败: {}", e.getMessage());
+            return compileStaticLayers(worldType, null);
         }
-
-        // 第6层：记忆上下文（使用简化的记忆上下文构建方法）
+        
+        if (layers == null || layers.template != cached) {
+            layers = compileStaticLayers(worldType, cached);
+            staticLayersByWorld.put(worldType, layers);
+            logger.info("DM提示词静态层已渲染: worldType={}, 稳定前缀长度={}", worldType, layers.stablePrefix.length());
+        }
+        return layers;
+    }
+    
+    /**
+     * 渲染只依赖世界类型（及模板内容）的提示词层
+     */
+    private StaticPromptLayers compileStaticLayers(String worldType, WorldTemplateCache.CachedWorldTemplate cached) {
+        StringBuilder head = new StringBuilder();
+        if (cached != null) {
+            appendTemplateSections(head, cached);
+        }
+        
+        head.append("🌍 世界观设定\n");
+        head.append(worldTemplateProcessor.getWorldFoundation(worldType));
+        head.append("\n\n");
+        
+        head.append("🎭 你的角色：地下城主（DM）\n");
+        head.append(worldTemplateProcessor.getDMCharacterDefinition(worldType));
+        head.append("\n\n");
+        
+        String guidelines = "⚖️ DM行为准则\n" + buildDMGuidelines(worldType) + "\n\n";
+        String convergenceGoals = "🎯 收敛目标\n" + buildConvergenceGoals(worldType);
+        
+        String beforeUserAction = guidelines + "\n\n🧠 行为评估指令\n" + ASSESSMENT_INSTRUCTIONS_BEFORE_ACTION;
+        String afterUserAction = ASSESSMENT_INSTRUCTIONS_AFTER_ACTION + "\n\n" + convergenceGoals;
+        String stablePrefix = head + guidelines + "\n\n🧠 行为评估指令\n" + ASSESSMENT_INSTRUCTIONS_STABLE
+            + "\n\n" + convergenceGoals + "\n\n";
+        
+        return new StaticPromptLayers(cached, head.toString(), beforeUserAction, afterUserAction, stablePrefix);
+    }
+    
+    /**
+     * 添加世界模板层（世界描述、系统提示词模板、默认规则、地点模板）
+     */
+    private void appendWorldTemplateLayer(StringBuilder prompt, String worldType) {
         try {
-            String memoryContext = memoryService.buildMemoryContext(context.getSessionId(), context.getCurrentMessage());
-            if (!memoryContext.isEmpty()) {
-                prompt.append("🧠 相关记忆\n");
-                prompt.append(memoryContext);
-                prompt.append("\n\n");
-            }
+            worldTemplateService.getCachedTemplate(worldType)
+                .ifPresent(cached -> appendTemplateSections(prompt, cached));
         } catch (Exception e) {
-            logger.debug("获取记忆上下文失败: {}", e.getMessage());
+            logger.warn("获取世界模板信息失败: {}", e.getMessage());
+        }
+    }
+    
+    private void appendTemplateSections(StringBuilder prompt, WorldTemplateCache.CachedWorldTemplate cached) {
+        WorldTemplate template = cached.getTemplate();
+        
+        // 添加世界描述
+        if (template.getDescription() != null && !template.getDescription().trim().isEmpty()) {
+            prompt.append("🌍 世界描述\n");
+            prompt.append(template.getDescription()).append("\n\n");
+        }
+        
+        // 添加系统提示词模板
+        if (template.getSystemPromptTemplate() != null && !template.getSystemPromptTemplate().trim().isEmpty()) {
+            prompt.append("📋 系统提示词模板\n");
+            prompt.append(template.getSystemPromptTemplate()).append("\n\n");
+        }
+        
+        // 添加默认规则
+        if (template.getDefaultRules() != null && !template.getDefaultRules().trim().isEmpty() && !template.getDefaultRules().equals("{}")) {
+            prompt.append("⚖️ 默认世界规则\n");
+            prompt.append(parseDefaultRules(cached.getDefaultRules())).append("\n\n");
+        }
+        
+        // 添加地点模板
+        if (template.getLocationTemplates() != null && !template.getLocationTemplates().trim().isEmpty() && !template.getLocationTemplates().equals("{}")) {
+            prompt.append("📍 地点模板\n");
+            prompt.append(parseLocationTemplates(cached.getLocationTemplates())).append("\n\n");
         }
-
-        // 第6层：行为准则（扩展为DM准则）
-        prompt.append("⚖️ DM行为准则\n");
-        prompt.append(buildDMGuidelines(context));
-        prompt.append("\n\n");
-
-
-        // 第7层：评估指令
-        prompt.append("\n\n🧠 行为评估指令\n");
-        prompt.append(buildAssessmentInstructions(context.getCurrentMessage()));
-        prompt.append("\n\n");
-
-        // 第8层：收敛目标
-        prompt.append("🎯 收敛目标\n");
-        prompt.append(buildConvergenceGoals(context.getWorldType()));
-
-        return prompt.toString();
     }
     
     /**
@@ -554,13 +673,14 @@ public class PromptBuilder implements PromptBuilderInterface {
      */
     private String getWorldSpecificRules(String worldType) {
         try {
-            Optional<WorldTemplateResponse> templateOpt = worldTemplateService.getWorldTemplate(worldType);
-            if (templateOpt.isPresent()) {
-                WorldTemplateResponse template = templateOpt.get();
+            Optional<WorldTemplateCache.CachedWorldTemplate> cachedOpt = worldTemplateService.getCachedTemplate(worldType);
+            if (cachedOpt.isPresent()) {
+                WorldTemplateCache.CachedWorldTemplate cached = cachedOpt.get();
+                WorldTemplate template = cached.getTemplate();
                 
                 // 使用数据库中的默认规则
                 if (template.getDefaultRules() != null && !template.getDefaultRules().trim().isEmpty() && !template.getDefaultRules().equals("{}")) {
-                    return "\n\n" + parseDefaultRules(template.getDefaultRules());
+                    return "\n\n" + parseDefaultRules(cached.getDefaultRules());
                 }
             }
         } catch (Exception e) {
@@ -573,7 +693,7 @@ public class PromptBuilder implements PromptBuilderInterface {
     /**
      * 构建DM行为准则
      */
-    private String buildDMGuidelines(RoleplayContext context) {
+    private String buildDMGuidelines(String worldType) {
         String commonRules = """
             🎯 核心原则
             1. 用户完全自由：接受任何合理的用户行为，不限制玩家选择
@@ -619,7 +739,7 @@ public class PromptBuilder implements PromptBuilderInterface {
             """;
 
         // 从数据库获取世界特定规则
-        String worldSpecificRules = getWorldSpecificRules(context.getWorldType());
+        String worldSpecificRules = getWorldSpecificRules(worldType);
         
         // 添加通用的强制场景切换规则
         worldSpecificRules += "\n- 强制场景切换：在同一个场景中最多进行5轮对话，第5轮后必须强制切换场景或更新任务";
@@ -629,10 +749,9 @@ public class PromptBuilder implements PromptBuilderInterface {
     
 
     /**
-     * 构建评估指令
+     * 评估指令模板，%s处为本轮玩家行为；按该位置拆分为前后两段常量，拼接时无需String.format
      */
-    private String buildAssessmentInstructions(String userAction) {
-        return String.format("""
+    private static final String ASSESSMENT_INSTRUCTIONS_TEMPLATE = """
             📝 评估任务
             请仔细评估玩家的以下行为："%s"
 
@@ -870,18 +989,30 @@ JSON字段使用原则：
             - 使用英文字段名：ruleCompliance、contextConsistency、convergenceProgress、overallScore、strategy等
             - strategy取值：ACCEPT、ADJUST、CORRECT
             - 用§包裹，放在回复最后
-            """, userAction);
-    }
+            """;
+    
+    private static final String ASSESSMENT_INSTRUCTIONS_BEFORE_ACTION =
+        ASSESSMENT_INSTRUCTIONS_TEMPLATE.substring(0, ASSESSMENT_INSTRUCTIONS_TEMPLATE.indexOf("%s"));
+    
+    private static final String ASSESSMENT_INSTRUCTIONS_AFTER_ACTION =
+        ASSESSMENT_INSTRUCTIONS_TEMPLATE.substring(ASSESSMENT_INSTRUCTIONS_TEMPLATE.indexOf("%s") + 2);
+    
+    /**
+     * cache-stable布局下的评估指令：不内嵌玩家行为（玩家行为放在提示词末尾），内容逐字节稳定
+     */
+    private static final String ASSESSMENT_INSTRUCTIONS_STABLE =
+        ASSESSMENT_INSTRUCTIONS_TEMPLATE.replace("的以下行为：\"%s\"", "本轮的行为（见提示词末尾的“本轮玩家行为”）");
     
     /**
      * 构建收敛目标信息
      */
     private String buildConvergenceGoals(String worldType) {
         try {
-            Optional<WorldTemplateResponse> templateOpt = worldTemplateService.getWorldTemplate(worldType);
+            Optional<WorldTemplateCache.CachedWorldTemplate> cachedOpt = worldTemplateService.getCachedTemplate(worldType);
 
-            if (templateOpt.isPresent()) {
-                WorldTemplateResponse template = templateOpt.get();
+            if (cachedOpt.isPresent()) {
+                WorldTemplateCache.CachedWorldTemplate cached = cachedOpt.get();
+                WorldTemplate template = cached.getTemplate();
                 
                 // 构建基本信息
                 StringBuilder convergenceInfo = new StringBuilder();
@@ -900,7 +1031,7 @@ JSON字段使用原则：
                 if (convergenceScenarios != null && !convergenceScenarios.trim().isEmpty() && !convergenceScenarios.equals("{}")) {
                     convergenceInfo.append("📖 故事收敛节点\n");
                     convergenceInfo.append("根据你的选择和行为，故事将向以下收敛点发展：\n");
-                    convergenceInfo.append(parseConvergenceScenarios(convergenceScenarios));
+                    convergenceInfo.append(parseConvergenceScenarios(cached.getConvergenceScenarios()));
                     convergenceInfo.append("\n\n");
                 }
 
@@ -908,7 +1039,7 @@ JSON字段使用原则：
                 String convergenceRules = template.getConvergenceRules();
                 if (convergenceRules != null && !convergenceRules.trim().isEmpty() && !convergenceRules.equals("{}")) {
                     convergenceInfo.append("⚖️ 收敛规则\n");
-                    convergenceInfo.append(parseConvergenceRules(convergenceRules));
+                    convergenceInfo.append(parseConvergenceRules(cached.getConvergenceRules()));
                     convergenceInfo.append("\n\n");
                 }
 
@@ -960,12 +1091,13 @@ JSON字段使用原则：
     
     
     /**
-     * 解析收敛场景JSON数据
+     * 解析收敛场景（模板缓存中预解析的JSON，为null表示原JSON无法解析）
      */
-    private String parseConvergenceScenarios(String convergenceScenariosJson) {
+    private String parseConvergenceScenarios(JsonNode scenarios) {
+        if (scenarios == null) {
+            return "- 多个精彩结局等待你的探索\n";
+        }
         try {
-            JsonNode scenarios = objectMapper.readTree(convergenceScenariosJson);
-            
             StringBuilder scenarioInfo = new StringBuilder();
             
             // 解析主要收敛点
@@ -1009,12 +1141,13 @@ JSON字段使用原则：
     }
     
     /**
-     * 解析收敛规则JSON数据
+     * 解析收敛规则（模板缓存中预解析的JSON，为null表示原JSON无法解析）
      */
-    private String parseConvergenceRules(String convergenceRulesJson) {
+    private String parseConvergenceRules(JsonNode rules) {
+        if (rules == null) {
+            return "- 故事将根据你的选择和进展自然收敛\n";
+        }
         try {
-            JsonNode rules = objectMapper.readTree(convergenceRulesJson);
-            
             StringBuilder rulesInfo = new StringBuilder();
             
             if (rules.has("convergence_threshold")) {
@@ -1040,12 +1173,13 @@ JSON字段使用原则：
     }
     
     /**
-     * 解析默认规则JSON数据
+     * 解析默认规则（模板缓存中预解析的JSON，为null表示原JSON无法解析）
      */
-    private String parseDefaultRules(String defaultRulesJson) {
+    private String parseDefaultRules(JsonNode rules) {
+        if (rules == null) {
+            return "- 使用默认世界规则\n";
+        }
         try {
-            JsonNode rules = objectMapper.readTree(defaultRulesJson);
-            
             StringBuilder rulesInfo = new StringBuilder();
             
             // 遍历所有规则字段
@@ -1063,12 +1197,13 @@ JSON字段使用原则：
     }
     
     /**
-     * 解析地点模板JSON数据
+     * 解析地点模板（模板缓存中预解析的JSON，为null表示原JSON无法解析）
      */
-    private String parseLocationTemplates(String locationTemplatesJson) {
+    private String parseLocationTemplates(JsonNode locations) {
+        if (locations == null) {
+            return "- 使用默认地点设置\n";
+        }
         try {
-            JsonNode locations = objectMapper.readTree(locationTemplatesJson);
-            
             StringBuilder locationInfo = new StringBuilder();
             
             // 处理不同的JSON结构
@@ -1103,7 +1238,7 @@ JSON字段使用原则：
     }
     
     /**
-     * 构建事件历史信息
+     * 构建事件历史信息（每个事件一行摘要）
      */
     private String buildEventHistory(String sessionId) {
         try {
@@ -1114,17 +1249,10 @@ JSON字段使用原则：
                 return "暂无事件记录";
             }
             
-            StringBuilder eventHistory = new StringBuilder();
-            
-            // 按时间顺序显示（最新的在前）
+            StringBuilder eventHistory = new StringBuilder(events.size() * 48);
+            // 查询结果按序号倒序，按发生顺序输出
             for (int i = events.size() - 1; i >= 0; i--) {
-                com.qncontest.entity.WorldEvent event = events.get(i);
-                
-                // 格式化事件信息
-                String eventInfo = formatEventInfo(event);
-                if (!eventInfo.isEmpty()) {
-                    eventHistory.append(String.format("%d. %s\n", events.size() - i, eventInfo));
-                }
+                eventHistory.append(eventSummaryRenderer.render(events.get(i))).append('\n');
             }
             
             return eventHistory.toString();
@@ -1134,59 +1262,13 @@ JSON字段使用原则：
         }
     }
     
-    /**
-     * 格式化单个事件信息
-     */
-    private String formatEventInfo(com.qncontest.entity.WorldEvent event) {
-        try {
-            StringBuilder eventInfo = new StringBuilder();
-            
-            // 添加事件类型和时间
-            eventInfo.append(String.format("[%s] ", event.getEventType().name()));
-            eventInfo.append(String.format("序列%d ", event.getSequence()));
-            
-            // 直接发送原始事件数据JSON，而不是解析后的内容
-            if (event.getEventData() != null && !event.getEventData().trim().isEmpty()) {
-                // 验证JSON格式（但不使用解析结果，直接发送原始数据）
-                try {
-                    objectMapper.readTree(event.getEventData());
-                    // JSON格式有效，直接发送原始数据
-                    eventInfo.append("事件数据: ").append(event.getEventData());
-                } catch (Exception jsonException) {
-                    // JSON格式无效，仍然发送原始字符串
-                    eventInfo.append("事件数据: ").append(event.getEventData());
-                }
-            } else {
-                eventInfo.append("无事件数据");
-            }
-            
-            // 添加时间信息（如果有）
-            if (event.getTimestamp() != null) {
-                eventInfo.append(String.format(" (时间: %s)", event.getTimestamp().toString()));
-            }
-            
-            return eventInfo.toString();
-        } catch (Exception e) {
-            logger.warn("格式化事件信息失败: eventId={}", event.getId(), e);
-            return String.format("[%s] 序列%d - 格式化失败", event.getEventType().name(), event.getSequence());
-        }
-    }
-    
     /**
      * 获取实际对话轮数（基于用户消息数量）
      */
     private int getActualConversationRounds(String sessionId) {
         try {
-            // 获取会话信息
-            com.qncontest.entity.ChatSession session = chatSessionService.getSessionById(sessionId);
-            if (session == null) {
-                logger.warn("会话不存在: sessionId={}", sessionId);
-                return 0;
-            }
-            
-            // 使用ChatSessionService获取用户消息数量
-            // 这里我们直接使用totalRounds，因为它已经在saveUserMessage中正确计算
-            Integer totalRounds = session.getTotalRounds();
+            // 直接使用totalRounds，因为它已经在saveUserMessage中正确计算；只查询该列
+            Integer totalRounds = chatSessionService.getTotalRounds(sessionId);
             if (totalRounds == null) {
                 return 0;
             }
@@ -1205,16 +1287,9 @@ JSON字段使用原则：
      */
     private String buildConversationHistory(String sessionId) {
         try {
-            // 获取会话信息
-            com.qncontest.entity.ChatSession session = chatSessionService.getSessionById(sessionId);
-            if (session == null) {
-                logger.warn("会话不存在: sessionId={}", sessionId);
-                return "";
-            }
-            
-            // 获取最近10轮对话历史
+            // 获取最近10条对话历史（只查询末尾10条，无需加载会话）
             List<com.qncontest.entity.ChatMessage> historyMessages = 
-                chatSessionService.getSessionHistory(session, 10);
+                chatSessionService.getRecentMessages(sessionId, 10);
             
             if (historyMessages.isEmpty()) {
                 return "";
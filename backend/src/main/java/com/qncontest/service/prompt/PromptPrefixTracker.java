@@ -0,0 +1,118 @@
+package com.qncontest.service.prompt;
+
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 系统提示词前缀复用追踪
+ * 对每轮实际发送的系统提示词按固定长度分块计算哈希，与该会话上一轮逐块比较，
+ * 得到两轮之间实际相同的前缀长度（可命中服务端前缀缓存的部分），并与布局声明的稳定前缀长度对照。
+ */
+@Component
+public class PromptPrefixTracker implements StatsProviderInterface {
+
+    /**
+     * 最多追踪的会话数量，超过后淘汰最久未使用的会话
+     */
+    private static final int MAX_TRACKED_SESSIONS = 10000;
+
+    /**
+     * 比较粒度（字符数），只比较完整的块，前缀长度按块向下取整
+     */
+    static final int BLOCK_CHARS = 256;
+
+    private final Map<String, long[]> lastBlocksBySession = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                return size() > MAX_TRACKED_SESSIONS;
+            }
+        });
+
+    private final AtomicLong firstTurns = new AtomicLong();
+    private final AtomicLong comparedTurns = new AtomicLong();
+    private final AtomicLong fullPrefixTurns = new AtomicLong();
+    private final AtomicLong sharedPrefixChars = new AtomicLong();
+    private final AtomicLong comparedPromptChars = new AtomicLong();
+    private final AtomicLong declaredPrefixChars = new AtomicLong();
+    private final AtomicLong totalPromptChars = new AtomicLong();
+
+    /**
+     * 记录一轮实际发送的系统提示词
+     * @param renderedPrompt 本轮发送的系统提示词全文
+     * @param declaredPrefixLength 布局声明的稳定前缀长度（提示词开头的稳定段落，没有时为0）
+     * @return 与该会话上一轮相同的前缀字符数（按块向下取整，首轮返回0）
+     */
+    public int record(String sessionId, String renderedPrompt, int declaredPrefixLength) {
+        long[] blocks = blockHashes(renderedPrompt);
+        declaredPrefixChars.addAndGet(declaredPrefixLength);
+        totalPromptChars.addAndGet(renderedPrompt.length());
+        long[] previous = sessionId != null ? lastBlocksBySession.put(sessionId, blocks) : null;
+        if (previous == null) {
+            firstTurns.incrementAndGet();
+            return 0;
+        }
+        int shared = sharedBlocks(previous, blocks) * BLOCK_CHARS;
+        comparedTurns.incrementAndGet();
+        sharedPrefixChars.addAndGet(shared);
+        comparedPromptChars.addAndGet(renderedPrompt.length());
+        if (shared >= declaredPrefixLength / BLOCK_CHARS * BLOCK_CHARS) {
+            fullPrefixTurns.incrementAndGet();
+        }
+        return shared;
+    }
+
+    @Override
+    public String getStatsName() {
+        return "promptPrefix";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long compared = comparedTurns.get();
+        long comparedChars = comparedPromptChars.get();
+        long total = totalPromptChars.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedSessions", lastBlocksBySession.size());
+        stats.put("firstTurns", firstTurns.get());
+        stats.put("comparedTurns", compared);
+        stats.put("fullPrefixTurns", fullPrefixTurns.get());
+        stats.put("prefixStability", compared > 0 ? (double) fullPrefixTurns.get() / compared : 0.0);
+        stats.put("sharedPrefixShare", comparedChars > 0 ? (double) sharedPrefixChars.get() / comparedChars : 0.0);
+        stats.put("declaredPrefixShare", total > 0 ? (double) declaredPrefixChars.get() / total : 0.0);
+        return stats;
+    }
+
+    /**
+     * 计算每个完整块的64位哈希
+     */
+    static long[] blockHashes(String text) {
+        long[] hashes = new long[text.length() / BLOCK_CHARS];
+        for (int block = 0; block < hashes.length; block++) {
+            long hash = 0xcbf29ce484222325L;
+            int end = (block + 1) * BLOCK_CHARS;
+            for (int i = block * BLOCK_CHARS; i < end; i++) {
+                hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+            }
+            hashes[block] = hash;
+        }
+        return hashes;
+    }
+
+    private static int sharedBlocks(long[] previous, long[] current) {
+        int limit = Math.min(previous.length, current.length);
+        int i = 0;
+        while (i < limit && previous[i] == current[i]) {
+            i++;
+        }
+        return i;
+    }
+}
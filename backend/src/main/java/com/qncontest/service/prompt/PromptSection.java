@@ -0,0 +1,35 @@
+package com.qncontest.service.prompt;
+
+/**
+ * 系统提示词中的一个段落
+ * required为true的段落总是保留；其余段落按priority（数值越小越优先）在token预算内取舍，整段保留或整段丢弃。
+ * @param name 段落名称（用于token用量统计）
+ * @param text 段落文本（含标题）
+ * @param tokens 预估token数
+ * @param required 是否必须保留
+ * @param priority 可选段落的优先级
+ */
+public record PromptSection(String name, String text, int tokens, boolean required, int priority) {
+
+    /**
+     * 记忆上下文的优先级（对话历史为1）
+     */
+    public static final int PRIORITY_MEMORY = 2;
+
+    /**
+     * 事件历史的优先级
+     */
+    public static final int PRIORITY_EVENTS = 3;
+
+    public static PromptSection required(String name, String text) {
+        return new PromptSection(name, text, TokenEstimator.estimate(text), true, 0);
+    }
+
+    public static PromptSection required(String name, String text, int tokens) {
+        return new PromptSection(name, text, tokens, true, 0);
+    }
+
+    public static PromptSection optional(String name, String text, int priority) {
+        return new PromptSection(name, text, TokenEstimator.estimate(text), false, priority);
+    }
+}
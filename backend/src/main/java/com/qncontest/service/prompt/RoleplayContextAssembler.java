@@ -0,0 +1,270 @@
+package com.qncontest.service.prompt;
+
+import com.qncontest.config.PromptConfig;
+import com.qncontest.service.RoleplayPromptEngine;
+import com.qncontest.service.SessionSummaryService;
+import com.qncontest.service.interfaces.ChatSessionManagerInterface;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 角色扮演上下文组装器
+ * 按token预算组装发送给大模型的消息：系统提示词中的必需段落（稳定前缀、状态、轮次、本轮玩家行为）和本轮用户消息总是保留，
+ * 剩余预算按优先级依次填充：历史对话（从最近一条往前）> 相关记忆 > 事件历史，放不下的可选段落整段丢弃。
+ * token数为本地估算值（见TokenEstimator），每次请求都会记录各段落的token用量。
+ */
+@Component
+public class RoleplayContextAssembler implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleplayContextAssembler.class);
+
+    private static final String SECTION_HISTORY = "history";
+    private static final String SECTION_CURRENT_MESSAGE = "currentMessage";
+
+    @Autowired
+    private RoleplayPromptEngine promptEngine;
+
+    @Autowired
+    private ChatSessionManagerInterface chatSessionService;
+
+    @Autowired
+    private PromptConfig.PromptProperties promptProperties;
+
+    @Autowired
+    private SessionSummaryService sessionSummaryService;
+
+    @Autowired
+    private PromptPrefixTracker prefixTracker;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong overBudgetRequests = new AtomicLong();
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final AtomicLong maxTokens = new AtomicLong();
+    private final AtomicLong droppedHistoryMessages = new AtomicLong();
+    private final ConcurrentHashMap<String, LongAdder> droppedSections = new ConcurrentHashMap<>();
+
+    /**
+     * 组装本轮请求的消息列表
+     * 调用前本轮用户消息应已保存，历史中末尾的这条消息会被去除，避免与本轮消息重复发送
+     */
+    public AssembledContext assemble(RoleplayPromptEngine.RoleplayContext context) {
+        int budget = promptProperties.getContextTokenBudget();
+        String currentMessage = context.getCurrentMessage();
+        List<PromptSection> sections = promptEngine.buildDMAwarePromptSections(context);
+        List<com.qncontest.entity.ChatMessage> history = loadHistory(context.getSessionId(), currentMessage);
+
+        Map<String, Integer> usage = new LinkedHashMap<>();
+        int currentMessageTokens = TokenEstimator.estimateMessage(currentMessage);
+        int used = TokenEstimator.MESSAGE_OVERHEAD + currentMessageTokens;
+        for (PromptSection section : sections) {
+            if (section.required()) {
+                used += section.tokens();
+                usage.merge(section.name(), section.tokens(), Integer::sum);
+            }
+        }
+
+        // 优先级1：对话历史，从最近一条往前，放不下即停止，保证保留的是连续的最近对话
+        int keptFrom = history.size();
+        int historyTokens = 0;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            int tokens = TokenEstimator.estimateMessage(history.get(i).getContent());
+            if (used + tokens > budget) {
+                break;
+            }
+            used += tokens;
+            historyTokens += tokens;
+            keptFrom = i;
+        }
+        usage.put(SECTION_HISTORY, historyTokens);
+
+        // 优先级2及以后：可选段落整段保留或整段丢弃
+        List<PromptSection> optional = new ArrayList<>();
+        for (PromptSection section : sections) {
+            if (!section.required()) {
+                optional.add(section);
+            }
+        }
+        optional.sort(Comparator.comparingInt(PromptSection::priority));
+        Set<PromptSection> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PromptSection section : optional) {
+            if (used + section.tokens() > budget) {
+                dropped.add(section);
+                continue;
+            }
+            used += section.tokens();
+            usage.put(section.name(), section.tokens());
+        }
+        usage.put(SECTION_CURRENT_MESSAGE, currentMessageTokens);
+
+        // 按原有布局顺序拼接保留的段落
+        int length = 0;
+        for (PromptSection section : sections) {
+            if (!dropped.contains(section)) {
+                length += section.text().length();
+            }
+        }
+        StringBuilder systemPrompt = new StringBuilder(length);
+        for (PromptSection section : sections) {
+            if (!dropped.contains(section)) {
+                systemPrompt.append(section.text());
+            }
+        }
+
+        String systemText = systemPrompt.toString();
+        recordPrefix(context.getSessionId(), systemText, sections, dropped);
+
+        List<ChatMessage> messages = new ArrayList<>(history.size() - keptFrom + 2);
+        messages.add(new SystemMessage(systemText));
+        for (int i = keptFrom; i < history.size(); i++) {
+            com.qncontest.entity.ChatMessage msg = history.get(i);
+            if (msg.getRole() == com.qncontest.entity.ChatMessage.MessageRole.USER) {
+                messages.add(new UserMessage(msg.getContent()));
+            } else {
+                messages.add(new AiMessage(msg.getContent()));
+            }
+        }
+        messages.add(new UserMessage(currentMessage));
+
+        List<String> droppedNames = new ArrayList<>(dropped.size());
+        for (PromptSection section : optional) {
+            if (dropped.contains(section)) {
+                droppedNames.add(section.name());
+            }
+        }
+        record(used, budget, keptFrom, droppedNames);
+        logger.info("📐 上下文token用量: sessionId={}, 合计={}/{}, 分段={}, 历史消息={}/{}, 丢弃段落={}",
+            context.getSessionId(), used, budget, usage, history.size() - keptFrom, history.size(), droppedNames);
+
+        return new AssembledContext(messages, usage, used, budget, droppedNames);
+    }
+
+    /**
+     * 用本轮实际发送的系统提示词记录前缀复用情况；声明的稳定前缀为渲染结果开头的第一个必需段落
+     */
+    private void recordPrefix(String sessionId, String systemText, List<PromptSection> sections, Set<PromptSection> dropped) {
+        int declaredPrefixLength = 0;
+        for (PromptSection section : sections) {
+            if (dropped.contains(section)) {
+                continue;
+            }
+            if (section.required()) {
+                declaredPrefixLength = section.text().length();
+            }
+            break;
+        }
+        int sharedPrefixLength = prefixTracker.record(sessionId, systemText, declaredPrefixLength);
+        logger.debug("系统提示词前缀复用: sessionId={}, 与上一轮相同的前缀长度={}, 声明的稳定前缀长度={}, 总长度={}",
+            sessionId, sharedPrefixLength, declaredPrefixLength, systemText.length());
+    }
+
+    @Override
+    public String getStatsName() {
+        return "context";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long requestCount = requests.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("budget", promptProperties.getContextTokenBudget());
+        stats.put("requests", requestCount);
+        stats.put("overBudgetRequests", overBudgetRequests.get());
+        stats.put("avgTokens", requestCount > 0 ? (double) totalTokens.get() / requestCount : 0.0);
+        stats.put("maxTokens", maxTokens.get());
+        stats.put("droppedHistoryMessages", droppedHistoryMessages.get());
+        Map<String, Long> dropped = new LinkedHashMap<>();
+        droppedSections.forEach((name, count) -> dropped.put(name, count.sum()));
+        stats.put("droppedSections", dropped);
+        return stats;
+    }
+
+    /**
+     * 读取历史消息，去掉末尾已保存的本轮用户消息和已折叠进前情提要的消息
+     * 未启用前情提要时只取最近maxHistoryMessages条；启用时返回前情提要覆盖范围之后的全部消息
+     * （两次折叠之间最多累积maxHistoryMessages + 2 * summaryEveryRounds条），由token预算从最早的一条开始裁剪，
+     * 保证每条消息要么已折叠进前情提要，要么以原文发送，不会两头都不覆盖。
+     */
+    private List<com.qncontest.entity.ChatMessage> loadHistory(String sessionId, String currentMessage) {
+        int maxHistory = Math.max(0, promptProperties.getMaxHistoryMessages());
+        boolean summaryEnabled = promptProperties.isSummaryEnabled();
+        int limit = summaryEnabled
+            ? maxHistory + 2 * Math.max(1, promptProperties.getSummaryEveryRounds())
+            : maxHistory;
+        try {
+            List<com.qncontest.entity.ChatMessage> recent = chatSessionService.getRecentMessages(sessionId, limit + 1);
+            List<com.qncontest.entity.ChatMessage> history = new ArrayList<>(recent);
+            if (!history.isEmpty()) {
+                com.qncontest.entity.ChatMessage last = history.get(history.size() - 1);
+                if (last.getRole() == com.qncontest.entity.ChatMessage.MessageRole.USER
+                        && last.getContent() != null && last.getContent().equals(currentMessage)) {
+                    history.remove(history.size() - 1);
+                }
+            }
+            if (history.size() > limit) {
+                history = history.subList(history.size() - limit, history.size());
+            }
+            if (!summaryEnabled) {
+                return history;
+            }
+            // 已折叠进前情提要的消息不再以原文发送
+            SessionSummaryService.Snapshot summary = sessionSummaryService.getSummary(sessionId);
+            int coveredThrough = summary != null ? summary.coveredThroughSequence() : 0;
+            int firstUncovered = 0;
+            while (firstUncovered < history.size() && history.get(firstUncovered).getSequenceNumber() <= coveredThrough) {
+                firstUncovered++;
+            }
+            return history.subList(firstUncovered, history.size());
+        } catch (Exception e) {
+            logger.warn("获取历史消息失败，本轮不携带历史: sessionId={}, error={}", sessionId, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private void record(int used, int budget, int droppedHistory, List<String> droppedNames) {
+        requests.incrementAndGet();
+        totalTokens.addAndGet(used);
+        maxTokens.accumulateAndGet(used, Math::max);
+        if (used > budget) {
+            // 必需段落本身已超出预算
+            overBudgetRequests.incrementAndGet();
+        }
+        droppedHistoryMessages.addAndGet(droppedHistory);
+        for (String name : droppedNames) {
+            droppedSections.computeIfAbsent(name, key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * 组装结果
+     * @param messages 发送给大模型的消息（系统提示词、历史对话、本轮用户消息）
+     * @param tokenUsage 各段落的预估token数
+     * @param totalTokens 合计预估token数
+     * @param budget 本次使用的预算
+     * @param droppedSections 因预算不足被丢弃的段落
+     */
+    public record AssembledContext(List<ChatMessage> messages, Map<String, Integer> tokenUsage,
+                                   int totalTokens, int budget, List<String> droppedSections) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.qncontest.service.prompt;
+
+/**
+ * 本地token数估算（不调用模型分词器）
+ * 中日韩文字、全角符号和表情按每字符1个token计，其余字符（英文、数字、空白、半角符号）按每4个字符1个token计。
+ * 对通义千问等模型的中文文本略偏保守，用于上下文预算控制已足够。
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每条对话消息的固定开销（角色标记等）
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int wide = 0;
+        int narrow = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x2E80) {
+                narrow++;
+            } else if (!Character.isLowSurrogate(c)) {
+                // 代理对（表情等）只计一次
+                wide++;
+            }
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    /**
+     * 估算一条对话消息的token数（含固定开销）
+     */
+    public static int estimateMessage(CharSequence content) {
+        return estimate(content) + MESSAGE_OVERHEAD;
+    }
+}
@@ -0,0 +1,224 @@
+package com.qncontest.service.stream;
+
+import com.qncontest.config.StreamConfig;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式响应完成后的异步处理管道
+ * 保存AI消息、评估JSON游戏逻辑等耗时操作不再阻塞大模型回调线程。
+ * 按会话ID哈希到固定的单线程通道，保证同一会话内的任务按提交顺序执行；每个通道的队列有界，
+ * 队列满时在提交线程中同步执行（背压）。
+ */
+@Component
+public class PostCompletionPipeline implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostCompletionPipeline.class);
+
+    @Autowired
+    private StreamConfig.StreamProperties streamProperties;
+
+    private ThreadPoolExecutor[] lanes;
+
+    /**
+     * 每个会话最近提交的任务，用于下一轮对话前等待上一轮处理完成
+     */
+    private final Map<String, SessionTask> lastTaskBySession = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicLong submittedTasks = new AtomicLong();
+    private final AtomicLong processedTasks = new AtomicLong();
+    private final AtomicLong failedTasks = new AtomicLong();
+    private final AtomicLong callerRunsTasks = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong totalProcessingMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int laneCount = Math.max(1, streamProperties.getPostCompletionWorkers());
+        int capacityPerLane = Math.max(1, streamProperties.getPostCompletionQueueCapacity() / laneCount);
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final String threadName = "post-complete-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacityPerLane), r -> {
+                    Thread thread = new Thread(r, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+        logger.info("流式完成处理管道已启动: lanes={}, queueCapacityPerLane={}", laneCount, capacityPerLane);
+    }
+
+    /**
+     * 提交会话的完成后处理任务
+     */
+    public void submit(String sessionId, Runnable task) {
+        String key = sessionId != null ? sessionId : "";
+        SessionTask sessionTask = new SessionTask(key, task);
+        SessionTask previous = lastTaskBySession.put(key, sessionTask);
+        submittedTasks.incrementAndGet();
+
+        try {
+            laneFor(key).execute(sessionTask);
+        } catch (RejectedExecutionException e) {
+            // 队列已满：先等待同会话的前序任务，再在当前线程执行，保持会话内顺序
+            callerRunsTasks.incrementAndGet();
+            logger.warn("完成处理队列已满，在当前线程同步执行: sessionId={}, queueDepth={}", key, getQueueDepth());
+            if (previous != null) {
+                waitQuietly(previous, streamProperties.getPostCompletionAwaitMs());
+            }
+            sessionTask.run();
+        }
+    }
+
+    /**
+     * 等待会话之前提交的处理任务完成（新一轮对话读取世界状态前调用）
+     */
+    public void awaitSession(String sessionId, long timeoutMs) {
+        if (sessionId == null) {
+            return;
+        }
+        SessionTask pending = lastTaskBySession.get(sessionId);
+        if (pending != null && !pending.isDone()) {
+            long start = System.currentTimeMillis();
+            waitQuietly(pending, timeoutMs);
+            logger.debug("等待上一轮完成处理: sessionId={}, waitedMs={}", sessionId, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 当前排队中的任务数量
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    @Override
+    public String getStatsName() {
+        return "postCompletion";
+    }
+
+    /**
+     * 获取管道统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long processed = processedTasks.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lanes", lanes.length);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("inProgress", inProgress.get());
+        stats.put("submittedTasks", submittedTasks.get());
+        stats.put("processedTasks", processed);
+        stats.put("failedTasks", failedTasks.get());
+        stats.put("callerRunsTasks", callerRunsTasks.get());
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        stats.put("avgLagMs", processed > 0 ? totalLagMs.get() / processed : 0);
+        stats.put("avgProcessingMs", processed > 0 ? totalProcessingMs.get() / processed : 0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        // 尽量处理完已排队的游戏逻辑，避免状态丢失
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("完成处理管道关闭超时，剩余任务数: {}", lane.getQueue().size());
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ThreadPoolExecutor laneFor(String sessionId) {
+        return lanes[Math.floorMod(sessionId.hashCode(), lanes.length)];
+    }
+
+    private void waitQuietly(SessionTask task, long timeoutMs) {
+        try {
+            task.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("等待会话完成处理超时: sessionId={}, timeoutMs={}", task.sessionId, timeoutMs);
+        } catch (ExecutionException e) {
+            // 任务自身的异常已在执行时记录
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 会话任务：记录排队延迟与处理耗时，完成后从会话索引中移除
+     */
+    private class SessionTask extends FutureTask<Void> {
+
+        private final String sessionId;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        private SessionTask(String sessionId, Runnable task) {
+            super(task, null);
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.currentTimeMillis();
+            long lag = startedAt - enqueuedAt;
+            lastLagMs.set(lag);
+            maxLagMs.accumulateAndGet(lag, Math::max);
+            totalLagMs.addAndGet(lag);
+            inProgress.incrementAndGet();
+            try {
+                super.run();
+            } finally {
+                inProgress.decrementAndGet();
+                processedTasks.incrementAndGet();
+                totalProcessingMs.addAndGet(System.currentTimeMillis() - startedAt);
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failedTasks.incrementAndGet();
+            logger.error("流式完成处理任务失败: sessionId={}", sessionId, t);
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            lastTaskBySession.remove(sessionId, this);
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.qncontest.service.stream;
 
 import com.alibaba.dashscope.exception.ApiException;
 import com.qncontest.entity.ChatSession;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import com.qncontest.service.interfaces.ChatSessionManagerInterface;
 import com.qncontest.service.RoleplayPromptEngine;
+import com.qncontest.dto.AssessmentResult;
 import com.qncontest.service.AssessmentExtractor;
 import com.qncontest.service.AssessmentGameLogicProcessor;
+import com.qncontest.service.SessionSummaryService;
+import com.qncontest.service.StreamingAssessmentExtractor;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.StreamingResponseHandler;
@@ -15,6 +19,7 @@ import dev.langchain4j.model.output.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -49,6 +54,15 @@ public class RetryableStreamResponseHandler {
     @Autowired
     private AssessmentGameLogicProcessor assessmentGameLogicProcessor;
     
+    @Autowired
+    private SseTokenCoalescer sseTokenCoalescer;
+    
+    @Autowired
+    private PostCompletionPipeline postCompletionPipeline;
+    
+    @Autowired
+    private SessionSummaryService sessionSummaryService;
+    
     private final ScheduledExecutorService retryExecutor = Executors.newScheduledThreadPool(2);
     
     /**
@@ -64,6 +78,9 @@ public class RetryableStreamResponseHandler {
         
         return new StreamingResponseHandler<AiMessage>() {
             private final StringBuilder fullResponse = new StringBuilder();
+            private final SseTokenCoalescer.CoalescingStream coalescer = sseTokenCoalescer.open(emitter, session.getSessionId());
+            private StreamingAssessmentExtractor assessmentStream = assessmentExtractor.newStreamingExtractor();
+            private boolean assessmentSent = false;
             private volatile boolean isCompleted = false;
             private int retryCount = 0;
             
@@ -80,19 +97,16 @@ public class RetryableStreamResponseHandler {
                         logger.trace("收到大模型token: {}", token);
                     }
                     
-                    // 发送JSON格式的数据，改进转义处理
-                    String escapedToken = token
-                            .replace("\\", "\\\\")  // 先转义反斜杠
-                            .replace("\"", "\\\"")  // 转义双引号
-                            .replace("\n", "\\n")   // 转义换行符
-                            .replace("\r", "\\r")   // 转义回车符
-                            .replace("\t", "\\t");  // 转义制表符
-                    
-                    String jsonData = "{\"content\":\"" + escapedToken + "\"}";
+                    // 评估块（§…§）内容增量解析，不转发给客户端；其余文本交给合并器发送
+                    String visibleText = assessmentStream.feed(token);
                     if (emitter != null) {
-                        emitter.send(SseEmitter.event()
-                                .name("message")
-                                .data(jsonData));
+                        if (!visibleText.isEmpty()) {
+                            coalescer.append(visibleText);
+                        }
+                        if (!assessmentSent && assessmentStream.isAssessmentComplete()) {
+                            assessmentSent = true;
+                            sendAssessmentEvent();
+                        }
                     }
                 } catch (IOException e) {
                     logger.error("发送SSE消息失败", e);
@@ -100,6 +114,20 @@ public class RetryableStreamResponseHandler {
                 }
             }
             
+            /**
+             * 评估解析完成后立即以assessment事件发送给客户端
+             */
+            private void sendAssessmentEvent() throws IOException {
+                AssessmentResult assessment = assessmentStream.getAssessment();
+                if (assessment == null) {
+                    return;
+                }
+                coalescer.flush();
+                emitter.send(SseEmitter.event()
+                        .name("assessment")
+                        .data(assessment, MediaType.APPLICATION_JSON));
+            }
+            
             @Override
             public void onComplete(Response<AiMessage> response) {
                 if (isCompleted) {
@@ -108,30 +136,33 @@ public class RetryableStreamResponseHandler {
                 }
                 try {
                     String fullText = fullResponse.toString();
+                    // 评估已在流式过程中增量解析完成
+                    AssessmentResult assessment = assessmentStream.getAssessment();
                     logger.info("=== 大模型完整响应 ===");
                     logger.info("响应内容: {}", fullText);
                     logger.info("=== 响应结束 ===");
                     
                     responseFuture.complete(fullText);
                     
-                    // 保存AI消息
-                    chatSessionService.saveAiMessage(session, fullText);
-                    
-                    // 处理指令解析
-                    
-                    // 处理评估JSON中的游戏逻辑
-                    logger.info("🎮 开始处理评估JSON中的游戏逻辑...");
-                    logger.info("🎮 会话ID: {}, 响应长度: {}", session.getSessionId(), fullText.length());
-                    processAssessmentGameLogic(session.getSessionId(), fullText);
-                    logger.info("🎮 评估JSON游戏逻辑处理完成");
-                    
+                    // 先通知客户端文本已完成（剩余合并内容在complete之前发出），
+                    // 客户端断开不影响后续保存消息与游戏逻辑处理
                     if (emitter != null) {
-                        emitter.send(SseEmitter.event()
-                                .name("complete")
-                                .data("{\"status\":\"completed\"}"));
-                        emitter.complete();
+                        try {
+                            coalescer.flush();
+                            emitter.send(SseEmitter.event()
+                                    .name("complete")
+                                    .data("{\"status\":\"completed\"}"));
+                        } catch (IOException | IllegalStateException e) {
+                            logger.warn("发送complete事件失败，继续执行完成处理: sessionId={}, error={}",
+                                       session.getSessionId(), e.getMessage());
+                        }
                     }
                     isCompleted = true;
+                    coalescer.close();
+                    
+                    // 保存AI消息与游戏逻辑交给完成处理管道异步执行，结果通过state事件发送
+                    postCompletionPipeline.submit(session.getSessionId(),
+                        () -> processRoleplayCompletion(emitter, session, fullText, assessment));
                     
                 } catch (Exception e) {
                     logger.error("完成角色扮演流式响应处理失败", e);
@@ -169,9 +200,15 @@ public class RetryableStreamResponseHandler {
                 
                 logger.info("准备进行第{}次重试，延迟{}ms", retryCount, delay);
                 
+                // 重试时模型从头重新生成：丢弃上一次尝试的文本，评估块重新解析并从输出中去除；
+                // 上一次尝试已发送过assessment事件时不再重复发送（assessmentSent保持为true）
+                fullResponse.setLength(0);
+                assessmentStream = assessmentExtractor.newStreamingExtractor();
+                
                 // 发送重试通知
                 if (emitter != null) {
                     try {
+                        coalescer.flush();
                         emitter.send(SseEmitter.event()
                                 .name("retry")
                                 .data("{\"retryCount\":" + retryCount + ",\"delay\":" + delay + "}"));
@@ -199,6 +236,7 @@ public class RetryableStreamResponseHandler {
             }
             
             private void handleError(Throwable error) {
+                coalescer.close();
                 if (isCompleted) {
                     logger.warn("尝试在已完成的emitter上处理错误，忽略");
                     return;
@@ -209,7 +247,7 @@ public class RetryableStreamResponseHandler {
                         String userFriendlyMessage = apiErrorHandler.getUserFriendlyMessage(error);
                         emitter.send(SseEmitter.event()
                                 .name("error")
-                                .data("{\"error\":\"" + userFriendlyMessage.replace("\"", "\\\"") + "\"}"));
+                                .data("{\"error\":\"" + SseTokenEncoder.escapeJson(userFriendlyMessage) + "\"}"));
                     } catch (IOException e) {
                         logger.error("发送错误事件失败", e);
                     }
@@ -241,6 +279,7 @@ public class RetryableStreamResponseHandler {
         
         return new StreamingResponseHandler<AiMessage>() {
             private final StringBuilder fullResponse = new StringBuilder();
+            private final SseTokenCoalescer.CoalescingStream coalescer = sseTokenCoalescer.open(emitter, session.getSessionId());
             private volatile boolean isCompleted = false;
             private int retryCount = 0;
             
@@ -257,19 +296,9 @@ public class RetryableStreamResponseHandler {
                         logger.trace("收到大模型token: {}", token);
                     }
                     
-                    // 发送JSON格式的数据，改进转义处理
-                    String escapedToken = token
-                            .replace("\\", "\\\\")  // 先转义反斜杠
-                            .replace("\"", "\\\"")  // 转义双引号
-                            .replace("\n", "\\n")   // 转义换行符
-                            .replace("\r", "\\r")   // 转义回车符
-                            .replace("\t", "\\t");  // 转义制表符
-                    
-                    String jsonData = "{\"content\":\"" + escapedToken + "\"}";
+                    // 交给合并器，按字节阈值或最大延迟合并发送
                     if (emitter != null) {
-                        emitter.send(SseEmitter.event()
-                                .name("message")
-                                .data(jsonData));
+                        coalescer.append(token);
                     }
                 } catch (IOException e) {
                     logger.error("发送SSE消息失败", e);
@@ -285,6 +314,8 @@ public class RetryableStreamResponseHandler {
                 }
                 try {
                     String fullText = fullResponse.toString();
+                    // 先发送合并器中剩余的内容，保证complete事件在最后
+                    coalescer.flush();
                     // logger.info("=== 大模型完整响应 ===");
                     // logger.info("响应内容: {}", fullText);
                     // logger.info("=== 响应结束 ===");
@@ -305,6 +336,7 @@ public class RetryableStreamResponseHandler {
                         emitter.complete();
                     }
                     isCompleted = true;
+                    coalescer.close();
                     
                 } catch (Exception e) {
                     logger.error("完成流式响应处理失败", e);
@@ -342,9 +374,13 @@ public class RetryableStreamResponseHandler {
                 
                 logger.info("准备进行第{}次重试，延迟{}ms", retryCount, delay);
                 
+                // 重试时模型从头重新生成，丢弃上一次尝试的文本
+                fullResponse.setLength(0);
+                
                 // 发送重试通知
                 if (emitter != null) {
                     try {
+                        coalescer.flush();
                         emitter.send(SseEmitter.event()
                                 .name("retry")
                                 .data("{\"retryCount\":" + retryCount + ",\"delay\":" + delay + "}"));
@@ -372,6 +408,7 @@ public class RetryableStreamResponseHandler {
             }
             
             private void handleError(Throwable error) {
+                coalescer.close();
                 if (isCompleted) {
                     logger.warn("尝试在已完成的emitter上处理错误，忽略");
                     return;
@@ -382,7 +419,7 @@ public class RetryableStreamResponseHandler {
                         String userFriendlyMessage = apiErrorHandler.getUserFriendlyMessage(error);
                         emitter.send(SseEmitter.event()
                                 .name("error")
-                                .data("{\"error\":\"" + userFriendlyMessage.replace("\"", "\\\"") + "\"}"));
+                                .data("{\"error\":\"" + SseTokenEncoder.escapeJson(userFriendlyMessage) + "\"}"));
                     } catch (IOException e) {
                         logger.error("发送错误事件失败", e);
                     }
@@ -402,37 +439,99 @@ public class RetryableStreamResponseHandler {
     }
     
     /**
-     * 处理评估JSON中的游戏逻辑
+     * 角色扮演完成后处理（在完成处理管道中执行）：保存AI消息、处理评估游戏逻辑，
+     * 再通过state事件把处理结果发给客户端并关闭连接
      */
-    private void processAssessmentGameLogic(String sessionId, String aiResponse) {
+    private void processRoleplayCompletion(SseEmitter emitter, ChatSession session, String fullText,
+                                           AssessmentResult assessment) {
+        AssessmentResult processed = null;
         try {
-            logger.info("🔍 开始检查AI响应中的评估JSON: sessionId={}, 响应长度={}", sessionId, aiResponse.length());
+            // 保存AI消息
+            chatSessionService.saveAiMessage(session, fullText);
             
-            // 检查是否包含评估JSON
-            if (!assessmentExtractor.containsAssessment(aiResponse)) {
-                logger.info("ℹ️ AI响应中未包含评估JSON，跳过游戏逻辑处理");
-                return;
-            }
-            
-            logger.info("✅ 检测到评估JSON，开始提取...");
+            // 处理评估JSON中的游戏逻辑
+            logger.info("🎮 开始处理评估JSON中的游戏逻辑...");
+            logger.info("🎮 会话ID: {}, 响应长度: {}", session.getSessionId(), fullText.length());
+            processed = processAssessmentGameLogic(session.getSessionId(), assessment);
+            logger.info("🎮 评估JSON游戏逻辑处理完成");
             
-            // 提取评估结果
-            Map<String, Object> assessment = assessmentExtractor.extractAssessmentEntity(aiResponse);
+            // 后台检查是否需要把较早的对话折叠为前情提要（不阻塞本轮和下一轮）
+            sessionSummaryService.onRoundCompleted(session.getSessionId());
+        } catch (Exception e) {
+            logger.error("角色扮演完成后处理失败: sessionId={}", session.getSessionId(), e);
+        } finally {
+            sendStateAndComplete(emitter, session.getSessionId(), processed);
+        }
+    }
+    
+    /**
+     * 发送state事件并关闭emitter
+     */
+    private void sendStateAndComplete(SseEmitter emitter, String sessionId, AssessmentResult assessment) {
+        if (emitter == null) {
+            return;
+        }
+        try {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("status", "processed");
+            state.put("sessionId", sessionId);
+            state.put("assessmentProcessed", assessment != null);
+            if (assessment != null) {
+                // 只携带游戏状态相关的变更，未输出的字段不发送
+                putIfPresent(state, "strategy", assessment.strategy());
+                putIfPresent(state, "overallScore", assessment.overallScore());
+                putIfPresent(state, "questUpdates", assessment.questUpdates());
+                putIfPresent(state, "worldStateUpdates", assessment.worldStateUpdates());
+                putIfPresent(state, "diceRolls", assessment.diceRolls());
+                putIfPresent(state, "stateUpdates", assessment.stateUpdates());
+                putIfPresent(state, "arcUpdates", assessment.arcUpdates());
+                putIfPresent(state, "convergenceStatusUpdates", assessment.convergenceStatusUpdates());
+            }
+            emitter.send(SseEmitter.event()
+                    .name("state")
+                    .data(state, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            // 客户端可能在收到complete后已断开
+            logger.debug("发送state事件失败: sessionId={}, error={}", sessionId, e.getMessage());
+            try {
+                emitter.complete();
+            } catch (Exception ignored) {
+                // emitter已关闭
+            }
+        }
+    }
+    
+    private static void putIfPresent(Map<String, Object> target, String key, Object value) {
+        if (value != null) {
+            target.put(key, value);
+        }
+    }
+    
+    /**
+     * 处理评估JSON中的游戏逻辑
+     * @param assessment 流式过程中增量解析得到的评估结果
+     * @return 成功处理的评估结果，未包含或处理失败时返回null
+     */
+    private AssessmentResult processAssessmentGameLogic(String sessionId, AssessmentResult assessment) {
+        try {
             if (assessment == null) {
-                logger.warn("⚠️ 提取评估结果失败");
-                return;
+                logger.info("ℹ️ AI响应中未包含有效的评估JSON，跳过游戏逻辑处理");
+                return null;
             }
             
-            logger.info("✅ 成功提取评估结果: strategy={}, score={}", 
-                       assessment.get("strategy"), assessment.get("overallScore"));
+            logger.info("✅ 使用流式解析的评估结果: strategy={}, score={}", 
+                       assessment.strategy(), assessment.overallScore());
             
             // 处理评估JSON中的游戏逻辑
             logger.info("🎯 开始处理评估JSON中的游戏逻辑...");
             assessmentGameLogicProcessor.processAssessmentGameLogic(sessionId, assessment);
             logger.info("🎯 评估JSON游戏逻辑处理完成");
+            return assessment;
             
         } catch (Exception e) {
             logger.error("❌ 处理评估JSON游戏逻辑失败: sessionId={}", sessionId, e);
+            return null;
         }
     }
 }
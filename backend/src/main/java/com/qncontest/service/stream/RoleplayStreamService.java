@@ -1,5 +1,6 @@
 package com.qncontest.service.stream;
 
+import com.qncontest.config.StreamConfig;
 import com.qncontest.dto.RoleplayRequest;
 import com.qncontest.entity.ChatSession;
 import com.qncontest.entity.User;
@@ -8,6 +9,7 @@ import com.qncontest.service.interfaces.ResponseHandlerInterface;
 import com.qncontest.service.interfaces.StreamChatServiceInterface;
 import com.qncontest.service.interfaces.WorldStateManagerInterface;
 import com.qncontest.service.RoleplayPromptEngine;
+import com.qncontest.service.prompt.RoleplayContextAssembler;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
@@ -18,7 +20,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -46,11 +47,29 @@ public class RoleplayStreamService implements StreamChatServiceInterface {
     @Autowired
     private ResponseHandlerInterface responseHandler;
     
+    @Autowired
+    private StreamingExecutor streamingExecutor;
+    
+    @Autowired
+    private SseTokenCoalescer sseTokenCoalescer;
+    
+    @Autowired
+    private PostCompletionPipeline postCompletionPipeline;
+    
+    @Autowired
+    private StreamConfig.StreamProperties streamProperties;
+    
+    @Autowired
+    private RoleplayContextAssembler contextAssembler;
+    
     /**
      * 处理角色扮演消息（内部方法，支持无SSE的场景）
      */
     public void processRoleplayMessage(RoleplayRequest request, User user, SseEmitter emitter) {
         try {
+            // 等待上一轮的完成处理（AI消息保存、评估游戏逻辑）结束，保证读取到最新的会话与世界状态
+            postCompletionPipeline.awaitSession(request.getSessionId(), streamProperties.getPostCompletionAwaitMs());
+            
             // 处理会话
             ChatSession session = chatSessionService.getOrCreateSession(request.getSessionId(), user);
             chatSessionService.saveUserMessage(session, request.getMessage());
@@ -93,6 +112,7 @@ public class RoleplayStreamService implements StreamChatServiceInterface {
             } catch (java.util.concurrent.TimeoutException e) {
                 logger.error("角色扮演流式响应超时", e);
                 if (emitter != null) {
+                    sseTokenCoalescer.closeAll(emitter);
                     emitter.completeWithError(new RuntimeException("响应超时，请重试"));
                 }
                 return;
@@ -112,26 +132,36 @@ public class RoleplayStreamService implements StreamChatServiceInterface {
     public SseEmitter handleRoleplayStreamChat(RoleplayRequest request, User user) {
         SseEmitter emitter = new SseEmitter(300000L); // 5分钟超时
         
-        // 添加SSE连接状态监听
-        emitter.onCompletion(() -> logger.info("SSE连接正常完成: sessionId={}", request.getSessionId()));
-        emitter.onTimeout(() -> logger.warn("SSE连接超时: sessionId={}", request.getSessionId()));
-        emitter.onError((ex) -> logger.error("SSE连接错误: sessionId={}, error={}", request.getSessionId(), ex.getMessage(), ex));
+        // 添加SSE连接状态监听，连接结束时关闭该emitter上的token合并器
+        emitter.onCompletion(() -> {
+            logger.info("SSE连接正常完成: sessionId={}", request.getSessionId());
+            sseTokenCoalescer.closeAll(emitter);
+        });
+        emitter.onTimeout(() -> {
+            logger.warn("SSE连接超时: sessionId={}", request.getSessionId());
+            sseTokenCoalescer.closeAll(emitter);
+        });
+        emitter.onError((ex) -> {
+            logger.error("SSE连接错误: sessionId={}, error={}", request.getSessionId(), ex.getMessage(), ex);
+            sseTokenCoalescer.closeAll(emitter);
+        });
         
-        // 异步处理，复用processRoleplayMessage方法
-        CompletableFuture.runAsync(() -> {
+        // 在流式专用执行器中异步处理，复用processRoleplayMessage方法
+        boolean accepted = streamingExecutor.submit(request.getSessionId(), () -> {
             processRoleplayMessage(request, user, emitter);
         });
+        if (!accepted) {
+            emitter.completeWithError(new RuntimeException("服务繁忙，请稍后重试"));
+        }
         
         return emitter;
     }
     
     /**
-     * 构建角色扮演聊天历史
+     * 构建角色扮演聊天历史（系统提示词、历史对话和本轮消息按token预算组装）
      */
     private List<ChatMessage> buildRoleplayHistory(ChatSession session, RoleplayRequest request) {
-        List<ChatMessage> messages = new ArrayList<>();
-        
-        // 构建系统提示词
+        // 构建系统提示词上下文
         RoleplayPromptEngine.RoleplayContext context = new RoleplayPromptEngine.RoleplayContext(
             request.getWorldType(), session.getSessionId());
         context.setCurrentMessage(request.getMessage());
@@ -143,25 +173,7 @@ public class RoleplayStreamService implements StreamChatServiceInterface {
         context.setCurrentArcStartRound(session.getCurrentArcStartRound());
         context.setCurrentArcName(session.getCurrentArcName());
         
-        String systemPrompt = promptEngine.buildDMAwarePrompt(context);
-        messages.add(new SystemMessage(systemPrompt));
-        
-        // 添加历史消息
-        List<com.qncontest.entity.ChatMessage> historyMessages = 
-            chatSessionService.getSessionHistory(session, 10);
-        
-        for (com.qncontest.entity.ChatMessage msg : historyMessages) {
-            if (msg.getRole() == com.qncontest.entity.ChatMessage.MessageRole.USER) {
-                messages.add(new UserMessage(msg.getContent()));
-            } else {
-                messages.add(new dev.langchain4j.data.message.AiMessage(msg.getContent()));
-            }
-        }
-        
-        // 添加当前用户消息
-        messages.add(new UserMessage(request.getMessage()));
-        
-        return messages;
+        return contextAssembler.assemble(context).messages();
     }
     
     /**
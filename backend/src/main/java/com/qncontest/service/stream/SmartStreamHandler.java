@@ -20,8 +20,11 @@ public class SmartStreamHandler {
     
     private final ChatSessionManagerInterface chatSessionService;
     
-    public SmartStreamHandler(ChatSessionManagerInterface chatSessionService) {
+    private final SseTokenEncoder sseTokenEncoder;
+    
+    public SmartStreamHandler(ChatSessionManagerInterface chatSessionService, SseTokenEncoder sseTokenEncoder) {
         this.chatSessionService = chatSessionService;
+        this.sseTokenEncoder = sseTokenEncoder;
     }
     
     /**
@@ -36,6 +39,7 @@ public class SmartStreamHandler {
         return new StreamingResponseHandler<AiMessage>() {
             private final StringBuilder fullResponse = new StringBuilder();
             private final StringBuilder buffer = new StringBuilder();
+            private final SseTokenEncoder.TokenFrameBuffer frameBuffer = sseTokenEncoder.newBuffer();
             private volatile boolean isCompleted = false;
             private boolean inAssessmentJson = false;
             
@@ -135,17 +139,7 @@ public class SmartStreamHandler {
              * 将token作为JSON发送
              */
             private void sendTokenAsJson(String token) throws IOException {
-                String escapedToken = token
-                        .replace("\\", "\\\\")  // 先转义反斜杠
-                        .replace("\"", "\\\"")  // 转义双引号
-                        .replace("\n", "\\n")   // 转义换行符
-                        .replace("\r", "\\r")   // 转义回车符
-                        .replace("\t", "\\t");  // 转义制表符
-                
-                String jsonData = "{\"content\":\"" + escapedToken + "\"}";
-                emitter.send(SseEmitter.event()
-                        .name("message")
-                        .data(jsonData));
+                emitter.send(frameBuffer.contentEvent(token));
             }
             
             @Override
@@ -202,7 +196,7 @@ public class SmartStreamHandler {
                     try {
                         emitter.send(SseEmitter.event()
                                 .name("error")
-                                .data("{\"error\":\"" + error.getMessage() + "\"}"));
+                                .data("{\"error\":\"" + SseTokenEncoder.escapeJson(error.getMessage()) + "\"}"));
                         emitter.completeWithError(error);
                     } catch (IOException e) {
                         logger.error("发送错误信息失败", e);
@@ -0,0 +1,379 @@
+package com.qncontest.service.stream;
+
+import com.qncontest.config.AiConfig;
+import com.qncontest.config.StreamConfig;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式token合并器
+ * 位于StreamingResponseHandler.onNext与SseEmitter之间，将连续的token合并为一个SSE事件发送：
+ * 累积字节数达到阈值（ai.chat.stream-chunk-size）或距首个未发送token超过最大延迟时立即发送，以先到者为准。
+ * 合并器按emitter登记，emitter超时、出错或完成时由流服务调用 {@link #closeAll(SseEmitter)} 统一关闭，
+ * 避免大模型回调未到达时合并器泄漏、定时器继续向已失效的emitter发送。
+ * 所有流共用一个定时器线程，定时器只负责把到期的发送交给发送线程池；emitter.send不持有合并状态的锁，
+ * 一个客户端写入阻塞时不会拖慢其他流的定时发送，也不会阻塞本流继续累积token。
+ */
+@Component
+public class SseTokenCoalescer implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseTokenCoalescer.class);
+
+    @Autowired
+    private AiConfig.AiProperties aiProperties;
+
+    @Autowired
+    private StreamConfig.StreamProperties streamProperties;
+
+    @Autowired
+    private SseTokenEncoder sseTokenEncoder;
+
+    private final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-coalesce-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 定时触发的发送在此执行；每个流同时最多一个发送任务在排队，线程数不超过有待发送内容的流数
+     */
+    private final ExecutorService timerSender = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sse-coalesce-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 统计中列出的进行中流的数量上限
+     */
+    private static final int MAX_LISTED_STREAMS = 50;
+
+    private final Map<SseEmitter, Set<CoalescingStream>> streamsByEmitter = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final AtomicLong totalEvents = new AtomicLong();
+    private final AtomicLong sizeFlushes = new AtomicLong();
+    private final AtomicLong timerFlushes = new AtomicLong();
+    private final AtomicLong closedStreams = new AtomicLong();
+    private final AtomicLong closedStreamTokens = new AtomicLong();
+    private final AtomicLong closedStreamEvents = new AtomicLong();
+    private final AtomicLong maxEventsSavedPerStream = new AtomicLong();
+
+    /**
+     * 为一个流创建合并器
+     */
+    public CoalescingStream open(SseEmitter emitter, String streamId) {
+        openStreams.incrementAndGet();
+        boolean enabled = streamProperties.isCoalesceEnabled();
+        int threshold = enabled ? Math.max(1, aiProperties.getStreamChunkSize()) : 1;
+        long maxDelayMs = enabled ? Math.max(0, streamProperties.getCoalesceMaxDelayMs()) : 0;
+        CoalescingStream stream = new CoalescingStream(emitter, streamId, threshold, maxDelayMs);
+        if (emitter != null) {
+            streamsByEmitter.computeIfAbsent(emitter, key -> ConcurrentHashMap.newKeySet()).add(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * 关闭绑定到指定emitter的全部合并器（在emitter的onCompletion/onTimeout/onError回调中调用）
+     */
+    public void closeAll(SseEmitter emitter) {
+        if (emitter == null) {
+            return;
+        }
+        Set<CoalescingStream> streams = streamsByEmitter.remove(emitter);
+        if (streams == null) {
+            return;
+        }
+        for (CoalescingStream stream : streams) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "coalescing";
+    }
+
+    /**
+     * 获取全局合并统计
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long tokens = totalTokens.get();
+        long events = totalEvents.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", streamProperties.isCoalesceEnabled());
+        stats.put("byteThreshold", aiProperties.getStreamChunkSize());
+        stats.put("maxDelayMs", streamProperties.getCoalesceMaxDelayMs());
+        stats.put("openStreams", openStreams.get());
+        stats.put("tokensReceived", tokens);
+        stats.put("eventsSent", events);
+        stats.put("eventsSaved", Math.max(0, tokens - events));
+        stats.put("sizeFlushes", sizeFlushes.get());
+        stats.put("timerFlushes", timerFlushes.get());
+        stats.put("avgTokensPerEvent", events > 0 ? Math.round(tokens * 100.0 / events) / 100.0 : 0.0);
+        // 单个流的合并效果：已结束的流取平均和最大值（每个SSE事件对应一次写出和flush，省下的事件数即省下的写出次数），
+        // 进行中的流逐个列出（最多MAX_LISTED_STREAMS个）
+        long closedCount = closedStreams.get();
+        long closedTokens = closedStreamTokens.get();
+        long closedEvents = closedStreamEvents.get();
+        stats.put("closedStreams", closedCount);
+        stats.put("avgTokensPerStream", closedCount > 0 ? Math.round(closedTokens * 100.0 / closedCount) / 100.0 : 0.0);
+        stats.put("avgEventsPerStream", closedCount > 0 ? Math.round(closedEvents * 100.0 / closedCount) / 100.0 : 0.0);
+        stats.put("avgEventsSavedPerStream",
+            closedCount > 0 ? Math.round(Math.max(0, closedTokens - closedEvents) * 100.0 / closedCount) / 100.0 : 0.0);
+        stats.put("maxEventsSavedPerStream", maxEventsSavedPerStream.get());
+        Map<String, Map<String, Long>> active = new LinkedHashMap<>();
+        for (Set<CoalescingStream> streams : streamsByEmitter.values()) {
+            for (CoalescingStream stream : streams) {
+                if (active.size() >= MAX_LISTED_STREAMS) {
+                    break;
+                }
+                active.put(stream.streamId, stream.snapshot());
+            }
+        }
+        stats.put("activeStreams", active);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTimer.shutdownNow();
+        timerSender.shutdownNow();
+    }
+
+    /**
+     * 计算字符串的UTF-8字节数（不分配数组）
+     */
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 单个流的合并状态
+     * 状态（待发送内容、定时器、统计）由对象锁保护，只在取出待发送内容时短暂持有；
+     * 实际发送由sendLock串行化，保证事件顺序，发送期间不持有对象锁。
+     */
+    public class CoalescingStream {
+
+        private final SseEmitter emitter;
+        private final String streamId;
+        private final int byteThreshold;
+        private final long maxDelayMs;
+        private final StringBuilder pending = new StringBuilder();
+        private final SseTokenEncoder.TokenFrameBuffer frameBuffer = sseTokenEncoder.newBuffer();
+        private final ReentrantLock sendLock = new ReentrantLock();
+
+        private int pendingBytes = 0;
+        private ScheduledFuture<?> scheduledFlush;
+        private boolean timerSendQueued = false;
+        private IOException sendFailure;
+        private boolean closed = false;
+
+        private long tokens = 0;
+        private long events = 0;
+
+        private CoalescingStream(SseEmitter emitter, String streamId, int byteThreshold, long maxDelayMs) {
+            this.emitter = emitter;
+            this.streamId = streamId;
+            this.byteThreshold = byteThreshold;
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        /**
+         * 追加一个token，必要时立即发送
+         * @throws IOException 本次或之前由定时器触发的发送失败
+         */
+        public void append(String token) throws IOException {
+            boolean flushNow;
+            synchronized (this) {
+                throwIfFailed();
+                if (closed || token == null || token.isEmpty()) {
+                    return;
+                }
+                tokens++;
+                totalTokens.incrementAndGet();
+                pending.append(token);
+                pendingBytes += utf8Length(token);
+
+                flushNow = pendingBytes >= byteThreshold || maxDelayMs == 0;
+                if (flushNow) {
+                    sizeFlushes.incrementAndGet();
+                } else if (scheduledFlush == null && !timerSendQueued) {
+                    scheduledFlush = flushTimer.schedule(this::onTimer, maxDelayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (flushNow) {
+                sendPending();
+            }
+        }
+
+        /**
+         * 立即发送已累积的内容，在发送complete/error/retry等事件前调用以保证顺序
+         */
+        public void flush() throws IOException {
+            synchronized (this) {
+                throwIfFailed();
+            }
+            sendPending();
+        }
+
+        /**
+         * 关闭合并器，丢弃未发送内容并记录统计（不等待进行中的发送）
+         */
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelTimer();
+            pending.setLength(0);
+            pendingBytes = 0;
+            openStreams.decrementAndGet();
+            closedStreams.incrementAndGet();
+            closedStreamTokens.addAndGet(tokens);
+            closedStreamEvents.addAndGet(events);
+            maxEventsSavedPerStream.accumulateAndGet(Math.max(0, tokens - events), Math::max);
+            if (emitter != null) {
+                streamsByEmitter.computeIfPresent(emitter, (key, streams) -> {
+                    streams.remove(this);
+                    return streams.isEmpty() ? null : streams;
+                });
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("SSE合并统计: streamId={}, tokens={}, events={}, saved={}",
+                            streamId, tokens, events, Math.max(0, tokens - events));
+            }
+        }
+
+        public synchronized long getTokens() {
+            return tokens;
+        }
+
+        public synchronized long getEvents() {
+            return events;
+        }
+
+        private synchronized Map<String, Long> snapshot() {
+            Map<String, Long> snapshot = new LinkedHashMap<>();
+            snapshot.put("tokens", tokens);
+            snapshot.put("events", events);
+            snapshot.put("eventsSaved", Math.max(0, tokens - events));
+            return snapshot;
+        }
+
+        /**
+         * 定时器线程回调：只把发送交给发送线程池，不在定时器线程上写出
+         */
+        private synchronized void onTimer() {
+            scheduledFlush = null;
+            if (closed || sendFailure != null || pending.length() == 0 || timerSendQueued) {
+                return;
+            }
+            timerSendQueued = true;
+            try {
+                timerSender.execute(this::sendFromTimer);
+            } catch (RejectedExecutionException e) {
+                // 应用关闭中
+                timerSendQueued = false;
+            }
+        }
+
+        private void sendFromTimer() {
+            try {
+                timerFlushes.incrementAndGet();
+                sendPending();
+            } catch (IOException | RuntimeException e) {
+                // 发送线程无法直接通知处理器，记录后在下一次append/flush时抛出
+                synchronized (this) {
+                    sendFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                logger.warn("定时发送SSE合并内容失败: streamId={}, error={}", streamId, e.getMessage());
+            } finally {
+                synchronized (this) {
+                    timerSendQueued = false;
+                    // 发送期间又累积了内容且没有定时器：重新计时
+                    if (!closed && sendFailure == null && pending.length() > 0 && scheduledFlush == null) {
+                        scheduledFlush = flushTimer.schedule(this::onTimer, maxDelayMs, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 取出待发送内容并发送：取内容时持有对象锁，写出时只持有sendLock
+         */
+        private void sendPending() throws IOException {
+            sendLock.lock();
+            try {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    cancelTimer();
+                    if (pending.length() == 0 || closed) {
+                        return;
+                    }
+                    event = frameBuffer.contentEvent(pending);
+                    pending.setLength(0);
+                    pendingBytes = 0;
+                    events++;
+                    totalEvents.incrementAndGet();
+                }
+                if (emitter != null) {
+                    emitter.send(event);
+                }
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        private void cancelTimer() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        private void throwIfFailed() throws IOException {
+            if (sendFailure != null) {
+                throw sendFailure;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.qncontest.service.stream;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 流式SSE/JSON编码器
+ * 将token单次遍历转义后写入每个流复用的缓冲区，替代原先每个token五次String.replace + 字符串拼接的方式；
+ * SSE分帧仍交给SseEmitter.event()完成，每个事件只剩一次JSON文本的String分配。
+ */
+@Component
+public class SseTokenEncoder {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 默认缓冲区初始容量，足够容纳常见token及分帧开销
+     */
+    private static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+    /**
+     * 为一个流创建独立的编码缓冲区（非线程安全，同一个流内按顺序使用）
+     */
+    public TokenFrameBuffer newBuffer() {
+        return new TokenFrameBuffer(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * 将字符串按JSON字符串规则转义后追加到目标缓冲区（不含首尾引号）
+     * 处理双引号、反斜杠以及U+0000-U+001F范围内的全部控制字符
+     */
+    public static void appendJsonEscaped(StringBuilder target, CharSequence value) {
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            // 批量追加无需转义的片段
+            if (i > start) {
+                target.append(value, start, i);
+            }
+            switch (c) {
+                case '"' -> target.append("\\\"");
+                case '\\' -> target.append("\\\\");
+                case '\n' -> target.append("\\n");
+                case '\r' -> target.append("\\r");
+                case '\t' -> target.append("\\t");
+                case '\b' -> target.append("\\b");
+                case '\f' -> target.append("\\f");
+                default -> target.append("\\u00")
+                        .append(HEX_DIGITS[(c >> 4) & 0xF])
+                        .append(HEX_DIGITS[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            target.append(value, start, length);
+        }
+    }
+
+    /**
+     * 转义为JSON字符串内容（不含首尾引号），用于错误信息等低频场景
+     */
+    public static String escapeJson(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        appendJsonEscaped(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * 每个流复用的编码缓冲区，通过 {@link SseTokenEncoder#newBuffer()} 获取
+     */
+    public static class TokenFrameBuffer {
+
+        private final StringBuilder buffer;
+
+        TokenFrameBuffer(int initialCapacity) {
+            this.buffer = new StringBuilder(initialCapacity);
+        }
+
+        /**
+         * 生成 {"content":"..."} 形式的message事件
+         */
+        public SseEmitter.SseEventBuilder contentEvent(CharSequence token) {
+            return jsonFieldEvent("message", "content", token);
+        }
+
+        /**
+         * 生成 {"field":"..."} 形式的单字段JSON事件
+         */
+        public SseEmitter.SseEventBuilder jsonFieldEvent(String eventName, String field, CharSequence value) {
+            buffer.setLength(0);
+            buffer.append("{\"").append(field).append("\":\"");
+            appendJsonEscaped(buffer, value);
+            buffer.append("\"}");
+            return SseEmitter.event()
+                    .name(eventName)
+                    .data(buffer.toString());
+        }
+    }
+}
@@ -38,18 +38,33 @@ public class StreamChatService implements StreamChatServiceInterface {
     @Autowired
     private ResponseHandlerInterface responseHandler;
     
+    @Autowired
+    private StreamingExecutor streamingExecutor;
+    
+    @Autowired
+    private SseTokenCoalescer sseTokenCoalescer;
+    
     /**
      * 处理标准流式聊天
      */
     public SseEmitter handleStreamChat(ChatRequest request, User user) {
         SseEmitter emitter = new SseEmitter(300000L); // 5分钟超时
         
-        // 添加SSE连接状态监听
-        emitter.onCompletion(() -> logger.info("SSE连接正常完成（标准聊天）: sessionId={}", request.getSessionId()));
-        emitter.onTimeout(() -> logger.warn("SSE连接超时（标准聊天）: sessionId={}", request.getSessionId()));
-        emitter.onError((ex) -> logger.error("SSE连接错误（标准聊天）: sessionId={}, error={}", request.getSessionId(), ex.getMessage(), ex));
+        // 添加SSE连接状态监听，连接结束时关闭该emitter上的token合并器
+        emitter.onCompletion(() -> {
+            logger.info("SSE连接正常完成（标准聊天）: sessionId={}", request.getSessionId());
+            sseTokenCoalescer.closeAll(emitter);
+        });
+        emitter.onTimeout(() -> {
+            logger.warn("SSE连接超时（标准聊天）: sessionId={}", request.getSessionId());
+            sseTokenCoalescer.closeAll(emitter);
+        });
+        emitter.onError((ex) -> {
+            logger.error("SSE连接错误（标准聊天）: sessionId={}, error={}", request.getSessionId(), ex.getMessage(), ex);
+            sseTokenCoalescer.closeAll(emitter);
+        });
         
-        CompletableFuture.runAsync(() -> {
+        boolean accepted = streamingExecutor.submit(request.getSessionId(), () -> {
             try {
                 // 处理会话
                 ChatSession session = chatSessionService.getOrCreateSession(request.getSessionId(), user);
@@ -83,6 +98,7 @@ public class StreamChatService implements StreamChatServiceInterface {
                     responseFuture.get(4, java.util.concurrent.TimeUnit.MINUTES);
                 } catch (java.util.concurrent.TimeoutException e) {
                     logger.error("标准聊天流式响应超时", e);
+                    sseTokenCoalescer.closeAll(emitter);
                     emitter.completeWithError(new RuntimeException("响应超时，请重试"));
                     return;
                 }
@@ -92,6 +108,9 @@ public class StreamChatService implements StreamChatServiceInterface {
                 emitter.completeWithError(e);
             }
         });
+        if (!accepted) {
+            emitter.completeWithError(new RuntimeException("服务繁忙，请稍后重试"));
+        }
         
         return emitter;
     }
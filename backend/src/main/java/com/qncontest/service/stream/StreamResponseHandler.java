@@ -2,7 +2,7 @@ package com.qncontest.service.stream;
 
 import com.alibaba.dashscope.exception.ApiException;
 import com.qncontest.entity.ChatSession;
-import java.util.Map;
+import com.qncontest.dto.AssessmentResult;
 import com.qncontest.service.interfaces.ChatSessionManagerInterface;
 import com.qncontest.service.interfaces.ResponseHandlerInterface;
 import com.qncontest.service.RoleplayPromptEngine;
@@ -48,6 +48,9 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
     @Autowired
     private AssessmentGameLogicProcessor assessmentGameLogicProcessor;
     
+    @Autowired
+    private SseTokenCoalescer sseTokenCoalescer;
+    
     
     /**
      * 创建标准聊天响应处理器
@@ -60,6 +63,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
         
         return new StreamingResponseHandler<AiMessage>() {
             private final StringBuilder fullResponse = new StringBuilder();
+            private final SseTokenCoalescer.CoalescingStream coalescer = sseTokenCoalescer.open(emitter, session.getSessionId());
             private volatile boolean isCompleted = false;
             
             @Override
@@ -74,18 +78,8 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                     if (logger.isTraceEnabled()) {
                         logger.trace("收到大模型token: {}", token);
                     }
-                    // 发送JSON格式的数据，改进转义处理
-                    String escapedToken = token
-                            .replace("\\", "\\\\")  // 先转义反斜杠
-                            .replace("\"", "\\\"")  // 转义双引号
-                            .replace("\n", "\\n")   // 转义换行符
-                            .replace("\r", "\\r")   // 转义回车符
-                            .replace("\t", "\\t");  // 转义制表符
-                    
-                    String jsonData = "{\"content\":\"" + escapedToken + "\"}";
-                    emitter.send(SseEmitter.event()
-                            .name("message")
-                            .data(jsonData));
+                    // 交给合并器，按字节阈值或最大延迟合并发送
+                    coalescer.append(token);
                 } catch (IOException e) {
                     logger.error("发送SSE消息失败", e);
                     handleError(e);
@@ -100,6 +94,8 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                 }
                 try {
                     String fullText = fullResponse.toString();
+                    // 先发送合并器中剩余的内容，保证complete事件在最后
+                    coalescer.flush();
                     // 打印完整的大模型响应
                     // logger.info("=== 大模型完整响应 ===");
                     // logger.info("响应内容: {}", fullText);
@@ -116,6 +112,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                             .data("{\"status\":\"completed\"}"));
                     emitter.complete();
                     isCompleted = true;
+                    coalescer.close();
                     
                 } catch (Exception e) {
                     logger.error("完成流式响应处理失败", e);
@@ -138,6 +135,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
             }
             
             private void handleError(Throwable error) {
+                coalescer.close();
                 if (isCompleted) {
                     logger.warn("尝试在已完成的emitter上处理错误，忽略");
                     return;
@@ -147,7 +145,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                     String userFriendlyMessage = apiErrorHandler.getUserFriendlyMessage(error);
                     emitter.send(SseEmitter.event()
                             .name("error")
-                            .data("{\"error\":\"" + userFriendlyMessage.replace("\"", "\\\"") + "\"}"));
+                            .data("{\"error\":\"" + SseTokenEncoder.escapeJson(userFriendlyMessage) + "\"}"));
                 } catch (IOException e) {
                     logger.error("发送错误事件失败", e);
                 }
@@ -172,6 +170,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
         
         return new StreamingResponseHandler<AiMessage>() {
             private final StringBuilder fullResponse = new StringBuilder();
+            private final SseTokenCoalescer.CoalescingStream coalescer = sseTokenCoalescer.open(emitter, session.getSessionId());
             private volatile boolean isCompleted = false;
             
             @Override
@@ -186,18 +185,8 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                     if (logger.isTraceEnabled()) {
                         logger.trace("收到大模型token: {}", token);
                     }
-                    // 发送JSON格式的数据，改进转义处理
-                    String escapedToken = token
-                            .replace("\\", "\\\\")  // 先转义反斜杠
-                            .replace("\"", "\\\"")  // 转义双引号
-                            .replace("\n", "\\n")   // 转义换行符
-                            .replace("\r", "\\r")   // 转义回车符
-                            .replace("\t", "\\t");  // 转义制表符
-                    
-                    String jsonData = "{\"content\":\"" + escapedToken + "\"}";
-                    emitter.send(SseEmitter.event()
-                            .name("message")
-                            .data(jsonData));
+                    // 交给合并器，按字节阈值或最大延迟合并发送
+                    coalescer.append(token);
                 } catch (IOException e) {
                     logger.error("发送SSE消息失败", e);
                     handleError(e);
@@ -212,6 +201,8 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                 }
                 try {
                     String fullText = fullResponse.toString();
+                    // 先发送合并器中剩余的内容，保证complete事件在最后
+                    coalescer.flush();
                     // 打印完整的大模型响应
                     // logger.info("=== 大模型完整响应 ===");
                     // logger.info("响应内容: {}", fullText);
@@ -237,6 +228,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                             .data("{\"status\":\"completed\"}"));
                     emitter.complete();
                     isCompleted = true;
+                    coalescer.close();
                     
                 } catch (Exception e) {
                     logger.error("完成角色扮演流式响应处理失败", e);
@@ -259,6 +251,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
             }
             
             private void handleError(Throwable error) {
+                coalescer.close();
                 if (isCompleted) {
                     logger.warn("尝试在已完成的emitter上处理错误，忽略");
                     return;
@@ -268,7 +261,7 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
                     String userFriendlyMessage = apiErrorHandler.getUserFriendlyMessage(error);
                     emitter.send(SseEmitter.event()
                             .name("error")
-                            .data("{\"error\":\"" + userFriendlyMessage.replace("\"", "\\\"") + "\"}"));
+                            .data("{\"error\":\"" + SseTokenEncoder.escapeJson(userFriendlyMessage) + "\"}"));
                 } catch (IOException e) {
                     logger.error("发送错误事件失败", e);
                 }
@@ -328,14 +321,14 @@ public class StreamResponseHandler implements ResponseHandlerInterface {
             logger.info("✅ 检测到评估JSON，开始提取...");
             
             // 提取评估结果
-            Map<String, Object> assessment = assessmentExtractor.extractAssessmentEntity(aiResponse);
+            AssessmentResult assessment = assessmentExtractor.extractAssessmentResult(aiResponse);
             if (assessment == null) {
                 logger.warn("⚠️ 提取评估结果失败");
                 return;
             }
             
             logger.info("✅ 成功提取评估结果: strategy={}, score={}", 
-                       assessment.get("strategy"), assessment.get("overallScore"));
+                       assessment.strategy(), assessment.overallScore());
             
             // 处理评估JSON中的游戏逻辑
             logger.info("🎯 开始处理评估JSON中的游戏逻辑...");
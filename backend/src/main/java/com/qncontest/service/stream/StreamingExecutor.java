@@ -0,0 +1,228 @@
+package com.qncontest.service.stream;
+
+import com.qncontest.config.StreamConfig;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式响应专用执行器
+ * 流式任务会在等待大模型响应时长时间阻塞，不能占用公共ForkJoinPool。
+ * 支持平台线程池与虚拟线程两种模式，并通过准入计数限制在途流的总数（运行中 + 排队中）。
+ */
+@Component
+public class StreamingExecutor implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingExecutor.class);
+
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    @Autowired
+    private StreamConfig.StreamProperties streamProperties;
+
+    private ExecutorService executor;
+
+    /**
+     * 虚拟线程模式下用于限制同时运行的流数量，平台线程模式下由线程池大小限制
+     */
+    private Semaphore runSlots;
+
+    private String effectiveMode;
+    private int maxConcurrent;
+    private int queueCapacity;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong submittedStreams = new AtomicLong();
+    private final AtomicLong completedStreams = new AtomicLong();
+    private final AtomicLong failedStreams = new AtomicLong();
+    private final AtomicLong rejectedStreams = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        maxConcurrent = Math.max(1, streamProperties.getMaxConcurrentStreams());
+        queueCapacity = Math.max(0, streamProperties.getQueueCapacity());
+
+        String requestedMode = streamProperties.getExecutorMode();
+        if (MODE_VIRTUAL.equalsIgnoreCase(requestedMode)) {
+            ExecutorService virtualExecutor = createVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                executor = virtualExecutor;
+                runSlots = new Semaphore(maxConcurrent);
+                effectiveMode = MODE_VIRTUAL;
+            } else {
+                logger.warn("当前运行时不支持虚拟线程，流式执行器回退为平台线程池: javaVersion={}",
+                           System.getProperty("java.version"));
+            }
+        }
+
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new StreamThreadFactory());
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+            effectiveMode = MODE_PLATFORM;
+        }
+
+        logger.info("流式执行器已启动: mode={}, maxConcurrentStreams={}, queueCapacity={}",
+                   effectiveMode, maxConcurrent, queueCapacity);
+    }
+
+    /**
+     * 提交一个流式任务
+     * @return 是否被接受；在途流数量达到上限时返回false，由调用方向客户端返回错误
+     */
+    public boolean submit(String streamId, Runnable task) {
+        int admitted = inFlight.incrementAndGet();
+        if (admitted > maxConcurrent + queueCapacity) {
+            inFlight.decrementAndGet();
+            rejectedStreams.incrementAndGet();
+            logger.warn("流式请求被拒绝，在途流数量已达上限: streamId={}, limit={}",
+                       streamId, maxConcurrent + queueCapacity);
+            return false;
+        }
+
+        try {
+            executor.execute(() -> runStream(streamId, task));
+            submittedStreams.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            rejectedStreams.incrementAndGet();
+            logger.warn("流式执行器拒绝任务: streamId={}, error={}", streamId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void runStream(String streamId, Runnable task) {
+        boolean slotAcquired = false;
+        try {
+            if (runSlots != null) {
+                runSlots.acquire();
+                slotAcquired = true;
+            }
+            activeStreams.incrementAndGet();
+            try {
+                task.run();
+                completedStreams.incrementAndGet();
+            } finally {
+                activeStreams.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedStreams.incrementAndGet();
+            logger.warn("流式任务等待执行时被中断: streamId={}", streamId);
+        } catch (Throwable t) {
+            failedStreams.incrementAndGet();
+            logger.error("流式任务执行异常: streamId={}", streamId, t);
+        } finally {
+            if (slotAcquired) {
+                runSlots.release();
+            }
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 运行中的流数量
+     */
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    /**
+     * 已接受但尚未开始执行的流数量
+     */
+    public int getQueuedStreams() {
+        return Math.max(0, inFlight.get() - activeStreams.get());
+    }
+
+    @Override
+    public String getStatsName() {
+        return "executor";
+    }
+
+    /**
+     * 获取执行器统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", effectiveMode);
+        stats.put("requestedMode", streamProperties.getExecutorMode());
+        stats.put("maxConcurrentStreams", maxConcurrent);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("activeStreams", getActiveStreams());
+        stats.put("queuedStreams", getQueuedStreams());
+        stats.put("submittedStreams", submittedStreams.get());
+        stats.put("completedStreams", completedStreams.get());
+        stats.put("failedStreams", failedStreams.get());
+        stats.put("rejectedStreams", rejectedStreams.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("流式执行器关闭超时，强制中断剩余 {} 个流", inFlight.get());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器（Java 21+），不支持时返回null
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "stream-vt-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 平台线程模式的线程工厂
+     */
+    private static class StreamThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "stream-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.qncontest.service.voice;
+
+import com.qncontest.config.VoiceConfig;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 音频接收与识别管线
+ * 上传的音频直接从请求流读入池化的直接内存缓冲块，交给SpeechRecognizer在有界线程池中识别，不再先复制到临时文件。
+ * 超过 mmapThresholdBytes 或缓冲池耗尽时，才把上传内容转存为临时文件并以内存映射方式交给识别实现。
+ * 准入信号量限制在途识别数（运行中 + 排队中），已满时调用方最多等待 admissionTimeoutMs，超时即拒绝（背压）。
+ */
+@Component
+public class AudioIngestionPipeline implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(AudioIngestionPipeline.class);
+
+    @Autowired
+    private VoiceConfig.VoiceProperties voiceProperties;
+
+    @Autowired
+    private List<SpeechRecognizer> recognizers;
+
+    private SpeechRecognizer recognizer;
+    private DirectBufferPool bufferPool;
+    private ThreadPoolExecutor executor;
+    private Semaphore admission;
+    private int admissionLimit;
+
+    private final AtomicInteger activeRecognitions = new AtomicInteger();
+    private final AtomicLong recognized = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong pooledPayloads = new AtomicLong();
+    private final AtomicLong mappedPayloads = new AtomicLong();
+    private final AtomicLong bytesIngested = new AtomicLong();
+    private final AtomicLong totalRecognitionMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        recognizer = selectRecognizer(voiceProperties.getRecognizer());
+        bufferPool = new DirectBufferPool(voiceProperties.getBufferChunkBytes(), voiceProperties.getMaxPooledBuffers());
+        int threads = Math.max(1, voiceProperties.getRecognizerThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "voice-recognizer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        admissionLimit = threads + Math.max(0, voiceProperties.getQueueCapacity());
+        admission = new Semaphore(admissionLimit);
+        logger.info("音频识别管线已启动: recognizer={}, threads={}, admissionLimit={}, mmapThreshold={}, bufferPool={}x{}",
+            recognizer.name(), threads, admissionLimit, voiceProperties.getMmapThresholdBytes(),
+            bufferPool.maxBuffers(), bufferPool.chunkBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 识别上传的音频
+     *
+     * @param audioFile 上传的音频文件
+     * @param format 音频格式（文件扩展名）
+     * @param language 语言代码
+     * @throws RejectedExecutionException 识别通道已满且等待超时
+     * @throws TimeoutException 识别超过 recognitionTimeoutMs
+     */
+    public String recognize(MultipartFile audioFile, String format, String language)
+            throws IOException, TimeoutException, InterruptedException {
+        if (!admission.tryAcquire(voiceProperties.getAdmissionTimeoutMs(), TimeUnit.MILLISECONDS)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("语音识别繁忙，请稍后重试");
+        }
+        AudioPayload payload;
+        try {
+            payload = ingest(audioFile, format);
+        } catch (IOException | RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+        return submit(payload, language);
+    }
+
+    /**
+     * 开始一次流式识别会话
+     * 识别实现未提供流式会话时，默认会话在结束时把累积的音频交给本管线识别：与上传识别共用准入名额、识别线程池和识别超时，
+     * 不在请求线程上直接调用识别实现
+     */
+    public RecognitionSession startSession(String format, String language, TranscriptListener listener) {
+        RecognitionSession session = recognizer.startSession(format, language, listener);
+        if (session instanceof BufferedRecognitionSession) {
+            session.close();
+            return new BufferedRecognitionSession(this::recognizeAudio, format, language, listener);
+        }
+        return session;
+    }
+
+    /**
+     * 识别已在内存中的整段音频（流式识别会话结束时使用），payload无论成功与否都会被关闭
+     */
+    String recognizeAudio(AudioPayload payload, String language)
+            throws IOException, TimeoutException, InterruptedException {
+        boolean admitted;
+        try {
+            admitted = admission.tryAcquire(voiceProperties.getAdmissionTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            payload.close();
+            throw e;
+        }
+        if (!admitted) {
+            payload.close();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("语音识别繁忙，请稍后重试");
+        }
+        bytesIngested.addAndGet(payload.size());
+        return submit(payload, language);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "voice";
+    }
+
+    /**
+     * 获取管线统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long recognizedCount = recognized.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recognizer", recognizer != null ? recognizer.name() : null);
+        stats.put("admissionLimit", admissionLimit);
+        stats.put("inFlight", admission != null ? admissionLimit - admission.availablePermits() : 0);
+        stats.put("active", activeRecognitions.get());
+        stats.put("recognized", recognizedCount);
+        stats.put("failed", failed.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgRecognitionMs", recognizedCount > 0 ? (double) totalRecognitionMillis.get() / recognizedCount : 0.0);
+        stats.put("pooledPayloads", pooledPayloads.get());
+        stats.put("mappedPayloads", mappedPayloads.get());
+        stats.put("bytesIngested", bytesIngested.get());
+        stats.put("bufferPoolAllocated", bufferPool != null ? bufferPool.allocated() : 0);
+        stats.put("bufferPoolInUse", bufferPool != null ? bufferPool.inUse() : 0);
+        stats.put("bufferPoolExhausted", bufferPool != null ? bufferPool.exhausted() : 0);
+        return stats;
+    }
+
+    /**
+     * 在识别线程池中执行识别并等待结果。
+     * 音频缓冲与准入名额由最终接手的一方释放：任务开始执行后由任务释放，任务未开始就超时则由调用方释放，
+     * 保证识别实现仍在读取时缓冲块不会被回收。
+     */
+    private String submit(AudioPayload payload, String language)
+            throws IOException, TimeoutException, InterruptedException {
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<String> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                activeRecognitions.incrementAndGet();
+                long started = System.currentTimeMillis();
+                try {
+                    String text = recognizer.recognize(payload, language);
+                    recognized.incrementAndGet();
+                    totalRecognitionMillis.addAndGet(System.currentTimeMillis() - started);
+                    return text;
+                } finally {
+                    activeRecognitions.decrementAndGet();
+                    payload.close();
+                    admission.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            payload.close();
+            admission.release();
+            rejected.incrementAndGet();
+            throw e;
+        }
+
+        try {
+            return future.get(voiceProperties.getRecognitionTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof TimeoutException) {
+                timeouts.incrementAndGet();
+            }
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                payload.close();
+                admission.release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("语音识别失败", cause);
+        }
+    }
+
+    /**
+     * 读取上传内容：小文件读入池化缓冲块，大文件或缓冲池耗尽时转存临时文件并内存映射
+     */
+    private AudioPayload ingest(MultipartFile audioFile, String format) throws IOException {
+        long size = audioFile.getSize();
+        if (size <= voiceProperties.getMmapThresholdBytes()) {
+            int chunkBytes = bufferPool.chunkBytes();
+            int count = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+            ByteBuffer[] chunks = bufferPool.acquire(count);
+            if (chunks != null) {
+                try (InputStream in = audioFile.getInputStream()) {
+                    fill(in, chunks);
+                } catch (IOException | RuntimeException e) {
+                    bufferPool.release(chunks, chunks.length);
+                    throw e;
+                }
+                pooledPayloads.incrementAndGet();
+                bytesIngested.addAndGet(size);
+                return AudioPayload.pooled(format, size, chunks, () -> bufferPool.release(chunks, chunks.length));
+            }
+            logger.debug("音频缓冲池已耗尽，改用内存映射临时文件: size={}", size);
+        }
+        return mapToTempFile(audioFile, format);
+    }
+
+    /**
+     * 把输入流读入缓冲块，读完后每个块都已翻转为可读状态
+     */
+    private static void fill(InputStream in, ByteBuffer[] chunks) throws IOException {
+        byte[] scratch = new byte[8192];
+        int index = 0;
+        int n;
+        while ((n = in.read(scratch)) != -1) {
+            int offset = 0;
+            while (offset < n) {
+                if (index >= chunks.length) {
+                    throw new IOException("音频实际大小超过声明的大小");
+                }
+                ByteBuffer chunk = chunks[index];
+                int length = Math.min(n - offset, chunk.remaining());
+                chunk.put(scratch, offset, length);
+                offset += length;
+                if (!chunk.hasRemaining()) {
+                    index++;
+                }
+            }
+        }
+        for (ByteBuffer chunk : chunks) {
+            chunk.flip();
+        }
+    }
+
+    /**
+     * 转存为临时文件并只读映射。
+     * transferTo(File)在容器已把上传内容落盘时会直接移动该文件，不产生额外复制
+     */
+    private AudioPayload mapToTempFile(MultipartFile audioFile, String format) throws IOException {
+        Path tempFile = Files.createTempFile("voice_", format);
+        try {
+            audioFile.transferTo(tempFile.toFile());
+            ByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mappedPayloads.incrementAndGet();
+            bytesIngested.addAndGet(mapped.remaining());
+            return AudioPayload.mapped(format, mapped, tempFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    private SpeechRecognizer selectRecognizer(String name) {
+        for (SpeechRecognizer candidate : recognizers) {
+            if (candidate.name().equalsIgnoreCase(name)) {
+                return candidate;
+            }
+        }
+        SpeechRecognizer fallback = recognizers.get(0);
+        logger.warn("未找到语音识别实现: {}，使用: {}", name, fallback.name());
+        return fallback;
+    }
+}
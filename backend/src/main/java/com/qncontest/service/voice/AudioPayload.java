@@ -0,0 +1,155 @@
+package com.qncontest.service.voice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一段待识别的音频
+ * 数据位于池化的直接内存缓冲块中，或位于内存映射的临时文件中；两种情况对识别实现透明。
+ * close后缓冲块归还缓冲池、临时文件被删除，之后不得再读取。
+ */
+public final class AudioPayload implements AutoCloseable {
+
+    private final String format;
+    private final long size;
+    private final ByteBuffer[] chunks;
+    private final Path mappedFile;
+    private final Runnable releaser;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private AudioPayload(String format, long size, ByteBuffer[] chunks, Path mappedFile, Runnable releaser) {
+        this.format = format;
+        this.size = size;
+        this.chunks = chunks;
+        this.mappedFile = mappedFile;
+        this.releaser = releaser;
+    }
+
+    /**
+     * 由已写满并翻转（flip）的池化缓冲块构成的音频，close时执行releaser归还缓冲块
+     */
+    static AudioPayload pooled(String format, long size, ByteBuffer[] chunks, Runnable releaser) {
+        return new AudioPayload(format, size, chunks, null, releaser);
+    }
+
+    /**
+     * 由单个堆内缓冲区构成的音频（流式识别会话累积的音频帧）
+     */
+    static AudioPayload of(String format, ByteBuffer data) {
+        return new AudioPayload(format, data.remaining(), new ByteBuffer[]{data}, null, null);
+    }
+
+    /**
+     * 由内存映射临时文件构成的音频，close时删除临时文件
+     */
+    static AudioPayload mapped(String format, ByteBuffer mapped, Path file) {
+        return new AudioPayload(format, mapped.remaining(), new ByteBuffer[]{mapped}, file, null);
+    }
+
+    /**
+     * 音频格式（文件扩展名，如 ".wav"）
+     */
+    public String format() {
+        return format;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isMemoryMapped() {
+        return mappedFile != null;
+    }
+
+    /**
+     * 音频数据的只读视图，按顺序拼接即为完整音频；每次调用返回新的视图，互不影响读取位置
+     */
+    public ByteBuffer[] buffers() {
+        ensureOpen();
+        ByteBuffer[] views = new ByteBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            views[i] = chunks[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    /**
+     * 以流的方式读取音频数据
+     */
+    public InputStream openStream() {
+        return new BuffersInputStream(buffers());
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (releaser != null) {
+            releaser.run();
+        }
+        if (mappedFile != null) {
+            try {
+                Files.deleteIfExists(mappedFile);
+            } catch (IOException ignored) {
+                // 临时目录中的残留文件由系统清理
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("音频数据已释放");
+        }
+    }
+
+    /**
+     * 依次读取多个缓冲区的输入流
+     */
+    private static final class BuffersInputStream extends InputStream {
+
+        private final ByteBuffer[] buffers;
+        private int index;
+
+        private BuffersInputStream(ByteBuffer[] buffers) {
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer current = current();
+            return current == null ? -1 : current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer current = current();
+            if (current == null) {
+                return -1;
+            }
+            int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer current = current();
+            return current == null ? 0 : current.remaining();
+        }
+
+        private ByteBuffer current() {
+            while (index < buffers.length && !buffers[index].hasRemaining()) {
+                index++;
+            }
+            return index < buffers.length ? buffers[index] : null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.qncontest.service.voice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 不支持流式识别的实现使用的默认会话：累积全部音频帧，结束时整段识别，只产生最终结果
+ * 经AudioIngestionPipeline打开的会话在结束时交给管线识别（准入控制、识别线程池、识别超时），与上传识别共用同一组名额
+ */
+class BufferedRecognitionSession implements RecognitionSession {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final Recognition recognition;
+    private final String format;
+    private final String language;
+    private final TranscriptListener listener;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    BufferedRecognitionSession(Recognition recognition, String format, String language, TranscriptListener listener) {
+        this.recognition = recognition;
+        this.format = format;
+        this.language = language;
+        this.listener = listener;
+    }
+
+    @Override
+    public void acceptFrame(ByteBuffer frame) {
+        if (buffer.remaining() < frame.remaining()) {
+            int capacity = Math.max(INITIAL_CAPACITY, Math.max(buffer.capacity() * 2, buffer.position() + frame.remaining()));
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        buffer.put(frame);
+    }
+
+    @Override
+    public void finish() throws IOException, TimeoutException, InterruptedException {
+        buffer.flip();
+        listener.onFinal(recognition.recognize(AudioPayload.of(format, buffer), language));
+    }
+
+    @Override
+    public void close() {
+        buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * 整段识别的执行方式（直接调用识别实现，或交给AudioIngestionPipeline），由执行方负责关闭audio
+     */
+    @FunctionalInterface
+    interface Recognition {
+        String recognize(AudioPayload audio, String language) throws IOException, TimeoutException, InterruptedException;
+    }
+}
@@ -0,0 +1,95 @@
+package com.qncontest.service.voice;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 定长直接内存缓冲块池
+ * 块按需分配，总数不超过上限；归还的块清空后复用，避免每个请求重新分配直接内存。
+ * 池耗尽时acquire返回null，由调用方决定回退方式。
+ */
+public class DirectBufferPool {
+
+    private final int chunkBytes;
+    private final int maxBuffers;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public DirectBufferPool(int chunkBytes, int maxBuffers) {
+        this.chunkBytes = Math.max(4096, chunkBytes);
+        this.maxBuffers = Math.max(0, maxBuffers);
+    }
+
+    public int chunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * 一次取出count个缓冲块，不足时一个也不取（已取出的立即归还）并返回null
+     */
+    public ByteBuffer[] acquire(int count) {
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = acquireOne();
+            if (chunk == null) {
+                release(chunks, i);
+                exhausted.incrementAndGet();
+                return null;
+            }
+            chunks[i] = chunk;
+        }
+        return chunks;
+    }
+
+    /**
+     * 归还前count个缓冲块
+     */
+    public void release(ByteBuffer[] chunks, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = chunks[i];
+            if (chunk != null) {
+                chunk.clear();
+                free.offer(chunk);
+                inUse.decrementAndGet();
+                chunks[i] = null;
+            }
+        }
+    }
+
+    public int allocated() {
+        return allocated.get();
+    }
+
+    public int inUse() {
+        return inUse.get();
+    }
+
+    public long exhausted() {
+        return exhausted.get();
+    }
+
+    public int maxBuffers() {
+        return maxBuffers;
+    }
+
+    private ByteBuffer acquireOne() {
+        ByteBuffer chunk = free.poll();
+        if (chunk == null) {
+            int current;
+            do {
+                current = allocated.get();
+                if (current >= maxBuffers) {
+                    return null;
+                }
+            } while (!allocated.compareAndSet(current, current + 1));
+            chunk = ByteBuffer.allocateDirect(chunkBytes);
+        }
+        inUse.incrementAndGet();
+        return chunk;
+    }
+}
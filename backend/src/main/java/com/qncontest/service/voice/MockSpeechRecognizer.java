@@ -0,0 +1,75 @@
+package com.qncontest.service.voice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 模拟语音识别实现（本地桩）
+ * 不调用任何外部服务，只读取音频数据并返回固定文本；接入真实服务时新增SpeechRecognizer实现并修改 ai.voice.recognizer，
+ * 如：Google Cloud Speech-to-Text, Azure Speech Services, 百度语音识别, 阿里云语音识别等
+ */
+@Component
+public class MockSpeechRecognizer implements SpeechRecognizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockSpeechRecognizer.class);
+
+    public static final String NAME = "mock";
+
+    static final String RESULT = "这是模拟的语音识别结果，请集成真正的语音识别服务";
+
+    /**
+     * 模拟流式识别时每个字对应的音频字节数
+     */
+    private static final int BYTES_PER_CHAR = 4096;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String recognize(AudioPayload audio, String language) {
+        long bytes = 0;
+        for (ByteBuffer buffer : audio.buffers()) {
+            bytes += buffer.remaining();
+        }
+        logger.info("模拟语音识别: 格式={}, 字节数={}, 内存映射={}, 语言={}",
+            audio.format(), bytes, audio.isMemoryMapped(), language);
+        return RESULT;
+    }
+
+    /**
+     * 模拟流式识别：每收到一定量的音频多“识别”出几个字，最后两个字视为尚未稳定
+     */
+    @Override
+    public RecognitionSession startSession(String format, String language, TranscriptListener listener) {
+        return new RecognitionSession() {
+
+            private long bytes;
+            private int emitted;
+
+            @Override
+            public void acceptFrame(ByteBuffer frame) {
+                bytes += frame.remaining();
+                int length = (int) Math.min(RESULT.length() - 1, bytes / BYTES_PER_CHAR);
+                if (length > emitted) {
+                    emitted = length;
+                    listener.onPartial(RESULT.substring(0, length), Math.max(0, length - 2));
+                }
+            }
+
+            @Override
+            public void finish() {
+                logger.info("模拟流式语音识别结束: 格式={}, 字节数={}, 语言={}", format, bytes, language);
+                listener.onFinal(RESULT);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
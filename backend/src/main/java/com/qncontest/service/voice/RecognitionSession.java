@@ -0,0 +1,30 @@
+package com.qncontest.service.voice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 一次流式识别会话（非线程安全，调用方需保证同一会话的调用串行）
+ */
+public interface RecognitionSession extends AutoCloseable {
+
+    /**
+     * 送入一帧音频，实现可在此期间回调TranscriptListener.onPartial；调用返回后frame不再被引用
+     */
+    void acceptFrame(ByteBuffer frame) throws IOException;
+
+    /**
+     * 音频结束，实现需在返回前回调TranscriptListener.onFinal
+     *
+     * @throws java.util.concurrent.RejectedExecutionException 识别通道已满且等待超时
+     * @throws TimeoutException 识别超时
+     */
+    void finish() throws IOException, TimeoutException, InterruptedException;
+
+    /**
+     * 释放会话资源（可在任意阶段调用，重复调用无副作用）
+     */
+    @Override
+    void close();
+}
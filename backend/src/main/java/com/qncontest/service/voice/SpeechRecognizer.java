@@ -0,0 +1,43 @@
+package com.qncontest.service.voice;
+
+import java.io.IOException;
+
+/**
+ * 语音识别SPI
+ * 实现类注册为Spring Bean，通过 ai.voice.recognizer 按名称选用。
+ * 音频以AudioPayload交给实现：可按流读取（openStream），也可直接读取只读缓冲区（buffers），无需落盘。
+ * 识别在AudioIngestionPipeline的有界线程池中执行，调用返回后音频缓冲即被回收，实现不得保留对其的引用。
+ * 支持边接收边识别的实现可覆盖startSession，逐帧产生中间结果；默认实现累积音频后整段识别，
+ * 经AudioIngestionPipeline.startSession打开时整段识别同样在管线的有界线程池中执行。
+ */
+public interface SpeechRecognizer {
+
+    /**
+     * 实现名称，对应配置 ai.voice.recognizer
+     */
+    String name();
+
+    /**
+     * 识别整段音频
+     *
+     * @param audio 音频数据（只在本次调用期间有效）
+     * @param language 语言代码 (如: "zh-CN", "en-US")
+     * @return 识别出的文本
+     */
+    String recognize(AudioPayload audio, String language) throws IOException;
+
+    /**
+     * 开始一次流式识别会话，客户端逐帧上传音频时使用
+     *
+     * @param format 音频格式（文件扩展名）
+     * @param language 语言代码
+     * @param listener 识别结果回调
+     */
+    default RecognitionSession startSession(String format, String language, TranscriptListener listener) {
+        return new BufferedRecognitionSession((audio, lang) -> {
+            try (audio) {
+                return recognize(audio, lang);
+            }
+        }, format, language, listener);
+    }
+}
@@ -0,0 +1,21 @@
+package com.qncontest.service.voice;
+
+/**
+ * 流式识别结果回调
+ * 回调在送入音频帧（或结束识别）的线程中同步执行
+ */
+public interface TranscriptListener {
+
+    /**
+     * 中间识别结果
+     *
+     * @param text 当前完整的识别文本
+     * @param stableLength 文本中已稳定（后续不会再改变）的前缀长度
+     */
+    void onPartial(String text, int stableLength);
+
+    /**
+     * 最终识别结果（整段话结束后回调一次）
+     */
+    void onFinal(String text);
+}
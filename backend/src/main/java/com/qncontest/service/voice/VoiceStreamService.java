@@ -0,0 +1,342 @@
+package com.qncontest.service.voice;
+
+import com.qncontest.config.VoiceConfig;
+import com.qncontest.dto.RoleplayRequest;
+import com.qncontest.entity.User;
+import com.qncontest.service.VoiceInstructionParser;
+import com.qncontest.service.stream.RoleplayStreamService;
+import com.qncontest.service.stream.SseTokenCoalescer;
+import com.qncontest.service.stream.StreamingExecutor;
+import com.qncontest.service.interfaces.StatsProviderInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式语音识别服务
+ * 客户端打开一个SSE流后逐帧上传音频，每帧交给识别实现的流式会话，中间结果以voice_partial事件推送，
+ * 同时对已稳定前缀做增量指令解析；结束后推送voice_final。
+ * 打开流时指定autoStart，则最终结果一出就在同一个SSE流上直接开始本轮角色扮演，省去客户端再发起请求的往返。
+ */
+@Service
+public class VoiceStreamService implements StatsProviderInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoiceStreamService.class);
+
+    @Autowired
+    private VoiceConfig.VoiceProperties voiceProperties;
+
+    @Autowired
+    private AudioIngestionPipeline audioIngestionPipeline;
+
+    @Autowired
+    private VoiceInstructionParser voiceInstructionParser;
+
+    @Autowired
+    private RoleplayStreamService roleplayStreamService;
+
+    @Autowired
+    private StreamingExecutor streamingExecutor;
+
+    @Autowired
+    private SseTokenCoalescer sseTokenCoalescer;
+
+    private final ConcurrentHashMap<String, VoiceStream> streams = new ConcurrentHashMap<>();
+
+    private Semaphore streamSlots;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong partialEvents = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong autoStartedTurns = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        streamSlots = new Semaphore(Math.max(1, voiceProperties.getMaxConcurrentStreams()));
+    }
+
+    /**
+     * 打开一个流式识别会话，首个事件voice_started携带streamId，后续音频帧按streamId上传
+     *
+     * @param autoStart 识别结束后是否在该SSE流上直接开始角色扮演回合（需要sessionId）
+     * @throws RejectedExecutionException 同时进行的流式识别数量已达上限
+     */
+    public SseEmitter open(User user, String format, String language, String worldType, String sessionId, boolean autoStart) {
+        if (!streamSlots.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("语音识别繁忙，请稍后重试");
+        }
+        String streamId = UUID.randomUUID().toString();
+        SseEmitter emitter = new SseEmitter(voiceProperties.getStreamTimeoutMs());
+        VoiceStream stream = new VoiceStream(streamId, user, worldType, sessionId, autoStart && sessionId != null, emitter);
+        try {
+            stream.recognition = audioIngestionPipeline.startSession(format, language, stream);
+            stream.instruction = voiceInstructionParser.startIncremental(worldType, sessionId);
+        } catch (RuntimeException e) {
+            streamSlots.release();
+            throw e;
+        }
+        streams.put(streamId, stream);
+        opened.incrementAndGet();
+
+        // 自动开始的回合在同一个emitter上输出角色扮演响应，连接结束时一并关闭其token合并器
+        emitter.onCompletion(() -> {
+            sseTokenCoalescer.closeAll(emitter);
+            release(stream);
+        });
+        emitter.onTimeout(() -> {
+            logger.warn("流式语音SSE连接超时: streamId={}", streamId);
+            sseTokenCoalescer.closeAll(emitter);
+            release(stream);
+        });
+        emitter.onError(ex -> {
+            sseTokenCoalescer.closeAll(emitter);
+            release(stream);
+        });
+
+        Map<String, Object> started = new LinkedHashMap<>();
+        started.put("streamId", streamId);
+        started.put("autoStart", stream.autoStart);
+        stream.send("voice_started", started);
+        logger.info("流式语音识别开始: streamId={}, user={}, sessionId={}, autoStart={}",
+            streamId, user.getUsername(), sessionId, stream.autoStart);
+        return emitter;
+    }
+
+    /**
+     * 上传一帧音频
+     *
+     * @return 该流累计接收的字节数
+     * @throws IllegalArgumentException 流不存在或不属于当前用户
+     * @throws IllegalStateException 流已结束、帧过大或累计音频超过上限
+     */
+    public long appendFrame(User user, String streamId, byte[] frame) throws IOException {
+        VoiceStream stream = lookup(user, streamId);
+        if (frame == null || frame.length == 0) {
+            return stream.bytes;
+        }
+        if (frame.length > voiceProperties.getMaxFrameBytes()) {
+            throw new IllegalStateException("音频帧过大");
+        }
+        synchronized (stream) {
+            if (stream.finished) {
+                throw new IllegalStateException("语音流已结束");
+            }
+            if (stream.bytes + frame.length > voiceProperties.getMaxFileSizeBytes()) {
+                throw new IllegalStateException("音频总大小超过上限");
+            }
+            stream.bytes += frame.length;
+            stream.recognition.acceptFrame(ByteBuffer.wrap(frame));
+        }
+        framesReceived.incrementAndGet();
+        bytesReceived.addAndGet(frame.length);
+        return stream.bytes;
+    }
+
+    /**
+     * 结束音频上传：推送voice_final，按需在同一SSE流上开始角色扮演回合，否则关闭SSE流
+     * 整段识别经AudioIngestionPipeline执行（准入控制与识别超时），识别期间不持有该流的锁，
+     * SSE连接超时或断开时的清理不会被识别阻塞；识别失败时以错误结束SSE流
+     *
+     * @return 解析后的指令文本
+     * @throws RejectedExecutionException 识别通道已满且等待超时
+     * @throws TimeoutException 识别超时
+     */
+    public String finish(User user, String streamId) throws IOException, TimeoutException, InterruptedException {
+        VoiceStream stream = lookup(user, streamId);
+        RecognitionSession recognition;
+        synchronized (stream) {
+            if (stream.finished) {
+                throw new IllegalStateException("语音流已结束");
+            }
+            stream.finished = true;
+            stream.finishing = true;
+            recognition = stream.recognition;
+        }
+        String instruction;
+        try {
+            recognition.finish();
+            instruction = stream.instruction.complete(stream.finalText);
+        } catch (IOException | TimeoutException | InterruptedException | RuntimeException e) {
+            logger.warn("流式语音识别失败: streamId={}, error={}", streamId, e.getMessage());
+            stream.emitter.completeWithError(e);
+            release(stream);
+            throw e;
+        } finally {
+            synchronized (stream) {
+                stream.finishing = false;
+                if (stream.released.get()) {
+                    // 识别期间流已被释放，由本线程关闭识别会话
+                    recognition.close();
+                }
+            }
+        }
+        finished.incrementAndGet();
+
+        boolean startTurn = stream.autoStart && voiceInstructionParser.isValidVoiceInstruction(instruction);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("text", stream.finalText);
+        result.put("instruction", instruction);
+        result.put("turnStarted", startTurn);
+        stream.send("voice_final", result);
+
+        if (startTurn) {
+            startRoleplayTurn(stream, instruction);
+        } else {
+            stream.emitter.complete();
+            release(stream);
+        }
+        return instruction;
+    }
+
+    /**
+     * 取消流式识别并关闭SSE流
+     */
+    public void cancel(User user, String streamId) {
+        VoiceStream stream = lookup(user, streamId);
+        logger.info("流式语音识别已取消: streamId={}", streamId);
+        stream.emitter.complete();
+        release(stream);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "voiceStreams";
+    }
+
+    /**
+     * 获取统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeStreams", streams.size());
+        stats.put("opened", opened.get());
+        stats.put("finished", finished.get());
+        stats.put("rejected", rejected.get());
+        stats.put("framesReceived", framesReceived.get());
+        stats.put("bytesReceived", bytesReceived.get());
+        stats.put("partialEvents", partialEvents.get());
+        stats.put("autoStartedTurns", autoStartedTurns.get());
+        return stats;
+    }
+
+    /**
+     * 最终结果已确定，立即在同一SSE流上开始本轮角色扮演（SSE流此后由角色扮演处理器负责关闭）
+     */
+    private void startRoleplayTurn(VoiceStream stream, String instruction) {
+        RoleplayRequest request = new RoleplayRequest();
+        request.setSessionId(stream.sessionId);
+        request.setWorldType(stream.worldType);
+        request.setMessage(instruction);
+        request.setInputType("voice");
+        // 识别会话已无用，提前释放名额，SSE流交给角色扮演回合
+        release(stream);
+        boolean accepted = streamingExecutor.submit(stream.sessionId,
+            () -> roleplayStreamService.processRoleplayMessage(request, stream.user, stream.emitter));
+        if (accepted) {
+            autoStartedTurns.incrementAndGet();
+            logger.info("语音识别完成，已直接开始角色扮演回合: streamId={}, sessionId={}", stream.streamId, stream.sessionId);
+        } else {
+            stream.emitter.completeWithError(new RuntimeException("服务繁忙，请稍后重试"));
+        }
+    }
+
+    private VoiceStream lookup(User user, String streamId) {
+        VoiceStream stream = streamId != null ? streams.get(streamId) : null;
+        if (stream == null || !Objects.equals(stream.user.getId(), user.getId())) {
+            throw new IllegalArgumentException("语音流不存在: " + streamId);
+        }
+        return stream;
+    }
+
+    private void release(VoiceStream stream) {
+        if (stream.released.compareAndSet(false, true)) {
+            streams.remove(stream.streamId, stream);
+            synchronized (stream) {
+                stream.finished = true;
+                if (!stream.finishing) {
+                    stream.recognition.close();
+                }
+            }
+            streamSlots.release();
+        }
+    }
+
+    /**
+     * 一个进行中的流式识别
+     */
+    private final class VoiceStream implements TranscriptListener {
+
+        private final String streamId;
+        private final User user;
+        private final String worldType;
+        private final String sessionId;
+        private final boolean autoStart;
+        private final SseEmitter emitter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private RecognitionSession recognition;
+        private VoiceInstructionParser.IncrementalInstruction instruction;
+        private long bytes;
+        private boolean finished;
+        private boolean finishing;
+        private String finalText;
+
+        private VoiceStream(String streamId, User user, String worldType, String sessionId, boolean autoStart, SseEmitter emitter) {
+            this.streamId = streamId;
+            this.user = user;
+            this.worldType = worldType;
+            this.sessionId = sessionId;
+            this.autoStart = autoStart;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onPartial(String text, int stableLength) {
+            int stable = Math.max(0, Math.min(stableLength, text.length()));
+            Map<String, Object> partial = new LinkedHashMap<>();
+            partial.put("text", text);
+            partial.put("stableLength", stable);
+            partial.put("instruction", instruction.update(text.substring(0, stable)));
+            partialEvents.incrementAndGet();
+            send("voice_partial", partial);
+        }
+
+        @Override
+        public void onFinal(String text) {
+            finalText = text;
+        }
+
+        private void send(String event, Object data) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(event)
+                        .data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                logger.warn("发送流式语音事件失败，关闭语音流: streamId={}, event={}, error={}", streamId, event, e.getMessage());
+                release(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.qncontest.repository;
+
+import com.qncontest.entity.ChatMessage;
+import com.qncontest.entity.ChatSession;
+import com.qncontest.entity.User;
+import com.qncontest.service.ChatSessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话最近消息查询测试（内嵌H2数据库）
+ * 验证倒序+分页的末尾查询只返回最近N条，且ChatSessionService.getRecentMessages反转后按序号升序返回，
+ * 消息以乱序插入，并混入另一个会话的消息。
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.hbm2ddl.auto=create-drop"
+})
+class ChatMessageRepositoryTest {
+
+    private static final int MESSAGE_COUNT = 30;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    private ChatSessionService chatSessionService;
+
+    @BeforeEach
+    void setUp() {
+        User user = entityManager.persist(new User("history_user", "history@example.com", "secret123"));
+        ChatSession session = entityManager.persist(new ChatSession("session_recent", "最近消息", user));
+        ChatSession other = entityManager.persist(new ChatSession("session_other", "其他会话", user));
+
+        // 乱序插入，确保结果顺序来自ORDER BY而不是插入顺序
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            int sequence = (i * 7) % MESSAGE_COUNT + 1;
+            ChatMessage.MessageRole role = sequence % 2 == 1 ? ChatMessage.MessageRole.USER : ChatMessage.MessageRole.ASSISTANT;
+            entityManager.persist(new ChatMessage(session, role, "消息" + sequence, sequence));
+            entityManager.persist(new ChatMessage(other, role, "其他" + sequence, sequence + 1000));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        chatSessionService = new ChatSessionService();
+        ReflectionTestUtils.setField(chatSessionService, "chatMessageRepository", chatMessageRepository);
+    }
+
+    @Test
+    void latestQueryReturnsTailInDescendingOrder() {
+        List<ChatMessage> latest = chatMessageRepository.findLatestBySessionId("session_recent", PageRequest.of(0, 5));
+
+        assertEquals(List.of(30, 29, 28, 27, 26), sequences(latest));
+    }
+
+    @Test
+    void recentMessagesAreLastNInAscendingOrder() {
+        List<ChatMessage> recent = chatSessionService.getRecentMessages("session_recent", 5);
+
+        assertEquals(List.of(26, 27, 28, 29, 30), sequences(recent));
+        assertEquals("消息26", recent.get(0).getContent());
+        assertEquals("消息30", recent.get(4).getContent());
+    }
+
+    @Test
+    void recentMessagesReturnWholeHistoryWhenShorterThanLimit() {
+        List<ChatMessage> recent = chatSessionService.getRecentMessages("session_recent", MESSAGE_COUNT + 10);
+
+        assertEquals(MESSAGE_COUNT, recent.size());
+        for (int i = 0; i < recent.size(); i++) {
+            assertEquals(i + 1, recent.get(i).getSequenceNumber());
+        }
+    }
+
+    @Test
+    void recentMessagesHandleEmptyAndInvalidRequests() {
+        assertTrue(chatSessionService.getRecentMessages("session_missing", 5).isEmpty());
+        assertTrue(chatSessionService.getRecentMessages("session_recent", 0).isEmpty());
+        assertTrue(chatSessionService.getRecentMessages(null, 5).isEmpty());
+    }
+
+    private static List<Integer> sequences(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getSequenceNumber).toList();
+    }
+}
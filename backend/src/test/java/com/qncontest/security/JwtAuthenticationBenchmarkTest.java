@@ -0,0 +1,287 @@
+package com.qncontest.security;
+
+import com.qncontest.entity.User;
+import com.qncontest.repository.UserRepository;
+import com.qncontest.service.UserDetailsServiceImpl;
+import com.qncontest.service.UserPrincipalCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 请求认证基准测试（默认构建不运行，使用 mvn test -Pbenchmark -Dtest=JwtAuthenticationBenchmarkTest 执行）
+ * 以每个请求的平均耗时（ns/op）对比两层：
+ * 过滤器整体——用MockHttpServletRequest驱动JwtAuthenticationFilter（真实的JwtUtils、UserDetailsServiceImpl与UserPrincipalCache，
+ * 用户仓库为桩实现），对照原过滤器的做法（validateToken、extractUsername、getTokenType各自新建解析器验签一次，再按用户名查库）；
+ * 令牌解析——每次调用新建解析器、复用解析器、JwtUtils.parseClaims首次验签（缓存未命中）和命中已验签缓存。
+ * 桩仓库默认不模拟数据库延迟，可通过 -Dbenchmark.dbLatencyMicros 为每次查库加入忙等延迟；同时输出每个请求的查库次数。
+ * 令牌数和每种方式的迭代次数可通过 -Dbenchmark.tokens、-Dbenchmark.iterations 调整。
+ */
+@Tag("benchmark")
+class JwtAuthenticationBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationBenchmarkTest.class);
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+    private static final long ACCESS_TOKEN_EXPIRATION = 86_400_000L;
+    private static final int WARMUP_ROUNDS = 2;
+
+    private final AtomicLong userLookups = new AtomicLong();
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void compareFilterPaths() throws Exception {
+        int tokenCount = Math.max(1, Integer.getInteger("benchmark.tokens", 1_000));
+        int iterations = Math.max(tokenCount, Integer.getInteger("benchmark.iterations", 50_000));
+        long dbLatencyNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("benchmark.dbLatencyMicros", 0L));
+
+        JwtUtils jwtUtils = newJwtUtils(tokenCount * 2);
+        Map<String, User> users = new HashMap<>();
+        List<String> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            User user = new User("user" + i, "user" + i + "@example.com", "secret");
+            users.put(user.getUsername(), user);
+            tokens.add(jwtUtils.generateAccessToken(user));
+        }
+
+        UserDetailsServiceImpl legacyUserDetailsService = newUserDetailsService(users, dbLatencyNanos, newPrincipalCache(0));
+        UserDetailsServiceImpl userDetailsService = newUserDetailsService(users, dbLatencyNanos, newPrincipalCache(tokenCount * 2));
+
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        LegacyJwtAuthenticationFilter legacyFilter = new LegacyJwtAuthenticationFilter(legacyUserDetailsService);
+
+        Map<String, Double> nanosPerOp = new LinkedHashMap<>();
+        Map<String, Double> lookupsPerRequest = new LinkedHashMap<>();
+        userLookups.set(0);
+        nanosPerOp.put("legacyFilter", measureFilter(tokens, iterations, legacyFilter));
+        lookupsPerRequest.put("legacyFilter", (double) userLookups.get() / ((WARMUP_ROUNDS + 1) * (long) iterations));
+        userLookups.set(0);
+        nanosPerOp.put("filter", measureFilter(tokens, iterations, filter));
+        lookupsPerRequest.put("filter", (double) userLookups.get() / ((WARMUP_ROUNDS + 1) * (long) iterations));
+
+        logger.info("过滤器认证基准: tokens={}, iterations={}, dbLatencyMicros={}, ns/op={}, 每请求查库次数={}",
+            tokenCount, iterations, TimeUnit.NANOSECONDS.toMicros(dbLatencyNanos), nanosPerOp, lookupsPerRequest);
+
+        // 两种过滤器都应以令牌对应的用户完成认证
+        for (int i = 0; i < tokenCount; i++) {
+            assertSame(users.get("user" + i), authenticate(filter, tokens.get(i)).getPrincipal());
+            assertSame(users.get("user" + i), authenticate(legacyFilter, tokens.get(i)).getPrincipal());
+        }
+        assertTrue(lookupsPerRequest.get("filter") < lookupsPerRequest.get("legacyFilter"));
+    }
+
+    @Test
+    void compareTokenParsingPaths() {
+        int tokenCount = Math.max(1, Integer.getInteger("benchmark.tokens", 1_000));
+        int iterations = Math.max(tokenCount, Integer.getInteger("benchmark.iterations", 50_000));
+
+        JwtUtils jwtUtils = newJwtUtils(tokenCount * 2);
+        List<String> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            User user = new User("user" + i, "user" + i + "@example.com", "secret");
+            tokens.add(jwtUtils.generateAccessToken(user));
+        }
+
+        JwtParser sharedParser = Jwts.parser().verifyWith(signingKey()).build();
+        Map<String, Double> nanosPerOp = new LinkedHashMap<>();
+        nanosPerOp.put("parserPerCall", measure(tokens, iterations, JwtAuthenticationBenchmarkTest::parseWithNewParser));
+        nanosPerOp.put("sharedParser", measure(tokens, iterations, token -> sharedParser.parseSignedClaims(token).getPayload()));
+        // 每轮使用新的JwtUtils，第一遍遍历全部令牌都是缓存未命中
+        nanosPerOp.put("jwtUtilsMiss", measureFirstPass(tokens));
+        nanosPerOp.put("jwtUtilsHit", measure(tokens, iterations, jwtUtils::parseClaims));
+
+        logger.info("JWT解析基准: tokens={}, iterations={}, ns/op={}, verifiedTokens={}",
+            tokenCount, iterations, nanosPerOp, jwtUtils.getStats());
+        for (int i = 0; i < tokenCount; i++) {
+            Claims claims = jwtUtils.parseClaims(tokens.get(i));
+            assertEquals("user" + i, claims.getSubject());
+            assertEquals("access", claims.get("type", String.class));
+        }
+        assertTrue((Long) jwtUtils.getStats().get("hits") > 0);
+    }
+
+    private double measureFilter(List<String> tokens, int iterations, OncePerRequestFilter filter) throws Exception {
+        double nanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                if (authenticate(filter, tokens.get(i % tokens.size())) == null) {
+                    throw new IllegalStateException("请求未完成认证");
+                }
+            }
+            nanos = (double) (System.nanoTime() - start) / iterations;
+        }
+        return nanos;
+    }
+
+    /**
+     * 以一个带Bearer令牌的请求驱动过滤器，返回过滤器设置的认证信息
+     */
+    private static Authentication authenticate(OncePerRequestFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chat/sessions");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private double measureFirstPass(List<String> tokens) {
+        double nanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            JwtUtils fresh = newJwtUtils(tokens.size() * 2);
+            long start = System.nanoTime();
+            for (String token : tokens) {
+                consume(fresh.parseClaims(token));
+            }
+            nanos = (double) (System.nanoTime() - start) / tokens.size();
+            assertEquals((long) tokens.size(), fresh.getStats().get("misses"));
+        }
+        return nanos;
+    }
+
+    private static double measure(List<String> tokens, int iterations, Function<String, Claims> parse) {
+        double nanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                consume(parse.apply(tokens.get(i % tokens.size())));
+            }
+            nanos = (double) (System.nanoTime() - start) / iterations;
+        }
+        return nanos;
+    }
+
+    private static void consume(Claims claims) {
+        if (claims == null || claims.getSubject() == null) {
+            throw new IllegalStateException("令牌解析失败");
+        }
+    }
+
+    private static SecretKey signingKey() {
+        return Keys.hmacShaKeyFor(SECRET.getBytes());
+    }
+
+    /**
+     * 原JwtUtils的解析方式：每次调用重新派生密钥并构建解析器
+     */
+    private static Claims parseWithNewParser(String token) {
+        return Jwts.parser()
+            .verifyWith(signingKey())
+            .build()
+            .parseSignedClaims(token)
+            .getPayload();
+    }
+
+    private static JwtUtils newJwtUtils(int cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "accessTokenExpiration", ACCESS_TOKEN_EXPIRATION);
+        ReflectionTestUtils.setField(jwtUtils, "refreshTokenExpiration", ACCESS_TOKEN_EXPIRATION * 7);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaxSize", cacheSize);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    private static UserPrincipalCache newPrincipalCache(int maxSize) {
+        UserPrincipalCache cache = new UserPrincipalCache();
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "maxSize", maxSize);
+        return cache;
+    }
+
+    /**
+     * 使用桩用户仓库的UserDetailsServiceImpl，每次查库计数并按需忙等模拟数据库延迟
+     */
+    private UserDetailsServiceImpl newUserDetailsService(Map<String, User> users, long dbLatencyNanos,
+                                                        UserPrincipalCache principalCache) {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername(anyString())).thenAnswer(invocation -> {
+            userLookups.incrementAndGet();
+            long deadline = System.nanoTime() + dbLatencyNanos;
+            while (System.nanoTime() - deadline < 0) {
+                Thread.onSpinWait();
+            }
+            return Optional.ofNullable(users.get(invocation.<String>getArgument(0)));
+        });
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl();
+        ReflectionTestUtils.setField(userDetailsService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userDetailsService, "userPrincipalCache", principalCache);
+        return userDetailsService;
+    }
+
+    /**
+     * 原过滤器的认证流程：validateToken、extractUsername、getTokenType各自验签一次，每个请求都按用户名查库
+     */
+    private static final class LegacyJwtAuthenticationFilter extends OncePerRequestFilter {
+
+        private final UserDetailsServiceImpl userDetailsService;
+
+        private LegacyJwtAuthenticationFilter(UserDetailsServiceImpl userDetailsService) {
+            this.userDetailsService = userDetailsService;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            String headerAuth = request.getHeader("Authorization");
+            String jwt = headerAuth != null && headerAuth.startsWith("Bearer ") ? headerAuth.substring(7) : null;
+            if (jwt != null && parseWithNewParser(jwt) != null) {
+                String username = parseWithNewParser(jwt).getSubject();
+                String tokenType = parseWithNewParser(jwt).get("type", String.class);
+                if ("access".equals(tokenType)) {
+                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                    UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
+            }
+            filterChain.doFilter(request, response);
+        }
+    }
+}
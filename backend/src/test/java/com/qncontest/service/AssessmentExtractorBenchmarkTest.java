@@ -0,0 +1,209 @@
+package com.qncontest.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.qncontest.dto.AssessmentResult;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 评估结果解析基准测试（默认构建不运行，使用 mvn test -Pbenchmark -Dtest=AssessmentExtractorBenchmarkTest 执行）
+ * 对比每轮处理一段评估JSON的两种方式的平均耗时（ns/op）：
+ * 原实现解析为Map<String,Object>后逐字段取值、强转并解析字符串数字，评估历史经序列化再解析复制一份；
+ * 新实现通过AssessmentExtractor的宽松读取器直接绑定AssessmentResult，评估历史使用valueToTree。
+ * 只测解析与取值，不含§标记查找和日志输出。样本数和每种方式的迭代次数可通过 -Dbenchmark.samples、-Dbenchmark.iterations 调整。
+ */
+@Tag("benchmark")
+class AssessmentExtractorBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssessmentExtractorBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareMapAndTypedBinding() throws Exception {
+        int sampleCount = Math.max(1, Integer.getInteger("benchmark.samples", 200));
+        int iterations = Math.max(sampleCount, Integer.getInteger("benchmark.iterations", 50_000));
+
+        List<String> samples = new ArrayList<>(sampleCount);
+        for (int i = 0; i < sampleCount; i++) {
+            samples.add(sampleAssessment(i));
+        }
+
+        AssessmentExtractor extractor = new AssessmentExtractor(objectMapper);
+        ObjectReader assessmentReader = (ObjectReader) ReflectionTestUtils.getField(extractor, "assessmentReader");
+
+        Map<String, Double> nanosPerOp = new LinkedHashMap<>();
+        nanosPerOp.put("mapBased", measure(samples, iterations, this::processAsMap));
+        nanosPerOp.put("typed", measure(samples, iterations, json -> processTyped(assessmentReader, json)));
+
+        logger.info("评估解析基准: samples={}, iterations={}, ns/op={}", sampleCount, iterations, nanosPerOp);
+        // 两种方式取出的值应一致
+        for (String json : samples) {
+            assertEquals(processAsMap(json), processTyped(assessmentReader, json));
+        }
+    }
+
+    /**
+     * 原实现：解析为Map，逐字段取值并转换类型，评估历史先序列化再解析
+     */
+    @SuppressWarnings("unchecked")
+    private long processAsMap(String json) throws Exception {
+        Map<String, Object> assessment = objectMapper.readValue(json, Map.class);
+        long checksum = 0;
+        checksum += Math.round(doubleValue(assessment, "overallScore") * 100);
+        checksum += Math.round(doubleValue(assessment, "convergenceProgress") * 100);
+        checksum += stringValue(assessment, "strategy").length();
+
+        for (Map<String, Object> roll : (List<Map<String, Object>>) assessment.get("diceRolls")) {
+            checksum += intValue(roll, "diceType") + intValue(roll, "result") + intValue(roll, "modifier");
+            checksum += Boolean.TRUE.equals(booleanValue(roll, "isSuccessful")) ? 1 : 0;
+            checksum += stringValue(roll, "context").length();
+        }
+        for (Map<String, Object> memory : (List<Map<String, Object>>) assessment.get("memoryUpdates")) {
+            checksum += stringValue(memory, "content").length();
+            checksum += Math.round(doubleValue(memory, "importance") * 100);
+        }
+        Map<String, Object> arc = (Map<String, Object>) assessment.get("arcUpdates");
+        checksum += intValue(arc, "totalRounds");
+
+        Map<String, Object> historyEntry = objectMapper.readValue(objectMapper.writeValueAsString(assessment), Map.class);
+        historyEntry.put("timestamp", 0L);
+        checksum += historyEntry.size();
+        return checksum;
+    }
+
+    /**
+     * 新实现：直接绑定为AssessmentResult，评估历史使用valueToTree
+     */
+    private long processTyped(ObjectReader assessmentReader, String json) throws Exception {
+        AssessmentResult assessment = assessmentReader.readValue(json);
+        long checksum = 0;
+        checksum += Math.round(assessment.overallScore() * 100);
+        checksum += Math.round(assessment.convergenceProgress() * 100);
+        checksum += assessment.strategy().length();
+
+        for (AssessmentResult.DiceCheck roll : assessment.diceRolls()) {
+            checksum += roll.diceType() + roll.result() + roll.modifier();
+            checksum += Boolean.TRUE.equals(roll.isSuccessful()) ? 1 : 0;
+            checksum += roll.context().length();
+        }
+        for (AssessmentResult.MemoryUpdate memory : assessment.memoryUpdates()) {
+            checksum += memory.content().length();
+            checksum += Math.round(memory.importance() * 100);
+        }
+        checksum += assessment.arcUpdates().totalRounds();
+
+        ObjectNode historyEntry = objectMapper.valueToTree(assessment);
+        historyEntry.put("timestamp", 0L);
+        checksum += historyEntry.size();
+        return checksum;
+    }
+
+    /**
+     * 模拟大模型输出的评估JSON：数值有时以字符串形式出现
+     */
+    private static String sampleAssessment(int i) {
+        String score = i % 3 == 0 ? "\"0." + (50 + i % 40) + "\"" : "0." + (50 + i % 40);
+        String diceType = i % 2 == 0 ? "\"20\"" : "20";
+        return """
+            {
+              "ruleCompliance": 0.9,
+              "contextConsistency": 0.85,
+              "convergenceProgress": 0.%d,
+              "overallScore": %s,
+              "strategy": "ACCEPT",
+              "assessmentNotes": "玩家行为合理，推进了主线",
+              "suggestedActions": ["调查酒馆", "询问老板"],
+              "convergenceHints": ["线索指向北方"],
+              "diceRolls": [
+                {"diceType": %s, "modifier": 2, "context": "察觉检定", "result": %d, "isSuccessful": true, "difficultyClass": 12},
+                {"diceType": 6, "modifier": "0", "context": "伤害", "result": "4", "isSuccessful": "false", "numDice": 2}
+              ],
+              "stateUpdates": [{"type": "LOCATION", "value": "北境酒馆"}],
+              "memoryUpdates": [
+                {"type": "EVENT", "content": "第%d轮：玩家在酒馆获得了地图", "importance": 0.8},
+                {"type": "CHARACTER", "content": "酒馆老板对玩家友好", "importance": "0.6"}
+              ],
+              "worldStateUpdates": {"weather": "雨", "time": "夜晚"},
+              "arcUpdates": {"currentArcName": "北境之旅", "currentArcStartRound": 3, "totalRounds": %d}
+            }
+            """.formatted(10 + i % 80, score, diceType, 1 + i % 20, i, i + 1);
+    }
+
+    private interface Processor {
+        long process(String json) throws Exception;
+    }
+
+    private static double measure(List<String> samples, int iterations, Processor processor) throws Exception {
+        double nanos = 0;
+        long checksum = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += processor.process(samples.get(i % samples.size()));
+            }
+            nanos = (double) (System.nanoTime() - start) / iterations;
+        }
+        if (checksum == 0) {
+            throw new IllegalStateException("解析结果为空");
+        }
+        return nanos;
+    }
+
+    private static String stringValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Integer intValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Boolean booleanValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        return value instanceof String text ? Boolean.parseBoolean(text) : null;
+    }
+
+    private static Double doubleValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
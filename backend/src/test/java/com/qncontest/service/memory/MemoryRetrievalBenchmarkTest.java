@@ -0,0 +1,205 @@
+package com.qncontest.service.memory;
+
+import com.qncontest.service.RoleplayMemoryService.MemoryEntry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 记忆检索基准测试（离线评估，默认构建不运行，使用 mvn test -Pbenchmark -Dtest=MemoryRetrievalBenchmarkTest 执行）
+ * 用固定随机种子生成中文合成记忆语料（人物在地点做了某事涉及某物品），查询是对目标记忆的改写（语序变化、近义动词），
+ * 分别测量关键词倒排索引、向量索引（含重排的线上检索路径、仅IVF近似检索、精确暴力检索）的延迟（平均、p99）
+ * 和目标记忆的hit@10，以及IVF近似检索相对精确检索的recall@10。
+ * 评估用的索引不做按类型清理（线上按类型保留时记忆数远低于ivfThreshold，不会用到IVF），测试结束后即丢弃。
+ * 语料规模和查询数可通过 -Dbenchmark.corpusSize、-Dbenchmark.queries 调整。
+ */
+@Tag("benchmark")
+class MemoryRetrievalBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryRetrievalBenchmarkTest.class);
+
+    private static final int MAX_CORPUS_SIZE = 200_000;
+    private static final int MAX_QUERIES = 2_000;
+
+    private static final int EMBEDDING_DIMENSION = 256;
+    private static final int IVF_THRESHOLD = 4096;
+    private static final int IVF_PROBES = 16;
+
+    private static final int TOP_K = 10;
+    private static final long SEED = 42L;
+
+    private static final String[] SURNAMES = {"艾", "莫", "林", "萧", "顾", "沈", "白", "叶", "苏", "秦",
+        "韩", "楚", "洛", "温", "凌", "唐", "陆", "谢", "江", "夏"};
+    private static final String[] GIVEN_NAMES = {"琳", "岚", "风", "尘", "月", "雪", "辰", "羽", "衡", "墨",
+        "歌", "川", "霜", "舟", "宁", "远", "星", "澜", "青", "烬", "弦", "昭", "渊", "曦", "砚", "棠", "翎", "笙", "野", "黎"};
+    private static final String[] PLACE_PREFIXES = {"北境", "南海", "赤焰", "幽暗", "白银", "翡翠", "雷鸣", "寒霜", "黄昏",
+        "星落", "迷雾", "黑石", "碧波", "苍狼", "金沙", "龙脊", "月影", "铁炉", "灰烬", "晨曦", "荆棘", "琥珀", "风暴", "古树", "沉船"};
+    private static final String[] PLACE_SUFFIXES = {"要塞", "森林", "港口", "神殿", "矿井", "山谷", "城堡", "沼泽",
+        "集市", "废墟", "高塔", "洞窟"};
+    private static final String[][] ACTIONS = {{"发现了", "找到了"}, {"丢失了", "遗失了"}, {"买下了", "购得了"},
+        {"偷走了", "窃取了"}, {"修好了", "修复了"}, {"埋藏了", "藏起了"}, {"献出了", "交出了"}, {"毁掉了", "摧毁了"},
+        {"夺回了", "抢回了"}, {"赠送了", "送出了"}};
+    private static final String[] ITEM_ADJECTIVES = {"古老的", "破损的", "闪耀的", "诅咒的", "神圣的", "锈蚀的", "精致的",
+        "沉重的", "冰冷的", "燃烧的", "隐秘的", "华丽的", "残缺的", "传说中的", "黯淡的", "染血的", "轻巧的", "巨大的", "透明的", "漆黑的"};
+    private static final String[] ITEM_NOUNS = {"符文剑", "护身符", "地图", "王冠", "法杖", "匕首", "戒指", "盾牌",
+        "卷轴", "宝石", "钥匙", "药剂", "长弓", "圣杯", "罗盘", "面具", "铠甲", "号角", "水晶球", "日记"};
+    private static final String[] FILLERS = {"", "，当时天色已晚", "，同伴们都很惊讶", "，这件事没有告诉任何人",
+        "，守卫似乎察觉到了什么", "，之后便匆匆离开", "，据说与王国的秘密有关", "，引来了一群野狼"};
+    private static final String[] TYPES = {"CHARACTER", "EVENT", "RELATIONSHIP", "WORLD_STATE"};
+
+    @Test
+    void compareKeywordAndVectorRetrieval() {
+        Map<String, Object> result = run(Integer.getInteger("benchmark.corpusSize", 100_000),
+            Integer.getInteger("benchmark.queries", 200));
+        assertTrue((Integer) ((Map<?, ?>) result.get("semantic")).get("clusters") > 0, "语料规模超过ivfThreshold时应训练IVF聚类");
+        double recall = (Double) result.get("ivfRecallAtK");
+        assertTrue(recall >= 0 && recall <= 1);
+    }
+
+    private Map<String, Object> run(int corpusSize, int queryCount) {
+        int size = Math.max(TOP_K, Math.min(corpusSize, MAX_CORPUS_SIZE));
+        int queries = Math.max(1, Math.min(queryCount, MAX_QUERIES));
+        Random random = new Random(SEED);
+
+        List<MemoryEntry> corpus = new ArrayList<>(size);
+        List<int[]> facts = new ArrayList<>(size);
+        long timestamp = System.currentTimeMillis() - size;
+        for (int i = 0; i < size; i++) {
+            int[] fact = {random.nextInt(SURNAMES.length), random.nextInt(GIVEN_NAMES.length),
+                random.nextInt(PLACE_PREFIXES.length), random.nextInt(PLACE_SUFFIXES.length), random.nextInt(ACTIONS.length),
+                random.nextInt(ITEM_ADJECTIVES.length), random.nextInt(ITEM_NOUNS.length)};
+            String content = name(fact) + "在" + place(fact) + ACTIONS[fact[4]][0] + item(fact)
+                + FILLERS[random.nextInt(FILLERS.length)];
+            MemoryEntry entry = new MemoryEntry(content, TYPES[random.nextInt(TYPES.length)], 0.1 + random.nextDouble() * 0.9);
+            entry.setTimestamp(timestamp + i);
+            corpus.add(entry);
+            facts.add(fact);
+        }
+
+        int[] targets = new int[queries];
+        String[] queryTexts = new String[queries];
+        for (int q = 0; q < queries; q++) {
+            int target = random.nextInt(size);
+            int[] fact = facts.get(target);
+            targets[q] = target;
+            queryTexts[q] = "还记得在" + place(fact) + "，" + name(fact) + ACTIONS[fact[4]][1] + "的那件" + item(fact) + "吗";
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("corpusSize", size);
+        result.put("queries", queries);
+        result.put("topK", TOP_K);
+
+        long start = System.nanoTime();
+        SessionMemoryIndex keywordIndex = new SessionMemoryIndex(false);
+        corpus.forEach(keywordIndex::add);
+        long keywordBuildMillis = (System.nanoTime() - start) / 1_000_000;
+        Map<String, Object> keyword = measure(queryTexts, targets, corpus,
+            query -> keywordIndex.search(query, TOP_K));
+        keyword.put("buildMillis", keywordBuildMillis);
+        result.put("keyword", keyword);
+
+        start = System.nanoTime();
+        SessionVectorIndex vectorIndex = new SessionVectorIndex(
+            new HashingEmbeddingModel(EMBEDDING_DIMENSION), IVF_THRESHOLD, IVF_PROBES, false);
+        corpus.forEach(vectorIndex::add);
+        long vectorBuildMillis = (System.nanoTime() - start) / 1_000_000;
+        // 第一次检索会触发IVF训练，单独计时
+        start = System.nanoTime();
+        vectorIndex.nearest(queryTexts[0], TOP_K, false);
+        long trainMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<String, Object> semantic = measure(queryTexts, targets, corpus,
+            query -> vectorIndex.search(query, TOP_K));
+        semantic.put("buildMillis", vectorBuildMillis);
+        semantic.put("ivfTrainMillis", trainMillis);
+        semantic.put("clusters", vectorIndex.clusters());
+        semantic.put("offHeapBytes", vectorIndex.offHeapBytes());
+        result.put("semantic", semantic);
+
+        result.put("semanticIvf", measure(queryTexts, targets, corpus,
+            query -> vectorIndex.nearest(query, TOP_K, false)));
+        result.put("semanticExact", measure(queryTexts, targets, corpus,
+            query -> vectorIndex.nearest(query, TOP_K, true)));
+
+        double recallSum = 0;
+        for (String query : queryTexts) {
+            List<MemoryEntry> exact = vectorIndex.nearest(query, TOP_K, true);
+            if (exact.isEmpty()) {
+                recallSum += 1;
+                continue;
+            }
+            Set<MemoryEntry> approximate = Collections.newSetFromMap(new IdentityHashMap<>());
+            approximate.addAll(vectorIndex.nearest(query, TOP_K, false));
+            int found = 0;
+            for (MemoryEntry entry : exact) {
+                if (approximate.contains(entry)) {
+                    found++;
+                }
+            }
+            recallSum += (double) found / exact.size();
+        }
+        result.put("ivfRecallAtK", recallSum / queries);
+
+        logger.info("记忆检索基准测试完成: {}", result);
+        return result;
+    }
+
+    private Map<String, Object> measure(String[] queryTexts, int[] targets, List<MemoryEntry> corpus,
+                                        Function<String, List<MemoryEntry>> search) {
+        // 预热，避免把JIT编译时间计入
+        for (int q = 0; q < Math.min(queryTexts.length, 50); q++) {
+            search.apply(queryTexts[q]);
+        }
+        long[] nanos = new long[queryTexts.length];
+        int hits = 0;
+        for (int q = 0; q < queryTexts.length; q++) {
+            long start = System.nanoTime();
+            List<MemoryEntry> results = search.apply(queryTexts[q]);
+            nanos[q] = System.nanoTime() - start;
+            MemoryEntry target = corpus.get(targets[q]);
+            for (MemoryEntry entry : results) {
+                if (entry == target) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("avgMicros", total / 1000.0 / nanos.length);
+        stats.put("p99Micros", nanos[Math.min(nanos.length - 1, (int) Math.ceil(nanos.length * 0.99) - 1)] / 1000.0);
+        stats.put("hitAtK", (double) hits / queryTexts.length);
+        return stats;
+    }
+
+    private static String name(int[] fact) {
+        return SURNAMES[fact[0]] + GIVEN_NAMES[fact[1]];
+    }
+
+    private static String place(int[] fact) {
+        return PLACE_PREFIXES[fact[2]] + PLACE_SUFFIXES[fact[3]];
+    }
+
+    private static String item(int[] fact) {
+        return ITEM_ADJECTIVES[fact[5]] + ITEM_NOUNS[fact[6]];
+    }
+}
@@ -0,0 +1,169 @@
+package com.qncontest.service.prompt;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qncontest.config.PromptConfig;
+import com.qncontest.entity.WorldTemplate;
+import com.qncontest.repository.WorldTemplateRepository;
+import com.qncontest.service.ChatSessionService;
+import com.qncontest.service.ConvergenceStatusService;
+import com.qncontest.service.SessionSummaryService;
+import com.qncontest.service.WorldEventService;
+import com.qncontest.service.WorldTemplateCache;
+import com.qncontest.service.WorldTemplateService;
+import com.qncontest.service.event.EventSummaryRenderer;
+import com.qncontest.service.interfaces.MemoryManagerInterface;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * DM提示词组装基准测试（默认构建不运行，使用 mvn test -Pbenchmark -Dtest=PromptBuilderBenchmarkTest 执行）
+ * 对比每轮调用buildDMAwarePrompt的平均耗时（ns/op）：
+ * 复用按世界类型缓存的静态层（当前实现），与每轮清空静态层缓存、重新渲染世界模板/世界观/DM准则/收敛目标（原实现每轮的做法）。
+ * 世界模板经真实的WorldTemplateCache读取，动态层依赖的服务使用桩实现；组装期间PromptBuilder等类的日志调到WARN，避免日志输出干扰计时。
+ * 迭代次数可通过 -Dbenchmark.iterations 调整。
+ */
+@Tag("benchmark")
+class PromptBuilderBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptBuilderBenchmarkTest.class);
+
+    private static final String WORLD_TYPE = "fantasy_adventure";
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static final Class<?>[] QUIET_LOGGERS = {
+        PromptBuilder.class, WorldTemplateProcessor.class, WorldTemplateService.class, WorldTemplateCache.class
+    };
+
+    @Test
+    void compareCachedLayersWithFullRebuild() {
+        int iterations = Math.max(1, Integer.getInteger("benchmark.iterations", 20_000));
+
+        PromptBuilder promptBuilder = newPromptBuilder();
+        Map<?, ?> staticLayers = (Map<?, ?>) ReflectionTestUtils.getField(promptBuilder, "staticLayersByWorld");
+
+        Map<String, Double> nanosPerOp = new LinkedHashMap<>();
+        Map<Class<?>, Level> previousLevels = quietLoggers();
+        try {
+            nanosPerOp.put("cachedLayers", measure(iterations, round -> promptBuilder.buildDMAwarePrompt(newContext(round))));
+            nanosPerOp.put("fullRebuild", measure(iterations, round -> {
+                staticLayers.clear();
+                return promptBuilder.buildDMAwarePrompt(newContext(round));
+            }));
+        } finally {
+            restoreLoggers(previousLevels);
+        }
+
+        logger.info("DM提示词组装基准: iterations={}, ns/op={}", iterations, nanosPerOp);
+        // 两种方式生成的提示词应逐字节一致
+        String cached = promptBuilder.buildDMAwarePrompt(newContext(7));
+        staticLayers.clear();
+        assertEquals(cached, promptBuilder.buildDMAwarePrompt(newContext(7)));
+        assertEquals(1, staticLayers.size());
+    }
+
+    private static PromptBuilder.RoleplayContext newContext(int round) {
+        PromptBuilder.RoleplayContext context = new PromptBuilder.RoleplayContext(WORLD_TYPE, "session_benchmark");
+        context.setCurrentMessage("我走向酒馆老板，询问关于北方遗迹的传闻（第" + round + "轮）");
+        context.setWorldState("{\"location\":\"北境酒馆\",\"weather\":\"雨夜\"}");
+        context.setSkillsState("{\"level\":3,\"hp\":42,\"inventory\":[\"长剑\",\"地图\"]}");
+        context.setTotalRounds(round);
+        context.setCurrentArcName("北境之旅");
+        context.setCurrentArcStartRound(1);
+        return context;
+    }
+
+    private static PromptBuilder newPromptBuilder() {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        WorldTemplateRepository worldTemplateRepository = mock(WorldTemplateRepository.class);
+        when(worldTemplateRepository.findByWorldId(WORLD_TYPE)).thenReturn(Optional.of(sampleTemplate()));
+        WorldTemplateCache templateCache = new WorldTemplateCache();
+        ReflectionTestUtils.setField(templateCache, "worldTemplateRepository", worldTemplateRepository);
+        ReflectionTestUtils.setField(templateCache, "objectMapper", objectMapper);
+
+        WorldTemplateService worldTemplateService = new WorldTemplateService();
+        ReflectionTestUtils.setField(worldTemplateService, "worldTemplateRepository", worldTemplateRepository);
+        ReflectionTestUtils.setField(worldTemplateService, "templateCache", templateCache);
+
+        WorldTemplateProcessor worldTemplateProcessor = new WorldTemplateProcessor();
+        ReflectionTestUtils.setField(worldTemplateProcessor, "worldTemplateService", worldTemplateService);
+
+        MemoryManagerInterface memoryService = mock(MemoryManagerInterface.class);
+        when(memoryService.buildMemoryContext(anyString(), anyString())).thenReturn("- 酒馆老板对玩家友好\n- 玩家持有一张残缺的地图\n");
+        WorldEventService worldEventService = mock(WorldEventService.class);
+        when(worldEventService.getLatestEvents(anyString(), anyInt())).thenReturn(List.of());
+        ChatSessionService chatSessionService = mock(ChatSessionService.class);
+        when(chatSessionService.getTotalRounds(anyString())).thenReturn(12);
+
+        PromptBuilder promptBuilder = new PromptBuilder();
+        ReflectionTestUtils.setField(promptBuilder, "worldTemplateProcessor", worldTemplateProcessor);
+        ReflectionTestUtils.setField(promptBuilder, "worldTemplateService", worldTemplateService);
+        ReflectionTestUtils.setField(promptBuilder, "convergenceStatusService", mock(ConvergenceStatusService.class));
+        ReflectionTestUtils.setField(promptBuilder, "memoryService", memoryService);
+        ReflectionTestUtils.setField(promptBuilder, "worldEventService", worldEventService);
+        ReflectionTestUtils.setField(promptBuilder, "chatSessionService", chatSessionService);
+        ReflectionTestUtils.setField(promptBuilder, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(promptBuilder, "promptProperties", new PromptConfig.PromptProperties());
+        ReflectionTestUtils.setField(promptBuilder, "eventSummaryRenderer", mock(EventSummaryRenderer.class));
+        ReflectionTestUtils.setField(promptBuilder, "sessionSummaryService", mock(SessionSummaryService.class));
+        return promptBuilder;
+    }
+
+    private static WorldTemplate sampleTemplate() {
+        WorldTemplate template = new WorldTemplate(WORLD_TYPE, "异界探险", "剑与魔法的大陆，古老的遗迹散落在北方的群山之中。");
+        template.setSystemPromptTemplate("你是一名经验丰富的地下城主，引导玩家在异界大陆上冒险。");
+        template.setDefaultRules("{\"magicSystem\":\"元素魔法\",\"combatRules\":\"回合制，d20检定\",\"deathPenalty\":\"失去一半金币\"}");
+        template.setLocationTemplates("{\"tavern\":{\"name\":\"北境酒馆\",\"description\":\"冒险者聚集之地\"},"
+            + "\"ruins\":{\"name\":\"北方遗迹\",\"description\":\"传说中封印着远古巨龙\"}}");
+        template.setConvergenceScenarios("{\"main_ending\":{\"title\":\"封印巨龙\",\"description\":\"重新封印远古巨龙\"},"
+            + "\"alternative_ending\":{\"title\":\"与龙结盟\",\"description\":\"说服巨龙守护大陆\"}}");
+        template.setConvergenceRules("{\"convergence_threshold\":0.8,\"max_rounds\":50}");
+        return template;
+    }
+
+    private static Map<Class<?>, Level> quietLoggers() {
+        Map<Class<?>, Level> previous = new LinkedHashMap<>();
+        for (Class<?> type : QUIET_LOGGERS) {
+            ch.qos.logback.classic.Logger target = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(type);
+            previous.put(type, target.getLevel());
+            target.setLevel(Level.WARN);
+        }
+        return previous;
+    }
+
+    private static void restoreLoggers(Map<Class<?>, Level> previous) {
+        previous.forEach((type, level) -> ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(type)).setLevel(level));
+    }
+
+    private static double measure(int iterations, Function<Integer, String> build) {
+        double nanos = 0;
+        long checksum = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += build.apply(i).length();
+            }
+            nanos = (double) (System.nanoTime() - start) / iterations;
+        }
+        if (checksum == 0) {
+            throw new IllegalStateException("提示词为空");
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qncontest.service.stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SSE token编码基准测试（默认构建不运行，使用 mvn test -Pbenchmark -Dtest=SseTokenEncoderBenchmarkTest 执行）
+ * 对比生成 {"content":"..."} 事件数据的两种方式的平均耗时（ns/op）：
+ * 原实现每个token五次String.replace再拼接字符串，新实现单次遍历转义写入每个流复用的缓冲区。
+ * token样本模拟大模型流式输出：以短中文片段为主，夹杂引号、反斜杠和换行。
+ * token数和每种方式的迭代次数可通过 -Dbenchmark.tokens、-Dbenchmark.iterations 调整。
+ */
+@Tag("benchmark")
+class SseTokenEncoderBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseTokenEncoderBenchmarkTest.class);
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static final String[] FRAGMENTS = {
+        "你", "走进", "昏暗的", "酒馆", "，", "。", "\n", "老板", "说：", "\"", "欢迎", "冒险者", "！",
+        "HP", " ", "+5", "\\", "路径", "\n\n", "**", "提示", "：", "\t", "选择"
+    };
+
+    @Test
+    void compareTokenEncodingPaths() {
+        int tokenCount = Math.max(1, Integer.getInteger("benchmark.tokens", 10_000));
+        int iterations = Math.max(tokenCount, Integer.getInteger("benchmark.iterations", 1_000_000));
+
+        Random random = new Random(42);
+        List<String> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            StringBuilder token = new StringBuilder();
+            int parts = 1 + random.nextInt(3);
+            for (int p = 0; p < parts; p++) {
+                token.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            tokens.add(token.toString());
+        }
+
+        StringBuilder reusable = new StringBuilder(256);
+        Function<String, String> singlePass = token -> {
+            reusable.setLength(0);
+            reusable.append("{\"content\":\"");
+            SseTokenEncoder.appendJsonEscaped(reusable, token);
+            reusable.append("\"}");
+            return reusable.toString();
+        };
+
+        Map<String, Double> nanosPerOp = new LinkedHashMap<>();
+        nanosPerOp.put("replaceChain", measure(tokens, iterations, SseTokenEncoderBenchmarkTest::replaceChain));
+        nanosPerOp.put("singlePass", measure(tokens, iterations, singlePass));
+
+        logger.info("SSE token编码基准: tokens={}, iterations={}, ns/op={}", tokenCount, iterations, nanosPerOp);
+        // 样本只含原实现也能处理的字符，两种方式输出应完全一致
+        for (String token : tokens) {
+            assertEquals(replaceChain(token), singlePass.apply(token));
+        }
+    }
+
+    /**
+     * 原实现：五次String.replace + 字符串拼接
+     */
+    private static String replaceChain(String token) {
+        String escapedToken = token
+                .replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+        return "{\"content\":\"" + escapedToken + "\"}";
+    }
+
+    private static double measure(List<String> tokens, int iterations, Function<String, String> encode) {
+        double nanos = 0;
+        long checksum = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += encode.apply(tokens.get(i % tokens.size())).length();
+            }
+            nanos = (double) (System.nanoTime() - start) / iterations;
+        }
+        if (checksum == 0) {
+            throw new IllegalStateException("编码结果为空");
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,93 @@
+package com.qncontest.service.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SSE/JSON编码器测试
+ * 覆盖双引号、反斜杠、具名转义（\n \r \t \b \f）以及U+0000-U+001F全部控制字符，并用Jackson解析验证转义结果可以还原。
+ */
+class SseTokenEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void escapesQuotesAndBackslashes() {
+        assertEquals("say \\\"hi\\\"", SseTokenEncoder.escapeJson("say \"hi\""));
+        assertEquals("C:\\\\path\\\\file", SseTokenEncoder.escapeJson("C:\\path\\file"));
+    }
+
+    @Test
+    void escapesNamedControlCharacters() {
+        assertEquals("\\n\\r\\t\\b\\f", SseTokenEncoder.escapeJson("\n\r\t\b\f"));
+    }
+
+    @Test
+    void escapesEveryControlCharacterAndRoundTrips() throws Exception {
+        for (char c = 0; c < 0x20; c++) {
+            String raw = "a" + c + "b";
+            String escaped = SseTokenEncoder.escapeJson(raw);
+
+            for (int i = 0; i < escaped.length(); i++) {
+                assertTrue(escaped.charAt(i) >= 0x20, "控制字符未转义: U+" + Integer.toHexString(c));
+            }
+            String expectedEscape = switch (c) {
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\b' -> "\\b";
+                case '\f' -> "\\f";
+                default -> String.format("\\u%04x", (int) c);
+            };
+            assertEquals("a" + expectedEscape + "b", escaped);
+            assertEquals(raw, objectMapper.readTree("\"" + escaped + "\"").asText());
+        }
+    }
+
+    @Test
+    void leavesOtherCharactersUntouched() {
+        String text = "普通文本 ünïcödé 😀 /<>&'\u007f";
+        assertEquals(text, SseTokenEncoder.escapeJson(text));
+        assertEquals("", SseTokenEncoder.escapeJson(null));
+        assertEquals("", SseTokenEncoder.escapeJson(""));
+    }
+
+    @Test
+    void appendsAfterExistingContent() {
+        StringBuilder target = new StringBuilder("prefix:");
+        SseTokenEncoder.appendJsonEscaped(target, "x\"\u0001y");
+        SseTokenEncoder.appendJsonEscaped(target, null);
+        assertEquals("prefix:x\\\"\\u0001y", target.toString());
+    }
+
+    @Test
+    void contentEventIsValidJsonAndBufferIsReusable() throws Exception {
+        SseTokenEncoder.TokenFrameBuffer buffer = new SseTokenEncoder().newBuffer();
+
+        String first = eventData(buffer.contentEvent("第一行\n\"引号\"\u0000"));
+        String second = eventData(buffer.contentEvent("ok"));
+
+        JsonNode firstJson = objectMapper.readTree(first);
+        assertEquals("第一行\n\"引号\"\u0000", firstJson.get("content").asText());
+        assertEquals("{\"content\":\"ok\"}", second);
+    }
+
+    /**
+     * 取出事件的JSON数据部分（SseEmitter将事件拆成"event:/data:"前缀与数据本身）
+     */
+    private static String eventData(SseEmitter.SseEventBuilder event) {
+        for (ResponseBodyEmitter.DataWithMediaType part : event.build()) {
+            Object data = part.getData();
+            if (data instanceof String text && text.startsWith("{")) {
+                return text;
+            }
+        }
+        throw new AssertionError("事件中没有JSON数据");
+    }
+}
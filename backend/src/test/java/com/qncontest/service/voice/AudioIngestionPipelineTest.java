@@ -0,0 +1,375 @@
+package com.qncontest.service.voice;
+
+import com.qncontest.config.VoiceConfig;
+import com.qncontest.controller.VoiceController;
+import com.qncontest.dto.ChatResponse;
+import com.qncontest.entity.User;
+import com.qncontest.service.BackendVoiceProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 音频接收与识别管线测试
+ * 使用桩识别实现，覆盖池化缓冲路径、内存映射路径、缓冲池耗尽回退、准入拒绝、识别超时，以及超时后缓冲块与准入名额的释放。
+ * 缓冲块为4096字节（DirectBufferPool的下限），内存映射阈值8192字节。
+ */
+class AudioIngestionPipelineTest {
+
+    private static final int CHUNK_BYTES = 4096;
+    private static final long MMAP_THRESHOLD = 8192;
+    private static final long RECOGNITION_TIMEOUT_MS = 1000;
+    private static final long AWAIT_MS = 5000;
+
+    private final StubRecognizer recognizer = new StubRecognizer();
+    private final List<AudioIngestionPipeline> pipelines = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        recognizer.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recognizer.unblock();
+        pipelines.forEach(AudioIngestionPipeline::shutdown);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void smallUploadIsReadIntoPooledBuffers() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        byte[] audio = audio(5000);
+
+        assertEquals(StubRecognizer.RESULT, pipeline.recognize(upload(audio), ".wav", "zh-CN"));
+
+        assertFalse(recognizer.lastMemoryMapped);
+        assertArrayEquals(audio, recognizer.lastBytes);
+        Map<String, Object> stats = pipeline.getStats();
+        assertEquals(1L, stats.get("pooledPayloads"));
+        assertEquals(0L, stats.get("mappedPayloads"));
+        assertEquals(2, stats.get("bufferPoolAllocated"));
+        assertReleased(pipeline);
+    }
+
+    @Test
+    void uploadAboveThresholdIsMemoryMapped() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        byte[] audio = audio((int) MMAP_THRESHOLD + 1);
+
+        assertEquals(StubRecognizer.RESULT, pipeline.recognize(upload(audio), ".wav", "zh-CN"));
+
+        assertTrue(recognizer.lastMemoryMapped);
+        assertArrayEquals(audio, recognizer.lastBytes);
+        Map<String, Object> stats = pipeline.getStats();
+        assertEquals(0L, stats.get("pooledPayloads"));
+        assertEquals(1L, stats.get("mappedPayloads"));
+        assertEquals(0, stats.get("bufferPoolAllocated"));
+        assertReleased(pipeline);
+    }
+
+    @Test
+    void exhaustedPoolFallsBackToMemoryMapping() throws Exception {
+        // 只有一个缓冲块，5000字节需要两块
+        AudioIngestionPipeline pipeline = newPipeline(1, 1, 0);
+        byte[] audio = audio(5000);
+
+        assertEquals(StubRecognizer.RESULT, pipeline.recognize(upload(audio), ".wav", "zh-CN"));
+
+        assertTrue(recognizer.lastMemoryMapped);
+        assertArrayEquals(audio, recognizer.lastBytes);
+        Map<String, Object> stats = pipeline.getStats();
+        assertEquals(1L, stats.get("bufferPoolExhausted"));
+        assertEquals(1L, stats.get("mappedPayloads"));
+        assertReleased(pipeline);
+    }
+
+    @Test
+    void fullAdmissionRejectsAfterWaiting() throws Exception {
+        // 一个识别线程、不排队：在途识别上限为1
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        recognizer.block();
+        CompletableFuture<String> first = recognizeAsync(pipeline, audio(1000));
+        assertTrue(recognizer.entered.await(AWAIT_MS, TimeUnit.MILLISECONDS));
+
+        assertThrows(RejectedExecutionException.class,
+            () -> pipeline.recognize(upload(audio(1000)), ".wav", "zh-CN"));
+        assertEquals(1L, pipeline.getStats().get("rejected"));
+
+        recognizer.unblock();
+        assertEquals(StubRecognizer.RESULT, first.get(AWAIT_MS, TimeUnit.MILLISECONDS));
+        assertReleased(pipeline);
+    }
+
+    @Test
+    void rejectedUploadIsAnsweredWith503() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        VoiceController controller = newController(pipeline);
+        recognizer.block();
+        CompletableFuture<String> first = recognizeAsync(pipeline, audio(1000));
+        assertTrue(recognizer.entered.await(AWAIT_MS, TimeUnit.MILLISECONDS));
+
+        ResponseEntity<ChatResponse> response = controller.recognizeVoice(upload(audio(1000)), "zh-CN", null, null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        recognizer.unblock();
+        first.get(AWAIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    void recognitionTimeoutReleasesBuffersAndPermit() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        recognizer.block();
+
+        assertThrows(TimeoutException.class, () -> pipeline.recognize(upload(audio(5000)), ".wav", "zh-CN"));
+
+        assertEquals(1L, pipeline.getStats().get("timeouts"));
+        // 超时后任务被中断，正在执行的识别在退出时归还缓冲块和准入名额
+        awaitReleased(pipeline);
+        assertTrue(recognizer.interrupted);
+    }
+
+    @Test
+    void queuedRecognitionTimeoutIsReleasedByCaller() throws Exception {
+        // 一个识别线程、排队1个：第二个请求在队列中超时，由调用方立即释放其缓冲块和名额
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 1);
+        recognizer.block();
+        recognizer.ignoreInterrupts = true;
+        CompletableFuture<String> running = recognizeAsync(pipeline, audio(5000));
+        assertTrue(recognizer.entered.await(AWAIT_MS, TimeUnit.MILLISECONDS));
+
+        assertThrows(TimeoutException.class, () -> pipeline.recognize(upload(audio(5000)), ".wav", "zh-CN"));
+
+        Map<String, Object> stats = pipeline.getStats();
+        assertEquals(2, stats.get("bufferPoolInUse"));
+        assertEquals(1, stats.get("inFlight"));
+
+        recognizer.unblock();
+        assertThrows(Exception.class, () -> running.get(AWAIT_MS, TimeUnit.MILLISECONDS));
+        awaitReleased(pipeline);
+        assertEquals(1, recognizer.calls);
+    }
+
+    @Test
+    void bufferedStreamingSessionRunsThroughPipeline() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        RecordingListener listener = new RecordingListener();
+        RecognitionSession session = pipeline.startSession(".webm", "zh-CN", listener);
+        byte[] audio = audio(100_000);
+        session.acceptFrame(ByteBuffer.wrap(audio, 0, 60_000));
+        session.acceptFrame(ByteBuffer.wrap(audio, 60_000, 40_000));
+
+        session.finish();
+
+        assertEquals(StubRecognizer.RESULT, listener.finalText);
+        assertArrayEquals(audio, recognizer.lastBytes);
+        assertTrue(recognizer.lastThread.startsWith("voice-recognizer-"));
+        assertReleased(pipeline);
+    }
+
+    @Test
+    void bufferedStreamingSessionIsRejectedWhenAdmissionIsFull() throws Exception {
+        AudioIngestionPipeline pipeline = newPipeline(8, 1, 0);
+        recognizer.block();
+        CompletableFuture<String> first = recognizeAsync(pipeline, audio(1000));
+        assertTrue(recognizer.entered.await(AWAIT_MS, TimeUnit.MILLISECONDS));
+        RecognitionSession session = pipeline.startSession(".webm", "zh-CN", new RecordingListener());
+        session.acceptFrame(ByteBuffer.wrap(audio(1000)));
+
+        assertThrows(RejectedExecutionException.class, session::finish);
+
+        recognizer.unblock();
+        first.get(AWAIT_MS, TimeUnit.MILLISECONDS);
+        assertReleased(pipeline);
+    }
+
+    private AudioIngestionPipeline newPipeline(int maxPooledBuffers, int threads, int queueCapacity) {
+        VoiceConfig.VoiceProperties properties = new VoiceConfig.VoiceProperties();
+        properties.setRecognizer(StubRecognizer.NAME);
+        properties.setMmapThresholdBytes(MMAP_THRESHOLD);
+        properties.setBufferChunkBytes(CHUNK_BYTES);
+        properties.setMaxPooledBuffers(maxPooledBuffers);
+        properties.setRecognizerThreads(threads);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setAdmissionTimeoutMs(50);
+        properties.setRecognitionTimeoutMs(RECOGNITION_TIMEOUT_MS);
+        AudioIngestionPipeline pipeline = new AudioIngestionPipeline();
+        ReflectionTestUtils.setField(pipeline, "voiceProperties", properties);
+        ReflectionTestUtils.setField(pipeline, "recognizers", List.<SpeechRecognizer>of(recognizer));
+        pipeline.init();
+        pipelines.add(pipeline);
+        return pipeline;
+    }
+
+    private VoiceController newController(AudioIngestionPipeline pipeline) {
+        BackendVoiceProcessor processor = new BackendVoiceProcessor();
+        ReflectionTestUtils.setField(processor, "audioIngestionPipeline", pipeline);
+        ReflectionTestUtils.setField(processor, "voiceProperties", ReflectionTestUtils.getField(pipeline, "voiceProperties"));
+        VoiceController controller = new VoiceController();
+        ReflectionTestUtils.setField(controller, "voiceProcessor", processor);
+        User user = new User("voice-tester", "voice-tester@example.com", "secret");
+        user.setId(1L);
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return controller;
+    }
+
+    private static CompletableFuture<String> recognizeAsync(AudioIngestionPipeline pipeline, byte[] audio) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipeline.recognize(upload(audio), ".wav", "zh-CN");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static MockMultipartFile upload(byte[] audio) {
+        return new MockMultipartFile("audio", "voice.wav", "audio/wav", audio);
+    }
+
+    private static byte[] audio(int size) {
+        byte[] audio = new byte[size];
+        for (int i = 0; i < size; i++) {
+            audio[i] = (byte) (i * 31 + 7);
+        }
+        return audio;
+    }
+
+    private static void assertReleased(AudioIngestionPipeline pipeline) {
+        Map<String, Object> stats = pipeline.getStats();
+        assertEquals(0, stats.get("bufferPoolInUse"));
+        assertEquals(0, stats.get("inFlight"));
+        assertEquals(0, stats.get("active"));
+    }
+
+    private static void awaitReleased(AudioIngestionPipeline pipeline) throws InterruptedException {
+        awaitTrue(() -> {
+            Map<String, Object> stats = pipeline.getStats();
+            return Integer.valueOf(0).equals(stats.get("bufferPoolInUse")) && Integer.valueOf(0).equals(stats.get("inFlight"));
+        });
+        assertReleased(pipeline);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 桩识别实现：读出全部音频并记录读取方式，可按需阻塞以模拟慢识别
+     */
+    private static final class StubRecognizer implements SpeechRecognizer {
+
+        static final String NAME = "stub";
+        static final String RESULT = "识别结果";
+
+        volatile CountDownLatch entered;
+        volatile CountDownLatch release;
+        volatile boolean ignoreInterrupts;
+        volatile boolean interrupted;
+        volatile boolean lastMemoryMapped;
+        volatile byte[] lastBytes;
+        volatile String lastThread;
+        volatile int calls;
+
+        void reset() {
+            entered = new CountDownLatch(1);
+            release = null;
+            ignoreInterrupts = false;
+            interrupted = false;
+            lastMemoryMapped = false;
+            lastBytes = null;
+            lastThread = null;
+            calls = 0;
+        }
+
+        void block() {
+            release = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            CountDownLatch latch = release;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public String name() {
+            return NAME;
+        }
+
+        @Override
+        public String recognize(AudioPayload audio, String language) throws IOException {
+            calls++;
+            lastThread = Thread.currentThread().getName();
+            lastMemoryMapped = audio.isMemoryMapped();
+            try (InputStream in = audio.openStream()) {
+                lastBytes = in.readAllBytes();
+            }
+            entered.countDown();
+            CountDownLatch latch = release;
+            if (latch != null) {
+                awaitRelease(latch);
+            }
+            return RESULT;
+        }
+
+        private void awaitRelease(CountDownLatch latch) throws IOException {
+            while (true) {
+                try {
+                    latch.await();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (!ignoreInterrupts) {
+                        throw new InterruptedIOException("识别被中断");
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class RecordingListener implements TranscriptListener {
+
+        volatile String finalText;
+
+        @Override
+        public void onPartial(String text, int stableLength) {
+        }
+
+        @Override
+        public void onFinal(String text) {
+            finalText = text;
+        }
+    }
+}
@@ -77,6 +77,13 @@ class StreamingBuffer {
     }
   }
 
+  // 设置服务端解析好的评估内容
+  setAssessment(assessmentData: any) {
+    this.structuredContent.assessment = JSON.stringify(assessmentData, null, 2);
+    this.onContentUpdate({ ...this.structuredContent });
+    console.log('✅ [StreamingBuffer] 收到评估内容:', assessmentData);
+  }
+
   // 获取当前buffer内容
   getBuffer(): string {
     return this.buffer;
@@ -311,13 +318,17 @@ const RoleplayChat: React.FC<RoleplayChatProps> = () => {
           setCurrentStreamingMessage(null);
           setIsStreaming(false);
           setIsLoading(false);
-          
-          // 重新获取会话状态（包括更新后的skillsState）
+        },
+        abortControllerRef.current.signal,
+        () => {
+          // 服务端完成游戏逻辑处理后，重新获取会话状态（包括更新后的skillsState）
           if (sessionId) {
             fetchSessionState(sessionId);
           }
         },
-        abortControllerRef.current.signal
+        (assessment: any) => {
+          streamingBufferRef.current?.setAssessment(assessment);
+        }
       );
     } catch (error) {
       console.error('❌ [RoleplayChat] 流式请求失败:', error);
@@ -516,13 +527,17 @@ const RoleplayChat: React.FC<RoleplayChatProps> = () => {
           setCurrentStreamingMessage(null);
           setIsStreaming(false);
           setIsLoading(false);
-          
-          // 重新获取会话状态（包括更新后的skillsState）
+        },
+        abortControllerRef.current.signal,
+        () => {
+          // 服务端完成游戏逻辑处理后，重新获取会话状态（包括更新后的skillsState）
           if (sessionId) {
             fetchSessionState(sessionId);
           }
         },
-        abortControllerRef.current.signal
+        (assessment: any) => {
+          streamingBufferRef.current?.setAssessment(assessment);
+        }
       );
     } catch (error) {
       console.error('❌ [RoleplayChat] 流式请求失败:', error);
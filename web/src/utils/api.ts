@@ -118,7 +118,9 @@ export const streamChatRequest = async (
   data: any, 
   onMessage: (content: string) => void, 
   onComplete: () => void,
-  signal?: AbortSignal
+  signal?: AbortSignal,
+  onState?: (state: any) => void,
+  onAssessment?: (assessment: any) => void
 ) => {
   const token = localStorage.getItem('accessToken');
   if (!token) {
@@ -155,6 +157,7 @@ export const streamChatRequest = async (
 
     const decoder = new TextDecoder();
     let buffer = '';
+    let currentEvent = '';
 
     while (true) {
       // 检查是否被取消
@@ -180,17 +183,41 @@ export const streamChatRequest = async (
         // 处理SSE事件
         if (line.startsWith('event:')) {
           const eventType = line.substring(6).trim();
+          currentEvent = eventType;
           if (eventType === 'complete') {
             console.log('收到服务器完成事件');
             isCompleted = true;
             onComplete();
-            return;
+            // 游戏逻辑在服务端异步处理，结果随后通过state事件下发
+            if (!onState) {
+              return;
+            }
           }
+          continue;
         }
 
         // 处理SSE数据
         if (line.startsWith('data:')) {
           const data = line.substring(5).trim();
+
+          // 评估JSON由服务端解析后单独下发，不再混在content中
+          if (currentEvent === 'assessment') {
+            try {
+              onAssessment?.(JSON.parse(data));
+            } catch (e) {
+              console.warn('解析assessment事件失败:', data, e);
+            }
+            continue;
+          }
+
+          if (currentEvent === 'state') {
+            try {
+              onState?.(JSON.parse(data));
+            } catch (e) {
+              console.warn('解析state事件失败:', data, e);
+            }
+            return;
+          }
           
           if (data === '[DONE]') {
             console.log('收到DONE信号');